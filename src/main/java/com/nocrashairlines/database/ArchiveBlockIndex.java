@@ -0,0 +1,51 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.database.storage.ColdStore;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Key -> archive blocks index, what a {@link MultiValueIndex} keeps for archived entities
+ * (bookings by passenger, bookings by flight, ...). It holds one entry per key and block
+ * instead of one per entity; a lookup reads the blocks and filters them by key. Blocks are
+ * never removed, so a block whose entities were all written since (and moved back to the
+ * hot tier) is read for nothing until the index is rebuilt.
+ */
+class ArchiveBlockIndex {
+    private static final ColdStore.Block[] NONE = new ColdStore.Block[0];
+
+    private final Map<String, ColdStore.Block[]> blocksByKey = new ConcurrentHashMap<>();
+
+    void add(String key, ColdStore.Block block) {
+        if (key == null) {
+            return;
+        }
+        blocksByKey.compute(key, (k, blocks) -> {
+            if (blocks == null) {
+                return new ColdStore.Block[] {block};
+            }
+            for (ColdStore.Block existing : blocks) {
+                if (existing.equals(block)) {
+                    return blocks;
+                }
+            }
+            ColdStore.Block[] grown = Arrays.copyOf(blocks, blocks.length + 1);
+            grown[blocks.length] = block;
+            return grown;
+        });
+    }
+
+    /**
+     * Get the blocks that hold, or held, entities archived under a key
+     */
+    List<ColdStore.Block> get(String key) {
+        ColdStore.Block[] blocks = key == null ? null : blocksByKey.get(key);
+        return Arrays.asList(blocks == null ? NONE : blocks);
+    }
+
+    void clear() {
+        blocksByKey.clear();
+    }
+}
@@ -0,0 +1,57 @@
+package com.nocrashairlines.database;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A backup being written to disk in the background. Poll {@link #getProgress()} to show
+ * how far it got, or wait on {@link #getResult()} for the backup's directory.
+ */
+public final class BackupJob {
+    private final long totalEntities;
+    private final LongAdder writtenEntities = new LongAdder();
+    private final CompletableFuture<Path> result = new CompletableFuture<>();
+
+    BackupJob(long totalEntities) {
+        this.totalEntities = totalEntities;
+    }
+
+    LongAdder progressCounter() {
+        return writtenEntities;
+    }
+
+    CompletableFuture<Path> future() {
+        return result;
+    }
+
+    public long getTotalEntities() {
+        return totalEntities;
+    }
+
+    public long getWrittenEntities() {
+        return writtenEntities.sum();
+    }
+
+    /**
+     * Fraction of the entities written so far, from 0 to 1
+     */
+    public double getProgress() {
+        if (result.isDone() && !result.isCompletedExceptionally()) {
+            return 1;
+        }
+        return totalEntities == 0 ? 0 : Math.min(1, (double) getWrittenEntities() / totalEntities);
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /**
+     * Completes with the backup's directory (null if backups are kept in memory only),
+     * or exceptionally if the backup failed
+     */
+    public CompletableFuture<Path> getResult() {
+        return result.copy();
+    }
+}
@@ -0,0 +1,411 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.database.storage.ByteBufferInput;
+import com.nocrashairlines.database.storage.ColdStore;
+import com.nocrashairlines.database.storage.EntityRepository;
+import com.nocrashairlines.database.storage.MappedCheckpointFile;
+import com.nocrashairlines.database.storage.WriteAheadLog;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Makes {@link SystemDatabase} commits durable in a {@link WriteAheadLog}. While a commit
+ * holds its locks, every entity it writes is recorded with its full new contents (or as a
+ * delete); when the commit completes, its records go to the log as one WAL record, so
+ * replay applies a unit of work whole or not at all. Undoing a write records the old
+ * contents again, so a rolled-back unit of work replays to where it started.
+ *
+ * A checkpoint is a directory in the WAL directory with one {@link MappedCheckpointFile}
+ * per entity type, named after the LSN it covers. Startup maps the newest checkpoint,
+ * checks and decodes all of its records on several threads at once, then replays the WAL
+ * records past its LSN. Records are full entity images, so replaying one the checkpoint
+ * already reflects does no harm.
+ *
+ * Without a WAL every method does nothing.
+ */
+final class CommitLog {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte CLEAR = 3;
+    private static final byte RESTORE = 4;
+    private static final String CHECKPOINT_PREFIX = "checkpoint-";
+    private static final String CHECKPOINT_FILE_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private record Table<T>(byte kind, EntityRepository<T> repository, ColdStore.Codec<T> codec,
+                            Function<T, String> idOf) {}
+
+    /**
+     * What startup recovered: the checkpoint it started from and the WAL commits replayed on top
+     */
+    record Recovery(long checkpointLsn, long checkpointEntities, int replayedCommits) {}
+
+    // The encoded records of one commit
+    private static final class CommitRecord extends ByteArrayOutputStream {
+        final DataOutputStream data = new DataOutputStream(this);
+
+        CommitRecord(long seq) {
+            super(256);
+            try {
+                data.writeLong(seq);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private final WriteAheadLog wal;
+    private final Map<EntityRepository<?>, Table<?>> tables = new IdentityHashMap<>();
+    private final Table<?>[] byKind = new Table<?>[Byte.MAX_VALUE];
+    // Records of the commits in progress, by commit sequence
+    private final Map<Long, CommitRecord> open = new ConcurrentHashMap<>();
+    // LSN of a restore not yet covered by a checkpoint, or 0; later commits are not durable
+    private volatile long uncheckpointedRestore;
+    private RuntimeException restoreCheckpointFailure;
+    private final ReentrantLock restoreLock = new ReentrantLock();
+    private final Condition restoreCheckpointed = restoreLock.newCondition();
+
+    CommitLog(WriteAheadLog wal) {
+        this.wal = wal;
+    }
+
+    boolean isEnabled() {
+        return wal != null;
+    }
+
+    /**
+     * Log writes to a repository under a kind byte that must never change once records exist
+     */
+    <T> void register(int kind, EntityRepository<T> repository, ColdStore.Codec<T> codec,
+                      Function<T, String> idOf) {
+        if (byKind[kind] != null) {
+            throw new IllegalArgumentException("Kind already registered: " + kind);
+        }
+        Table<T> table = new Table<>((byte) kind, repository, codec, idOf);
+        tables.put(repository, table);
+        byKind[kind] = table;
+    }
+
+    /**
+     * Record that commit seq wrote an entity (null deletes it)
+     */
+    <T> void record(long seq, EntityRepository<T> repository, String id, T value) {
+        if (wal == null) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Table<T> table = (Table<T>) tables.get(repository);
+        if (table == null) {
+            throw new IllegalArgumentException("Repository is not registered with the commit log");
+        }
+        DataOutputStream out = open.computeIfAbsent(seq, CommitRecord::new).data;
+        try {
+            out.writeByte(value == null ? DELETE : PUT);
+            out.writeByte(table.kind());
+            out.writeUTF(id);
+            if (value != null) {
+                table.codec().write(out, value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Log that commit seq replaced everything, as a restore does, with a marker record in
+     * place of its writes. The contents are made durable by a checkpoint written at the
+     * marker's LSN afterwards, so no single WAL record has to hold the whole database.
+     * Until that checkpoint exists, recovery stops at the marker, so commits sealed after
+     * it are not reported durable before it is written. Must run with no other commit in
+     * flight.
+     * @return the LSN to write the checkpoint at, or 0 without a WAL
+     */
+    long sealRestore(long seq) {
+        if (wal == null) {
+            return 0;
+        }
+        discard(seq);
+        CommitRecord record = new CommitRecord(seq);
+        try {
+            record.data.writeByte(RESTORE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long lsn = wal.append(record.toByteArray());
+        restoreLock.lock();
+        try {
+            uncheckpointedRestore = lsn;
+            restoreCheckpointFailure = null;
+        } finally {
+            restoreLock.unlock();
+        }
+        return lsn;
+    }
+
+    /**
+     * Record that the checkpoint of a restore could not be written. Commits sealed after
+     * it fail to become durable until a later checkpoint covers it.
+     */
+    void restoreCheckpointFailed(RuntimeException failure) {
+        restoreLock.lock();
+        try {
+            restoreCheckpointFailure = failure;
+            restoreCheckpointed.signalAll();
+        } finally {
+            restoreLock.unlock();
+        }
+    }
+
+    private void checkpointed(long lsn) {
+        if (uncheckpointedRestore == 0 || lsn < uncheckpointedRestore) {
+            return;
+        }
+        restoreLock.lock();
+        try {
+            if (uncheckpointedRestore != 0 && lsn >= uncheckpointedRestore) {
+                uncheckpointedRestore = 0;
+                restoreCheckpointFailure = null;
+                restoreCheckpointed.signalAll();
+            }
+        } finally {
+            restoreLock.unlock();
+        }
+    }
+
+    private List<Table<?>> tables() {
+        return Arrays.stream(byKind).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Drop what commit seq recorded so far, for a commit that puts everything back itself
+     */
+    void discard(long seq) {
+        open.remove(seq);
+    }
+
+    /**
+     * Append commit seq's records to the WAL, as the commit completes
+     * @return the LSN to wait for, or 0 if the commit wrote nothing
+     */
+    long seal(long seq) {
+        if (wal == null) {
+            return 0;
+        }
+        CommitRecord record = open.remove(seq);
+        return record == null ? 0 : wal.append(record.toByteArray());
+    }
+
+    /**
+     * Wait until a sealed commit is durable; call it after releasing the commit's locks.
+     * A commit sealed after a restore also waits for the restore's checkpoint.
+     * @throws IllegalStateException if that checkpoint could not be written
+     */
+    void awaitDurable(long lsn) {
+        if (wal == null || lsn <= 0) {
+            return;
+        }
+        wal.awaitDurable(lsn);
+        if (uncheckpointedRestore == 0 || lsn <= uncheckpointedRestore) {
+            return;
+        }
+        restoreLock.lock();
+        try {
+            while (uncheckpointedRestore != 0 && lsn > uncheckpointedRestore) {
+                if (restoreCheckpointFailure != null) {
+                    throw new IllegalStateException("Checkpoint of the restore failed; the commit is not durable",
+                            restoreCheckpointFailure);
+                }
+                restoreCheckpointed.awaitUninterruptibly();
+            }
+        } finally {
+            restoreLock.unlock();
+        }
+    }
+
+    long appendedLsn() {
+        return wal == null ? 0 : wal.appendedLsn();
+    }
+
+    /**
+     * Load the newest checkpoint into the registered repositories, then apply the commits
+     * in the WAL after it
+     */
+    Recovery recover() {
+        if (wal == null) {
+            return new Recovery(0, 0, 0);
+        }
+        long lsn = 0;
+        long loaded = 0;
+        Path checkpoint = latestCheckpoint();
+        if (checkpoint != null) {
+            lsn = checkpointLsn(checkpoint);
+            loaded = tables().parallelStream().mapToLong(table -> loadTable(checkpoint, table)).sum();
+        }
+        int[] replayed = new int[1];
+        // A restore marker past the checkpoint is one whose own checkpoint was never written:
+        // recovery ends before it, and nothing logged after it was reported durable
+        wal.replayWhile(lsn, record -> {
+            if (!apply(record)) {
+                return false;
+            }
+            replayed[0]++;
+            return true;
+        });
+        return new Recovery(lsn, loaded, replayed[0]);
+    }
+
+    private <T> long loadTable(Path checkpoint, Table<T> table) {
+        Path file = checkpoint.resolve(table.kind() + CHECKPOINT_FILE_SUFFIX);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        // Records decode straight from the mapping, in ranges on the common pool
+        try (MappedCheckpointFile<T> mapped = MappedCheckpointFile.open(file, table.codec())) {
+            IntStream.range(0, mapped.size()).parallel().forEach(index -> {
+                T entity = mapped.read(index);
+                table.repository().save(table.idOf().apply(entity), entity);
+            });
+            return mapped.size();
+        }
+    }
+
+    /**
+     * Write a checkpoint holding everything up to an LSN, then delete the older checkpoints
+     * and the WAL segments it covers
+     * @param contents the entities of each registered repository as of the LSN, or later
+     * @return false if a checkpoint at that LSN or a later one already exists
+     */
+    synchronized boolean writeCheckpoint(long lsn, Function<EntityRepository<?>, Stream<?>> contents) {
+        if (wal == null) {
+            return false;
+        }
+        Path directory = wal.getDirectory();
+        Path target = directory.resolve(String.format("%s%020d", CHECKPOINT_PREFIX, lsn));
+        Path latest = latestCheckpoint();
+        if (latest != null && checkpointLsn(latest) >= lsn) {
+            // A restore may have checkpointed past this one while it waited
+            checkpointed(checkpointLsn(latest));
+            return false;
+        }
+        Path temp = directory.resolve(target.getFileName() + TEMP_SUFFIX);
+        try {
+            deleteRecursively(temp);
+            Files.createDirectories(temp);
+            tables().parallelStream().forEach(table -> writeTable(temp, table, contents.apply(table.repository())));
+            // Only a complete checkpoint gets its final name
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            for (Path old : checkpoints()) {
+                if (checkpointLsn(old) < lsn) {
+                    deleteRecursively(old);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint " + target, e);
+        }
+        wal.deleteSegmentsBefore(lsn);
+        checkpointed(lsn);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void writeTable(Path checkpoint, Table<T> table, Stream<?> entities) {
+        MappedCheckpointFile.write(checkpoint.resolve(table.kind() + CHECKPOINT_FILE_SUFFIX),
+                table.codec(), table.idOf(), (Stream<T>) entities);
+    }
+
+    private Path latestCheckpoint() {
+        List<Path> checkpoints = checkpoints();
+        return checkpoints.isEmpty() ? null : checkpoints.get(checkpoints.size() - 1);
+    }
+
+    // Complete checkpoints, oldest first
+    private List<Path> checkpoints() {
+        try (Stream<Path> files = Files.list(wal.getDirectory())) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(CHECKPOINT_PREFIX) && !name.endsWith(TEMP_SUFFIX);
+            }).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list checkpoints in " + wal.getDirectory(), e);
+        }
+    }
+
+    private static long checkpointLsn(Path checkpoint) {
+        return Long.parseLong(checkpoint.getFileName().toString().substring(CHECKPOINT_PREFIX.length()));
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // Applies a commit record; false for a restore marker, which is not applied
+    private boolean apply(ByteBuffer record) {
+        ByteBufferInput in = new ByteBufferInput(record);
+        try {
+            in.readLong(); // commit sequence
+            while (in.remaining() > 0) {
+                byte op = in.readByte();
+                if (op == RESTORE) {
+                    return false;
+                }
+                if (op == CLEAR) {
+                    // Restores of earlier versions logged the whole database after a CLEAR
+                    tables().forEach(table -> table.repository().clear());
+                    continue;
+                }
+                int kind = in.readByte();
+                Table<?> table = kind < 0 ? null : byKind[kind];
+                if (table == null) {
+                    throw new IllegalStateException("Unknown entity kind in WAL");
+                }
+                String id = in.readUTF();
+                if (op == PUT) {
+                    put(table, id, in);
+                } else if (op == DELETE) {
+                    table.repository().remove(id);
+                } else {
+                    throw new IllegalStateException("Unknown WAL operation: " + op);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt WAL record", e);
+        }
+        return true;
+    }
+
+    private static <T> void put(Table<T> table, String id, DataInput in) throws IOException {
+        table.repository().save(id, table.codec().read(in));
+    }
+
+    void close() {
+        if (wal != null) {
+            wal.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.nocrashairlines.database;
+
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.LongFunction;
+
+/**
+ * Hands out commit sequence numbers and tracks the stable watermark: the highest
+ * sequence number at or below which every commit has been fully applied.
+ * Snapshots read at the watermark, so they never see part of a commit.
+ * Also tracks open snapshots so old entity versions can be dropped once no snapshot needs them.
+ */
+class CommitSequencer {
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>();
+    private long lastIssued;
+    private volatile long watermark;
+    private volatile long oldestVisible;
+    private boolean exclusive;
+    private int watermarkWaiters;
+
+    synchronized long begin() {
+        boolean interrupted = false;
+        while (exclusive) {
+            interrupted |= await();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        long seq = ++lastIssued;
+        inFlight.add(seq);
+        return seq;
+    }
+
+    /**
+     * Mark a commit as fully applied (or rolled back)
+     */
+    synchronized void complete(long seq) {
+        inFlight.remove(seq);
+        watermark = inFlight.isEmpty() ? lastIssued : inFlight.first() - 1;
+        updateOldestVisible();
+        if ((exclusive && inFlight.isEmpty()) || watermarkWaiters > 0) {
+            notifyAll();
+        }
+    }
+
+    synchronized long lastIssued() {
+        return lastIssued;
+    }
+
+    /**
+     * Wait until every commit up to seq has been applied, without holding back new ones
+     */
+    synchronized void awaitWatermark(long seq) {
+        boolean interrupted = false;
+        watermarkWaiters++;
+        try {
+            while (watermark < seq) {
+                interrupted |= await();
+            }
+        } finally {
+            watermarkWaiters--;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Run an action as a commit of its own while no other commit is in flight: waits for
+     * running commits to finish and holds back new ones until the action returns.
+     * Keep the action short, every writer waits for it.
+     */
+    synchronized <T> T exclusive(LongFunction<T> action) {
+        boolean interrupted = false;
+        while (exclusive) {
+            interrupted |= await();
+        }
+        exclusive = true;
+        try {
+            while (!inFlight.isEmpty()) {
+                interrupted |= await();
+            }
+            long seq = ++lastIssued;
+            try {
+                return action.apply(seq);
+            } finally {
+                watermark = lastIssued;
+                updateOldestVisible();
+            }
+        } finally {
+            exclusive = false;
+            notifyAll();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Commits cannot be abandoned half way, so waits ignore interrupts and callers re-assert them after
+    private boolean await() {
+        try {
+            wait();
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+
+    long watermark() {
+        return watermark;
+    }
+
+    /**
+     * Register a snapshot at the current watermark
+     * @return the sequence number the snapshot reads at
+     */
+    synchronized long openSnapshot() {
+        long seq = watermark;
+        openSnapshots.merge(seq, 1, Integer::sum);
+        updateOldestVisible();
+        return seq;
+    }
+
+    synchronized void closeSnapshot(long seq) {
+        openSnapshots.computeIfPresent(seq, (s, count) -> count == 1 ? null : count - 1);
+        updateOldestVisible();
+    }
+
+    synchronized boolean hasOpenSnapshots() {
+        return !openSnapshots.isEmpty();
+    }
+
+    /**
+     * Get the oldest sequence number any current or future snapshot can read at.
+     * Versions older than the newest one at or below it are no longer needed.
+     */
+    long oldestVisible() {
+        return oldestVisible;
+    }
+
+    private void updateOldestVisible() {
+        oldestVisible = openSnapshots.isEmpty() ? watermark : openSnapshots.firstKey();
+    }
+}
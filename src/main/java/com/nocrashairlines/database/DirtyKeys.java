@@ -0,0 +1,41 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.database.storage.EntityRepository;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ids written in each repository since the last backup, so an incremental backup only
+ * writes what changed. Marking is safe from any number of committing threads; a backup
+ * swaps in a fresh instance between commits.
+ */
+final class DirtyKeys {
+    private final Map<EntityRepository<?>, Set<String>> keys = new IdentityHashMap<>();
+
+    DirtyKeys(List<? extends EntityRepository<?>> repositories) {
+        for (EntityRepository<?> repository : repositories) {
+            keys.put(repository, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Note that an entity was saved or removed; repositories that are not tracked are ignored
+     */
+    void mark(EntityRepository<?> repository, String id) {
+        Set<String> ids = keys.get(repository);
+        if (ids != null) {
+            ids.add(id);
+        }
+    }
+
+    Set<String> get(EntityRepository<?> repository) {
+        return keys.getOrDefault(repository, Set.of());
+    }
+
+    long size() {
+        return keys.values().stream().mapToLong(Set::size).sum();
+    }
+}
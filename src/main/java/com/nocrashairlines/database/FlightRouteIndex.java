@@ -0,0 +1,93 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.model.Flight;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Route index for flight search (FR-3).
+ * Flights are grouped by normalized (origin, destination) and sorted by departure
+ * time, so a search only touches the departures of one route inside the requested window.
+ * Reads are lock-free; writes are serialized because they touch several structures.
+ */
+class FlightRouteIndex {
+    private final Map<String, ConcurrentNavigableMap<LocalDateTime, Set<String>>> departuresByRoute =
+            new ConcurrentHashMap<>();
+    private final Map<String, RouteEntry> entriesByFlightId = new ConcurrentHashMap<>();
+
+    private record RouteEntry(String route, LocalDateTime departureTime) {}
+
+    private static String routeKey(String origin, String destination) {
+        return UniqueKeyIndex.normalize(origin) + "|" + UniqueKeyIndex.normalize(destination);
+    }
+
+    /**
+     * Index a flight under its current route and departure time, moving it if either changed
+     */
+    void index(Flight flight) {
+        RouteEntry entry = null;
+        if (flight.getOrigin() != null && flight.getDestination() != null && flight.getDepartureTime() != null) {
+            entry = new RouteEntry(routeKey(flight.getOrigin(), flight.getDestination()), flight.getDepartureTime());
+        }
+        if (Objects.equals(entriesByFlightId.get(flight.getFlightId()), entry)) {
+            return;
+        }
+        synchronized (this) {
+            unlink(flight.getFlightId());
+            if (entry != null) {
+                departuresByRoute.computeIfAbsent(entry.route(), r -> new ConcurrentSkipListMap<>())
+                        .computeIfAbsent(entry.departureTime(), t -> ConcurrentHashMap.newKeySet())
+                        .add(flight.getFlightId());
+                entriesByFlightId.put(flight.getFlightId(), entry);
+            }
+        }
+    }
+
+    /**
+     * Index a batch of new flights, taking the write lock once
+     */
+    synchronized void indexAll(Collection<Flight> flights) {
+        for (Flight flight : flights) {
+            index(flight);
+        }
+    }
+
+    synchronized void remove(String flightId) {
+        unlink(flightId);
+    }
+
+    private void unlink(String flightId) {
+        RouteEntry old = entriesByFlightId.remove(flightId);
+        if (old == null) {
+            return;
+        }
+        ConcurrentNavigableMap<LocalDateTime, Set<String>> departures = departuresByRoute.get(old.route());
+        Set<String> ids = departures.get(old.departureTime());
+        ids.remove(flightId);
+        if (ids.isEmpty()) {
+            departures.remove(old.departureTime());
+        }
+    }
+
+    /**
+     * Get ids of flights on a route departing in [from, to), ordered by departure time
+     */
+    List<String> findFlightIds(String origin, String destination, LocalDateTime from, LocalDateTime to) {
+        ConcurrentNavigableMap<LocalDateTime, Set<String>> departures =
+                departuresByRoute.get(routeKey(origin, destination));
+        if (departures == null || !from.isBefore(to)) {
+            return Collections.emptyList();
+        }
+        List<String> flightIds = new ArrayList<>();
+        departures.subMap(from, true, to, false).values().forEach(flightIds::addAll);
+        return flightIds;
+    }
+
+    synchronized void clear() {
+        departuresByRoute.clear();
+        entriesByFlightId.clear();
+    }
+}
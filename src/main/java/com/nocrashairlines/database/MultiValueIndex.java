@@ -0,0 +1,69 @@
+package com.nocrashairlines.database;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Non-unique key -> entity ids index (bookings by passenger, bookings by flight, ...).
+ * Each entity is indexed under exactly one key; re-indexing under a new key moves it.
+ * Updates for one entity are serialized per id, so no global lock is taken.
+ */
+class MultiValueIndex {
+    private final Map<String, Set<String>> idsByKey = new ConcurrentHashMap<>();
+    private final Map<String, String> keysById = new ConcurrentHashMap<>();
+
+    /**
+     * Index an entity under the given key, moving it if it was indexed under another one
+     */
+    void put(String key, String id) {
+        if (Objects.equals(keysById.get(id), key)) {
+            return;
+        }
+        keysById.compute(id, (ignored, oldKey) -> {
+            if (Objects.equals(oldKey, key)) {
+                return oldKey;
+            }
+            if (oldKey != null) {
+                unlink(oldKey, id);
+            }
+            if (key != null) {
+                idsByKey.compute(key, (k, ids) -> {
+                    Set<String> result = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                    result.add(id);
+                    return result;
+                });
+            }
+            return key;
+        });
+    }
+
+    void remove(String id) {
+        String oldKey = keysById.remove(id);
+        if (oldKey != null) {
+            unlink(oldKey, id);
+        }
+    }
+
+    private void unlink(String key, String id) {
+        idsByKey.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Get a read-only view of the ids indexed under a key
+     */
+    Set<String> get(String key) {
+        Set<String> ids = key == null ? null : idsByKey.get(key);
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    void clear() {
+        idsByKey.clear();
+        keysById.clear();
+    }
+}
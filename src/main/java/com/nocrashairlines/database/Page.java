@@ -0,0 +1,33 @@
+package com.nocrashairlines.database;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated query.
+ * Walk a collection by passing {@link #getNextCursor()} back until {@link #hasMore()} is false.
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final PageCursor nextCursor;
+
+    Page(List<T> items, PageCursor nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Get the cursor for the next page, or null if this is the last page
+     */
+    public PageCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,53 @@
+package com.nocrashairlines.database;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Position after the last entity of a page: its sort value and id.
+ * Cursors are opaque to callers; pass {@link Page#getNextCursor()} back to get the next page.
+ * Because the position is a key and not an offset, pages stay stable while
+ * entities are inserted or removed ahead of or behind the cursor.
+ */
+public final class PageCursor {
+    private final SortKey sortKey;
+    private final LocalDateTime sortValue;
+    private final String lastId;
+
+    PageCursor(SortKey sortKey, LocalDateTime sortValue, String lastId) {
+        this.sortKey = sortKey;
+        this.sortValue = sortValue;
+        this.lastId = lastId;
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    LocalDateTime getSortValue() {
+        return sortValue;
+    }
+
+    public String getLastId() {
+        return lastId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PageCursor)) return false;
+        PageCursor that = (PageCursor) o;
+        return sortKey == that.sortKey && Objects.equals(sortValue, that.sortValue)
+                && Objects.equals(lastId, that.lastId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sortKey, sortValue, lastId);
+    }
+
+    @Override
+    public String toString() {
+        return "PageCursor{" + sortKey + ", " + sortValue + ", " + lastId + "}";
+    }
+}
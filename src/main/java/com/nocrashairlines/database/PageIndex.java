@@ -0,0 +1,85 @@
+package com.nocrashairlines.database;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keeps one entity type ordered by every {@link SortKey} and serves keyset pages from it.
+ * Archived entities are kept in compact sorted arrays instead (see {@link SortedKeyIndex}).
+ */
+class PageIndex {
+    private final SortedKeyIndex byId = new SortedKeyIndex();
+    private final SortedKeyIndex byDate = new SortedKeyIndex();
+
+    void put(String id, LocalDateTime date) {
+        byId.put(id, null);
+        byDate.put(id, date);
+    }
+
+    void remove(String id) {
+        byId.remove(id);
+        byDate.remove(id);
+    }
+
+    /**
+     * Mark an archived entity to leave the skip lists on the next {@link #compact}
+     */
+    void archive(String id, LocalDateTime date) {
+        byId.archive(id, null);
+        byDate.archive(id, date);
+    }
+
+    /**
+     * Index an archived entity like a live one again, before it is written
+     */
+    void unarchive(String id, LocalDateTime date) {
+        byId.unarchive(id, null);
+        byDate.unarchive(id, date);
+    }
+
+    void compact() {
+        byId.compact();
+        byDate.compact();
+    }
+
+    void clear() {
+        byId.clear();
+        byDate.clear();
+    }
+
+    /**
+     * Get the page after the cursor (or the first page for a null cursor).
+     * Ids whose entity has been removed since they were indexed are skipped,
+     * so a page can hold fewer than pageSize items and still have a next page.
+     */
+    <T> Page<T> page(SortKey sortKey, PageCursor after, int pageSize, Function<String, T> loader) {
+        if (sortKey == null) {
+            throw new IllegalArgumentException("Sort key is required");
+        }
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        if (after != null && after.getSortKey() != sortKey) {
+            throw new IllegalArgumentException("Cursor was issued for sort key " + after.getSortKey());
+        }
+        SortedKeyIndex index = sortKey == SortKey.ID ? byId : byDate;
+        List<SortedKeyIndex.Entry> entries = after == null
+                ? index.after(null, null, pageSize + 1)
+                : index.after(after.getSortValue(), after.getLastId(), pageSize + 1);
+
+        boolean hasMore = entries.size() > pageSize;
+        List<T> items = new ArrayList<>(Math.min(entries.size(), pageSize));
+        SortedKeyIndex.Entry last = null;
+        for (SortedKeyIndex.Entry entry : entries.subList(0, Math.min(entries.size(), pageSize))) {
+            T item = loader.apply(entry.id());
+            if (item != null) {
+                items.add(item);
+            }
+            last = entry;
+        }
+        PageCursor next = hasMore ? new PageCursor(sortKey, last.sortValue(), last.id()) : null;
+        return new Page<>(items, next);
+    }
+}
@@ -0,0 +1,113 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.model.Flight;
+import com.nocrashairlines.model.Passenger;
+import com.nocrashairlines.model.Payment;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Consistent point-in-time view of passengers, flights, bookings and payments (FR-15).
+ * It sees every commit up to the moment it was opened, whole or not at all, and nothing
+ * after. Reading never blocks writers. Close it when done so old versions can be dropped.
+ *
+ * <pre>
+ * try (ReadSnapshot snapshot = database.openSnapshot()) {
+ *     ... snapshot.streamBookings() ...
+ * }
+ * </pre>
+ */
+public final class ReadSnapshot implements AutoCloseable {
+    private final long sequence;
+    private final VersionedStore<Passenger> passengers;
+    private final VersionedStore<Flight> flights;
+    private final VersionedStore<Booking> bookings;
+    private final VersionedStore<Payment> payments;
+    private final Runnable onClose;
+    private boolean closed;
+
+    ReadSnapshot(long sequence, VersionedStore<Passenger> passengers, VersionedStore<Flight> flights,
+                 VersionedStore<Booking> bookings, VersionedStore<Payment> payments, Runnable onClose) {
+        this.sequence = sequence;
+        this.passengers = passengers;
+        this.flights = flights;
+        this.bookings = bookings;
+        this.payments = payments;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Get the commit sequence number this snapshot reads at
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Stream<Passenger> streamPassengers() {
+        return passengers.stream(sequence);
+    }
+
+    public Stream<Flight> streamFlights() {
+        return flights.stream(sequence);
+    }
+
+    public Stream<Booking> streamBookings() {
+        return bookings.stream(sequence);
+    }
+
+    public Stream<Payment> streamPayments() {
+        return payments.stream(sequence);
+    }
+
+    public Flight getFlightById(String flightId) {
+        return flights.read(flightId, sequence);
+    }
+
+    public Booking getBookingById(String bookingId) {
+        return bookings.read(bookingId, sequence);
+    }
+
+    public Payment getPaymentById(String paymentId) {
+        return payments.read(paymentId, sequence);
+    }
+
+    /**
+     * Get the same statistics as {@link SystemDatabase#getSystemStatistics()}, computed
+     * from this snapshot so every figure agrees with every other
+     */
+    public Map<String, Object> getSystemStatistics() {
+        Map<String, Long> bookingsByStatus = new TreeMap<>(streamBookings()
+                .collect(Collectors.groupingBy(b -> String.valueOf(b.getStatus()), Collectors.counting())));
+        Map<String, Long> paymentsByStatus = new TreeMap<>();
+        double revenue = 0;
+        for (Payment payment : (Iterable<Payment>) streamPayments()::iterator) {
+            paymentsByStatus.merge(String.valueOf(payment.getStatus()), 1L, Long::sum);
+            if (payment.isSuccessful()) {
+                revenue += payment.getAmount();
+            }
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalPassengers", (int) streamPassengers().count());
+        stats.put("totalFlights", (int) streamFlights().count());
+        stats.put("totalBookings", (int) bookingsByStatus.values().stream().mapToLong(Long::longValue).sum());
+        stats.put("confirmedBookings", bookingsByStatus.getOrDefault("CONFIRMED", 0L));
+        stats.put("cancelledBookings", bookingsByStatus.getOrDefault("CANCELLED", 0L));
+        stats.put("totalRevenue", revenue);
+        stats.put("bookingsByStatus", bookingsByStatus);
+        stats.put("paymentsByStatus", paymentsByStatus);
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            onClose.run();
+        }
+    }
+}
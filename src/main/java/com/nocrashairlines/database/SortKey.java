@@ -0,0 +1,11 @@
+package com.nocrashairlines.database;
+
+/**
+ * Orderings available for paged queries (see {@link Page}).
+ * DATE is the booking date for bookings, the payment date for payments and the
+ * departure time for flights. Ties are always broken by entity id.
+ */
+public enum SortKey {
+    ID,
+    DATE
+}
@@ -0,0 +1,163 @@
+package com.nocrashairlines.database;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Entity ids ordered by (sort value, id), for keyset pagination.
+ * A page is a tail walk of a skip list starting after the last-seen key, so its
+ * cost depends on the page size and not on how deep into the collection it is.
+ * Null sort values come first; an index that only ever stores nulls orders by id.
+ * Updates for one entity are serialized per id; reads are lock-free.
+ *
+ * Archived entities are moved out of the skip list into one sorted array, which costs a
+ * reference per entity instead of a skip list node and a map entry. {@link #archive} marks
+ * an entity to move and {@link #compact} moves every marked one at once; an archived entity
+ * written again is {@link #unarchive unarchived} first, which hides its array entry until
+ * the next compaction drops it.
+ */
+class SortedKeyIndex {
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing(Entry::sortValue, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparing(Entry::id);
+
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<String, Entry> entriesById = new ConcurrentHashMap<>();
+    // Marked by archive() since the last compaction, still in the skip list
+    private final Map<String, Entry> toArchive = new HashMap<>();
+    private volatile Archived archived = Archived.EMPTY;
+
+    record Entry(LocalDateTime sortValue, String id) {}
+
+    // Sorted archived entries, and the ids whose entry is out of date
+    private record Archived(Entry[] entries, Set<String> hidden) {
+        static final Archived EMPTY = new Archived(new Entry[0], Set.of());
+    }
+
+    /**
+     * Index an entity under its current sort value, moving it if the value changed
+     */
+    void put(String id, LocalDateTime sortValue) {
+        Entry entry = new Entry(sortValue, id);
+        if (entry.equals(entriesById.get(id))) {
+            return;
+        }
+        entriesById.compute(id, (ignored, old) -> {
+            if (old != null) {
+                entries.remove(old);
+            }
+            entries.add(entry);
+            return entry;
+        });
+    }
+
+    void remove(String id) {
+        entriesById.computeIfPresent(id, (ignored, old) -> {
+            entries.remove(old);
+            return null;
+        });
+    }
+
+    /**
+     * Mark an archived entity to move to the archived entries on the next {@link #compact}
+     */
+    synchronized void archive(String id, LocalDateTime sortValue) {
+        toArchive.put(id, new Entry(sortValue, id));
+    }
+
+    /**
+     * Index an archived entity in the skip list again, before it is written
+     */
+    synchronized void unarchive(String id, LocalDateTime sortValue) {
+        if (toArchive.remove(id) == null) {
+            Set<String> hidden = new HashSet<>(archived.hidden());
+            hidden.add(id);
+            archived = new Archived(archived.entries(), Set.copyOf(hidden));
+        }
+        put(id, sortValue);
+    }
+
+    /**
+     * Move the entities marked by {@link #archive} out of the skip list, and drop the
+     * entries of unarchived ones
+     */
+    synchronized void compact() {
+        Archived current = archived;
+        if (toArchive.isEmpty() && current.hidden().isEmpty()) {
+            return;
+        }
+        Entry[] marked = toArchive.values().toArray(new Entry[0]);
+        Arrays.sort(marked, ORDER);
+        List<Entry> merged = new ArrayList<>(current.entries().length + marked.length);
+        int i = 0;
+        for (Entry entry : current.entries()) {
+            if (current.hidden().contains(entry.id())) {
+                continue;
+            }
+            while (i < marked.length && ORDER.compare(marked[i], entry) < 0) {
+                merged.add(marked[i++]);
+            }
+            merged.add(entry);
+        }
+        while (i < marked.length) {
+            merged.add(marked[i++]);
+        }
+        // Published before leaving the skip list, so readers never miss one
+        archived = new Archived(merged.toArray(new Entry[0]), Set.of());
+        for (Entry entry : marked) {
+            if (entriesById.remove(entry.id(), entry)) {
+                entries.remove(entry);
+            }
+        }
+        toArchive.clear();
+    }
+
+    /**
+     * Get up to {@code limit} entries strictly after (sortValue, id), in order.
+     * A null id starts from the beginning.
+     */
+    List<Entry> after(LocalDateTime sortValue, String id, int limit) {
+        Iterator<Entry> it = id == null
+                ? entries.iterator()
+                : entries.tailSet(new Entry(sortValue, id), false).iterator();
+        Archived current = archived;
+        Entry[] stored = current.entries();
+        int next = id == null ? 0 : firstAfter(stored, new Entry(sortValue, id));
+        // Merge the skip list with the archived entries; one moving between them can be in both
+        List<Entry> page = new ArrayList<>(Math.min(limit, 1024));
+        Entry hot = it.hasNext() ? it.next() : null;
+        while (page.size() < limit) {
+            while (next < stored.length && current.hidden().contains(stored[next].id())) {
+                next++;
+            }
+            Entry cold = next < stored.length ? stored[next] : null;
+            if (hot == null && cold == null) {
+                break;
+            }
+            int order = hot == null ? 1 : cold == null ? -1 : ORDER.compare(hot, cold);
+            page.add(order <= 0 ? hot : cold);
+            if (order <= 0) {
+                hot = it.hasNext() ? it.next() : null;
+            }
+            if (order >= 0) {
+                next++;
+            }
+        }
+        return page;
+    }
+
+    // Position of the first entry strictly after a key
+    private static int firstAfter(Entry[] sorted, Entry key) {
+        int position = Arrays.binarySearch(sorted, key, ORDER);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        entriesById.clear();
+        toArchive.clear();
+        archived = Archived.EMPTY;
+    }
+}
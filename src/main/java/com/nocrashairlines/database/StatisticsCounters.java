@@ -0,0 +1,167 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.model.Payment;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running booking and payment statistics for reports (FR-15).
+ * Counters move on every status transition instead of being recomputed by
+ * scanning all bookings and payments, and use adders so concurrent writers
+ * do not contend on a single field.
+ *
+ * The last status of every booking and payment is kept to move its counter on the next
+ * transition, except for archived ones, which are only counted in the totals. Their status
+ * is taken back from the archived copy before they are written again.
+ */
+class StatisticsCounters {
+    private final Map<String, String> bookingStatuses = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> bookingsByStatus = new ConcurrentHashMap<>();
+    private final Map<String, PaymentState> paymentStates = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> paymentsByStatus = new ConcurrentHashMap<>();
+    private final DoubleAdder successfulRevenue = new DoubleAdder();
+
+    private record PaymentState(String status, double amount) {}
+
+    /**
+     * Record the current status of a booking (new or updated)
+     */
+    void recordBooking(Booking booking) {
+        String status = String.valueOf(booking.getStatus());
+        String previous = bookingStatuses.put(booking.getBookingId(), status);
+        if (status.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            counter(bookingsByStatus, previous).decrement();
+        }
+        counter(bookingsByStatus, status).increment();
+    }
+
+    /**
+     * Stop tracking an archived booking; it stays counted under its last status
+     */
+    void archiveBooking(String bookingId) {
+        bookingStatuses.remove(bookingId);
+    }
+
+    /**
+     * Track an archived booking again, before it is written (the totals already count it)
+     */
+    void unarchiveBooking(Booking archived) {
+        bookingStatuses.put(archived.getBookingId(), String.valueOf(archived.getStatus()));
+    }
+
+    /**
+     * Count an archived booking without tracking it (rebuilding the counters)
+     */
+    void countArchivedBooking(Booking archived) {
+        counter(bookingsByStatus, String.valueOf(archived.getStatus())).increment();
+    }
+
+    void forgetBooking(String bookingId) {
+        String previous = bookingStatuses.remove(bookingId);
+        if (previous != null) {
+            counter(bookingsByStatus, previous).decrement();
+        }
+    }
+
+    /**
+     * Record the current status and amount of a payment (new or updated)
+     */
+    void recordPayment(Payment payment) {
+        PaymentState state = new PaymentState(String.valueOf(payment.getStatus()), payment.getAmount());
+        PaymentState previous = paymentStates.put(payment.getPaymentId(), state);
+        if (state.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            counter(paymentsByStatus, previous.status()).decrement();
+            if ("SUCCESS".equals(previous.status())) {
+                successfulRevenue.add(-previous.amount());
+            }
+        }
+        counter(paymentsByStatus, state.status()).increment();
+        if ("SUCCESS".equals(state.status())) {
+            successfulRevenue.add(state.amount());
+        }
+    }
+
+    /**
+     * Stop tracking an archived payment; it stays counted under its last status
+     */
+    void archivePayment(String paymentId) {
+        paymentStates.remove(paymentId);
+    }
+
+    /**
+     * Track an archived payment again, before it is written (the totals already count it)
+     */
+    void unarchivePayment(Payment archived) {
+        paymentStates.put(archived.getPaymentId(), new PaymentState(String.valueOf(archived.getStatus()), archived.getAmount()));
+    }
+
+    /**
+     * Count an archived payment without tracking it (rebuilding the counters)
+     */
+    void countArchivedPayment(Payment archived) {
+        counter(paymentsByStatus, String.valueOf(archived.getStatus())).increment();
+        if ("SUCCESS".equals(archived.getStatus())) {
+            successfulRevenue.add(archived.getAmount());
+        }
+    }
+
+    void forgetPayment(String paymentId) {
+        PaymentState previous = paymentStates.remove(paymentId);
+        if (previous != null) {
+            counter(paymentsByStatus, previous.status()).decrement();
+            if ("SUCCESS".equals(previous.status())) {
+                successfulRevenue.add(-previous.amount());
+            }
+        }
+    }
+
+    private static LongAdder counter(Map<String, LongAdder> counters, String status) {
+        return counters.computeIfAbsent(status, s -> new LongAdder());
+    }
+
+    long getBookingCount(String status) {
+        LongAdder counter = bookingsByStatus.get(status);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    double getSuccessfulRevenue() {
+        return successfulRevenue.sum();
+    }
+
+    Map<String, Long> getBookingsByStatus() {
+        return snapshot(bookingsByStatus);
+    }
+
+    Map<String, Long> getPaymentsByStatus() {
+        return snapshot(paymentsByStatus);
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+        Map<String, Long> totals = new TreeMap<>();
+        counters.forEach((status, counter) -> {
+            long total = counter.sum();
+            if (total > 0) {
+                totals.put(status, total);
+            }
+        });
+        return totals;
+    }
+
+    void clear() {
+        bookingStatuses.clear();
+        bookingsByStatus.clear();
+        paymentStates.clear();
+        paymentsByStatus.clear();
+        successfulRevenue.reset();
+    }
+}
@@ -0,0 +1,45 @@
+package com.nocrashairlines.database;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks that entity ids hash onto.
+ * Writers of the same entity always meet on the same lock, writers of different
+ * entities almost never do, and memory stays constant however many entities exist.
+ */
+class StripedLocks {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * @param stripes number of locks, rounded up to a power of two
+     */
+    StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Get the index of the stripe an id maps to
+     */
+    int stripeOf(String id) {
+        int h = id == null ? 0 : id.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    ReentrantLock lockFor(String id) {
+        return locks[stripeOf(id)];
+    }
+
+    /**
+     * Get a lock by stripe index. Callers that need several stripes take them in
+     * ascending index order, which rules out lock-order deadlocks.
+     */
+    ReentrantLock lockAt(int stripe) {
+        return locks[stripe];
+    }
+}
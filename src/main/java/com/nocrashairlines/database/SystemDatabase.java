@@ -1,57 +1,284 @@
 package com.nocrashairlines.database;
 
+import com.nocrashairlines.database.storage.ArchiveCodecs;
+import com.nocrashairlines.database.storage.BackupArchive;
+import com.nocrashairlines.database.storage.ColdStore;
+import com.nocrashairlines.database.storage.EntityRepository;
+import com.nocrashairlines.database.storage.PersistentHashMap;
+import com.nocrashairlines.database.storage.StorageEngine;
+import com.nocrashairlines.database.storage.StorageEngines;
+import com.nocrashairlines.database.storage.StorageSnapshot;
+import com.nocrashairlines.database.storage.TieredRepository;
+import com.nocrashairlines.database.storage.TransactionLogRepository;
+import com.nocrashairlines.database.storage.WriteAheadLog;
 import com.nocrashairlines.model.*;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * FR-21 - FR-25
+ * Entities are stored by a pluggable {@link StorageEngine}; this class owns
+ * validation, secondary indexes, statistics and transaction logging on top of it.
+ * Flights, bookings and payments carry a version and their updates are compare-and-set:
+ * read the entity, change a {@code copy()}, and write it back, retrying if another
+ * writer got there first. Reads return the shared stored instance; changing it in place
+ * bypasses the version check and leaks into backups, so services always work on a copy.
+ * Passengers are copied on save as well, since the UI edits the signed-in passenger's object.
+ * Every write is also a numbered commit that leaves a version behind, so reports can
+ * read a consistent {@link ReadSnapshot} while writes carry on.
+ * Bookings and payments of departed flights are moved to a compressed archive tier
+ * (see {@link #archiveClosedFlights()}); reads and writes find them there transparently.
+ * With a {@link WriteAheadLog} configured, every commit is logged before its writer
+ * returns, so the data survives a restart: startup loads the newest checkpoint (see
+ * {@link #writeCheckpoint()}) and replays the log after it.
  */
 public class SystemDatabase {
     private static SystemDatabase instance;
     
     // storage
-    private final Map<String, Passenger> passengers;
-    private final Map<String, Admin> admins;
-    private final Map<String, AirlineStaff> airlineStaff;
-    private final Map<String, Flight> flights;
-    private final Map<String, Booking> bookings;
-    private final Map<String, Payment> payments;
-    private final List<TransactionLog> transactionLogs;
+    private final StorageEngine engine;
+    private final EntityRepository<Passenger> passengers;
+    private final EntityRepository<Admin> admins;
+    private final EntityRepository<AirlineStaff> airlineStaff;
+    private final EntityRepository<Flight> flights;
+    private final TieredRepository<Booking> bookings;
+    private final TieredRepository<Payment> payments;
+    private final TransactionLogRepository transactionLogs;
+
+    // Secondary indexes
+    private final UniqueKeyIndex passengerEmails;
+    private final UniqueKeyIndex adminEmails;
+    private final UniqueKeyIndex staffEmails;
+    private final UniqueKeyIndex flightNumbers;
+    private final FlightRouteIndex flightRoutes;
+    private final MultiValueIndex bookingsByPassenger;
+    private final MultiValueIndex bookingsByFlight;
+    private final MultiValueIndex paymentsByBooking;
+    private final PageIndex flightPages;
+    private final PageIndex bookingPages;
+    private final PageIndex paymentPages;
+    private final StatisticsCounters statistics;
+    // Archived bookings and payments are indexed by block, not one by one
+    private final ArchiveBlockIndex archivedBookingsByPassenger;
+    private final ArchiveBlockIndex archivedBookingsByFlight;
+    private final ArchiveBlockIndex archivedPaymentsByFlight;
+
+    // Serializes writes to the same flight, booking or payment so version checks are atomic
+    private static final int WRITE_LOCK_STRIPES = 256;
+    private final StripedLocks writeLocks = new StripedLocks(WRITE_LOCK_STRIPES);
+
+    // Snapshot reads (MVCC): every write is a numbered commit and leaves a version behind
+    private final CommitSequencer commits = new CommitSequencer();
+    private final VersionedStore<Passenger> passengerVersions;
+    private final VersionedStore<Flight> flightVersions;
+    private final VersionedStore<Booking> bookingVersions;
+    private final VersionedStore<Payment> paymentVersions;
+
+    // Durability: commits are logged to the WAL, if there is one
+    private final CommitLog commitLog;
+    private static final long CHECKPOINT_PERIOD_MINUTES = 10;
+    private ScheduledExecutorService checkpointer;
+    private ScheduledFuture<?> checkpointing;
+    private volatile Map<String, Object> recoveryStatistics = Map.of();
     
+    // Archive tier for bookings and payments of flights that have left
+    private static final Set<String> CLOSED_FLIGHT_STATUSES = Set.of("DEPARTED", "ARRIVED");
+    private static final long ARCHIVE_PERIOD_MINUTES = 15;
+    private ScheduledExecutorService archiver;
+    private ScheduledFuture<?> archiving;
+
     // Backup storage for NFR-4
-    private Map<String, Object> backupData;
-    private LocalDateTime lastBackupTime;
-
-    private SystemDatabase() {
-        this.passengers = new ConcurrentHashMap<>();
-        this.admins = new ConcurrentHashMap<>();
-        this.airlineStaff = new ConcurrentHashMap<>();
-        this.flights = new ConcurrentHashMap<>();
-        this.bookings = new ConcurrentHashMap<>();
-        this.payments = new ConcurrentHashMap<>();
-        this.transactionLogs = Collections.synchronizedList(new ArrayList<>());
+    private record Backup(StorageSnapshot storage, PersistentHashMap<ColdStore.Block> archivedBookings,
+                          PersistentHashMap<ColdStore.Block> archivedPayments) {}
+    private volatile Backup backup;
+    private volatile LocalDateTime lastBackupTime;
+    // Called after every successful restore, e.g. to hold the restored unpaid bookings again
+    private final List<Runnable> restoreListeners = new CopyOnWriteArrayList<>();
+    // Backups on disk, one file per entity type written in parallel; every 25th one is full
+    private static final int FULL_BACKUP_INTERVAL = 25;
+    private final BackupArchive backupArchive;
+    private final List<BackupTable<?>> backupTables;
+    private volatile DirtyKeys dirtyKeys;
+    private final Object backupLock = new Object();
+    // The backup the next incremental one follows, or null if the next must be full
+    private Path backupParent;
+    private int incrementalBackups;
+    private ExecutorService backupWriter;
+
+    /**
+     * One entity type as backups see it
+     * @param hot the type's repository in a storage snapshot
+     * @param cold the type's archive tier, or null if it has none
+     * @param archived the archive index in a backup, or null if it has none
+     */
+    private record BackupTable<T>(String name, EntityRepository<T> repository, ColdStore.Codec<T> codec,
+                                  Function<StorageSnapshot, PersistentHashMap<T>> hot, ColdStore<T> cold,
+                                  Function<Backup, PersistentHashMap<ColdStore.Block>> archived) {
+
+        void forEach(Backup backup, BiConsumer<String, T> action) {
+            hot.apply(backup.storage()).forEach(action);
+            if (cold != null) {
+                cold.forEach(archived.apply(backup), action);
+            }
+        }
+
+        // Changed ids with their contents in the backup, or null if they were deleted
+        void forEachChanged(Backup backup, Set<String> ids, BiConsumer<String, T> action) {
+            PersistentHashMap<T> entities = hot.apply(backup.storage());
+            for (String id : ids) {
+                T entity = entities.get(id);
+                if (entity == null && cold != null) {
+                    entity = cold.get(archived.apply(backup), id);
+                }
+                action.accept(id, entity);
+            }
+        }
+    }
+
+    SystemDatabase(StorageEngine engine, WriteAheadLog wal) {
+        this(engine, wal, BackupArchive.fromSystemProperties(wal == null ? null : wal.getDirectory()));
+    }
+
+    /**
+     * @param backupArchive where backups are written, or null to keep them in memory only
+     */
+    SystemDatabase(StorageEngine engine, WriteAheadLog wal, BackupArchive backupArchive) {
+        this.engine = engine;
+        this.backupArchive = backupArchive;
+        this.passengers = engine.passengers();
+        this.admins = engine.admins();
+        this.airlineStaff = engine.airlineStaff();
+        this.flights = engine.flights();
+        this.bookings = new TieredRepository<>(engine.bookings(), new ColdStore<>("bookings", ArchiveCodecs.BOOKING));
+        this.payments = new TieredRepository<>(engine.payments(), new ColdStore<>("payments", ArchiveCodecs.PAYMENT));
+        this.transactionLogs = engine.transactionLogs();
+        this.passengerEmails = new UniqueKeyIndex();
+        this.adminEmails = new UniqueKeyIndex();
+        this.staffEmails = new UniqueKeyIndex();
+        this.flightNumbers = new UniqueKeyIndex();
+        this.flightRoutes = new FlightRouteIndex();
+        this.bookingsByPassenger = new MultiValueIndex();
+        this.bookingsByFlight = new MultiValueIndex();
+        this.paymentsByBooking = new MultiValueIndex();
+        this.flightPages = new PageIndex();
+        this.bookingPages = new PageIndex();
+        this.paymentPages = new PageIndex();
+        this.statistics = new StatisticsCounters();
+        this.archivedBookingsByPassenger = new ArchiveBlockIndex();
+        this.archivedBookingsByFlight = new ArchiveBlockIndex();
+        this.archivedPaymentsByFlight = new ArchiveBlockIndex();
+        this.passengerVersions = new VersionedStore<>(passengers);
+        this.flightVersions = new VersionedStore<>(flights);
+        this.bookingVersions = new VersionedStore<>(bookings, bookings.cold());
+        this.paymentVersions = new VersionedStore<>(payments, payments.cold());
+        this.commitLog = new CommitLog(wal);
+        // Kinds are stored in the log and checkpoints; never renumber them
+        commitLog.register(1, passengers, ArchiveCodecs.PASSENGER, Passenger::getUserId);
+        commitLog.register(2, admins, ArchiveCodecs.ADMIN, Admin::getUserId);
+        commitLog.register(3, airlineStaff, ArchiveCodecs.STAFF, AirlineStaff::getUserId);
+        commitLog.register(4, flights, ArchiveCodecs.FLIGHT, Flight::getFlightId);
+        commitLog.register(5, bookings, ArchiveCodecs.BOOKING, Booking::getBookingId);
+        commitLog.register(6, payments, ArchiveCodecs.PAYMENT, Payment::getPaymentId);
+        // Table names are file names in backups; never rename them
+        this.backupTables = List.of(
+                new BackupTable<>("passengers", passengers, ArchiveCodecs.PASSENGER, StorageSnapshot::passengers, null, null),
+                new BackupTable<>("admins", admins, ArchiveCodecs.ADMIN, StorageSnapshot::admins, null, null),
+                new BackupTable<>("staff", airlineStaff, ArchiveCodecs.STAFF, StorageSnapshot::airlineStaff, null, null),
+                new BackupTable<>("flights", flights, ArchiveCodecs.FLIGHT, StorageSnapshot::flights, null, null),
+                new BackupTable<>("bookings", bookings, ArchiveCodecs.BOOKING, StorageSnapshot::bookings,
+                        bookings.cold(), Backup::archivedBookings),
+                new BackupTable<>("payments", payments, ArchiveCodecs.PAYMENT, StorageSnapshot::payments,
+                        payments.cold(), Backup::archivedPayments));
+        this.dirtyKeys = newDirtyKeys();
+        long recoveryStart = System.nanoTime();
+        CommitLog.Recovery recovery = commitLog.recover();
+        if (commitLog.isEnabled()) {
+            Runtime.getRuntime().addShutdownHook(new Thread(commitLog::close, "wal-shutdown"));
+        }
+        // Engines may come back with data from a previous run
+        long seq = commits.begin();
+        try {
+            rebuildIndexes(seq, false);
+        } finally {
+            commits.complete(seq);
+        }
+        if (commitLog.isEnabled()) {
+            recordRecovery(recovery, System.nanoTime() - recoveryStart);
+        }
         initializeDefaultData();
     }
 
+    /**
+     * Get the database, creating it on first use with the engine selected by
+     * the {@value StorageEngines#ENGINE_PROPERTY} system property, and the write-ahead log
+     * in the {@value WriteAheadLog#DIRECTORY_PROPERTY} directory if that is set.
+     * The shared database archives and checkpoints itself in the background.
+     */
     public static synchronized SystemDatabase getInstance() {
         if (instance == null) {
-            instance = new SystemDatabase();
+            instance = new SystemDatabase(StorageEngines.fromSystemProperties(), WriteAheadLog.fromSystemProperties());
+            instance.startMaintenance();
         }
         return instance;
     }
 
+    /**
+     * Create the database on top of a specific engine. Must be called at startup,
+     * before anything calls {@link #getInstance()}.
+     */
+    public static synchronized SystemDatabase initialize(StorageEngine engine) {
+        if (instance != null) {
+            throw new IllegalStateException("SystemDatabase is already initialized with engine: "
+                    + instance.engine.getName());
+        }
+        instance = new SystemDatabase(Objects.requireNonNull(engine, "engine"), WriteAheadLog.fromSystemProperties());
+        instance.startMaintenance();
+        return instance;
+    }
+
+    // Every entry point gets the shared database from here, so every one of them gets these
+    private void startMaintenance() {
+        // Keep bookings of flights that have left out of the working set
+        scheduleArchiving(ARCHIVE_PERIOD_MINUTES, TimeUnit.MINUTES);
+        // Bound how much write-ahead log a restart has to replay (no-op without a WAL)
+        scheduleCheckpoints(CHECKPOINT_PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public String getStorageEngineName() {
+        return engine.getName();
+    }
+
     // Initialize with some default data
     private void initializeDefaultData() {
+        if (admins.exists("ADMIN001")) {
+            return;
+        }
         // Create default admin with hashed password
         // Password: Admin@123
         // Hashed using SHA-256
         String hashedPassword = hashPassword("Admin@123");
         Admin defaultAdmin = new Admin("ADMIN001", "System Admin", "admin@nocrashairlines.com",
                 hashedPassword, "+1234567890", "SUPER_ADMIN");
-        admins.put(defaultAdmin.getUserId(), defaultAdmin);
+        adminEmails.claim(defaultAdmin.getEmail(), defaultAdmin.getUserId());
+        admins.save(defaultAdmin.getUserId(), defaultAdmin);
     }
 
     /**
@@ -69,46 +296,86 @@ public class SystemDatabase {
 
     // Passenger Operations 
     
+    /**
+     * Save a passenger. Fails if the email is already registered to another account.
+     */
     public boolean savePassenger(Passenger passenger) {
         if (passenger == null || passenger.getUserId() == null) {
             return false;
         }
-        passengers.put(passenger.getUserId(), passenger);
-        logTransaction("SAVE_PASSENGER", passenger.getUserId(), "Passenger saved: " + passenger.getEmail());
-        return true;
+        return withWriteLock(passenger.getUserId(), seq -> {
+            if (!passengerEmails.claim(passenger.getEmail(), passenger.getUserId())) {
+                return false;
+            }
+            Passenger stored = passenger.copy();
+            write(passengers, passengerVersions, stored.getUserId(), stored, seq);
+            logTransaction("SAVE_PASSENGER", passenger.getUserId(), "Passenger saved: " + passenger.getEmail());
+            return true;
+        });
     }
 
     public Passenger getPassengerById(String passengerId) {
-        return passengers.get(passengerId);
+        return passengers.findById(passengerId);
     }
 
     public Passenger getPassengerByEmail(String email) {
-        return passengers.values().stream()
-                .filter(p -> p.getEmail().equalsIgnoreCase(email))
-                .findFirst()
-                .orElse(null);
+        String passengerId = passengerEmails.lookup(email);
+        return passengerId == null ? null : passengers.findById(passengerId);
+    }
+
+    public boolean isPassengerEmailRegistered(String email) {
+        return passengerEmails.lookup(email) != null;
     }
 
     public boolean updatePassenger(Passenger passenger) {
-        if (passenger == null || !passengers.containsKey(passenger.getUserId())) {
+        if (passenger == null || passenger.getUserId() == null) {
             return false;
         }
-        passengers.put(passenger.getUserId(), passenger);
-        logTransaction("UPDATE_PASSENGER", passenger.getUserId(), "Passenger updated");
-        return true;
+        return withWriteLock(passenger.getUserId(), seq -> {
+            Passenger current = passengers.findById(passenger.getUserId());
+            if (current == null) {
+                return false;
+            }
+            if (!passengerEmails.claim(passenger.getEmail(), passenger.getUserId())) {
+                return false;
+            }
+            Passenger stored = passenger.copy();
+            // Booking links belong to the booking workflows; a profile edit must not roll them back
+            stored.setBookingIds(new ArrayList<>(current.getBookingIds()));
+            write(passengers, passengerVersions, stored.getUserId(), stored, seq);
+            logTransaction("UPDATE_PASSENGER", passenger.getUserId(), "Passenger updated");
+            return true;
+        });
     }
 
     public boolean deletePassenger(String passengerId) {
-        Passenger removed = passengers.remove(passengerId);
-        if (removed != null) {
+        if (passengerId == null) {
+            return false;
+        }
+        return withWriteLock(passengerId, seq -> {
+            if (!passengers.exists(passengerId)) {
+                return false;
+            }
+            write(passengers, passengerVersions, passengerId, null, seq);
+            passengerEmails.release(passengerId);
             logTransaction("DELETE_PASSENGER", passengerId, "Passenger deleted");
             return true;
-        }
-        return false;
+        });
     }
 
     public List<Passenger> getAllPassengers() {
-        return new ArrayList<>(passengers.values());
+        return new ArrayList<>(passengers.findAll());
+    }
+
+    /**
+     * Stream passengers without copying the whole collection
+     */
+    public Stream<Passenger> streamPassengers() {
+        return passengers.stream();
+    }
+
+    public List<Passenger> findPassengers(Predicate<? super Passenger> filter, int limit) {
+        return passengers.find(filter, limit);
     }
 
     // Admin Operations 
@@ -117,20 +384,25 @@ public class SystemDatabase {
         if (admin == null || admin.getUserId() == null) {
             return false;
         }
-        admins.put(admin.getUserId(), admin);
-        logTransaction("SAVE_ADMIN", admin.getUserId(), "Admin saved");
-        return true;
+        return withWriteLock(admin.getUserId(), seq -> {
+            if (!adminEmails.claim(admin.getEmail(), admin.getUserId())) {
+                return false;
+            }
+            Admin stored = admin.copy();
+            admins.save(stored.getUserId(), stored);
+            recordChange(seq, admins, stored.getUserId(), stored);
+            logTransaction("SAVE_ADMIN", admin.getUserId(), "Admin saved");
+            return true;
+        });
     }
 
     public Admin getAdminById(String adminId) {
-        return admins.get(adminId);
+        return admins.findById(adminId);
     }
 
     public Admin getAdminByEmail(String email) {
-        return admins.values().stream()
-                .filter(a -> a.getEmail().equalsIgnoreCase(email))
-                .findFirst()
-                .orElse(null);
+        String adminId = adminEmails.lookup(email);
+        return adminId == null ? null : admins.findById(adminId);
     }
 
     // Airline Staff Operations 
@@ -139,71 +411,208 @@ public class SystemDatabase {
         if (staff == null || staff.getUserId() == null) {
             return false;
         }
-        airlineStaff.put(staff.getUserId(), staff);
-        logTransaction("SAVE_STAFF", staff.getUserId(), "Airline staff saved");
-        return true;
+        return withWriteLock(staff.getUserId(), seq -> {
+            if (!staffEmails.claim(staff.getEmail(), staff.getUserId())) {
+                return false;
+            }
+            AirlineStaff stored = staff.copy();
+            airlineStaff.save(stored.getUserId(), stored);
+            recordChange(seq, airlineStaff, stored.getUserId(), stored);
+            logTransaction("SAVE_STAFF", staff.getUserId(), "Airline staff saved");
+            return true;
+        });
     }
 
     public AirlineStaff getAirlineStaffById(String staffId) {
-        return airlineStaff.get(staffId);
+        return airlineStaff.findById(staffId);
     }
 
     public AirlineStaff getAirlineStaffByEmail(String email) {
-        return airlineStaff.values().stream()
-                .filter(s -> s.getEmail().equalsIgnoreCase(email))
-                .findFirst()
-                .orElse(null);
+        String staffId = staffEmails.lookup(email);
+        return staffId == null ? null : airlineStaff.findById(staffId);
     }
 
     // Flight Operations 
     
+    /**
+     * Save a copy of a flight, so later changes to the caller's flight do not reach the
+     * database. Fails if the flight number is already used by another flight.
+     */
     public boolean saveFlight(Flight flight) {
         if (flight == null || flight.getFlightId() == null) {
             return false;
         }
-        flights.put(flight.getFlightId(), flight);
-        logTransaction("SAVE_FLIGHT", flight.getFlightId(), "Flight saved: " + flight.getFlightNumber());
-        return true;
+        return withWriteLock(flight.getFlightId(), seq -> {
+            if (!flightNumbers.claim(flight.getFlightNumber(), flight.getFlightId())) {
+                return false;
+            }
+            Flight stored = flight.copy();
+            stored.setVersion(nextVersion(flights.findById(stored.getFlightId())));
+            write(flights, flightVersions, stored.getFlightId(), stored, seq);
+            indexFlight(stored);
+            logTransaction("SAVE_FLIGHT", flight.getFlightId(), "Flight saved: " + flight.getFlightNumber());
+            return true;
+        });
+    }
+
+    /**
+     * Insert a batch of new flights as one commit, with one route index update and one
+     * transaction log record for the whole batch. Flights whose id already exists or whose
+     * flight number is taken (also by an earlier flight in the batch) are skipped.
+     * The batch holds the write locks of all its flights until its commit is sealed: a saved
+     * flight is readable at once, and an update to it must not reach the log before the
+     * batch does. If a write fails, the flights saved so far are undone and their flight
+     * numbers released.
+     * @return the flights that were not saved
+     */
+    public List<Flight> insertFlights(Collection<Flight> batch) {
+        List<Flight> rejected = new ArrayList<>();
+        List<Flight> saved = new ArrayList<>(batch.size());
+        List<String> ids = new ArrayList<>(batch.size());
+        for (Flight flight : batch) {
+            if (flight == null || flight.getFlightId() == null) {
+                rejected.add(flight);
+            } else {
+                ids.add(flight.getFlightId());
+            }
+        }
+        withWriteLocks(ids, seq -> {
+            String claimed = null;
+            try {
+                for (Flight flight : batch) {
+                    if (flight == null || flight.getFlightId() == null) {
+                        continue;
+                    }
+                    if (flights.exists(flight.getFlightId())
+                            || !flightNumbers.claim(flight.getFlightNumber(), flight.getFlightId())) {
+                        rejected.add(flight);
+                        continue;
+                    }
+                    claimed = flight.getFlightId();
+                    Flight stored = flight.copy();
+                    stored.setVersion(0);
+                    write(flights, flightVersions, stored.getFlightId(), stored, seq);
+                    saved.add(stored);
+                    claimed = null;
+                }
+            } catch (RuntimeException e) {
+                // Nothing else can have used them: their locks are still held
+                if (claimed != null) {
+                    flightNumbers.release(claimed);
+                }
+                for (int i = saved.size() - 1; i >= 0; i--) {
+                    String id = saved.get(i).getFlightId();
+                    undo(flights, flightVersions, id, null, seq);
+                    flightNumbers.release(id);
+                }
+                throw e;
+            }
+            flightRoutes.indexAll(saved);
+            saved.forEach(f -> flightPages.put(f.getFlightId(), f.getDepartureTime()));
+            if (!saved.isEmpty()) {
+                logTransaction("IMPORT_FLIGHTS", "SYSTEM",
+                        "Flights imported: " + saved.size() + " saved, " + rejected.size() + " rejected");
+            }
+            return true;
+        });
+        return rejected;
     }
 
     public Flight getFlightById(String flightId) {
-        return flights.get(flightId);
+        return flights.findById(flightId);
     }
 
     public Flight getFlightByNumber(String flightNumber) {
-        return flights.values().stream()
-                .filter(f -> f.getFlightNumber().equalsIgnoreCase(flightNumber))
-                .findFirst()
-                .orElse(null);
+        String flightId = flightNumbers.lookup(flightNumber);
+        return flightId == null ? null : flights.findById(flightId);
     }
 
+    public boolean isFlightNumberTaken(String flightNumber) {
+        return flightNumbers.lookup(flightNumber) != null;
+    }
+
+    /**
+     * Compare-and-set update: replaces the stored flight only if it is still at the
+     * version the caller read (flight.getVersion()), then bumps the version.
+     * Fails on a stale version, a missing flight, or a flight number taken by another flight.
+     */
     public boolean updateFlight(Flight flight) {
-        if (flight == null || !flights.containsKey(flight.getFlightId())) {
+        if (flight == null || flight.getFlightId() == null) {
             return false;
         }
-        flights.put(flight.getFlightId(), flight);
-        logTransaction("UPDATE_FLIGHT", flight.getFlightId(), "Flight updated");
-        return true;
+        return withWriteLock(flight.getFlightId(), seq -> {
+            Flight current = flights.findById(flight.getFlightId());
+            if (current == null || current.getVersion() != flight.getVersion()) {
+                return false;
+            }
+            if (!flightNumbers.claim(flight.getFlightNumber(), flight.getFlightId())) {
+                return false;
+            }
+            flight.setVersion(nextVersion(current));
+            write(flights, flightVersions, flight.getFlightId(), flight, seq);
+            indexFlight(flight);
+            logTransaction("UPDATE_FLIGHT", flight.getFlightId(), "Flight updated");
+            return true;
+        });
     }
 
     public boolean deleteFlight(String flightId) {
-        Flight removed = flights.remove(flightId);
-        if (removed != null) {
+        if (flightId == null) {
+            return false;
+        }
+        return withWriteLock(flightId, seq -> {
+            if (!flights.exists(flightId)) {
+                return false;
+            }
+            write(flights, flightVersions, flightId, null, seq);
+            flightNumbers.release(flightId);
+            flightRoutes.remove(flightId);
+            flightPages.remove(flightId);
             logTransaction("DELETE_FLIGHT", flightId, "Flight deleted");
             return true;
-        }
-        return false;
+        });
+    }
+
+    private void indexFlight(Flight flight) {
+        flightRoutes.index(flight);
+        flightPages.put(flight.getFlightId(), flight.getDepartureTime());
+    }
+
+    /**
+     * Get one page of flights ordered by id or by departure time.
+     * Pass null for the first page, then the previous page's next cursor.
+     */
+    public Page<Flight> getFlightsPage(SortKey sortKey, PageCursor after, int pageSize) {
+        return flightPages.page(sortKey, after, pageSize, flights::findById);
     }
 
     public List<Flight> getAllFlights() {
-        return new ArrayList<>(flights.values());
+        return new ArrayList<>(flights.findAll());
+    }
+
+    /**
+     * Stream flights without copying the whole collection
+     */
+    public Stream<Flight> streamFlights() {
+        return flights.stream();
+    }
+
+    public List<Flight> findFlights(Predicate<? super Flight> filter, int limit) {
+        return flights.find(filter, limit);
     }
 
     public List<Flight> searchFlights(String origin, String destination, LocalDateTime date) {
-        return flights.values().stream()
-                .filter(f -> f.getOrigin().equalsIgnoreCase(origin))
-                .filter(f -> f.getDestination().equalsIgnoreCase(destination))
-                .filter(f -> f.getDepartureTime().toLocalDate().equals(date.toLocalDate()))
+        LocalDateTime startOfDay = date.toLocalDate().atStartOfDay();
+        return searchFlights(origin, destination, startOfDay, startOfDay.plusDays(1));
+    }
+
+    /**
+     * Search bookable flights on a route departing in [from, to), ordered by departure time
+     */
+    public List<Flight> searchFlights(String origin, String destination, LocalDateTime from, LocalDateTime to) {
+        return flightRoutes.findFlightIds(origin, destination, from, to).stream()
+                .map(flights::findById)
+                .filter(Objects::nonNull)
                 .filter(f -> "SCHEDULED".equals(f.getStatus()))
                 .filter(Flight::hasAvailableSeats)
                 .collect(Collectors.toList());
@@ -215,39 +624,106 @@ public class SystemDatabase {
         if (booking == null || booking.getBookingId() == null) {
             return false;
         }
-        bookings.put(booking.getBookingId(), booking);
-        logTransaction("SAVE_BOOKING", booking.getBookingId(), "Booking saved for passenger: " + booking.getPassengerId());
-        return true;
+        return withWriteLock(booking.getBookingId(), seq -> {
+            booking.setVersion(nextVersion(bookings.findById(booking.getBookingId())));
+            write(bookings, bookingVersions, booking.getBookingId(), booking, seq);
+            indexBooking(booking);
+            logTransaction("SAVE_BOOKING", booking.getBookingId(), "Booking saved for passenger: " + booking.getPassengerId());
+            return true;
+        });
     }
 
     public Booking getBookingById(String bookingId) {
-        return bookings.get(bookingId);
+        return bookings.findById(bookingId);
     }
 
+    /**
+     * Compare-and-set update: replaces the stored booking only if it is still at the
+     * version the caller read (booking.getVersion()), then bumps the version.
+     */
     public boolean updateBooking(Booking booking) {
-        if (booking == null || !bookings.containsKey(booking.getBookingId())) {
+        if (booking == null || booking.getBookingId() == null) {
             return false;
         }
-        bookings.put(booking.getBookingId(), booking);
-        logTransaction("UPDATE_BOOKING", booking.getBookingId(), "Booking updated: " + booking.getStatus());
-        return true;
+        return applyNow(stageBookingUpdate(booking));
+    }
+
+    // Moves the booking between flights when it has been rescheduled
+    private void indexBooking(Booking booking) {
+        bookingsByPassenger.put(booking.getPassengerId(), booking.getBookingId());
+        bookingsByFlight.put(booking.getFlightId(), booking.getBookingId());
+        bookingPages.put(booking.getBookingId(), booking.getBookingDate());
+        statistics.recordBooking(booking);
+    }
+
+    private void unindexBooking(String bookingId) {
+        bookingsByPassenger.remove(bookingId);
+        bookingsByFlight.remove(bookingId);
+        bookingPages.remove(bookingId);
+        statistics.forgetBooking(bookingId);
+    }
+
+    /**
+     * Get one page of bookings ordered by id or by booking date.
+     * Pass null for the first page, then the previous page's next cursor.
+     */
+    public Page<Booking> getBookingsPage(SortKey sortKey, PageCursor after, int pageSize) {
+        return bookingPages.page(sortKey, after, pageSize, bookings::findById);
     }
 
     public List<Booking> getBookingsByPassengerId(String passengerId) {
-        return bookings.values().stream()
-                .filter(b -> b.getPassengerId().equals(passengerId))
-                .collect(Collectors.toList());
+        return new ArrayList<>(indexed(bookings, bookingsByPassenger.get(passengerId),
+                archivedBookingsByPassenger.get(passengerId), b -> passengerId.equals(b.getPassengerId())));
     }
 
     public List<Booking> getBookingsByFlightId(String flightId) {
-        return bookings.values().stream()
-                .filter(b -> b.getFlightId().equals(flightId))
+        return indexed(bookings, bookingsByFlight.get(flightId),
+                archivedBookingsByFlight.get(flightId), b -> flightId.equals(b.getFlightId())).stream()
                 .filter(b -> "CONFIRMED".equals(b.getStatus()))
                 .collect(Collectors.toList());
     }
 
+    // Entities found through an index: the hot ids, then the archived ones in the blocks given
+    private static <T> Collection<T> indexed(TieredRepository<T> repository, Set<String> ids,
+                                             List<ColdStore.Block> blocks, Predicate<T> belongs) {
+        Map<String, T> found = new LinkedHashMap<>();
+        for (String id : ids) {
+            T entity = repository.findById(id);
+            if (entity != null) {
+                found.put(id, entity);
+            }
+        }
+        for (ColdStore.Block block : blocks) {
+            repository.cold().forEach(block, (id, entity) -> {
+                if (belongs.test(entity)) {
+                    found.putIfAbsent(id, entity);
+                }
+            });
+        }
+        return found.values();
+    }
+
     public List<Booking> getAllBookings() {
-        return new ArrayList<>(bookings.values());
+        return new ArrayList<>(bookings.findAll());
+    }
+
+    /**
+     * Stream bookings without copying the whole collection
+     */
+    public Stream<Booking> streamBookings() {
+        return bookings.stream();
+    }
+
+    public List<Booking> findBookings(Predicate<? super Booking> filter, int limit) {
+        return bookings.find(filter, limit);
+    }
+
+    /**
+     * Stream the bookings still waiting for payment. Archived bookings belong to departed
+     * flights, so only the hot tier is scanned.
+     */
+    public Stream<Booking> streamPendingBookings() {
+        return bookings.hot().stream().filter(b -> "PENDING".equals(b.getStatus()));
     }
 
     // Payment Operations 
@@ -256,96 +732,985 @@ public class SystemDatabase {
         if (payment == null || payment.getPaymentId() == null) {
             return false;
         }
-        payments.put(payment.getPaymentId(), payment);
-        logTransaction("SAVE_PAYMENT", payment.getPaymentId(), "Payment saved: " + payment.getStatus());
-        return true;
+        return withWriteLock(payment.getPaymentId(), seq -> {
+            payment.setVersion(nextVersion(payments.findById(payment.getPaymentId())));
+            write(payments, paymentVersions, payment.getPaymentId(), payment, seq);
+            indexPayment(payment);
+            logTransaction("SAVE_PAYMENT", payment.getPaymentId(), "Payment saved: " + payment.getStatus());
+            return true;
+        });
     }
 
     public Payment getPaymentById(String paymentId) {
-        return payments.get(paymentId);
+        return payments.findById(paymentId);
     }
 
+    /**
+     * Get the payment of a booking: the latest successful attempt if there is one,
+     * otherwise the latest attempt of any status
+     */
     public Payment getPaymentByBookingId(String bookingId) {
-        return payments.values().stream()
-                .filter(p -> p.getBookingId().equals(bookingId))
-                .findFirst()
-                .orElse(null);
+        List<Payment> attempts = getPaymentsByBookingId(bookingId);
+        for (int i = attempts.size() - 1; i >= 0; i--) {
+            if (attempts.get(i).isSuccessful()) {
+                return attempts.get(i);
+            }
+        }
+        return attempts.isEmpty() ? null : attempts.get(attempts.size() - 1);
+    }
+
+    public Payment getLatestSuccessfulPaymentByBookingId(String bookingId) {
+        Payment payment = getPaymentByBookingId(bookingId);
+        return payment != null && payment.isSuccessful() ? payment : null;
+    }
+
+    /**
+     * Get every payment attempt for a booking (failed ones included), oldest first
+     */
+    public List<Payment> getPaymentsByBookingId(String bookingId) {
+        return indexed(payments, paymentsByBooking.get(bookingId), archivedPayments(bookingId),
+                p -> bookingId.equals(p.getBookingId())).stream()
+                .sorted(Comparator.comparing(Payment::getPaymentDate)
+                        .thenComparing(Payment::getPaymentId))
+                .collect(Collectors.toList());
     }
 
+    /**
+     * Compare-and-set update: replaces the stored payment only if it is still at the
+     * version the caller read (payment.getVersion()), then bumps the version.
+     */
     public boolean updatePayment(Payment payment) {
-        if (payment == null || !payments.containsKey(payment.getPaymentId())) {
+        if (payment == null || payment.getPaymentId() == null) {
             return false;
         }
-        payments.put(payment.getPaymentId(), payment);
-        logTransaction("UPDATE_PAYMENT", payment.getPaymentId(), "Payment updated: " + payment.getStatus());
-        return true;
+        return applyNow(stagePaymentUpdate(payment));
+    }
+
+    // Archived payments are indexed by the flight of their booking
+    private List<ColdStore.Block> archivedPayments(String bookingId) {
+        Booking booking = bookings.findById(bookingId);
+        return booking == null ? List.of() : archivedPaymentsByFlight.get(booking.getFlightId());
+    }
+
+    private void indexPayment(Payment payment) {
+        paymentsByBooking.put(payment.getBookingId(), payment.getPaymentId());
+        paymentPages.put(payment.getPaymentId(), payment.getPaymentDate());
+        statistics.recordPayment(payment);
+    }
+
+    private void unindexPayment(String paymentId) {
+        paymentsByBooking.remove(paymentId);
+        paymentPages.remove(paymentId);
+        statistics.forgetPayment(paymentId);
+    }
+
+    /**
+     * Get one page of payments ordered by id or by payment date.
+     * Pass null for the first page, then the previous page's next cursor.
+     */
+    public Page<Payment> getPaymentsPage(SortKey sortKey, PageCursor after, int pageSize) {
+        return paymentPages.page(sortKey, after, pageSize, payments::findById);
     }
 
     public List<Payment> getAllPayments() {
-        return new ArrayList<>(payments.values());
+        return new ArrayList<>(payments.findAll());
+    }
+
+    /**
+     * Stream payments without copying the whole collection
+     */
+    public Stream<Payment> streamPayments() {
+        return payments.stream();
+    }
+
+    public List<Payment> findPayments(Predicate<? super Payment> filter, int limit) {
+        return payments.find(filter, limit);
+    }
+
+    // Optimistic Concurrency
+
+    // Runs one write under its entity's lock, as a commit of its own
+    private boolean withWriteLock(String id, LongPredicate write) {
+        ReentrantLock lock = writeLocks.lockFor(id);
+        boolean written;
+        long lsn;
+        lock.lock();
+        long seq = commits.begin();
+        try {
+            written = write.test(seq);
+        } finally {
+            lsn = completeCommit(seq);
+            lock.unlock();
+        }
+        // The flush happens outside the lock, so writers to the same stripe are not held up
+        commitLog.awaitDurable(lsn);
+        return written;
+    }
+
+    // Runs a write to several entities as one commit, holding their stripes in ascending order
+    private boolean withWriteLocks(Collection<String> ids, LongPredicate write) {
+        int[] stripes = ids.stream().mapToInt(writeLocks::stripeOf).distinct().sorted().toArray();
+        List<ReentrantLock> held = new ArrayList<>(stripes.length);
+        boolean written;
+        long lsn;
+        try {
+            for (int stripe : stripes) {
+                ReentrantLock lock = writeLocks.lockAt(stripe);
+                lock.lock();
+                held.add(lock);
+            }
+            long seq = commits.begin();
+            try {
+                written = write.test(seq);
+            } finally {
+                lsn = completeCommit(seq);
+            }
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        }
+        commitLog.awaitDurable(lsn);
+        return written;
+    }
+
+    private static long nextVersion(Flight current) {
+        return current == null ? 0 : current.getVersion() + 1;
+    }
+
+    private static long nextVersion(Booking current) {
+        return current == null ? 0 : current.getVersion() + 1;
+    }
+
+    private static long nextVersion(Payment current) {
+        return current == null ? 0 : current.getVersion() + 1;
+    }
+
+    // Snapshot Reads
+
+    /**
+     * Write an entity (null deletes it) as commit seq. The snapshot version is recorded
+     * first, because snapshot readers that find no pending version read the repository.
+     */
+    private <T> void write(EntityRepository<T> repository, VersionedStore<T> versions,
+                           String id, T value, long seq) {
+        if (repository instanceof TieredRepository<T> tiered) {
+            T archived = tiered.cold().get(id);
+            if (archived != null) {
+                unarchive(archived);
+            }
+        }
+        versions.record(id, value, seq, commits.oldestVisible());
+        try {
+            if (value == null) {
+                repository.remove(id);
+            } else {
+                repository.save(id, value);
+            }
+            recordChange(seq, repository, id, value);
+        } catch (RuntimeException e) {
+            versions.rollback(id, seq);
+            throw e;
+        }
+    }
+
+    /**
+     * Put back what an entity was before a write of commit seq (null removes it)
+     */
+    private <T> void undo(EntityRepository<T> repository, VersionedStore<T> versions,
+                          String id, T previous, long seq) {
+        if (previous == null) {
+            repository.remove(id);
+        } else {
+            repository.save(id, previous);
+        }
+        versions.rollback(id, seq);
+        recordChange(seq, repository, id, previous);
+    }
+
+    // Log a write of commit seq for durability, and remember it for the next incremental backup
+    private <T> void recordChange(long seq, EntityRepository<T> repository, String id, T value) {
+        commitLog.record(seq, repository, id, value);
+        dirtyKeys.mark(repository, id);
+    }
+
+    /**
+     * Open a consistent point-in-time view for reports. It includes every commit
+     * finished before this call (units of work whole or not at all) and nothing
+     * after it, and reading it never blocks writers. Close it when done.
+     */
+    public ReadSnapshot openSnapshot() {
+        long seq = commits.openSnapshot();
+        return new ReadSnapshot(seq, passengerVersions, flightVersions, bookingVersions, paymentVersions,
+                () -> closeSnapshot(seq));
+    }
+
+    private void closeSnapshot(long seq) {
+        commits.closeSnapshot(seq);
+        if (!commits.hasOpenSnapshots()) {
+            // Drop what only this snapshot could still see
+            long oldest = commits.oldestVisible();
+            passengerVersions.vacuum(oldest);
+            flightVersions.vacuum(oldest);
+            bookingVersions.vacuum(oldest);
+            paymentVersions.vacuum(oldest);
+        }
+    }
+
+    // Unit of Work
+
+    /**
+     * Start a unit of work for writes to several entities that must commit together
+     */
+    public UnitOfWork beginUnitOfWork() {
+        return new UnitOfWork(this, writeLocks);
+    }
+
+    // Runs a single staged write on its own, under its entity's lock
+    private boolean applyNow(UnitOfWork.StagedWrite write) {
+        return withWriteLock(write.lockId(), seq -> {
+            if (!write.check().getAsBoolean()) {
+                return false;
+            }
+            write.apply().apply(seq);
+            return true;
+        });
+    }
+
+    // A unit of work is one commit: its writes become visible to snapshots together
+    long beginCommit() {
+        return commits.begin();
+    }
+
+    /**
+     * @return the LSN to pass to {@link #awaitDurable} once the commit's locks are released
+     */
+    long completeCommit(long seq) {
+        try {
+            return commitLog.seal(seq);
+        } finally {
+            commits.complete(seq);
+        }
+    }
+
+    void awaitDurable(long lsn) {
+        commitLog.awaitDurable(lsn);
+    }
+
+    private static String requireId(String id, String entity) {
+        if (id == null) {
+            throw new IllegalArgumentException("Cannot stage a " + entity + " without an id");
+        }
+        return id;
+    }
+
+    UnitOfWork.StagedWrite stageFlightUpdate(Flight flight) {
+        String id = requireId(flight == null ? null : flight.getFlightId(), "flight");
+        return new UnitOfWork.StagedWrite("flight:" + id, id,
+                () -> {
+                    Flight current = flights.findById(id);
+                    return current != null && current.getVersion() == flight.getVersion()
+                            && id.equals(flightNumbers.lookup(flight.getFlightNumber()));
+                },
+                seq -> {
+                    Flight previous = flights.findById(id);
+                    flight.setVersion(nextVersion(previous));
+                    write(flights, flightVersions, id, flight, seq);
+                    indexFlight(flight);
+                    logTransaction("UPDATE_FLIGHT", id, "Flight updated");
+                    return () -> {
+                        undo(flights, flightVersions, id, previous, seq);
+                        indexFlight(previous);
+                    };
+                });
+    }
+
+    UnitOfWork.StagedWrite stageBookingInsert(Booking booking) {
+        String id = requireId(booking == null ? null : booking.getBookingId(), "booking");
+        return new UnitOfWork.StagedWrite("booking:" + id, id,
+                () -> !bookings.exists(id),
+                seq -> {
+                    booking.setVersion(0);
+                    write(bookings, bookingVersions, id, booking, seq);
+                    indexBooking(booking);
+                    logTransaction("SAVE_BOOKING", id, "Booking saved for passenger: " + booking.getPassengerId());
+                    return () -> {
+                        undo(bookings, bookingVersions, id, null, seq);
+                        unindexBooking(id);
+                    };
+                });
+    }
+
+    UnitOfWork.StagedWrite stageBookingUpdate(Booking booking) {
+        String id = requireId(booking == null ? null : booking.getBookingId(), "booking");
+        return new UnitOfWork.StagedWrite("booking:" + id, id,
+                () -> {
+                    Booking current = bookings.findById(id);
+                    return current != null && current.getVersion() == booking.getVersion();
+                },
+                seq -> {
+                    Booking previous = bookings.findById(id);
+                    booking.setVersion(nextVersion(previous));
+                    write(bookings, bookingVersions, id, booking, seq);
+                    indexBooking(booking);
+                    logTransaction("UPDATE_BOOKING", id, "Booking updated: " + booking.getStatus());
+                    return () -> {
+                        undo(bookings, bookingVersions, id, previous, seq);
+                        indexBooking(previous);
+                    };
+                });
+    }
+
+    UnitOfWork.StagedWrite stagePaymentInsert(Payment payment) {
+        String id = requireId(payment == null ? null : payment.getPaymentId(), "payment");
+        return new UnitOfWork.StagedWrite("payment:" + id, id,
+                () -> !payments.exists(id),
+                seq -> {
+                    payment.setVersion(0);
+                    write(payments, paymentVersions, id, payment, seq);
+                    indexPayment(payment);
+                    logTransaction("SAVE_PAYMENT", id, "Payment saved: " + payment.getStatus());
+                    return () -> {
+                        undo(payments, paymentVersions, id, null, seq);
+                        unindexPayment(id);
+                    };
+                });
+    }
+
+    UnitOfWork.StagedWrite stagePaymentUpdate(Payment payment) {
+        String id = requireId(payment == null ? null : payment.getPaymentId(), "payment");
+        return new UnitOfWork.StagedWrite("payment:" + id, id,
+                () -> {
+                    Payment current = payments.findById(id);
+                    return current != null && current.getVersion() == payment.getVersion();
+                },
+                seq -> {
+                    Payment previous = payments.findById(id);
+                    payment.setVersion(nextVersion(previous));
+                    write(payments, paymentVersions, id, payment, seq);
+                    indexPayment(payment);
+                    logTransaction("UPDATE_PAYMENT", id, "Payment updated: " + payment.getStatus());
+                    return () -> {
+                        undo(payments, paymentVersions, id, previous, seq);
+                        indexPayment(previous);
+                    };
+                });
+    }
+
+    UnitOfWork.StagedWrite stagePassengerBookingLink(String passengerId, String bookingId, boolean add) {
+        return stagePassengerBookingLinks(passengerId, List.of(bookingId), add);
+    }
+
+    UnitOfWork.StagedWrite stagePassengerBookingLinks(String passengerId, Collection<String> bookingIds, boolean add) {
+        String id = requireId(passengerId, "passenger");
+        List<String> links = List.copyOf(bookingIds);
+        return new UnitOfWork.StagedWrite("passenger:" + id, id,
+                () -> true,
+                seq -> {
+                    Passenger previous = passengers.findById(id);
+                    if (previous == null) {
+                        return () -> {};
+                    }
+                    Passenger passenger = previous.copy();
+                    for (String bookingId : links) {
+                        if (add) {
+                            passenger.addBooking(bookingId);
+                        } else {
+                            passenger.removeBooking(bookingId);
+                        }
+                    }
+                    write(passengers, passengerVersions, id, passenger, seq);
+                    logTransaction("UPDATE_PASSENGER", id, "Passenger updated");
+                    return () -> {
+                        undo(passengers, passengerVersions, id, previous, seq);
+                    };
+                });
+    }
+
+    void logRollback(Collection<String> keys) {
+        logTransaction("ROLLBACK", "UNIT_OF_WORK", "Unit of work rolled back: " + keys);
+    }
+
+    // Archiving (hot/cold tiering)
+
+    /**
+     * Move the bookings of departed and arrived flights, with their payments, to the archive
+     * tier, one compressed block per flight. Their per-id index entries, counters and
+     * version chains are dropped for entries per block. They stay readable through every
+     * lookup, and the first write to one brings it back. Bookings changed while their flight
+     * is being archived are left for the next run.
+     * @return the number of bookings archived
+     */
+    public int archiveClosedFlights() {
+        int archived = 0;
+        for (Flight flight : flights.findAll()) {
+            if (CLOSED_FLIGHT_STATUSES.contains(flight.getStatus())) {
+                archived += archiveFlight(flight.getFlightId());
+            }
+        }
+        if (archived > 0) {
+            logTransaction("ARCHIVE", "SYSTEM", archived + " bookings archived");
+        }
+        return archived;
+    }
+
+    private int archiveFlight(String flightId) {
+        Map<String, Booking> closed = new LinkedHashMap<>();
+        for (String bookingId : bookingsByFlight.get(flightId)) {
+            Booking booking = bookings.hot().findById(bookingId);
+            if (booking != null) {
+                closed.put(bookingId, booking);
+            }
+        }
+        if (closed.isEmpty()) {
+            return 0;
+        }
+        Map<String, Payment> paid = new LinkedHashMap<>();
+        // Archived payments still indexed one by one, because their booking was written again
+        Map<String, String> reindexed = new LinkedHashMap<>();
+        for (String bookingId : closed.keySet()) {
+            for (String paymentId : paymentsByBooking.get(bookingId)) {
+                Payment payment = payments.hot().findById(paymentId);
+                if (payment != null) {
+                    paid.put(paymentId, payment);
+                } else {
+                    reindexed.put(paymentId, bookingId);
+                }
+            }
+        }
+
+        ColdStore.Block bookingBlock = bookings.cold().write(closed);
+        int archived = 0;
+        for (Booking booking : closed.values()) {
+            if (moveToCold(bookings, booking, booking.getBookingId(), booking.getVersion(), Booking::getVersion,
+                    bookingBlock, this::unindexArchivedBooking)) {
+                archived++;
+            }
+        }
+        if (!paid.isEmpty()) {
+            ColdStore.Block paymentBlock = payments.cold().write(paid);
+            for (Payment payment : paid.values()) {
+                moveToCold(payments, payment, payment.getPaymentId(), payment.getVersion(), Payment::getVersion,
+                        paymentBlock, (moved, block) -> unindexArchivedPayment(moved, flightId, block));
+            }
+        }
+        reindexed.forEach((paymentId, bookingId) -> withWriteLock(paymentId, seq -> {
+            ColdStore.Block block = payments.cold().blockOf(paymentId);
+            if (block == null || !bookings.cold().contains(bookingId)) {
+                return false;
+            }
+            archivedPaymentsByFlight.add(flightId, block);
+            paymentsByBooking.remove(paymentId);
+            return true;
+        }));
+        bookingPages.compact();
+        paymentPages.compact();
+        return archived;
+    }
+
+    // Archives an entity unless it was written after it was copied into the block
+    private <T> boolean moveToCold(TieredRepository<T> repository, T entity, String id, long version,
+                                   ToLongFunction<T> versionOf, ColdStore.Block block,
+                                   BiConsumer<T, ColdStore.Block> unindex) {
+        return withWriteLock(id, seq -> {
+            T current = repository.hot().findById(id);
+            if (current == null || versionOf.applyAsLong(current) != version) {
+                return false;
+            }
+            repository.moveToCold(id, block);
+            unindex.accept(entity, block);
+            return true;
+        });
+    }
+
+    // Replace the per-id index entries of a booking just archived with its block
+    private void unindexArchivedBooking(Booking booking, ColdStore.Block block) {
+        String id = booking.getBookingId();
+        archivedBookingsByPassenger.add(booking.getPassengerId(), block);
+        archivedBookingsByFlight.add(booking.getFlightId(), block);
+        bookingsByPassenger.remove(id);
+        bookingsByFlight.remove(id);
+        bookingPages.archive(id, booking.getBookingDate());
+        statistics.archiveBooking(id);
+        bookingVersions.archived(id);
+    }
+
+    private void unindexArchivedPayment(Payment payment, String flightId, ColdStore.Block block) {
+        String id = payment.getPaymentId();
+        archivedPaymentsByFlight.add(flightId, block);
+        paymentsByBooking.remove(id);
+        paymentPages.archive(id, payment.getPaymentDate());
+        statistics.archivePayment(id);
+        paymentVersions.archived(id);
+    }
+
+    /**
+     * Index an archived entity one by one again, before the write that brings it back
+     * to the hot tier
+     */
+    private void unarchive(Object archived) {
+        if (archived instanceof Booking booking) {
+            String id = booking.getBookingId();
+            bookingsByPassenger.put(booking.getPassengerId(), id);
+            bookingsByFlight.put(booking.getFlightId(), id);
+            bookingPages.unarchive(id, booking.getBookingDate());
+            statistics.unarchiveBooking(booking);
+            // Its archived payments are found through its flight, which may be about to change
+            for (ColdStore.Block block : archivedPaymentsByFlight.get(booking.getFlightId())) {
+                payments.cold().forEach(block, (paymentId, payment) -> {
+                    if (id.equals(payment.getBookingId())) {
+                        paymentsByBooking.put(id, paymentId);
+                    }
+                });
+            }
+        } else if (archived instanceof Payment payment) {
+            paymentsByBooking.put(payment.getBookingId(), payment.getPaymentId());
+            paymentPages.unarchive(payment.getPaymentId(), payment.getPaymentDate());
+            statistics.unarchivePayment(payment);
+        }
+    }
+
+    /**
+     * Run {@link #archiveClosedFlights()} in the background at a fixed interval,
+     * replacing any earlier schedule
+     */
+    public synchronized void scheduleArchiving(long period, TimeUnit unit) {
+        if (archiver == null) {
+            archiver = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "booking-archiver");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (archiving != null) {
+            archiving.cancel(false);
+        }
+        archiving = archiver.scheduleWithFixedDelay(() -> {
+            try {
+                archiveClosedFlights();
+            } catch (RuntimeException e) {
+                // An exception would cancel the schedule; try again next time
+                logTransaction("ARCHIVE_FAILED", "SYSTEM", "Archiving failed: " + e.getMessage());
+            }
+        }, period, period, unit);
+    }
+
+    // Durability (checkpoints of the write-ahead log)
+
+    /**
+     * Write every entity to a checkpoint in the WAL directory, then delete the WAL segments
+     * and older checkpoints it makes redundant, so a restart only replays the WAL written
+     * since. Writers carry on meanwhile: the checkpoint is read from a snapshot.
+     * @return false if there is no write-ahead log, or nothing was logged since the last checkpoint
+     */
+    public boolean writeCheckpoint() {
+        return checkpointAt(commitLog.appendedLsn());
+    }
+
+    // Writes a checkpoint at lsn from a snapshot that includes every commit logged up to it
+    private boolean checkpointAt(long lsn) {
+        if (!commitLog.isEnabled()) {
+            return false;
+        }
+        // Every commit logged up to lsn has been issued by now; the snapshot must include them
+        commits.awaitWatermark(commits.lastIssued());
+        long started = System.nanoTime();
+        boolean written;
+        try (ReadSnapshot snapshot = openSnapshot()) {
+            written = commitLog.writeCheckpoint(lsn, repository -> {
+                if (repository == passengers) {
+                    return snapshot.streamPassengers();
+                } else if (repository == flights) {
+                    return snapshot.streamFlights();
+                } else if (repository == bookings) {
+                    return snapshot.streamBookings();
+                } else if (repository == payments) {
+                    return snapshot.streamPayments();
+                }
+                // Admins and staff are not versioned; a newer copy is fine, the WAL replays over it
+                return repository.stream();
+            });
+        }
+        if (written) {
+            logTransaction("CHECKPOINT", "SYSTEM", "Checkpoint written up to WAL position " + lsn + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+        }
+        return written;
+    }
+
+    /**
+     * Run {@link #writeCheckpoint()} in the background at a fixed interval,
+     * replacing any earlier schedule
+     */
+    public synchronized void scheduleCheckpoints(long period, TimeUnit unit) {
+        if (checkpointer == null) {
+            checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (checkpointing != null) {
+            checkpointing.cancel(false);
+        }
+        checkpointing = checkpointer.scheduleWithFixedDelay(() -> {
+            try {
+                writeCheckpoint();
+            } catch (RuntimeException e) {
+                // An exception would cancel the schedule; try again next time
+                logTransaction("CHECKPOINT_FAILED", "SYSTEM", "Checkpoint failed: " + e.getMessage());
+            }
+        }, period, period, unit);
+    }
+
+    private void recordRecovery(CommitLog.Recovery recovery, long nanos) {
+        long entities = passengers.count() + admins.count() + airlineStaff.count()
+                + flights.count() + bookings.count() + payments.count();
+        double millis = nanos / 1e6;
+        double millisPerMillion = entities == 0 ? 0 : millis * 1_000_000 / entities;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recoveryMillis", Math.round(millis));
+        stats.put("recoveredEntities", entities);
+        stats.put("recoveryMillisPerMillionEntities", Math.round(millisPerMillion));
+        stats.put("checkpointEntities", recovery.checkpointEntities());
+        stats.put("replayedCommits", recovery.replayedCommits());
+        recoveryStatistics = Collections.unmodifiableMap(stats);
+        logTransaction("RECOVERY", "SYSTEM", String.format(
+                "Recovered %d entities in %d ms (%d ms per million): %d from the checkpoint at WAL position %d, %d commits replayed",
+                entities, Math.round(millis), Math.round(millisPerMillion), recovery.checkpointEntities(),
+                recovery.checkpointLsn(), recovery.replayedCommits()));
+    }
+
+    /**
+     * How long startup took to load the checkpoint, replay the write-ahead log and rebuild
+     * the indexes; empty without a write-ahead log
+     */
+    public Map<String, Object> getRecoveryStatistics() {
+        return recoveryStatistics;
     }
 
     // Transaction Log Operations (FR-23)
     
     private void logTransaction(String type, String entityId, String description) {
         TransactionLog log = new TransactionLog(type, entityId, description);
-        transactionLogs.add(log);
+        transactionLogs.append(log);
     }
 
     public List<TransactionLog> getTransactionLogs() {
-        return new ArrayList<>(transactionLogs);
+        return transactionLogs.findAll();
     }
 
     public List<TransactionLog> getTransactionLogsByType(String type) {
-        return transactionLogs.stream()
-                .filter(log -> log.getType().equals(type))
-                .collect(Collectors.toList());
+        return transactionLogs.findByType(type);
+    }
+
+    public List<TransactionLog> findTransactionLogs(Predicate<? super TransactionLog> filter, int limit) {
+        return transactionLogs.find(filter, limit);
     }
 
     // Backup & Recovery Operations (FR-24, NFR-4) 
     
-    public void performBackup() {
-        backupData = new HashMap<>();
-        backupData.put("passengers", new HashMap<>(passengers));
-        backupData.put("admins", new HashMap<>(admins));
-        backupData.put("airlineStaff", new HashMap<>(airlineStaff));
-        backupData.put("flights", new HashMap<>(flights));
-        backupData.put("bookings", new HashMap<>(bookings));
-        backupData.put("payments", new HashMap<>(payments));
-        backupData.put("transactionLogs", new ArrayList<>(transactionLogs));
-        lastBackupTime = LocalDateTime.now();
-        logTransaction("BACKUP", "SYSTEM", "Database backup completed");
-    }
-
-    @SuppressWarnings("unchecked")
+    /**
+     * Take a backup between commits, so it never holds part of a unit of work, then write
+     * it to disk in the background. With the persistent storage engine taking it is O(1),
+     * so writers barely notice, and the backup is immune to later writes. The memory and
+     * compact engines copy every entity to take it, and writers wait for the copy, even
+     * when only the changes are written to disk.
+     * On disk the backup is incremental (only what changed since the previous one) when
+     * there was a previous one in this process, with a full one every
+     * {@value #FULL_BACKUP_INTERVAL} backups.
+     * Without a backup directory or a write-ahead log, the backup is kept in memory only.
+     * @return the disk write, to follow its progress
+     */
+    public BackupJob performBackup() {
+        return performBackup(false);
+    }
+
+    /**
+     * Take a backup like {@link #performBackup()}, writing every entity to disk
+     */
+    public BackupJob performFullBackup() {
+        return performBackup(true);
+    }
+
+    private BackupJob performBackup(boolean full) {
+        synchronized (backupLock) {
+            DirtyKeys[] changed = new DirtyKeys[1];
+            Backup saved = commits.exclusive(seq -> {
+                changed[0] = dirtyKeys;
+                dirtyKeys = newDirtyKeys();
+                return new Backup(engine.snapshot(), bookings.cold().index(), payments.cold().index());
+            });
+            backup = saved;
+            lastBackupTime = LocalDateTime.now();
+            if (backupArchive == null) {
+                BackupJob job = new BackupJob(0);
+                logTransaction("BACKUP", "SYSTEM", "Database backup kept in memory only; set "
+                        + BackupArchive.DIRECTORY_PROPERTY + " or a write-ahead log to write it to disk");
+                job.future().complete(null);
+                return job;
+            }
+
+            boolean incremental = !full && backupParent != null && incrementalBackups < FULL_BACKUP_INTERVAL - 1;
+            BackupJob job = new BackupJob(incremental ? changed[0].size() : saved.storage().entityCount()
+                    + saved.archivedBookings().size() + saved.archivedPayments().size());
+            Path temp;
+            try {
+                temp = backupArchive.begin(incremental ? backupParent : null);
+            } catch (RuntimeException e) {
+                backupParent = null;
+                backupFailed(job, e);
+                return job;
+            }
+            backupParent = temp;
+            incrementalBackups = incremental ? incrementalBackups + 1 : 0;
+            writeBackup(job, temp, saved, incremental ? changed[0] : null);
+            return job;
+        }
+    }
+
+    /**
+     * @param changed the ids to write, or null to write everything
+     */
+    private void writeBackup(BackupJob job, Path temp, Backup saved, DirtyKeys changed) {
+        long started = System.nanoTime();
+        ExecutorService executor = backupWriter();
+        CompletableFuture<?>[] writes = backupTables.stream()
+                .map(table -> CompletableFuture.runAsync(() -> writeBackupTable(temp, table, saved, changed,
+                        job.progressCounter()), executor))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(writes)
+                .thenApply(done -> backupArchive.complete(temp))
+                .whenComplete((directory, error) -> {
+                    if (error == null) {
+                        logTransaction("BACKUP", "SYSTEM", String.format(
+                                "%s database backup of %d entities written to %s in %d ms",
+                                changed == null ? "Full" : "Incremental", job.getTotalEntities(),
+                                directory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+                        job.future().complete(directory);
+                        return;
+                    }
+                    synchronized (backupLock) {
+                        // Later incremental backups miss these changes, so start over with a full one
+                        backupParent = null;
+                    }
+                    try {
+                        backupArchive.abandon(temp);
+                    } catch (RuntimeException e) {
+                        error.addSuppressed(e);
+                    }
+                    backupFailed(job, error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                });
+    }
+
+    private <T> void writeBackupTable(Path temp, BackupTable<T> table, Backup saved, DirtyKeys changed,
+                                      LongAdder progress) {
+        if (changed == null) {
+            backupArchive.writeTable(temp, table.name(), table.codec(), action -> table.forEach(saved, action), progress);
+            return;
+        }
+        Set<String> ids = changed.get(table.repository());
+        if (!ids.isEmpty()) {
+            backupArchive.writeTable(temp, table.name(), table.codec(),
+                    action -> table.forEachChanged(saved, ids, action), progress);
+        }
+    }
+
+    private void backupFailed(BackupJob job, Throwable error) {
+        logTransaction("BACKUP_FAILED", "SYSTEM", "Database backup failed: " + error.getMessage());
+        job.future().completeExceptionally(error);
+    }
+
+    private synchronized ExecutorService backupWriter() {
+        if (backupWriter == null) {
+            backupWriter = Executors.newFixedThreadPool(backupTables.size(), task -> {
+                Thread thread = new Thread(task, "backup-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return backupWriter;
+    }
+
+    private DirtyKeys newDirtyKeys() {
+        return new DirtyKeys(backupTables.stream().map(BackupTable::repository).toList());
+    }
+
+    /**
+     * Read the newest backup on disk back in, for a restore after a restart: its full base,
+     * then every incremental backup after it in order
+     * @return null if there is none
+     */
+    private Backup loadBackup() {
+        if (backupArchive == null) {
+            return null;
+        }
+        List<Path> chain = backupArchive.restoreChain();
+        if (chain.isEmpty()) {
+            return null;
+        }
+        List<PersistentHashMap<?>> contents = new ArrayList<>();
+        for (BackupTable<?> table : backupTables) {
+            contents.add(readBackupTable(chain, table));
+        }
+        @SuppressWarnings("unchecked")
+        StorageSnapshot storage = new StorageSnapshot((PersistentHashMap<Passenger>) contents.get(0),
+                (PersistentHashMap<Admin>) contents.get(1), (PersistentHashMap<AirlineStaff>) contents.get(2),
+                (PersistentHashMap<Flight>) contents.get(3), (PersistentHashMap<Booking>) contents.get(4),
+                (PersistentHashMap<Payment>) contents.get(5));
+        // Archived entities come back in the hot tier; the archiver moves them out again
+        return new Backup(storage, PersistentHashMap.empty(), PersistentHashMap.empty());
+    }
+
+    private <T> PersistentHashMap<T> readBackupTable(List<Path> chain, BackupTable<T> table) {
+        PersistentHashMap<T> entities = PersistentHashMap.empty();
+        for (Path backup : chain) {
+            // A backup holds each id at most once; a null entity is a delete
+            Map<String, T> records = new LinkedHashMap<>();
+            backupArchive.readTable(backup, table.name(), table.codec(), records::put);
+            for (Map.Entry<String, T> record : records.entrySet()) {
+                entities = record.getValue() == null
+                        ? entities.remove(record.getKey()) : entities.put(record.getKey(), record.getValue());
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Put every passenger, admin, staff account, flight, booking and payment back to the
+     * last backup, or after a restart to the newest backup on disk. The transaction log is
+     * kept. Writers wait while the contents are swapped and the indexes rebuilt, but not
+     * while the restored contents are checkpointed; their commits are only reported durable
+     * once the checkpoint is written.
+     * If the restore fails part way, the contents from before it are put back, RESTORE_FAILED
+     * is logged and the failure is rethrown. If only the checkpoint fails, the restored
+     * contents stay, but commits after the restore fail as not durable (and a restart
+     * comes back to the contents from before it) until a later checkpoint is written.
+     * @return false if there is no backup to restore
+     */
     public boolean restoreFromBackup() {
-        if (backupData == null) {
+        synchronized (backupLock) {
+            try {
+                return restore();
+            } catch (RuntimeException e) {
+                logTransaction("RESTORE_FAILED", "SYSTEM", "Database restore failed: " + e);
+                throw e;
+            }
+        }
+    }
+
+    private boolean restore() {
+        Backup saved = backup != null ? backup : loadBackup();
+        if (saved == null) {
             return false;
         }
+        long lsn = commits.exclusive(seq -> {
+            boolean keepHistory = commits.hasOpenSnapshots();
+            if (keepHistory) {
+                passengerVersions.pin();
+                flightVersions.pin();
+                bookingVersions.pin();
+                paymentVersions.pin();
+            }
+            Backup before = new Backup(engine.snapshot(), bookings.cold().index(), payments.cold().index());
+            try {
+                swapContents(saved, seq, keepHistory);
+            } catch (RuntimeException e) {
+                try {
+                    commitLog.discard(seq);
+                    swapContents(before, seq, keepHistory);
+                } catch (RuntimeException rollback) {
+                    e.addSuppressed(rollback);
+                }
+                throw e;
+            }
+            // Everything changed; the next backup on disk is a full one
+            dirtyKeys = newDirtyKeys();
+            backupParent = null;
+            return commitLog.sealRestore(seq);
+        });
+        commitLog.awaitDurable(lsn);
+        // The log cannot refer to the in-memory backup, so a checkpoint of the restored
+        // contents replaces everything logged before; writers carry on while it is written
         try {
-            passengers.clear();
-            passengers.putAll((Map<String, Passenger>) backupData.get("passengers"));
-            
-            admins.clear();
-            admins.putAll((Map<String, Admin>) backupData.get("admins"));
-            
-            airlineStaff.clear();
-            airlineStaff.putAll((Map<String, AirlineStaff>) backupData.get("airlineStaff"));
-            
-            flights.clear();
-            flights.putAll((Map<String, Flight>) backupData.get("flights"));
-            
-            bookings.clear();
-            bookings.putAll((Map<String, Booking>) backupData.get("bookings"));
-            
-            payments.clear();
-            payments.putAll((Map<String, Payment>) backupData.get("payments"));
-            
-            logTransaction("RESTORE", "SYSTEM", "Database restored from backup");
-            return true;
-        } catch (Exception e) {
-            return false;
+            checkpointAt(lsn);
+        } catch (RuntimeException e) {
+            commitLog.restoreCheckpointFailed(e);
+            throw e;
         }
+
+        logTransaction("RESTORE", "SYSTEM", "Database restored from backup");
+        restoreListeners.forEach(Runnable::run);
+        return true;
+    }
+
+    /**
+     * Run a listener after every successful {@link #restoreFromBackup()}
+     */
+    public void addRestoreListener(Runnable listener) {
+        restoreListeners.add(listener);
+    }
+
+    private void swapContents(Backup contents, long seq, boolean keepHistory) {
+        engine.restore(contents.storage());
+        bookings.cold().restore(contents.archivedBookings());
+        payments.cold().restore(contents.archivedPayments());
+        rebuildIndexes(seq, keepHistory);
+    }
+
+    /**
+     * Rebuild every index and version chain from the engine's contents, as commit seq
+     * @param keepHistory whether open snapshots must keep seeing the contents from before
+     */
+    private void rebuildIndexes(long seq, boolean keepHistory) {
+        passengerEmails.clear();
+        passengers.findAll().forEach(p -> passengerEmails.claim(p.getEmail(), p.getUserId()));
+        adminEmails.clear();
+        admins.findAll().forEach(a -> adminEmails.claim(a.getEmail(), a.getUserId()));
+        staffEmails.clear();
+        airlineStaff.findAll().forEach(s -> staffEmails.claim(s.getEmail(), s.getUserId()));
+        flightNumbers.clear();
+        flights.findAll().forEach(f -> flightNumbers.claim(f.getFlightNumber(), f.getFlightId()));
+        flightRoutes.clear();
+        flightPages.clear();
+        flights.findAll().forEach(this::indexFlight);
+        bookingsByPassenger.clear();
+        bookingsByFlight.clear();
+        bookingPages.clear();
+        paymentsByBooking.clear();
+        paymentPages.clear();
+        statistics.clear();
+        archivedBookingsByPassenger.clear();
+        archivedBookingsByFlight.clear();
+        archivedPaymentsByFlight.clear();
+        bookings.hot().findAll().forEach(this::indexBooking);
+        payments.hot().findAll().forEach(this::indexPayment);
+        bookings.cold().forEach((id, booking) -> {
+            ColdStore.Block block = bookings.cold().blockOf(id);
+            archivedBookingsByPassenger.add(booking.getPassengerId(), block);
+            archivedBookingsByFlight.add(booking.getFlightId(), block);
+            bookingPages.archive(id, booking.getBookingDate());
+            statistics.countArchivedBooking(booking);
+        });
+        payments.cold().forEach((id, payment) -> {
+            Booking booking = bookings.findById(payment.getBookingId());
+            if (booking != null) {
+                archivedPaymentsByFlight.add(booking.getFlightId(), payments.cold().blockOf(id));
+            } else {
+                paymentsByBooking.put(payment.getBookingId(), id);
+            }
+            paymentPages.archive(id, payment.getPaymentDate());
+            statistics.countArchivedPayment(payment);
+        });
+        bookingPages.compact();
+        paymentPages.compact();
+
+        // Snapshots opened from here on see the rebuilt contents as one commit
+        passengerVersions.reset(seq, keepHistory);
+        flightVersions.reset(seq, keepHistory);
+        bookingVersions.reset(seq, keepHistory);
+        paymentVersions.reset(seq, keepHistory);
     }
 
     public LocalDateTime getLastBackupTime() {
@@ -354,47 +1719,21 @@ public class SystemDatabase {
 
     // Statistics for Reports (FR-15)
     
+    /**
+     * Get system statistics. Counters are maintained on every write, so this does not scan any data.
+     */
     public Map<String, Object> getSystemStatistics() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalPassengers", passengers.size());
-        stats.put("totalFlights", flights.size());
-        stats.put("totalBookings", bookings.size());
-        stats.put("confirmedBookings", bookings.values().stream()
-                .filter(b -> "CONFIRMED".equals(b.getStatus())).count());
-        stats.put("cancelledBookings", bookings.values().stream()
-                .filter(b -> "CANCELLED".equals(b.getStatus())).count());
-        stats.put("totalRevenue", payments.values().stream()
-                .filter(p -> "SUCCESS".equals(p.getStatus()))
-                .mapToDouble(Payment::getAmount).sum());
+        stats.put("totalPassengers", passengers.count());
+        stats.put("totalFlights", flights.count());
+        stats.put("totalBookings", bookings.count());
+        stats.put("archivedBookings", bookings.cold().size());
+        stats.put("archivedPayments", payments.cold().size());
+        stats.put("confirmedBookings", statistics.getBookingCount("CONFIRMED"));
+        stats.put("cancelledBookings", statistics.getBookingCount("CANCELLED"));
+        stats.put("totalRevenue", statistics.getSuccessfulRevenue());
+        stats.put("bookingsByStatus", statistics.getBookingsByStatus());
+        stats.put("paymentsByStatus", statistics.getPaymentsByStatus());
         return stats;
     }
-
-    // Inner class for transaction logging
-    public static class TransactionLog {
-        private final String logId;
-        private final String type;
-        private final String entityId;
-        private final String description;
-        private final LocalDateTime timestamp;
-
-        public TransactionLog(String type, String entityId, String description) {
-            this.logId = UUID.randomUUID().toString();
-            this.type = type;
-            this.entityId = entityId;
-            this.description = description;
-            this.timestamp = LocalDateTime.now();
-        }
-
-        public String getLogId() { return logId; }
-        public String getType() { return type; }
-        public String getEntityId() { return entityId; }
-        public String getDescription() { return description; }
-        public LocalDateTime getTimestamp() { return timestamp; }
-
-        @Override
-        public String toString() {
-            return String.format("[%s] %s - %s: %s", timestamp, type, entityId, description);
-        }
-    }
 }
-
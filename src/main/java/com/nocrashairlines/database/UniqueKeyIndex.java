@@ -0,0 +1,72 @@
+package com.nocrashairlines.database;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Case-insensitive unique key -> entity id index (emails, flight numbers).
+ * Keys are claimed atomically, so two entities can never own the same key
+ * even when they are saved concurrently.
+ */
+class UniqueKeyIndex {
+    private final ConcurrentHashMap<String, String> idsByKey = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> keysById = new ConcurrentHashMap<>();
+
+    static String normalize(String key) {
+        return key == null ? null : key.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Get the id of the entity owning the given key, or null
+     */
+    String lookup(String key) {
+        String normalized = normalize(key);
+        return normalized == null ? null : idsByKey.get(normalized);
+    }
+
+    /**
+     * Claim a key for an entity, releasing the key it owned before.
+     * Returns false (and changes nothing) if another entity owns the key.
+     */
+    boolean claim(String key, String id) {
+        String newKey = normalize(key);
+        if (Objects.equals(keysById.get(id), newKey)) {
+            return true;
+        }
+
+        boolean[] claimed = {true};
+        keysById.compute(id, (ignored, oldKey) -> {
+            if (Objects.equals(oldKey, newKey)) {
+                return oldKey;
+            }
+            if (newKey != null) {
+                String owner = idsByKey.putIfAbsent(newKey, id);
+                if (owner != null && !owner.equals(id)) {
+                    claimed[0] = false;
+                    return oldKey;
+                }
+            }
+            if (oldKey != null) {
+                idsByKey.remove(oldKey, id);
+            }
+            return newKey;
+        });
+        return claimed[0];
+    }
+
+    /**
+     * Release whatever key the entity owns
+     */
+    void release(String id) {
+        String oldKey = keysById.remove(id);
+        if (oldKey != null) {
+            idsByKey.remove(oldKey, id);
+        }
+    }
+
+    void clear() {
+        idsByKey.clear();
+        keysById.clear();
+    }
+}
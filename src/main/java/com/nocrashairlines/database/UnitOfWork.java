@@ -0,0 +1,158 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.model.Flight;
+import com.nocrashairlines.model.Payment;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongFunction;
+
+/**
+ * A group of writes that are committed all together or not at all.
+ * Stage changes on copies of the entities (see {@code copy()}), then call {@link #commit()}.
+ *
+ * Commit locks the stripe of every entity involved in ascending stripe order, so two
+ * units of work touching the same entities can never deadlock. It then checks every
+ * write (versions, existence) before applying any of them, and if applying one fails
+ * it undoes the ones already applied in reverse order. With a write-ahead log, commit
+ * returns once the unit of work is durable; the wait happens after the locks are released.
+ */
+public final class UnitOfWork {
+
+    /**
+     * One staged write: the id it locks, a check run under the lock before anything
+     * is applied, and an apply step that records the commit sequence and returns how to undo itself
+     */
+    record StagedWrite(String key, String lockId, BooleanSupplier check, LongFunction<Runnable> apply) {}
+
+    private final SystemDatabase database;
+    private final StripedLocks locks;
+    private final Map<String, StagedWrite> writes = new LinkedHashMap<>();
+    private boolean committed;
+
+    UnitOfWork(SystemDatabase database, StripedLocks locks) {
+        this.database = database;
+        this.locks = locks;
+    }
+
+    /**
+     * Stage a compare-and-set update of a flight (flight number changes are not allowed here)
+     */
+    public UnitOfWork updateFlight(Flight flight) {
+        return stage(database.stageFlightUpdate(flight));
+    }
+
+    /**
+     * Stage the insert of a new booking; the commit fails if the id is already used
+     */
+    public UnitOfWork saveBooking(Booking booking) {
+        return stage(database.stageBookingInsert(booking));
+    }
+
+    /**
+     * Stage a compare-and-set update of a booking
+     */
+    public UnitOfWork updateBooking(Booking booking) {
+        return stage(database.stageBookingUpdate(booking));
+    }
+
+    /**
+     * Stage the insert of a new payment; the commit fails if the id is already used
+     */
+    public UnitOfWork savePayment(Payment payment) {
+        return stage(database.stagePaymentInsert(payment));
+    }
+
+    /**
+     * Stage a compare-and-set update of a payment
+     */
+    public UnitOfWork updatePayment(Payment payment) {
+        return stage(database.stagePaymentUpdate(payment));
+    }
+
+    /**
+     * Stage adding a booking to a passenger's booking list (skipped if the passenger does not exist)
+     */
+    public UnitOfWork addPassengerBooking(String passengerId, String bookingId) {
+        return stage(database.stagePassengerBookingLink(passengerId, bookingId, true));
+    }
+
+    /**
+     * Stage removing a booking from a passenger's booking list (skipped if the passenger does not exist)
+     */
+    public UnitOfWork removePassengerBooking(String passengerId, String bookingId) {
+        return stage(database.stagePassengerBookingLink(passengerId, bookingId, false));
+    }
+
+    /**
+     * Stage removing several bookings from one passenger's booking list (skipped if the passenger does not exist)
+     */
+    public UnitOfWork removePassengerBookings(String passengerId, Collection<String> bookingIds) {
+        return stage(database.stagePassengerBookingLinks(passengerId, bookingIds, false));
+    }
+
+    UnitOfWork stage(StagedWrite write) {
+        if (committed) {
+            throw new IllegalStateException("Unit of work already committed");
+        }
+        if (writes.putIfAbsent(write.key(), write) != null) {
+            throw new IllegalArgumentException("Entity already staged in this unit of work: " + write.key());
+        }
+        return this;
+    }
+
+    /**
+     * Apply every staged write, or none of them
+     * @return false if a check failed (stale version, missing entity, duplicate id); nothing was written
+     * @throws RuntimeException if the storage engine failed while applying; applied writes were undone
+     */
+    public boolean commit() {
+        if (committed) {
+            throw new IllegalStateException("Unit of work already committed");
+        }
+        committed = true;
+
+        int[] stripes = writes.values().stream()
+                .mapToInt(write -> locks.stripeOf(write.lockId()))
+                .distinct()
+                .sorted()
+                .toArray();
+        List<ReentrantLock> held = new ArrayList<>(stripes.length);
+        long lsn;
+        try {
+            for (int stripe : stripes) {
+                ReentrantLock lock = locks.lockAt(stripe);
+                lock.lock();
+                held.add(lock);
+            }
+            for (StagedWrite write : writes.values()) {
+                if (!write.check().getAsBoolean()) {
+                    return false;
+                }
+            }
+            // One commit sequence for every write, so snapshots see all of them or none
+            long seq = database.beginCommit();
+            Deque<Runnable> undo = new ArrayDeque<>(writes.size());
+            try {
+                for (StagedWrite write : writes.values()) {
+                    undo.push(write.apply().apply(seq));
+                }
+            } catch (RuntimeException e) {
+                while (!undo.isEmpty()) {
+                    undo.pop().run();
+                }
+                database.logRollback(writes.keySet());
+                throw e;
+            } finally {
+                lsn = database.completeCommit(seq);
+            }
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        }
+        database.awaitDurable(lsn);
+        return true;
+    }
+}
@@ -0,0 +1,253 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.database.storage.ColdStore;
+import com.nocrashairlines.database.storage.EntityRepository;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+/**
+ * Per-entity version chains for snapshot reads (MVCC) over a live repository.
+ * Every write pushes a (sequence, value) version onto the entity's chain, newest first;
+ * a delete pushes a null value. A snapshot at sequence S sees, for each entity, the newest
+ * version at or below S. Once every snapshot can see the newest version, the chain is
+ * settled: it is replaced by a shared LIVE marker that reads the repository, so the store
+ * holds no entity values except while writes are newer than some open snapshot.
+ * Entities moved to an archive tier ({@link ColdStore}) have no entry at all: a read that
+ * finds none looks in the archive, and the first write records the archived value as the
+ * base of a new chain.
+ * Writers of one entity must be serialized by the caller (the entity's write lock), and
+ * must {@link #record} a write before applying it to the repository.
+ */
+class VersionedStore<T> {
+    // Sequence of a chain's base version: the repository value before the chain's first write
+    private static final long BASE_SEQ = 0;
+    private static final Version<Object> LIVE = new Version<>(BASE_SEQ, null, null);
+
+    private final EntityRepository<T> live;
+    // Archive tier of the repository, or null if it has none
+    private final ColdStore<T> archive;
+    private final Map<String, Version<T>> heads = new ConcurrentHashMap<>();
+    // Writes waiting to be settled, roughly in sequence order
+    private final Queue<Unsettled<T>> unsettled = new ConcurrentLinkedQueue<>();
+
+    private static final class Version<T> {
+        final long seq;
+        final T value;
+        volatile Version<T> older;
+
+        Version(long seq, T value, Version<T> older) {
+            this.seq = seq;
+            this.value = value;
+            this.older = older;
+        }
+    }
+
+    private record Unsettled<T>(String id, Version<T> version) {}
+
+    VersionedStore(EntityRepository<T> live) {
+        this(live, null);
+    }
+
+    VersionedStore(EntityRepository<T> live, ColdStore<T> archive) {
+        this.live = live;
+        this.archive = archive;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Version<T> liveMarker() {
+        return (Version<T>) LIVE;
+    }
+
+    /**
+     * Record the value an entity will have as of a commit (null if it is being deleted).
+     * Call before writing the repository, so a reader that finds the LIVE marker knows
+     * the repository still holds a value every snapshot can see.
+     */
+    void record(String id, T value, long seq, long oldestVisible) {
+        Version<T> head = heads.get(id);
+        if (head == liveMarker()) {
+            head = new Version<>(BASE_SEQ, live.findById(id), null);
+        } else if (head == null && isArchived(id)) {
+            head = new Version<>(BASE_SEQ, archive.get(id), null);
+        }
+        Version<T> version = new Version<>(seq, value, head);
+        heads.put(id, version);
+        unsettled.add(new Unsettled<>(id, version));
+        prune(version, oldestVisible);
+        settle(oldestVisible);
+    }
+
+    /**
+     * Drop the version written by a commit that is being rolled back.
+     * Call after the repository has been put back.
+     */
+    void rollback(String id, long seq) {
+        Version<T> head = heads.get(id);
+        if (head == null || head == liveMarker() || head.seq != seq) {
+            return;
+        }
+        Version<T> older = head.older;
+        if (older == null) {
+            heads.remove(id, head);
+        } else if (older.seq == BASE_SEQ && isArchived(id)) {
+            heads.remove(id, head);
+        } else if (older.seq == BASE_SEQ) {
+            heads.replace(id, head, liveMarker());
+        } else {
+            heads.replace(id, head, older);
+        }
+    }
+
+    /**
+     * Drop the entry of an entity that has just moved to the archive tier. Call with the
+     * entity's write lock held; a chain still needed by a snapshot is dropped when it settles.
+     */
+    void archived(String id) {
+        heads.remove(id, liveMarker());
+    }
+
+    private boolean isArchived(String id) {
+        return archive != null && archive.contains(id);
+    }
+
+    T read(String id, long snapshot) {
+        if (id == null) {
+            return null;
+        }
+        return visible(id, heads.get(id), snapshot);
+    }
+
+    Stream<T> stream(long snapshot) {
+        if (archive == null) {
+            return heads.entrySet().stream()
+                    .map(entry -> visible(entry.getKey(), entry.getValue(), snapshot))
+                    .filter(Objects::nonNull);
+        }
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        Stream<T> chained = heads.entrySet().stream()
+                .peek(entry -> seen.add(entry.getKey()))
+                .map(entry -> visible(entry.getKey(), entry.getValue(), snapshot));
+        // Then the archived entities, unless their chain was already read; one written since
+        // the chains were read is read through its new chain
+        Stream<T> archived = Stream.of(archive).flatMap(ColdStore::entries)
+                .map(Map.Entry::getKey)
+                .filter(id -> !seen.contains(id))
+                .map(id -> visible(id, heads.get(id), snapshot));
+        return Stream.concat(chained, archived).filter(Objects::nonNull);
+    }
+
+    private T visible(String id, Version<T> head, long snapshot) {
+        while (head == liveMarker() || head == null && archive != null) {
+            T value = head == null ? archive.get(id) : live.findById(id);
+            // A writer replaces the marker (or adds one) before touching the repository, so
+            // if it is still there the value was written before this snapshot
+            Version<T> now = heads.get(id);
+            if (now == head) {
+                return value;
+            }
+            head = now;
+        }
+        for (Version<T> v = head; v != null; v = v.older) {
+            if (v.seq <= snapshot) {
+                return v.value;
+            }
+        }
+        return null;
+    }
+
+    // Keeps every version newer than oldestVisible plus the newest one at or below it
+    private static void prune(Version<?> head, long oldestVisible) {
+        for (Version<?> v = head; v != null; v = v.older) {
+            if (v.seq <= oldestVisible) {
+                v.older = null;
+                return;
+            }
+        }
+    }
+
+    // Hand chains whose newest version every snapshot can see back to the repository
+    private void settle(long oldestVisible) {
+        Unsettled<T> next;
+        while ((next = unsettled.peek()) != null && next.version().seq <= oldestVisible) {
+            if (unsettled.remove(next)) {
+                settle(next.id(), next.version());
+            }
+        }
+    }
+
+    private void settle(String id, Version<T> version) {
+        if (version.value == null || isArchived(id)) {
+            // Deleted, or archived since it was written
+            heads.remove(id, version);
+        } else {
+            heads.replace(id, version, liveMarker());
+        }
+    }
+
+    /**
+     * Settle or prune every chain no open snapshot needs in full
+     */
+    void vacuum(long oldestVisible) {
+        settle(oldestVisible);
+        heads.forEach((id, head) -> {
+            if (head == liveMarker()) {
+                return;
+            }
+            if (head.seq <= oldestVisible) {
+                settle(id, head);
+            } else {
+                prune(head, oldestVisible);
+            }
+        });
+    }
+
+    /**
+     * Keep what open snapshots see of every entity, before the repository contents are
+     * replaced wholesale (restore)
+     */
+    void pin() {
+        heads.forEach((id, head) -> {
+            if (head == liveMarker()) {
+                heads.replace(id, head, new Version<>(BASE_SEQ, live.findById(id), null));
+            }
+        });
+        if (archive != null) {
+            archive.forEach((id, value) -> heads.putIfAbsent(id, new Version<>(BASE_SEQ, value, null)));
+        }
+    }
+
+    /**
+     * Match the repository after its contents were replaced as one commit (startup, restore)
+     * @param keepHistory whether open snapshots must keep seeing the old contents; they must
+     *        have been {@link #pin pinned} before the replacement
+     */
+    void reset(long seq, boolean keepHistory) {
+        if (!keepHistory) {
+            heads.clear();
+            unsettled.clear();
+            live.forEach((id, value) -> {
+                if (!isArchived(id)) {
+                    heads.put(id, liveMarker());
+                }
+            });
+            return;
+        }
+        heads.forEach((id, head) -> {
+            if (!live.exists(id)) {
+                Version<T> deleted = new Version<>(seq, null, head);
+                heads.put(id, deleted);
+                unsettled.add(new Unsettled<>(id, deleted));
+            }
+        });
+        live.forEach((id, value) -> {
+            Version<T> version = new Version<>(seq, value, heads.get(id));
+            heads.put(id, version);
+            unsettled.add(new Unsettled<>(id, version));
+        });
+    }
+}
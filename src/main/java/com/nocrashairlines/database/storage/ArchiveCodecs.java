@@ -0,0 +1,527 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.Admin;
+import com.nocrashairlines.model.AirlineStaff;
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.model.Flight;
+import com.nocrashairlines.model.Passenger;
+import com.nocrashairlines.model.Payment;
+import com.nocrashairlines.model.TransactionLog;
+import com.nocrashairlines.model.UserAccount;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ColdStore.Codec}s for the entity types, used by the archive tier, the write-ahead
+ * log and checkpoints. Every field is written, so an entity decodes equal to the one that was stored.
+ *
+ * The encoding is compact: integers are varints, amounts are whole cents where they can
+ * be, timestamps are seconds from 2024 (nanoseconds only when there are some), strings
+ * are length-prefixed UTF-8, and the values of fields with a small vocabulary are one-byte
+ * codes from a symbol table; values outside it are written out in full. The system's own
+ * codes (statuses, travel classes, payment methods, admin levels, log types) share one
+ * table, and the airports and aircraft of the network each have their own, so a new
+ * route or model never shifts a status code.
+ *
+ * Every entity starts with the version of its layout, and the reader decodes the rest the
+ * way that version was written. To evolve one, append the new fields, bump its version and
+ * have the reader default them for older versions; entities already in the WAL,
+ * checkpoints and archive keep decoding. Symbols may only be appended to a table.
+ */
+public final class ArchiveCodecs {
+    private static final long EPOCH_SECOND = LocalDateTime.of(2024, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    private static final long MAX_CENTS = 1L << 52;
+
+    // Version 1 of every layout took its symbols from LEGACY_SYMBOLS; version 2 from the tables below
+    private static final int SPLIT_SYMBOLS_VERSION = 2;
+    private static final int BOOKING_VERSION = 2;
+    private static final int PAYMENT_VERSION = 2;
+    private static final int FLIGHT_VERSION = 2;
+    private static final int ACCOUNT_VERSION = 2;
+    private static final int LOG_VERSION = 2;
+
+    // Append only: a symbol's position is its code in every file ever written
+    private static final SymbolTable CODES = new SymbolTable(
+            "PENDING", "CONFIRMED", "CANCELLED", "RESCHEDULED", "SCHEDULED", "DELAYED", "DEPARTED",
+            "ARRIVED", "SUCCESS", "FAILED", "REFUNDED", "REFUND_PENDING",
+            "ECONOMY", "BUSINESS", "FIRST_CLASS",
+            "CREDIT_CARD", "DEBIT_CARD", "DIGITAL_WALLET", "ONLINE_BANKING",
+            "ADMIN", "SUPER_ADMIN", "MODERATOR",
+            "SAVE_PASSENGER", "UPDATE_PASSENGER", "DELETE_PASSENGER", "SAVE_FLIGHT", "UPDATE_FLIGHT",
+            "DELETE_FLIGHT", "SAVE_BOOKING", "UPDATE_BOOKING", "SAVE_PAYMENT", "UPDATE_PAYMENT",
+            "SAVE_ADMIN", "SAVE_STAFF", "IMPORT_FLIGHTS", "ROLLBACK", "BACKUP", "BACKUP_FAILED",
+            "RESTORE", "RESTORE_FAILED", "ARCHIVE", "ARCHIVE_FAILED", "CHECKPOINT", "CHECKPOINT_FAILED",
+            "RECOVERY");
+    private static final SymbolTable AIRPORTS = new SymbolTable(
+            "Toronto", "Vancouver", "Montreal", "Calgary", "Ottawa", "Edmonton", "Winnipeg", "Halifax");
+    private static final SymbolTable AIRCRAFT = new SymbolTable(
+            "Boeing 737", "Boeing 777", "Airbus A320");
+
+    // Frozen: the single table version 1 layouts were written with, kept only to read them
+    private static final SymbolTable LEGACY_SYMBOLS = new SymbolTable(
+            "PENDING", "CONFIRMED", "CANCELLED", "RESCHEDULED", "SCHEDULED", "DELAYED", "DEPARTED",
+            "ARRIVED", "SUCCESS", "FAILED", "REFUNDED",
+            "ECONOMY", "BUSINESS", "FIRST_CLASS",
+            "CREDIT_CARD", "DEBIT_CARD", "DIGITAL_WALLET", "ONLINE_BANKING",
+            "Toronto", "Vancouver", "Montreal", "Calgary", "Ottawa", "Edmonton", "Winnipeg", "Halifax",
+            "Boeing 737", "Boeing 777", "Airbus A320",
+            "ADMIN", "SUPER_ADMIN", "MODERATOR",
+            "SAVE_PASSENGER", "UPDATE_PASSENGER", "DELETE_PASSENGER", "SAVE_FLIGHT", "UPDATE_FLIGHT",
+            "DELETE_FLIGHT", "SAVE_BOOKING", "UPDATE_BOOKING", "SAVE_PAYMENT", "UPDATE_PAYMENT",
+            "SAVE_ADMIN", "SAVE_STAFF", "IMPORT_FLIGHTS", "ROLLBACK", "BACKUP", "RESTORE",
+            "ARCHIVE", "ARCHIVE_FAILED", "CHECKPOINT", "CHECKPOINT_FAILED", "RECOVERY",
+            "BACKUP_FAILED", "REFUND_PENDING", "RESTORE_FAILED");
+
+    public static final ColdStore.Codec<Booking> BOOKING = new ColdStore.Codec<>() {
+        @Override
+        public void write(DataOutput out, Booking booking) throws IOException {
+            writeVarInt(out, BOOKING_VERSION);
+            writeString(out, booking.getBookingId());
+            writeString(out, booking.getPassengerId());
+            writeString(out, booking.getFlightId());
+            writeString(out, booking.getPassengerName());
+            writeString(out, booking.getPassengerEmail());
+            writeString(out, booking.getPassengerPhone());
+            writeString(out, booking.getPassportNumber());
+            writeString(out, booking.getSeatNumber());
+            CODES.write(out, booking.getTravelClass());
+            CODES.write(out, booking.getStatus());
+            writeDate(out, booking.getBookingDate());
+            writeDate(out, booking.getLastModified());
+            writeString(out, booking.getPaymentId());
+            writeAmount(out, booking.getTotalAmount());
+            out.writeBoolean(booking.isCheckedIn());
+            writeString(out, booking.getBaggageTag());
+            writeVarLong(out, booking.getVersion());
+        }
+
+        @Override
+        public Booking read(DataInput in) throws IOException {
+            int version = readVersion(in, BOOKING_VERSION, "booking");
+            SymbolTable codes = codesFor(version);
+            Booking booking = new Booking();
+            booking.setBookingId(readString(in));
+            booking.setPassengerId(readString(in));
+            booking.setFlightId(readString(in));
+            booking.setPassengerName(readString(in));
+            booking.setPassengerEmail(readString(in));
+            booking.setPassengerPhone(readString(in));
+            booking.setPassportNumber(readString(in));
+            booking.setSeatNumber(readString(in));
+            booking.setTravelClass(codes.read(in));
+            booking.setStatus(codes.read(in));
+            booking.setBookingDate(readDate(in));
+            booking.setLastModified(readDate(in));
+            booking.setPaymentId(readString(in));
+            booking.setTotalAmount(readAmount(in));
+            booking.setCheckedIn(in.readBoolean());
+            booking.setBaggageTag(readString(in));
+            booking.setVersion(readVarLong(in));
+            return booking;
+        }
+    };
+
+    public static final ColdStore.Codec<Payment> PAYMENT = new ColdStore.Codec<>() {
+        @Override
+        public void write(DataOutput out, Payment payment) throws IOException {
+            writeVarInt(out, PAYMENT_VERSION);
+            writeString(out, payment.getPaymentId());
+            writeString(out, payment.getBookingId());
+            writeString(out, payment.getPassengerId());
+            writeAmount(out, payment.getAmount());
+            CODES.write(out, payment.getPaymentMethod());
+            CODES.write(out, payment.getStatus());
+            writeDate(out, payment.getPaymentDate());
+            writeString(out, payment.getTransactionReference());
+            writeString(out, payment.getCardLastFourDigits());
+            out.writeBoolean(payment.isFraudDetected());
+            writeString(out, payment.getRefundReason());
+            writeDate(out, payment.getRefundDate());
+            writeVarLong(out, payment.getVersion());
+        }
+
+        @Override
+        public Payment read(DataInput in) throws IOException {
+            int version = readVersion(in, PAYMENT_VERSION, "payment");
+            SymbolTable codes = codesFor(version);
+            Payment payment = new Payment();
+            payment.setPaymentId(readString(in));
+            payment.setBookingId(readString(in));
+            payment.setPassengerId(readString(in));
+            payment.setAmount(readAmount(in));
+            payment.setPaymentMethod(codes.read(in));
+            payment.setStatus(codes.read(in));
+            payment.setPaymentDate(readDate(in));
+            payment.setTransactionReference(readString(in));
+            payment.setCardLastFourDigits(readString(in));
+            payment.setFraudDetected(in.readBoolean());
+            payment.setRefundReason(readString(in));
+            payment.setRefundDate(readDate(in));
+            payment.setVersion(readVarLong(in));
+            return payment;
+        }
+    };
+
+    public static final ColdStore.Codec<Flight> FLIGHT = new ColdStore.Codec<>() {
+        @Override
+        public void write(DataOutput out, Flight flight) throws IOException {
+            writeVarInt(out, FLIGHT_VERSION);
+            writeString(out, flight.getFlightId());
+            writeString(out, flight.getFlightNumber());
+            AIRPORTS.write(out, flight.getOrigin());
+            AIRPORTS.write(out, flight.getDestination());
+            writeDate(out, flight.getDepartureTime());
+            writeDate(out, flight.getArrivalTime());
+            AIRCRAFT.write(out, flight.getAircraftType());
+            writeVarInt(out, flight.getTotalSeats());
+            writeVarInt(out, flight.getAvailableSeats());
+            Map<String, Double> prices = flight.getClassPrices();
+            writeVarInt(out, prices.size());
+            for (Map.Entry<String, Double> price : prices.entrySet()) {
+                CODES.write(out, price.getKey());
+                writeAmount(out, price.getValue());
+            }
+            CODES.write(out, flight.getStatus());
+            writeString(out, flight.getGate());
+            writeVarLong(out, flight.getVersion());
+        }
+
+        @Override
+        public Flight read(DataInput in) throws IOException {
+            int version = readVersion(in, FLIGHT_VERSION, "flight");
+            boolean legacy = version < SPLIT_SYMBOLS_VERSION;
+            SymbolTable codes = codesFor(version);
+            SymbolTable airports = legacy ? LEGACY_SYMBOLS : AIRPORTS;
+            SymbolTable aircraft = legacy ? LEGACY_SYMBOLS : AIRCRAFT;
+            Flight flight = new Flight();
+            flight.setFlightId(readString(in));
+            flight.setFlightNumber(readString(in));
+            flight.setOrigin(airports.read(in));
+            flight.setDestination(airports.read(in));
+            flight.setDepartureTime(readDate(in));
+            flight.setArrivalTime(readDate(in));
+            flight.setAircraftType(aircraft.read(in));
+            flight.setTotalSeats(readVarInt(in));
+            flight.setAvailableSeats(readVarInt(in));
+            int priceCount = readVarInt(in);
+            Map<String, Double> prices = new HashMap<>(priceCount * 2);
+            for (int i = 0; i < priceCount; i++) {
+                prices.put(codes.read(in), readAmount(in));
+            }
+            flight.setClassPrices(prices);
+            flight.setStatus(codes.read(in));
+            flight.setGate(readString(in));
+            flight.setVersion(readVarLong(in));
+            return flight;
+        }
+    };
+
+    public static final ColdStore.Codec<Passenger> PASSENGER = new ColdStore.Codec<>() {
+        @Override
+        public void write(DataOutput out, Passenger passenger) throws IOException {
+            writeAccount(out, passenger);
+            writeString(out, passenger.getPassportNumber());
+            writeString(out, passenger.getAddress());
+            List<String> bookingIds = passenger.getBookingIds();
+            writeVarInt(out, bookingIds.size());
+            for (String bookingId : bookingIds) {
+                writeString(out, bookingId);
+            }
+            CODES.write(out, passenger.getPreferredClass());
+        }
+
+        @Override
+        public Passenger read(DataInput in) throws IOException {
+            int version = readVersion(in, ACCOUNT_VERSION, "account");
+            Passenger passenger = readAccount(in, new Passenger());
+            passenger.setPassportNumber(readString(in));
+            passenger.setAddress(readString(in));
+            int bookingCount = readVarInt(in);
+            List<String> bookingIds = new ArrayList<>(bookingCount);
+            for (int i = 0; i < bookingCount; i++) {
+                bookingIds.add(readString(in));
+            }
+            passenger.setBookingIds(bookingIds);
+            passenger.setPreferredClass(codesFor(version).read(in));
+            return passenger;
+        }
+    };
+
+    public static final ColdStore.Codec<Admin> ADMIN = new ColdStore.Codec<>() {
+        @Override
+        public void write(DataOutput out, Admin admin) throws IOException {
+            writeAccount(out, admin);
+            CODES.write(out, admin.getAdminLevel());
+            writeString(out, admin.getDepartment());
+        }
+
+        @Override
+        public Admin read(DataInput in) throws IOException {
+            int version = readVersion(in, ACCOUNT_VERSION, "account");
+            Admin admin = readAccount(in, new Admin());
+            admin.setAdminLevel(codesFor(version).read(in));
+            admin.setDepartment(readString(in));
+            return admin;
+        }
+    };
+
+    public static final ColdStore.Codec<AirlineStaff> STAFF = new ColdStore.Codec<>() {
+        @Override
+        public void write(DataOutput out, AirlineStaff staff) throws IOException {
+            writeAccount(out, staff);
+            writeString(out, staff.getStaffId());
+            CODES.write(out, staff.getRole());
+            writeString(out, staff.getAssignedGate());
+        }
+
+        @Override
+        public AirlineStaff read(DataInput in) throws IOException {
+            int version = readVersion(in, ACCOUNT_VERSION, "account");
+            AirlineStaff staff = readAccount(in, new AirlineStaff());
+            staff.setStaffId(readString(in));
+            staff.setRole(codesFor(version).read(in));
+            staff.setAssignedGate(readString(in));
+            return staff;
+        }
+    };
+
+    public static final ColdStore.Codec<TransactionLog> TRANSACTION_LOG = new ColdStore.Codec<>() {
+        @Override
+        public void write(DataOutput out, TransactionLog log) throws IOException {
+            writeVarInt(out, LOG_VERSION);
+            writeString(out, log.getLogId());
+            CODES.write(out, log.getType());
+            writeString(out, log.getEntityId());
+            writeString(out, log.getDescription());
+            writeDate(out, log.getTimestamp());
+        }
+
+        @Override
+        public TransactionLog read(DataInput in) throws IOException {
+            int version = readVersion(in, LOG_VERSION, "transaction log");
+            SymbolTable codes = codesFor(version);
+            return new TransactionLog(readString(in), codes.read(in), readString(in), readString(in), readDate(in));
+        }
+    };
+
+    private ArchiveCodecs() {
+    }
+
+    /**
+     * Encode an entity at the buffer's position, advancing it
+     * @throws java.nio.BufferOverflowException if the entity does not fit
+     */
+    public static <T> void encode(ColdStore.Codec<T> codec, T value, ByteBuffer buffer) {
+        try {
+            codec.write(new ByteBufferOutput(buffer), value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decode an entity at the buffer's position, advancing it past the entity
+     */
+    public static <T> T decode(ColdStore.Codec<T> codec, ByteBuffer buffer) {
+        try {
+            return codec.read(new ByteBufferInput(buffer));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt entity", e);
+        }
+    }
+
+    private static void writeAccount(DataOutput out, UserAccount account) throws IOException {
+        writeVarInt(out, ACCOUNT_VERSION);
+        writeString(out, account.getUserId());
+        writeString(out, account.getName());
+        writeString(out, account.getEmail());
+        writeString(out, account.getPassword());
+        writeString(out, account.getPhoneNumber());
+        writeDate(out, account.getCreatedAt());
+        writeDate(out, account.getLastLogin());
+        writeVarInt(out, account.getFailedLoginAttempts());
+        out.writeBoolean(account.isAccountLocked());
+    }
+
+    // The caller reads the version first, as the fields after the account depend on it too
+    private static <A extends UserAccount> A readAccount(DataInput in, A account) throws IOException {
+        account.setUserId(readString(in));
+        account.setName(readString(in));
+        account.setEmail(readString(in));
+        account.setPassword(readString(in));
+        account.setPhoneNumber(readString(in));
+        account.setCreatedAt(readDate(in));
+        account.setLastLogin(readDate(in));
+        account.setFailedLoginAttempts(readVarInt(in));
+        account.setAccountLocked(in.readBoolean());
+        return account;
+    }
+
+    // The table a layout version took the system's own codes from
+    private static SymbolTable codesFor(int version) {
+        return version < SPLIT_SYMBOLS_VERSION ? LEGACY_SYMBOLS : CODES;
+    }
+
+    private static int readVersion(DataInput in, int current, String type) throws IOException {
+        int version = readVarInt(in);
+        if (version < 1 || version > current) {
+            throw new IOException("Unsupported " + type + " layout version " + version
+                    + " (this build reads up to " + current + ")");
+        }
+        return version;
+    }
+
+    // Zigzag, so small negative numbers stay short, then seven bits per byte, high bit set on all but the last
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        if (value != (int) value) {
+            throw new IOException("Varint out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    // Byte length + 1, or 0 for null, then UTF-8
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Whole cents shifted left with a 0 flag, or a 1 flag followed by the raw double
+    private static void writeAmount(DataOutput out, double value) throws IOException {
+        double cents = value * 100;
+        long whole = (long) cents;
+        if (whole == cents && Math.abs(whole) < MAX_CENTS && whole / 100.0 == value
+                && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0)) {
+            writeVarLong(out, whole << 1);
+        } else {
+            writeVarLong(out, 1);
+            out.writeDouble(value);
+        }
+    }
+
+    private static double readAmount(DataInput in) throws IOException {
+        long tag = readVarLong(in);
+        if ((tag & 1) != 0) {
+            return in.readDouble();
+        }
+        return (tag >> 1) / 100.0;
+    }
+
+    // 0 for null, else seconds from the epoch shifted left with a has-nanoseconds flag, moved one away from 0
+    private static void writeDate(DataOutput out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        long seconds = value.toEpochSecond(ZoneOffset.UTC) - EPOCH_SECOND;
+        int nanos = value.getNano();
+        writeVarLong(out, ((seconds << 1) | (nanos != 0 ? 1 : 0)) + (seconds >= 0 ? 1 : -1));
+        if (nanos != 0) {
+            writeVarInt(out, nanos);
+        }
+    }
+
+    private static LocalDateTime readDate(DataInput in) throws IOException {
+        long tag = readVarLong(in);
+        if (tag == 0) {
+            return null;
+        }
+        long packed = tag > 0 ? tag - 1 : tag + 1;
+        int nanos = (packed & 1) != 0 ? readVarInt(in) : 0;
+        return LocalDateTime.ofEpochSecond((packed >> 1) + EPOCH_SECOND, nanos, ZoneOffset.UTC);
+    }
+
+    /**
+     * An append-only vocabulary. A value is written as 0 for null, 1 for a string written
+     * out, or its position in the table + 2.
+     */
+    private static final class SymbolTable {
+        private final String[] symbols;
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        SymbolTable(String... symbols) {
+            this.symbols = symbols;
+            for (int i = 0; i < symbols.length; i++) {
+                codes.put(symbols[i], i);
+            }
+        }
+
+        void write(DataOutput out, String value) throws IOException {
+            if (value == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            Integer code = codes.get(value);
+            if (code != null) {
+                writeVarInt(out, code + 2);
+            } else {
+                writeVarInt(out, 1);
+                writeString(out, value);
+            }
+        }
+
+        String read(DataInput in) throws IOException {
+            int tag = readVarInt(in);
+            if (tag == 0) {
+                return null;
+            }
+            if (tag == 1) {
+                return readString(in);
+            }
+            if (tag - 2 >= symbols.length) {
+                throw new IOException("Unknown symbol code " + (tag - 2));
+            }
+            return symbols[tag - 2];
+        }
+    }
+}
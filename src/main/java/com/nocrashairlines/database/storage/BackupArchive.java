@@ -0,0 +1,322 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.util.IdGenerator;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Backups on disk (FR-24, NFR-4). Each backup is a directory named after a time-ordered
+ * id, holding one gzip-compressed file per entity type:
+ * <pre>
+ * magic, then (PUT, id, entity) and (DELETE, id) records, END, record count, CRC32C of everything before it
+ * </pre>
+ * A full backup holds every entity. An incremental one names the backup it follows and
+ * holds only the entities changed or deleted since, so restoring it means reading its
+ * full base and then every incremental backup after it, in order.
+ *
+ * Files are written into a temporary directory that only gets its final name once every
+ * file is complete and fsynced, so a crash never leaves a partial backup behind. After each
+ * backup only the newest ones are kept, along with the backups they build on.
+ */
+public final class BackupArchive {
+    public static final String DIRECTORY_PROPERTY = "nocrashairlines.backup.dir";
+    public static final String RETAIN_PROPERTY = "nocrashairlines.backup.retain";
+    static final int DEFAULT_RETAIN = 7;
+    // Next to the write-ahead log's directory, when no directory is set
+    static final String DEFAULT_DIRECTORY = "backups";
+    private static final int MAGIC = 0x4E434250; // "NCBP"
+    private static final byte END = 0;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final String BACKUP_PREFIX = "backup-";
+    private static final String TABLE_SUFFIX = ".bin.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Holds the name of the previous backup in an incremental one
+    private static final String PARENT_FILE = "parent";
+
+    private final Path directory;
+    private final int retain;
+
+    public BackupArchive(Path directory, int retain) {
+        if (retain < 1) {
+            throw new IllegalArgumentException("At least one backup must be kept");
+        }
+        this.directory = directory;
+        this.retain = retain;
+    }
+
+    /**
+     * Backups in the {@value #DIRECTORY_PROPERTY} directory, or by default in a backups
+     * directory next to the write-ahead log's, keeping the newest {@value #RETAIN_PROPERTY}
+     * (default 7)
+     * @param walDirectory the write-ahead log's directory, or null if there is none
+     * @return null if no directory is set and there is no write-ahead log, so backups stay in memory
+     */
+    public static BackupArchive fromSystemProperties(Path walDirectory) {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        Path path;
+        if (directory != null && !directory.isBlank()) {
+            path = Path.of(directory);
+        } else if (walDirectory != null) {
+            path = walDirectory.toAbsolutePath().resolveSibling(DEFAULT_DIRECTORY);
+        } else {
+            return null;
+        }
+        return new BackupArchive(path, Integer.getInteger(RETAIN_PROPERTY, DEFAULT_RETAIN));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getRetain() {
+        return retain;
+    }
+
+    /**
+     * Create the temporary directory of a new backup, to fill with {@link #writeTable}
+     * and then pass to {@link #complete} or {@link #abandon}
+     * @param parent the backup an incremental backup follows, complete or not, or null for a full backup
+     */
+    public Path begin(Path parent) {
+        Path temp = directory.resolve(BACKUP_PREFIX + IdGenerator.getInstance().nextString() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(temp);
+            if (parent != null) {
+                // The parent may still be being written, under its temporary name
+                String name = parent.getFileName().toString();
+                Files.writeString(temp.resolve(PARENT_FILE), name.endsWith(TEMP_SUFFIX)
+                        ? name.substring(0, name.length() - TEMP_SUFFIX.length()) : name);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create backup directory " + temp, e);
+        }
+        return temp;
+    }
+
+    /**
+     * Get the backup an incremental backup follows
+     * @return null for a full backup
+     */
+    public Path parentOf(Path backup) {
+        Path file = backup.resolve(PARENT_FILE);
+        try {
+            return Files.exists(file) ? backup.resolveSibling(Files.readString(file).trim()) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read backup " + backup, e);
+        }
+    }
+
+    /**
+     * Get the backups to read, in order, to restore the newest backup that can be restored:
+     * a full backup followed by every incremental backup up to the newest
+     * @return an empty list if no backup is complete
+     */
+    public List<Path> restoreChain() {
+        List<Path> backups = backups();
+        for (int i = backups.size() - 1; i >= 0; i--) {
+            List<Path> chain = chainOf(backups.get(i));
+            if (chain != null) {
+                return chain;
+            }
+        }
+        return List.of();
+    }
+
+    // The backups from the full base up to this one, or null if one of them is missing
+    private List<Path> chainOf(Path backup) {
+        LinkedList<Path> chain = new LinkedList<>();
+        for (Path current = backup; current != null; current = parentOf(current)) {
+            if (!Files.isDirectory(current) || chain.contains(current)) {
+                return null;
+            }
+            chain.addFirst(current);
+        }
+        return chain;
+    }
+
+    /**
+     * Write one entity type of a backup, counting each entity written in progress
+     * @param entities calls its argument with every id and entity to back up; a null
+     *                 entity records that the id was deleted
+     * @return the number of records written
+     */
+    public <T> long writeTable(Path backup, String table, ColdStore.Codec<T> codec,
+                               Consumer<BiConsumer<String, T>> entities, LongAdder progress) {
+        Path file = backup.resolve(table + TABLE_SUFFIX);
+        CRC32C crc = new CRC32C();
+        try (FileOutputStream fileOut = new FileOutputStream(file.toFile());
+             GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(fileOut, 1 << 16), 1 << 16)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(gzip, crc), 1 << 16));
+            out.writeInt(MAGIC);
+            long[] count = new long[1];
+            entities.accept((id, entity) -> {
+                try {
+                    out.writeByte(entity == null ? DELETE : PUT);
+                    out.writeUTF(id);
+                    if (entity != null) {
+                        codec.write(out, entity);
+                    }
+                    count[0]++;
+                    progress.increment();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.writeByte(END);
+            out.writeLong(count[0]);
+            out.flush();
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            gzip.finish();
+            gzip.flush();
+            fileOut.getFD().sync();
+            return count[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write backup file " + file, e);
+        }
+    }
+
+    /**
+     * Give a backup its final name, then delete the backups older than the newest ones
+     * that can be restored (as many as the retention limit) that none of those builds on.
+     * A backup whose chain is broken does not count towards the limit; it is only kept
+     * while it is newer than a kept one, as its parent may still be being written.
+     * @return the backup's directory
+     */
+    public synchronized Path complete(Path temp) {
+        String name = temp.getFileName().toString();
+        Path target = temp.resolveSibling(name.substring(0, name.length() - TEMP_SUFFIX.length()));
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            List<Path> backups = backups();
+            Set<Path> kept = new HashSet<>();
+            int restorable = 0;
+            for (int i = backups.size() - 1; i >= 0 && restorable < retain; i--) {
+                Path recent = backups.get(i);
+                kept.add(recent);
+                List<Path> chain = chainOf(recent);
+                if (chain != null) {
+                    // Keep the whole chain a recent backup is restored from
+                    kept.addAll(chain);
+                    restorable++;
+                }
+            }
+            for (Path old : backups) {
+                if (!kept.contains(old)) {
+                    deleteRecursively(old);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot complete backup " + target, e);
+        }
+        return target;
+    }
+
+    /**
+     * Delete a backup that failed part way
+     */
+    public void abandon(Path temp) {
+        try {
+            deleteRecursively(temp);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete failed backup " + temp, e);
+        }
+    }
+
+    /**
+     * Complete backups, oldest first
+     */
+    public List<Path> backups() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(BACKUP_PREFIX) && !name.endsWith(TEMP_SUFFIX);
+            }).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list backups in " + directory, e);
+        }
+    }
+
+    /**
+     * @return the newest complete backup, or null if there is none
+     */
+    public Path latest() {
+        List<Path> backups = backups();
+        return backups.isEmpty() ? null : backups.get(backups.size() - 1);
+    }
+
+    /**
+     * Read one entity type of a backup, checking its checksum before returning
+     * @param action called with every id and entity, or with a null entity for a deleted id
+     * @return the number of records read
+     */
+    public <T> long readTable(Path backup, String table, ColdStore.Codec<T> codec, BiConsumer<String, T> action) {
+        Path file = backup.resolve(table + TABLE_SUFFIX);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), 1 << 16), 1 << 16), crc))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a backup file");
+            }
+            long count = 0;
+            for (byte op = in.readByte(); op != END; op = in.readByte()) {
+                if (op == PUT) {
+                    action.accept(in.readUTF(), codec.read(in));
+                } else if (op == DELETE) {
+                    action.accept(in.readUTF(), null);
+                } else {
+                    throw new IOException("Unknown backup record " + op);
+                }
+                count++;
+            }
+            long written = in.readLong();
+            int checksum = (int) crc.getValue();
+            if (in.readInt() != checksum || written != count) {
+                throw new IOException("Checksum mismatch");
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt backup file " + file, e);
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
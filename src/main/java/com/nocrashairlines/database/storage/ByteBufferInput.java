@@ -0,0 +1,110 @@
+package com.nocrashairlines.database.storage;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link DataInput} reading straight from a buffer, so records decode out of a mapped
+ * file or a WAL frame without copying them first. Reading advances the buffer's position.
+ */
+public final class ByteBufferInput implements DataInput {
+    private final ByteBuffer buffer;
+
+    public ByteBufferInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Number of bytes left to read
+     */
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    private ByteBuffer need(int bytes) throws EOFException {
+        if (buffer.remaining() < bytes) {
+            throw new EOFException();
+        }
+        return buffer;
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        need(len).get(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        int skipped = Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return need(1).get() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        return need(1).get();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return need(1).get() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        return need(2).getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return need(2).getShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return need(2).getChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return need(4).getInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return need(8).getLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return need(4).getFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return need(8).getDouble();
+    }
+
+    @Override
+    public String readLine() {
+        throw new UnsupportedOperationException("readLine");
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+}
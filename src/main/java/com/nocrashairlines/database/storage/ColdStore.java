@@ -0,0 +1,283 @@
+package com.nocrashairlines.database.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Archive tier for entities that are almost never read again (bookings and payments of
+ * flights that have departed). Entities are written in deflate-compressed blocks appended
+ * to a file, so they cost no heap; the only thing kept in memory is an id -> block map.
+ * Reads inflate the whole block and keep the last few decoded blocks, so reading several
+ * entities of one flight inflates it once.
+ *
+ * Blocks are never rewritten: removing or replacing an entity only drops its entry from
+ * the map. The map is persistent, so {@link #index()} is an O(1) snapshot of the store
+ * for backups, and {@link #restore} brings one back as long as the file is open.
+ * The file is temporary; nothing survives a restart.
+ *
+ * @param <T> entity type
+ */
+public final class ColdStore<T> implements AutoCloseable {
+    private static final int CACHED_BLOCKS = 16;
+
+    /**
+     * Binary form of one entity type inside a block
+     */
+    public interface Codec<T> {
+        void write(DataOutput out, T value) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    /**
+     * Position of a compressed block in the file
+     */
+    public record Block(long offset, int length) {}
+
+    private final String name;
+    private final Codec<T> codec;
+    private final AtomicReference<PersistentHashMap<Block>> index = new AtomicReference<>(PersistentHashMap.empty());
+    private final Map<Block, Map<String, T>> decoded = new LinkedHashMap<>(CACHED_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Block, Map<String, T>> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+    private Path file;
+    private FileChannel channel;
+    private long end;
+
+    /**
+     * @param name used to name the backing file, which is only created on the first write
+     */
+    public ColdStore(String name, Codec<T> codec) {
+        this.name = name;
+        this.codec = codec;
+    }
+
+    /**
+     * Compress entities into a new block. The block is not visible until each entity
+     * is {@link #publish published}, so callers can check one entity at a time that it has
+     * not changed since it was written here.
+     */
+    public Block write(Map<String, T> entities) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(entities.size());
+            for (Map.Entry<String, T> entry : entities.entrySet()) {
+                out.writeUTF(entry.getKey());
+                codec.write(out, entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode archive block", e);
+        }
+        return append(bytes.toByteArray());
+    }
+
+    private synchronized Block append(byte[] compressed) {
+        try {
+            if (channel == null) {
+                file = Files.createTempFile("nocrashairlines-" + name + "-", ".archive");
+                file.toFile().deleteOnExit();
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            Block block = new Block(end, compressed.length);
+            ByteBuffer buffer = ByteBuffer.wrap(compressed);
+            while (buffer.hasRemaining()) {
+                end += channel.write(buffer, end);
+            }
+            return block;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write archive " + name, e);
+        }
+    }
+
+    /**
+     * Make the archived copy of an entity visible. The block must have been written
+     * with an entity under this id.
+     */
+    public void publish(String id, Block block) {
+        index.updateAndGet(map -> map.put(id, block));
+    }
+
+    public T get(String id) {
+        return get(index.get(), id);
+    }
+
+    /**
+     * Read an entity as archived at the time of an earlier {@link #index()}
+     */
+    public T get(PersistentHashMap<Block> current, String id) {
+        if (id == null) {
+            return null;
+        }
+        Block block = current.get(id);
+        return block == null ? null : load(block).get(id);
+    }
+
+    public boolean contains(String id) {
+        return id != null && index.get().containsKey(id);
+    }
+
+    /**
+     * Block an entity is archived in
+     * @return null if it is not archived
+     */
+    public Block blockOf(String id) {
+        return id == null ? null : index.get().get(id);
+    }
+
+    /**
+     * Drop an entity from the archive
+     * @return the archived entity, or null if there was none
+     */
+    public T remove(String id) {
+        if (id == null) {
+            return null;
+        }
+        PersistentHashMap<Block> before = index.getAndUpdate(map -> map.remove(id));
+        Block block = before.get(id);
+        return block == null ? null : load(block).get(id);
+    }
+
+    public int size() {
+        return index.get().size();
+    }
+
+    /**
+     * Stream archived entities block by block, inflating each block once
+     */
+    public Stream<T> stream() {
+        return entries().map(Map.Entry::getValue);
+    }
+
+    /**
+     * Stream archived entities with their ids, block by block
+     */
+    public Stream<Map.Entry<String, T>> entries() {
+        PersistentHashMap<Block> current = index.get();
+        return blocksOf(current).stream()
+                .flatMap(block -> load(block).entrySet().stream()
+                        .filter(entry -> block.equals(current.get(entry.getKey()))));
+    }
+
+    public void forEach(BiConsumer<String, T> action) {
+        forEach(index.get(), action);
+    }
+
+    /**
+     * Visit the archived entities as of an earlier {@link #index()}, block by block.
+     * Blocks are never overwritten, so this sees exactly what was archived then.
+     */
+    public void forEach(PersistentHashMap<Block> current, BiConsumer<String, T> action) {
+        for (Block block : blocksOf(current)) {
+            load(block).forEach((id, value) -> {
+                if (block.equals(current.get(id))) {
+                    action.accept(id, value);
+                }
+            });
+        }
+    }
+
+    /**
+     * Visit the entities of one block that are still archived in it
+     */
+    public void forEach(Block block, BiConsumer<String, T> action) {
+        PersistentHashMap<Block> current = index.get();
+        load(block).forEach((id, value) -> {
+            if (block.equals(current.get(id))) {
+                action.accept(id, value);
+            }
+        });
+    }
+
+    private static Set<Block> blocksOf(PersistentHashMap<Block> map) {
+        Set<Block> blocks = new LinkedHashSet<>();
+        map.forEach((id, block) -> blocks.add(block));
+        return blocks;
+    }
+
+    public void clear() {
+        index.set(PersistentHashMap.empty());
+    }
+
+    /**
+     * Current id -> block map; an O(1) snapshot of the archive's contents
+     */
+    public PersistentHashMap<Block> index() {
+        return index.get();
+    }
+
+    /**
+     * Put back contents taken with {@link #index()}
+     */
+    public void restore(PersistentHashMap<Block> saved) {
+        index.set(saved);
+    }
+
+    private Map<String, T> load(Block block) {
+        synchronized (decoded) {
+            Map<String, T> entities = decoded.get(block);
+            if (entities != null) {
+                return entities;
+            }
+        }
+        Map<String, T> entities = decode(block);
+        synchronized (decoded) {
+            decoded.put(block, entities);
+        }
+        return entities;
+    }
+
+    private Map<String, T> decode(Block block) {
+        ByteBuffer buffer = ByteBuffer.allocate(block.length());
+        try {
+            FileChannel source;
+            synchronized (this) {
+                source = channel;
+            }
+            while (buffer.hasRemaining()) {
+                if (source.read(buffer, block.offset() + buffer.position()) < 0) {
+                    throw new EOFException("Archive block past the end of " + file);
+                }
+            }
+            try (DataInputStream in = new DataInputStream(
+                    new InflaterInputStream(new ByteArrayInputStream(buffer.array())))) {
+                int count = in.readInt();
+                Map<String, T> entities = new HashMap<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    String id = in.readUTF();
+                    entities.put(id, codec.read(in));
+                }
+                return Collections.unmodifiableMap(entities);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read archive " + name, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close archive " + name, e);
+        } finally {
+            channel = null;
+        }
+    }
+}
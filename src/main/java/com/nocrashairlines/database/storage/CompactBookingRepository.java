@@ -0,0 +1,492 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.Booking;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Booking repository that keeps bookings in columns of primitive arrays instead of objects.
+ * Repeated strings (flight, passenger details, status, class) are dictionary codes, counted
+ * per row so a dictionary only holds the values some booking still uses. Dates are epoch
+ * nanoseconds and seat numbers such as "12C" are packed into an int, so a booking costs
+ * its id plus roughly a hundred bytes instead of a dozen objects.
+ *
+ * Every read decodes a new, detached Booking. Handing out live views over the columns would
+ * let a booking change between a caller's check and its copy, which the version checks in
+ * SystemDatabase rely on never happening. Bookings must be saved under their own booking id.
+ */
+public class CompactBookingRepository implements EntityRepository<Booking> {
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // Packed seats: row << SEAT_ROW_SHIFT | (letter - 'A' + 1)
+    private static final int SEAT_ROW_SHIFT = 5;
+    private static final int MAX_PACKED_ROW = 999;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Codes are counted per row, so values drop out with the last row that uses them
+    private StringDictionary flightIds;
+    private StringDictionary passengerIds;
+    private StringDictionary passengerDetails;
+    private StringDictionary labels;
+
+    // Columns, one entry per row
+    private String[] ids;
+    private int[] passengerId;
+    private int[] flightId;
+    private int[] passengerName;
+    private int[] passengerEmail;
+    private int[] passengerPhone;
+    private int[] passportNumber;
+    private int[] seatNumber;
+    private int[] travelClass;
+    private int[] status;
+    private long[] bookingDate;
+    private long[] lastModified;
+    private String[] paymentId;
+    private double[] totalAmount;
+    private boolean[] checkedIn;
+    private String[] baggageTag;
+    private long[] version;
+
+    // Open-addressing id index: row + 1 per slot, 0 for empty
+    private int[] slots;
+    private int[] freeRows;
+    private int freeCount;
+    private int rowCount;
+    private int count;
+
+    public CompactBookingRepository() {
+        reset();
+    }
+
+    private void reset() {
+        flightIds = new StringDictionary();
+        passengerIds = new StringDictionary();
+        passengerDetails = new StringDictionary();
+        labels = new StringDictionary();
+        allocate(INITIAL_CAPACITY);
+        slots = new int[INITIAL_CAPACITY * 2];
+        freeRows = new int[0];
+        freeCount = 0;
+        rowCount = 0;
+        count = 0;
+    }
+
+    private void allocate(int capacity) {
+        ids = new String[capacity];
+        passengerId = new int[capacity];
+        flightId = new int[capacity];
+        passengerName = new int[capacity];
+        passengerEmail = new int[capacity];
+        passengerPhone = new int[capacity];
+        passportNumber = new int[capacity];
+        seatNumber = new int[capacity];
+        travelClass = new int[capacity];
+        status = new int[capacity];
+        bookingDate = new long[capacity];
+        lastModified = new long[capacity];
+        paymentId = new String[capacity];
+        totalAmount = new double[capacity];
+        checkedIn = new boolean[capacity];
+        baggageTag = new String[capacity];
+        version = new long[capacity];
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        passengerId = Arrays.copyOf(passengerId, capacity);
+        flightId = Arrays.copyOf(flightId, capacity);
+        passengerName = Arrays.copyOf(passengerName, capacity);
+        passengerEmail = Arrays.copyOf(passengerEmail, capacity);
+        passengerPhone = Arrays.copyOf(passengerPhone, capacity);
+        passportNumber = Arrays.copyOf(passportNumber, capacity);
+        seatNumber = Arrays.copyOf(seatNumber, capacity);
+        travelClass = Arrays.copyOf(travelClass, capacity);
+        status = Arrays.copyOf(status, capacity);
+        bookingDate = Arrays.copyOf(bookingDate, capacity);
+        lastModified = Arrays.copyOf(lastModified, capacity);
+        paymentId = Arrays.copyOf(paymentId, capacity);
+        totalAmount = Arrays.copyOf(totalAmount, capacity);
+        checkedIn = Arrays.copyOf(checkedIn, capacity);
+        baggageTag = Arrays.copyOf(baggageTag, capacity);
+        version = Arrays.copyOf(version, capacity);
+    }
+
+    @Override
+    public Booking findById(String id) {
+        if (id == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? null : decode(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(String id, Booking booking) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(id);
+            if (row < 0) {
+                row = newRow();
+                ids[row] = id;
+                insertSlot(id, row);
+                count++;
+            }
+            encode(row, booking);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Booking remove(String id) {
+        if (id == null) {
+            return null;
+        }
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(id);
+            if (slot < 0) {
+                return null;
+            }
+            int row = slots[slot] - 1;
+            Booking removed = decode(row);
+            deleteSlot(slot);
+            releaseCodes(row);
+            ids[row] = null;
+            paymentId[row] = null;
+            baggageTag[row] = null;
+            if (freeCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, Math.max(16, freeCount * 2));
+            }
+            freeRows[freeCount++] = row;
+            count--;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean exists(String id) {
+        if (id == null) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return rowOf(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int count() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Decodes every booking into a new list
+     */
+    @Override
+    public Collection<Booking> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Booking> all = new ArrayList<>(count);
+            for (int row = 0; row < rowCount; row++) {
+                if (ids[row] != null) {
+                    all.add(decode(row));
+                }
+            }
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Decodes one booking at a time, so a scan holds only the bookings it keeps
+     */
+    @Override
+    public Stream<Booking> stream() {
+        return IntStream.range(0, rowCountNow())
+                .mapToObj(this::decodeIfPresent)
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, Booking> action) {
+        int rows = rowCountNow();
+        for (int row = 0; row < rows; row++) {
+            Booking booking = decodeIfPresent(row);
+            if (booking != null) {
+                action.accept(booking.getBookingId(), booking);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int rowCountNow() {
+        lock.readLock().lock();
+        try {
+            return rowCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Booking decodeIfPresent(int row) {
+        lock.readLock().lock();
+        try {
+            return row < rowCount && ids[row] != null ? decode(row) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Rows
+
+    private int newRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        if (rowCount == ids.length) {
+            grow();
+        }
+        return rowCount++;
+    }
+
+    // The new codes are taken before the row's old ones are released, so unchanged values keep theirs
+    private void encode(int row, Booking booking) {
+        int newPassengerId = passengerIds.encode(booking.getPassengerId());
+        int newFlightId = flightIds.encode(booking.getFlightId());
+        int newPassengerName = passengerDetails.encode(booking.getPassengerName());
+        int newPassengerEmail = passengerDetails.encode(booking.getPassengerEmail());
+        int newPassengerPhone = passengerDetails.encode(booking.getPassengerPhone());
+        int newPassportNumber = passengerDetails.encode(booking.getPassportNumber());
+        int newSeatNumber = packSeat(booking.getSeatNumber());
+        int newTravelClass = labels.encode(booking.getTravelClass());
+        int newStatus = labels.encode(booking.getStatus());
+        releaseCodes(row);
+        passengerId[row] = newPassengerId;
+        flightId[row] = newFlightId;
+        passengerName[row] = newPassengerName;
+        passengerEmail[row] = newPassengerEmail;
+        passengerPhone[row] = newPassengerPhone;
+        passportNumber[row] = newPassportNumber;
+        seatNumber[row] = newSeatNumber;
+        travelClass[row] = newTravelClass;
+        status[row] = newStatus;
+        bookingDate[row] = toNanos(booking.getBookingDate());
+        lastModified[row] = toNanos(booking.getLastModified());
+        paymentId[row] = booking.getPaymentId();
+        totalAmount[row] = booking.getTotalAmount();
+        checkedIn[row] = booking.isCheckedIn();
+        baggageTag[row] = booking.getBaggageTag();
+        version[row] = booking.getVersion();
+    }
+
+    // Releases the dictionary codes a row holds and clears them; a new row holds none
+    private void releaseCodes(int row) {
+        passengerIds.release(passengerId[row]);
+        flightIds.release(flightId[row]);
+        passengerDetails.release(passengerName[row]);
+        passengerDetails.release(passengerEmail[row]);
+        passengerDetails.release(passengerPhone[row]);
+        passengerDetails.release(passportNumber[row]);
+        if (seatNumber[row] < 0) {
+            passengerDetails.release(-seatNumber[row]);
+        }
+        labels.release(travelClass[row]);
+        labels.release(status[row]);
+        passengerId[row] = 0;
+        flightId[row] = 0;
+        passengerName[row] = 0;
+        passengerEmail[row] = 0;
+        passengerPhone[row] = 0;
+        passportNumber[row] = 0;
+        seatNumber[row] = 0;
+        travelClass[row] = 0;
+        status[row] = 0;
+    }
+
+    /**
+     * Number of distinct strings the dictionaries hold for the bookings stored now
+     */
+    int dictionarySize() {
+        lock.readLock().lock();
+        try {
+            return flightIds.size() + passengerIds.size() + passengerDetails.size() + labels.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Booking decode(int row) {
+        Booking booking = new Booking(ids[row], passengerIds.decode(passengerId[row]),
+                flightIds.decode(flightId[row]), passengerDetails.decode(passengerName[row]),
+                labels.decode(travelClass[row]), totalAmount[row]);
+        booking.setPassengerEmail(passengerDetails.decode(passengerEmail[row]));
+        booking.setPassengerPhone(passengerDetails.decode(passengerPhone[row]));
+        booking.setPassportNumber(passengerDetails.decode(passportNumber[row]));
+        booking.setSeatNumber(unpackSeat(seatNumber[row]));
+        booking.setStatus(labels.decode(status[row]));
+        booking.setBookingDate(fromNanos(bookingDate[row]));
+        booking.setLastModified(fromNanos(lastModified[row]));
+        booking.setPaymentId(paymentId[row]);
+        booking.setCheckedIn(checkedIn[row]);
+        booking.setBaggageTag(baggageTag[row]);
+        booking.setVersion(version[row]);
+        return booking;
+    }
+
+    /**
+     * Pack "12C" style seats into an int; anything else goes to the dictionary as a negative code
+     */
+    private int packSeat(String seat) {
+        if (seat == null) {
+            return 0;
+        }
+        int length = seat.length();
+        if (length >= 2 && length <= 4) {
+            char letter = seat.charAt(length - 1);
+            int seatRow = 0;
+            boolean digits = letter >= 'A' && letter <= 'Z' && seat.charAt(0) != '0';
+            for (int i = 0; digits && i < length - 1; i++) {
+                char c = seat.charAt(i);
+                digits = c >= '0' && c <= '9';
+                seatRow = seatRow * 10 + (c - '0');
+            }
+            if (digits && seatRow <= MAX_PACKED_ROW) {
+                return (seatRow << SEAT_ROW_SHIFT) | (letter - 'A' + 1);
+            }
+        }
+        return -passengerDetails.encode(seat);
+    }
+
+    private String unpackSeat(int packed) {
+        if (packed == 0) {
+            return null;
+        }
+        if (packed < 0) {
+            return passengerDetails.decode(-packed);
+        }
+        return (packed >>> SEAT_ROW_SHIFT) + String.valueOf((char) ('A' + (packed & 31) - 1));
+    }
+
+    private static long toNanos(LocalDateTime time) {
+        if (time == null) {
+            return NO_DATE;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SECOND + time.getNano();
+    }
+
+    private static LocalDateTime fromNanos(long nanos) {
+        if (nanos == NO_DATE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(nanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+
+    // Id index (linear probing, kept at most half full)
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int slotOf(String id) {
+        int mask = slots.length - 1;
+        for (int slot = hash(id) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (ids[slots[slot] - 1].equals(id)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int rowOf(String id) {
+        int slot = slotOf(id);
+        return slot < 0 ? -1 : slots[slot] - 1;
+    }
+
+    private void insertSlot(String id, int row) {
+        if ((count + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        int mask = slots.length - 1;
+        int slot = hash(id) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = row + 1;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = slots;
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry : old) {
+            if (entry != 0) {
+                int slot = hash(ids[entry - 1]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = entry;
+            }
+        }
+    }
+
+    // Backward-shift deletion keeps every probe chain unbroken without tombstones
+    private void deleteSlot(int slot) {
+        int mask = slots.length - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (slots[next] == 0) {
+                break;
+            }
+            int home = hash(ids[slots[next] - 1]) & mask;
+            boolean canMove = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (canMove) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+        }
+        slots[hole] = 0;
+    }
+}
@@ -0,0 +1,61 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.*;
+
+/**
+ * Storage engine for very large booking volumes: bookings live in a {@link CompactBookingRepository}
+ * (columns of primitives and dictionary codes), every other entity type in a ConcurrentHashMap.
+ * Reads of bookings decode a new Booking each time, and snapshots copy everything.
+ * Nothing survives a restart.
+ */
+public class CompactStorageEngine implements StorageEngine {
+    public static final String NAME = "compact";
+
+    private final EntityRepository<Passenger> passengers = new InMemoryEntityRepository<>();
+    private final EntityRepository<Admin> admins = new InMemoryEntityRepository<>();
+    private final EntityRepository<AirlineStaff> airlineStaff = new InMemoryEntityRepository<>();
+    private final EntityRepository<Flight> flights = new InMemoryEntityRepository<>();
+    private final EntityRepository<Booking> bookings = new CompactBookingRepository();
+    private final EntityRepository<Payment> payments = new InMemoryEntityRepository<>();
+    private final TransactionLogRepository transactionLogs = new InMemoryTransactionLogRepository();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public EntityRepository<Passenger> passengers() {
+        return passengers;
+    }
+
+    @Override
+    public EntityRepository<Admin> admins() {
+        return admins;
+    }
+
+    @Override
+    public EntityRepository<AirlineStaff> airlineStaff() {
+        return airlineStaff;
+    }
+
+    @Override
+    public EntityRepository<Flight> flights() {
+        return flights;
+    }
+
+    @Override
+    public EntityRepository<Booking> bookings() {
+        return bookings;
+    }
+
+    @Override
+    public EntityRepository<Payment> payments() {
+        return payments;
+    }
+
+    @Override
+    public TransactionLogRepository transactionLogs() {
+        return transactionLogs;
+    }
+}
@@ -0,0 +1,67 @@
+package com.nocrashairlines.database.storage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Primary-key store for one entity type, provided by a {@link StorageEngine}.
+ * Secondary indexes, validation and transaction logging stay in SystemDatabase,
+ * so an engine only has to implement keyed reads and writes.
+ *
+ * @param <T> entity type
+ */
+public interface EntityRepository<T> {
+
+    /**
+     * Find an entity by its id
+     * @return the entity, or null if there is none
+     */
+    T findById(String id);
+
+    /**
+     * Insert or replace the entity stored under the id
+     */
+    void save(String id, T entity);
+
+    /**
+     * Remove the entity stored under the id
+     * @return the removed entity, or null if there was none
+     */
+    T remove(String id);
+
+    boolean exists(String id);
+
+    int count();
+
+    /**
+     * Get all entities. Engines return a weakly consistent, read-only view where
+     * they can and a copy otherwise; callers must not rely on either.
+     */
+    Collection<T> findAll();
+
+    /**
+     * Stream all entities without materializing them in a list first.
+     * The stream is lazy, so short-circuiting operations such as limit stop the scan early.
+     */
+    default Stream<T> stream() {
+        return findAll().stream();
+    }
+
+    /**
+     * Get at most {@code limit} entities matching the filter
+     */
+    default List<T> find(Predicate<? super T> filter, int limit) {
+        return stream().filter(filter).limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * Visit every (id, entity) pair
+     */
+    void forEach(BiConsumer<String, T> action);
+
+    void clear();
+}
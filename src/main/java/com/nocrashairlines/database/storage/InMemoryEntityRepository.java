@@ -0,0 +1,54 @@
+package com.nocrashairlines.database.storage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Default repository backed by a ConcurrentHashMap.
+ */
+public class InMemoryEntityRepository<T> implements EntityRepository<T> {
+    private final Map<String, T> entities = new ConcurrentHashMap<>();
+
+    @Override
+    public T findById(String id) {
+        return id == null ? null : entities.get(id);
+    }
+
+    @Override
+    public void save(String id, T entity) {
+        entities.put(id, entity);
+    }
+
+    @Override
+    public T remove(String id) {
+        return id == null ? null : entities.remove(id);
+    }
+
+    @Override
+    public boolean exists(String id) {
+        return id != null && entities.containsKey(id);
+    }
+
+    @Override
+    public int count() {
+        return entities.size();
+    }
+
+    @Override
+    public Collection<T> findAll() {
+        return Collections.unmodifiableCollection(entities.values());
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, T> action) {
+        entities.forEach(action);
+    }
+
+    @Override
+    public void clear() {
+        entities.clear();
+    }
+}
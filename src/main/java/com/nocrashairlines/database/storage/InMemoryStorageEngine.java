@@ -0,0 +1,60 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.*;
+
+/**
+ * Storage engine where every entity type lives in a ConcurrentHashMap on the heap.
+ * Faster concurrent writes than {@link PersistentStorageEngine}, but snapshots copy
+ * everything. Nothing survives a restart.
+ */
+public class InMemoryStorageEngine implements StorageEngine {
+    public static final String NAME = "memory";
+
+    private final EntityRepository<Passenger> passengers = new InMemoryEntityRepository<>();
+    private final EntityRepository<Admin> admins = new InMemoryEntityRepository<>();
+    private final EntityRepository<AirlineStaff> airlineStaff = new InMemoryEntityRepository<>();
+    private final EntityRepository<Flight> flights = new InMemoryEntityRepository<>();
+    private final EntityRepository<Booking> bookings = new InMemoryEntityRepository<>();
+    private final EntityRepository<Payment> payments = new InMemoryEntityRepository<>();
+    private final TransactionLogRepository transactionLogs = new InMemoryTransactionLogRepository();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public EntityRepository<Passenger> passengers() {
+        return passengers;
+    }
+
+    @Override
+    public EntityRepository<Admin> admins() {
+        return admins;
+    }
+
+    @Override
+    public EntityRepository<AirlineStaff> airlineStaff() {
+        return airlineStaff;
+    }
+
+    @Override
+    public EntityRepository<Flight> flights() {
+        return flights;
+    }
+
+    @Override
+    public EntityRepository<Booking> bookings() {
+        return bookings;
+    }
+
+    @Override
+    public EntityRepository<Payment> payments() {
+        return payments;
+    }
+
+    @Override
+    public TransactionLogRepository transactionLogs() {
+        return transactionLogs;
+    }
+}
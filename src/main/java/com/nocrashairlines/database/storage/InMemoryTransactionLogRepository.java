@@ -0,0 +1,111 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.TransactionLog;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Default transaction log: a lock-free, append-only segmented array.
+ * An append claims the next position with one atomic increment and then stores the entry
+ * in its slot, so writers never wait for each other. Segments are allocated on demand and
+ * installed with compare-and-set; the segment directory is allocated up front, so it never
+ * has to be resized under concurrent appends.
+ *
+ * Readers walk the log without locking and stop at the first slot whose append is still in
+ * flight, so every read sees a prefix of the log in append order.
+ */
+public class InMemoryTransactionLogRepository implements TransactionLogRepository {
+    private static final int SEGMENT_SHIFT = 14;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int MAX_SEGMENTS = 1 << 16;
+    private static final long CAPACITY = (long) MAX_SEGMENTS << SEGMENT_SHIFT;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<TransactionLog>> segments =
+            new AtomicReferenceArray<>(MAX_SEGMENTS);
+    private final AtomicLong claimed = new AtomicLong();
+
+    @Override
+    public void append(TransactionLog log) {
+        Objects.requireNonNull(log, "log");
+        long position = claimed.getAndIncrement();
+        if (position >= CAPACITY) {
+            throw new IllegalStateException("Transaction log is full (" + CAPACITY + " entries)");
+        }
+        segment((int) (position >>> SEGMENT_SHIFT)).set((int) (position & SEGMENT_MASK), log);
+    }
+
+    private AtomicReferenceArray<TransactionLog> segment(int index) {
+        AtomicReferenceArray<TransactionLog> segment = segments.get(index);
+        if (segment == null) {
+            AtomicReferenceArray<TransactionLog> created = new AtomicReferenceArray<>(SEGMENT_SIZE);
+            segment = segments.compareAndSet(index, null, created) ? created : segments.get(index);
+        }
+        return segment;
+    }
+
+    // Visits the published entries in append order until the visitor returns false
+    private void scan(Predicate<TransactionLog> visitor) {
+        long end = Math.min(claimed.get(), CAPACITY);
+        for (long position = 0; position < end; ) {
+            AtomicReferenceArray<TransactionLog> segment = segments.get((int) (position >>> SEGMENT_SHIFT));
+            if (segment == null) {
+                return;
+            }
+            long segmentEnd = Math.min(end, (position | SEGMENT_MASK) + 1);
+            for (; position < segmentEnd; position++) {
+                TransactionLog log = segment.get((int) (position & SEGMENT_MASK));
+                // An append still in flight; later entries wait for it
+                if (log == null || !visitor.test(log)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<TransactionLog> findAll() {
+        List<TransactionLog> all = new ArrayList<>(count());
+        scan(all::add);
+        return all;
+    }
+
+    @Override
+    public List<TransactionLog> findByType(String type) {
+        List<TransactionLog> found = new ArrayList<>();
+        scan(log -> {
+            if (log.getType().equals(type)) {
+                found.add(log);
+            }
+            return true;
+        });
+        return found;
+    }
+
+    @Override
+    public List<TransactionLog> find(Predicate<? super TransactionLog> filter, int limit) {
+        List<TransactionLog> found = new ArrayList<>();
+        if (limit <= 0) {
+            return found;
+        }
+        scan(log -> {
+            if (filter.test(log)) {
+                found.add(log);
+            }
+            return found.size() < limit;
+        });
+        return found;
+    }
+
+    /**
+     * Number of entries appended, including appends still in flight
+     */
+    @Override
+    public int count() {
+        return (int) Math.min(Math.min(claimed.get(), CAPACITY), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,289 @@
+package com.nocrashairlines.database.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Fixed-layout file of entities of one type, read through memory mapping:
+ * <pre>
+ * header   magic, format version
+ * records  length, CRC32C, id, entity ({@link ColdStore.Codec} format), each within one region
+ * table    record offsets sorted by id, 8-byte aligned
+ * footer   table offset, record count, CRC32C of the table, magic
+ * </pre>
+ * Opening maps the file and checks the footer and the offset table against its checksum,
+ * which reads 8 bytes per entity but no records. {@link #read} checks and decodes the
+ * record at a position of the table, so ranges of the file can be decoded on several
+ * threads at once; loading a checkpoint still decodes every record.
+ *
+ * A mapping is limited to 2 GB, so the file is mapped in 1 GB regions and the writer pads
+ * so that no record crosses a region boundary.
+ *
+ * @param <T> entity type
+ */
+public final class MappedCheckpointFile<T> implements AutoCloseable {
+    private static final int MAGIC = 0x4E434D50; // "NCMP"
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 8;
+    private static final int FOOTER_BYTES = 24;
+    static final int DEFAULT_REGION_SHIFT = 30;
+
+    private final Path file;
+    private final ColdStore.Codec<T> codec;
+    private final int regionShift;
+    private final MappedByteBuffer[] regions;
+    private final long tableOffset;
+    private final int size;
+
+    private MappedCheckpointFile(Path file, ColdStore.Codec<T> codec, int regionShift) throws IOException {
+        this.file = file;
+        this.codec = codec;
+        this.regionShift = regionShift;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES + FOOTER_BYTES) {
+                throw new IOException("Checkpoint file too short: " + file);
+            }
+            long regionBytes = 1L << regionShift;
+            regions = new MappedByteBuffer[(int) ((length + regionBytes - 1) >>> regionShift)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = (long) i << regionShift;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionBytes, length - start));
+            }
+            if (at(0).getInt() != MAGIC || at(4).getInt() != VERSION) {
+                throw new IOException("Not a checkpoint file: " + file);
+            }
+            // Every footer field is aligned to its size, so none crosses a region boundary
+            long footer = length - FOOTER_BYTES;
+            tableOffset = at(footer).getLong();
+            long count = at(footer + 8).getLong();
+            int checksum = at(footer + 16).getInt();
+            if (at(footer + 20).getInt() != MAGIC || count < 0 || count > Integer.MAX_VALUE
+                    || tableOffset + count * Long.BYTES != footer) {
+                throw new IOException("Incomplete checkpoint file: " + file);
+            }
+            size = (int) count;
+            CRC32C crc = new CRC32C();
+            ByteBuffer slot = ByteBuffer.allocate(Long.BYTES);
+            for (int i = 0; i < size; i++) {
+                crc.update(slot.clear().putLong(offsetAt(i)).flip());
+            }
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Corrupt offset table in checkpoint file: " + file);
+            }
+        }
+    }
+
+    /**
+     * Map a checkpoint file written by {@link #write}
+     */
+    public static <T> MappedCheckpointFile<T> open(Path file, ColdStore.Codec<T> codec) {
+        return open(file, codec, DEFAULT_REGION_SHIFT);
+    }
+
+    static <T> MappedCheckpointFile<T> open(Path file, ColdStore.Codec<T> codec, int regionShift) {
+        try {
+            return new MappedCheckpointFile<>(file, codec, regionShift);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open checkpoint file " + file, e);
+        }
+    }
+
+    /**
+     * Write entities to a checkpoint file and fsync it
+     * @return the number of entities written
+     */
+    public static <T> int write(Path file, ColdStore.Codec<T> codec, Function<T, String> idOf, Stream<T> entities) {
+        return write(file, codec, idOf, entities, DEFAULT_REGION_SHIFT);
+    }
+
+    static <T> int write(Path file, ColdStore.Codec<T> codec, Function<T, String> idOf, Stream<T> entities,
+                         int regionShift) {
+        record Entry(String id, long offset) {}
+        long regionBytes = 1L << regionShift;
+        List<Entry> entries = new ArrayList<>();
+        try (FileOutputStream fileOut = new FileOutputStream(file.toFile());
+             CountingOutputStream counted = new CountingOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            DataOutputStream out = new DataOutputStream(counted);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            RecordBuffer recordBytes = new RecordBuffer();
+            DataOutputStream record = new DataOutputStream(recordBytes);
+            for (T entity : (Iterable<T>) entities::iterator) {
+                String id = idOf.apply(entity);
+                recordBytes.reset();
+                record.writeUTF(id);
+                codec.write(record, entity);
+                int length = 2 * Integer.BYTES + recordBytes.size();
+                if (length > regionBytes) {
+                    throw new IOException("Entity too large for a checkpoint region: " + id);
+                }
+                long offset = counted.count;
+                long regionEnd = ((offset >>> regionShift) + 1) << regionShift;
+                if (offset + length > regionEnd) {
+                    padTo(out, counted, regionEnd);
+                    offset = regionEnd;
+                }
+                out.writeInt(recordBytes.size());
+                out.writeInt(recordBytes.checksum());
+                recordBytes.writeTo(out);
+                entries.add(new Entry(id, offset));
+            }
+            padTo(out, counted, (counted.count + Long.BYTES - 1) & -Long.BYTES);
+            long tableOffset = counted.count;
+            entries.sort(Comparator.comparing(Entry::id));
+            CRC32C crc = new CRC32C();
+            ByteBuffer slot = ByteBuffer.allocate(Long.BYTES);
+            for (Entry entry : entries) {
+                out.writeLong(entry.offset());
+                crc.update(slot.clear().putLong(entry.offset()).flip());
+            }
+            out.writeLong(tableOffset);
+            out.writeLong(entries.size());
+            out.writeInt((int) crc.getValue());
+            out.writeInt(MAGIC);
+            out.flush();
+            fileOut.getFD().sync();
+            return entries.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint file " + file, e);
+        } finally {
+            entities.close();
+        }
+    }
+
+    private static void padTo(DataOutputStream out, CountingOutputStream counted, long position) throws IOException {
+        while (counted.count < position) {
+            out.writeByte(0);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Number of entities in the file
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decode the entity at a position of the table (in id order)
+     * @throws UncheckedIOException if the record does not match its checksum
+     */
+    public T read(int index) {
+        try {
+            DataInput in = record(index);
+            DataInputStream.readUTF(in);
+            return codec.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt record in checkpoint file " + file, e);
+        }
+    }
+
+    /**
+     * Decode every entity, in id order
+     */
+    public Stream<T> stream() {
+        return IntStream.range(0, size).mapToObj(this::read);
+    }
+
+    private DataInput record(int index) throws IOException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        long offset = offsetAt(index);
+        ByteBuffer record = at(offset);
+        int length = record.getInt();
+        int checksum = record.getInt();
+        if (length < 0 || length > record.remaining()) {
+            throw new IOException("Bad record length at offset " + offset);
+        }
+        record.limit(record.position() + length);
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch in record at offset " + offset);
+        }
+        return new ByteBufferInput(record);
+    }
+
+    private long offsetAt(int index) {
+        return at(tableOffset + (long) index * Long.BYTES).getLong();
+    }
+
+    // A view of the mapped bytes from an absolute file position to the end of its region
+    private ByteBuffer at(long position) {
+        return regions[(int) (position >>> regionShift)].duplicate().position(positionIn(position));
+    }
+
+    private int positionIn(long position) {
+        return (int) (position & ((1L << regionShift) - 1));
+    }
+
+    /**
+     * Release the file. Mappings cannot be unmapped explicitly, the operating system
+     * unmaps the file once they are garbage collected, so do not use the reader after this.
+     */
+    @Override
+    public void close() {
+        Arrays.fill(regions, null);
+    }
+
+    // The encoded id and entity of one record
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        private final CRC32C crc = new CRC32C();
+
+        RecordBuffer() {
+            super(256);
+        }
+
+        int checksum() {
+            crc.reset();
+            crc.update(buf, 0, count);
+            return (int) crc.getValue();
+        }
+    }
+
+    private static final class CountingOutputStream extends java.io.FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
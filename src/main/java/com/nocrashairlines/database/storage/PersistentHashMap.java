@@ -0,0 +1,464 @@
+package com.nocrashairlines.database.storage;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash array mapped trie (HAMT) keyed by entity id.
+ * {@link #put} and {@link #remove} return a new map that shares every untouched node
+ * with this one, so an update costs O(log32 n) and keeping an old version costs nothing.
+ * Instances are safe to share between threads without locking.
+ *
+ * @param <V> value type
+ */
+public final class PersistentHashMap<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // 7 levels of 5 hash bits cover all 32, plus one collision level
+    private static final int MAX_DEPTH = 8;
+
+    private static final PersistentHashMap<?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node<V> root;
+    private final int size;
+
+    private PersistentHashMap(Node<V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentHashMap<V> empty() {
+        return (PersistentHashMap<V>) EMPTY;
+    }
+
+    public V get(String key) {
+        return key == null ? null : root.get(key, hash(key), 0);
+    }
+
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Get a map with the key bound to the value
+     * @return this map if the key is already bound to that exact value
+     */
+    public PersistentHashMap<V> put(String key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Keys and values must not be null");
+        }
+        boolean[] added = new boolean[1];
+        Node<V> newRoot = root.put(key, hash(key), value, 0, added);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Get a map without the key
+     * @return this map if the key is not present
+     */
+    public PersistentHashMap<V> remove(String key) {
+        if (key == null) {
+            return this;
+        }
+        Node<V> newRoot = root.remove(key, hash(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(BiConsumer<String, ? super V> action) {
+        for (Map.Entry<String, V> entry : entries()) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Read-only view of the entries, in no particular order
+     */
+    public Iterable<Map.Entry<String, V>> entries() {
+        return () -> new EntryIterator<>(root);
+    }
+
+    /**
+     * Read-only view of the values, in no particular order
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                EntryIterator<V> entries = new EntryIterator<>(root);
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return entries.next().getValue();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // Spread the string hash so ids sharing a prefix still fan out at the top levels
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int index(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    private abstract static class Node<V> {
+        abstract V get(String key, int hash, int shift);
+
+        /**
+         * @return this node if nothing changed
+         */
+        abstract Node<V> put(String key, int hash, V value, int shift, boolean[] added);
+
+        /**
+         * @return this node if the key is absent, null if the node became empty
+         */
+        abstract Node<V> remove(String key, int hash, int shift);
+
+        /**
+         * The only entry of a node that holds exactly one entry and no sub-nodes, else null.
+         * Such nodes are folded into their parent so the trie stays canonical.
+         */
+        abstract Leaf<V> singleLeaf();
+
+        abstract Object[] children();
+    }
+
+    private static final class Leaf<V> implements Map.Entry<String, V> {
+        final String key;
+        final int hash;
+        final V value;
+
+        Leaf(String key, int hash, V value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> entry
+                    && key.equals(entry.getKey()) && Objects.equals(value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Up to 32 slots, each holding a leaf or a sub-node; only occupied slots are stored
+     */
+    private static final class BitmapNode<V> extends Node<V> {
+        static final BitmapNode<?> EMPTY = new BitmapNode<>(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int position(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        V get(String key, int hash, int shift) {
+            int bit = 1 << index(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object entry = array[position(bit)];
+            if (entry instanceof Leaf) {
+                Leaf<V> leaf = (Leaf<V>) entry;
+                return leaf.getKey().equals(key) ? leaf.getValue() : null;
+            }
+            return ((Node<V>) entry).get(key, hash, shift + BITS);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<V> put(String key, int hash, V value, int shift, boolean[] added) {
+            int bit = 1 << index(hash, shift);
+            int pos = position(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] inserted = new Object[array.length + 1];
+                System.arraycopy(array, 0, inserted, 0, pos);
+                inserted[pos] = new Leaf<>(key, hash, value);
+                System.arraycopy(array, pos, inserted, pos + 1, array.length - pos);
+                return new BitmapNode<>(bitmap | bit, inserted);
+            }
+            Object entry = array[pos];
+            Object replacement;
+            if (entry instanceof Leaf) {
+                Leaf<V> leaf = (Leaf<V>) entry;
+                if (leaf.getKey().equals(key)) {
+                    if (leaf.getValue() == value) {
+                        return this;
+                    }
+                    replacement = new Leaf<>(key, hash, value);
+                } else {
+                    added[0] = true;
+                    replacement = merge(leaf, new Leaf<>(key, hash, value), shift + BITS);
+                }
+            } else {
+                Node<V> child = (Node<V>) entry;
+                Node<V> updated = child.put(key, hash, value, shift + BITS, added);
+                if (updated == child) {
+                    return this;
+                }
+                replacement = updated;
+            }
+            Object[] copy = array.clone();
+            copy[pos] = replacement;
+            return new BitmapNode<>(bitmap, copy);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<V> remove(String key, int hash, int shift) {
+            int bit = 1 << index(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int pos = position(bit);
+            Object entry = array[pos];
+            if (entry instanceof Leaf) {
+                if (!((Leaf<V>) entry).getKey().equals(key)) {
+                    return this;
+                }
+                return without(bit, pos);
+            }
+            Node<V> child = (Node<V>) entry;
+            Node<V> updated = child.remove(key, hash, shift + BITS);
+            if (updated == child) {
+                return this;
+            }
+            if (updated == null) {
+                return without(bit, pos);
+            }
+            Leaf<V> single = updated.singleLeaf();
+            Object[] copy = array.clone();
+            copy[pos] = single != null ? single : updated;
+            return new BitmapNode<>(bitmap, copy);
+        }
+
+        private Node<V> without(int bit, int pos) {
+            if (array.length == 1) {
+                return null;
+            }
+            Object[] removed = new Object[array.length - 1];
+            System.arraycopy(array, 0, removed, 0, pos);
+            System.arraycopy(array, pos + 1, removed, pos, array.length - pos - 1);
+            return new BitmapNode<>(bitmap & ~bit, removed);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Leaf<V> singleLeaf() {
+            return array.length == 1 && array[0] instanceof Leaf ? (Leaf<V>) array[0] : null;
+        }
+
+        @Override
+        Object[] children() {
+            return array;
+        }
+    }
+
+    /**
+     * Entries whose keys have the same full 32-bit hash
+     */
+    private static final class CollisionNode<V> extends Node<V> {
+        final int hash;
+        final Leaf<V>[] leaves;
+
+        CollisionNode(int hash, Leaf<V>[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        private int find(String key) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].getKey().equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        V get(String key, int hash, int shift) {
+            int i = hash == this.hash ? find(key) : -1;
+            return i < 0 ? null : leaves[i].getValue();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<V> put(String key, int hash, V value, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // Push this node one level down next to the new key
+                BitmapNode<V> parent = new BitmapNode<>(1 << index(this.hash, shift), new Object[] {this});
+                return parent.put(key, hash, value, shift, added);
+            }
+            int i = find(key);
+            Leaf<V>[] copy;
+            if (i < 0) {
+                added[0] = true;
+                copy = Arrays.copyOf(leaves, leaves.length + 1);
+                copy[leaves.length] = new Leaf<>(key, hash, value);
+            } else {
+                if (leaves[i].getValue() == value) {
+                    return this;
+                }
+                copy = leaves.clone();
+                copy[i] = new Leaf<>(key, hash, value);
+            }
+            return new CollisionNode<>(hash, copy);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<V> remove(String key, int hash, int shift) {
+            int i = hash == this.hash ? find(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+            if (leaves.length == 1) {
+                return null;
+            }
+            Leaf<V>[] removed = (Leaf<V>[]) new Leaf<?>[leaves.length - 1];
+            System.arraycopy(leaves, 0, removed, 0, i);
+            System.arraycopy(leaves, i + 1, removed, i, leaves.length - i - 1);
+            return new CollisionNode<>(hash, removed);
+        }
+
+        @Override
+        Leaf<V> singleLeaf() {
+            return leaves.length == 1 ? leaves[0] : null;
+        }
+
+        @Override
+        Object[] children() {
+            return leaves;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Node<V> merge(Leaf<V> a, Leaf<V> b, int shift) {
+        if (a.hash == b.hash) {
+            return new CollisionNode<>(a.hash, (Leaf<V>[]) new Leaf<?>[] {a, b});
+        }
+        int ia = index(a.hash, shift);
+        int ib = index(b.hash, shift);
+        if (ia == ib) {
+            return new BitmapNode<>(1 << ia, new Object[] {merge(a, b, shift + BITS)});
+        }
+        return new BitmapNode<>((1 << ia) | (1 << ib), ia < ib ? new Object[] {a, b} : new Object[] {b, a});
+    }
+
+    /**
+     * Depth-first walk with an explicit stack, so iteration never allocates per entry
+     */
+    private static final class EntryIterator<V> implements Iterator<Map.Entry<String, V>> {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Leaf<V> next;
+
+        EntryIterator(Node<?> root) {
+            arrays[0] = root.children();
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                if (positions[depth] == array.length) {
+                    depth--;
+                    continue;
+                }
+                Object entry = array[positions[depth]++];
+                if (entry instanceof Leaf) {
+                    next = (Leaf<V>) entry;
+                    return;
+                }
+                depth++;
+                arrays[depth] = ((Node<?>) entry).children();
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<V> current = next;
+            advance();
+            return current;
+        }
+    }
+}
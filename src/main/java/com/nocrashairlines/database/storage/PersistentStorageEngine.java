@@ -0,0 +1,171 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.*;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Default storage engine: every entity type lives in a {@link PersistentHashMap} on the heap,
+ * all behind a single root that writers replace with compare-and-set.
+ * {@link #snapshot()} is one read of that root and {@link #restore} one write, so backups
+ * are O(1) and a restore switches every repository at once. Nothing survives a restart.
+ */
+public class PersistentStorageEngine implements StorageEngine {
+    public static final String NAME = "persistent";
+
+    private final AtomicReference<StorageSnapshot> root = new AtomicReference<>(StorageSnapshot.EMPTY);
+
+    private final EntityRepository<Passenger> passengers =
+            new Repository<>(StorageSnapshot::passengers, StorageSnapshot::withPassengers);
+    private final EntityRepository<Admin> admins =
+            new Repository<>(StorageSnapshot::admins, StorageSnapshot::withAdmins);
+    private final EntityRepository<AirlineStaff> airlineStaff =
+            new Repository<>(StorageSnapshot::airlineStaff, StorageSnapshot::withAirlineStaff);
+    private final EntityRepository<Flight> flights =
+            new Repository<>(StorageSnapshot::flights, StorageSnapshot::withFlights);
+    private final EntityRepository<Booking> bookings =
+            new Repository<>(StorageSnapshot::bookings, StorageSnapshot::withBookings);
+    private final EntityRepository<Payment> payments =
+            new Repository<>(StorageSnapshot::payments, StorageSnapshot::withPayments);
+    private final TransactionLogRepository transactionLogs = new InMemoryTransactionLogRepository();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public EntityRepository<Passenger> passengers() {
+        return passengers;
+    }
+
+    @Override
+    public EntityRepository<Admin> admins() {
+        return admins;
+    }
+
+    @Override
+    public EntityRepository<AirlineStaff> airlineStaff() {
+        return airlineStaff;
+    }
+
+    @Override
+    public EntityRepository<Flight> flights() {
+        return flights;
+    }
+
+    @Override
+    public EntityRepository<Booking> bookings() {
+        return bookings;
+    }
+
+    @Override
+    public EntityRepository<Payment> payments() {
+        return payments;
+    }
+
+    @Override
+    public TransactionLogRepository transactionLogs() {
+        return transactionLogs;
+    }
+
+    @Override
+    public StorageSnapshot snapshot() {
+        return root.get();
+    }
+
+    @Override
+    public void restore(StorageSnapshot snapshot) {
+        root.set(snapshot);
+    }
+
+    /**
+     * One entity type's slot in the root. Reads see the map as of a single root read;
+     * findAll and stream therefore iterate a stable snapshot.
+     */
+    private final class Repository<T> implements EntityRepository<T> {
+        private final Function<StorageSnapshot, PersistentHashMap<T>> slot;
+        private final BiFunction<StorageSnapshot, PersistentHashMap<T>, StorageSnapshot> withSlot;
+
+        Repository(Function<StorageSnapshot, PersistentHashMap<T>> slot,
+                   BiFunction<StorageSnapshot, PersistentHashMap<T>, StorageSnapshot> withSlot) {
+            this.slot = slot;
+            this.withSlot = withSlot;
+        }
+
+        private PersistentHashMap<T> map() {
+            return slot.apply(root.get());
+        }
+
+        private void update(Function<PersistentHashMap<T>, PersistentHashMap<T>> change) {
+            while (true) {
+                StorageSnapshot current = root.get();
+                PersistentHashMap<T> map = slot.apply(current);
+                PersistentHashMap<T> updated = change.apply(map);
+                if (updated == map || root.compareAndSet(current, withSlot.apply(current, updated))) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public T findById(String id) {
+            return map().get(id);
+        }
+
+        @Override
+        public void save(String id, T entity) {
+            update(map -> map.put(id, entity));
+        }
+
+        @Override
+        public T remove(String id) {
+            if (id == null) {
+                return null;
+            }
+            while (true) {
+                StorageSnapshot current = root.get();
+                PersistentHashMap<T> map = slot.apply(current);
+                T removed = map.get(id);
+                if (removed == null
+                        || root.compareAndSet(current, withSlot.apply(current, map.remove(id)))) {
+                    return removed;
+                }
+            }
+        }
+
+        @Override
+        public boolean exists(String id) {
+            return map().containsKey(id);
+        }
+
+        @Override
+        public int count() {
+            return map().size();
+        }
+
+        @Override
+        public Collection<T> findAll() {
+            return map().values();
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return map().values().stream();
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, T> action) {
+            map().forEach(action);
+        }
+
+        @Override
+        public void clear() {
+            update(map -> PersistentHashMap.empty());
+        }
+    }
+}
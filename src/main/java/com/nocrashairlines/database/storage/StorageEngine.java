@@ -0,0 +1,54 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.*;
+
+/**
+ * Storage engine SPI behind SystemDatabase (FR-21 - FR-25).
+ * An engine provides one repository per entity type plus the transaction log.
+ * Engines are chosen at startup, see {@link StorageEngines}.
+ */
+public interface StorageEngine extends AutoCloseable {
+
+    /**
+     * Short name used to select the engine, e.g. "memory"
+     */
+    String getName();
+
+    EntityRepository<Passenger> passengers();
+
+    EntityRepository<Admin> admins();
+
+    EntityRepository<AirlineStaff> airlineStaff();
+
+    EntityRepository<Flight> flights();
+
+    EntityRepository<Booking> bookings();
+
+    EntityRepository<Payment> payments();
+
+    TransactionLogRepository transactionLogs();
+
+    /**
+     * Capture the entity repositories (not the transaction log) as they are now.
+     * The default copies everything; engines built on persistent structures return in O(1).
+     * Callers keep writers out while this runs if they need a consistent snapshot.
+     */
+    default StorageSnapshot snapshot() {
+        return StorageSnapshot.copyOf(this);
+    }
+
+    /**
+     * Put the entity repositories back to a snapshot taken from any engine.
+     * The default rewrites everything; engines built on persistent structures swap it in atomically.
+     */
+    default void restore(StorageSnapshot snapshot) {
+        snapshot.copyInto(this);
+    }
+
+    /**
+     * Release files, threads or other resources held by the engine
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,62 @@
+package com.nocrashairlines.database.storage;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Registry of storage engines, used to pick one at startup.
+ * The engine is selected with the system property {@value #ENGINE_PROPERTY}
+ * (default {@value PersistentStorageEngine#NAME}); its value is either a registered
+ * engine name or the class name of a StorageEngine with a public no-arg constructor.
+ */
+public final class StorageEngines {
+    public static final String ENGINE_PROPERTY = "nocrashairlines.storage.engine";
+
+    private static final Map<String, Supplier<StorageEngine>> ENGINES = new LinkedHashMap<>();
+
+    static {
+        register(PersistentStorageEngine.NAME, PersistentStorageEngine::new);
+        register(InMemoryStorageEngine.NAME, InMemoryStorageEngine::new);
+        register(CompactStorageEngine.NAME, CompactStorageEngine::new);
+    }
+
+    private StorageEngines() {
+    }
+
+    public static synchronized void register(String name, Supplier<StorageEngine> factory) {
+        ENGINES.put(name.toLowerCase(Locale.ROOT), factory);
+    }
+
+    /**
+     * Names of all registered engines, in registration order
+     */
+    public static synchronized List<String> names() {
+        return new ArrayList<>(ENGINES.keySet());
+    }
+
+    /**
+     * Create an engine by registered name or class name
+     */
+    public static StorageEngine create(String name) {
+        Supplier<StorageEngine> factory;
+        synchronized (StorageEngines.class) {
+            factory = ENGINES.get(name.toLowerCase(Locale.ROOT));
+        }
+        if (factory != null) {
+            return factory.get();
+        }
+        try {
+            Class<?> engineClass = Class.forName(name);
+            return (StorageEngine) engineClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Unknown storage engine: " + name, e);
+        }
+    }
+
+    /**
+     * Create the engine configured through the {@value #ENGINE_PROPERTY} system property
+     */
+    public static StorageEngine fromSystemProperties() {
+        return create(System.getProperty(ENGINE_PROPERTY, PersistentStorageEngine.NAME));
+    }
+}
@@ -0,0 +1,92 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable point-in-time copy of every entity repository of a {@link StorageEngine}
+ * (FR-24, NFR-4). The transaction log is not part of it.
+ * Later writes to the engine never change a snapshot, and restoring one puts the engine
+ * back exactly as it was.
+ */
+public record StorageSnapshot(PersistentHashMap<Passenger> passengers,
+                              PersistentHashMap<Admin> admins,
+                              PersistentHashMap<AirlineStaff> airlineStaff,
+                              PersistentHashMap<Flight> flights,
+                              PersistentHashMap<Booking> bookings,
+                              PersistentHashMap<Payment> payments) {
+
+    public static final StorageSnapshot EMPTY = new StorageSnapshot(PersistentHashMap.empty(),
+            PersistentHashMap.empty(), PersistentHashMap.empty(), PersistentHashMap.empty(),
+            PersistentHashMap.empty(), PersistentHashMap.empty());
+
+    /**
+     * Build a snapshot by copying every repository of an engine, O(n).
+     * Callers must keep writers out while this runs if they need a consistent result.
+     */
+    public static StorageSnapshot copyOf(StorageEngine engine) {
+        return new StorageSnapshot(copyOf(engine.passengers()), copyOf(engine.admins()),
+                copyOf(engine.airlineStaff()), copyOf(engine.flights()),
+                copyOf(engine.bookings()), copyOf(engine.payments()));
+    }
+
+    private static <T> PersistentHashMap<T> copyOf(EntityRepository<T> repository) {
+        Map<String, T> entities = new HashMap<>();
+        repository.forEach(entities::put);
+        PersistentHashMap<T> copy = PersistentHashMap.empty();
+        for (Map.Entry<String, T> entity : entities.entrySet()) {
+            copy = copy.put(entity.getKey(), entity.getValue());
+        }
+        return copy;
+    }
+
+    /**
+     * Replace the contents of every repository of an engine with this snapshot, O(n)
+     */
+    public void copyInto(StorageEngine engine) {
+        copyInto(passengers, engine.passengers());
+        copyInto(admins, engine.admins());
+        copyInto(airlineStaff, engine.airlineStaff());
+        copyInto(flights, engine.flights());
+        copyInto(bookings, engine.bookings());
+        copyInto(payments, engine.payments());
+    }
+
+    private static <T> void copyInto(PersistentHashMap<T> entities, EntityRepository<T> repository) {
+        repository.clear();
+        entities.forEach(repository::save);
+    }
+
+    /**
+     * Total number of entities across all repositories
+     */
+    public int entityCount() {
+        return passengers.size() + admins.size() + airlineStaff.size()
+                + flights.size() + bookings.size() + payments.size();
+    }
+
+    StorageSnapshot withPassengers(PersistentHashMap<Passenger> map) {
+        return new StorageSnapshot(map, admins, airlineStaff, flights, bookings, payments);
+    }
+
+    StorageSnapshot withAdmins(PersistentHashMap<Admin> map) {
+        return new StorageSnapshot(passengers, map, airlineStaff, flights, bookings, payments);
+    }
+
+    StorageSnapshot withAirlineStaff(PersistentHashMap<AirlineStaff> map) {
+        return new StorageSnapshot(passengers, admins, map, flights, bookings, payments);
+    }
+
+    StorageSnapshot withFlights(PersistentHashMap<Flight> map) {
+        return new StorageSnapshot(passengers, admins, airlineStaff, map, bookings, payments);
+    }
+
+    StorageSnapshot withBookings(PersistentHashMap<Booking> map) {
+        return new StorageSnapshot(passengers, admins, airlineStaff, flights, map, payments);
+    }
+
+    StorageSnapshot withPayments(PersistentHashMap<Payment> map) {
+        return new StorageSnapshot(passengers, admins, airlineStaff, flights, bookings, map);
+    }
+}
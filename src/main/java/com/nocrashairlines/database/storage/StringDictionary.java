@@ -0,0 +1,76 @@
+package com.nocrashairlines.database.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns strings to dense int codes so a column stores each distinct value once.
+ * Code 0 is null. Each code counts the rows that use it: {@link #encode} adds one and
+ * {@link #release} takes one away, and a code no row uses any more is dropped and reused,
+ * so high-cardinality values (passenger details) do not outlive their rows.
+ * Not thread-safe; the owning repository guards it.
+ */
+final class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] values = new String[16];
+    private int[] references = new int[16];
+    // Codes released by every row, reused before new ones
+    private int[] freeCodes = new int[0];
+    private int freeCount;
+    private int size = 1;
+
+    /**
+     * Get the code of a value, counting one more use of it
+     */
+    int encode(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer existing = codes.get(value);
+        if (existing != null) {
+            references[existing]++;
+            return existing;
+        }
+        int code;
+        if (freeCount > 0) {
+            code = freeCodes[--freeCount];
+        } else {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                references = Arrays.copyOf(references, size * 2);
+            }
+            code = size++;
+        }
+        values[code] = value;
+        references[code] = 1;
+        codes.put(value, code);
+        return code;
+    }
+
+    /**
+     * Count one use of a code less, dropping its value once nothing uses it
+     */
+    void release(int code) {
+        if (code == 0 || --references[code] > 0) {
+            return;
+        }
+        codes.remove(values[code]);
+        values[code] = null;
+        if (freeCount == freeCodes.length) {
+            freeCodes = Arrays.copyOf(freeCodes, Math.max(16, freeCount * 2));
+        }
+        freeCodes[freeCount++] = code;
+    }
+
+    String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * Number of distinct values in use
+     */
+    int size() {
+        return codes.size();
+    }
+}
@@ -0,0 +1,104 @@
+package com.nocrashairlines.database.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * One repository over a hot tier (the storage engine's repository) and a {@link ColdStore}.
+ * Each id lives in exactly one tier. Reads try hot first and fall back to cold; writes
+ * always go to the hot tier and drop any archived copy, so an archived entity is faulted
+ * back in the first time it changes. Entities only move to the cold tier through
+ * {@link #moveToCold}, and the caller must hold the entity's write lock for that.
+ *
+ * @param <T> entity type
+ */
+public class TieredRepository<T> implements EntityRepository<T> {
+    private final EntityRepository<T> hot;
+    private final ColdStore<T> cold;
+
+    public TieredRepository(EntityRepository<T> hot, ColdStore<T> cold) {
+        this.hot = hot;
+        this.cold = cold;
+    }
+
+    public EntityRepository<T> hot() {
+        return hot;
+    }
+
+    public ColdStore<T> cold() {
+        return cold;
+    }
+
+    /**
+     * Replace the hot copy of an entity with the one in an archive block written by
+     * {@link ColdStore#write}
+     */
+    public void moveToCold(String id, ColdStore.Block block) {
+        // Publish before removing, so a reader that misses the hot tier finds the cold one
+        cold.publish(id, block);
+        hot.remove(id);
+    }
+
+    @Override
+    public T findById(String id) {
+        T entity = hot.findById(id);
+        if (entity == null) {
+            entity = cold.get(id);
+        }
+        if (entity == null) {
+            // A write may have moved it from cold to hot between the two reads
+            entity = hot.findById(id);
+        }
+        return entity;
+    }
+
+    @Override
+    public void save(String id, T entity) {
+        hot.save(id, entity);
+        cold.remove(id);
+    }
+
+    @Override
+    public T remove(String id) {
+        T removed = hot.remove(id);
+        T archived = cold.remove(id);
+        return removed != null ? removed : archived;
+    }
+
+    @Override
+    public boolean exists(String id) {
+        return hot.exists(id) || cold.contains(id) || hot.exists(id);
+    }
+
+    @Override
+    public int count() {
+        return hot.count() + cold.size();
+    }
+
+    @Override
+    public Collection<T> findAll() {
+        List<T> all = new ArrayList<>(hot.findAll());
+        cold.forEach((id, entity) -> all.add(entity));
+        return all;
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return Stream.concat(hot.stream(), cold.stream());
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, T> action) {
+        hot.forEach(action);
+        cold.forEach(action);
+    }
+
+    @Override
+    public void clear() {
+        hot.clear();
+        cold.clear();
+    }
+}
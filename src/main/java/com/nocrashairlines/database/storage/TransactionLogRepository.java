@@ -0,0 +1,30 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.TransactionLog;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Append-only store for the transaction log (FR-23), provided by a {@link StorageEngine}.
+ */
+public interface TransactionLogRepository {
+
+    void append(TransactionLog log);
+
+    /**
+     * Get all log entries in append order
+     */
+    List<TransactionLog> findAll();
+
+    /**
+     * Get the log entries of one type in append order
+     */
+    List<TransactionLog> findByType(String type);
+
+    /**
+     * Get at most {@code limit} log entries matching the filter, in append order
+     */
+    List<TransactionLog> find(Predicate<? super TransactionLog> filter, int limit);
+
+    int count();
+}
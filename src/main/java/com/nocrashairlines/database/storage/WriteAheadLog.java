@@ -0,0 +1,491 @@
+package com.nocrashairlines.database.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of binary records in a directory of segment files. Each record is
+ * framed as its length, a CRC32C of the payload, then the payload. Records are numbered
+ * by log sequence number (LSN): the byte position just past the record's end, counted over
+ * all segments.
+ *
+ * {@link #append} only copies the record into an in-memory buffer, so it never touches
+ * the disk and can be called while holding locks. The disk work is in
+ * {@link #awaitDurable}, which waits (per the {@link Durability} mode) until a record has
+ * been written and fsynced. One write and one fsync cover everything appended before
+ * them, so concurrent writers share the cost of a flush (group commit).
+ *
+ * A torn record at the end of the last segment (a crash mid-write, or a tail the file
+ * system zero-filled) is dropped on {@link #replay}, and new records are written over it. Once a checkpoint holds
+ * everything up to some LSN, {@link #deleteSegmentsBefore} drops the segments it covers.
+ */
+public final class WriteAheadLog implements AutoCloseable {
+    public static final String DIRECTORY_PROPERTY = "nocrashairlines.wal.dir";
+    public static final String DURABILITY_PROPERTY = "nocrashairlines.wal.durability";
+    static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    private static final long ASYNC_FLUSH_MILLIS = 100;
+    private static final int HEADER_BYTES = 8;
+    // A zero-filled tail frames as empty records with a valid CRC, so no record is shorter
+    // than a commit sequence number and anything shorter reads as torn
+    static final int MIN_RECORD_BYTES = Long.BYTES;
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    /**
+     * When a writer's records are on disk
+     */
+    public enum Durability {
+        /** Each writer flushes and fsyncs before it returns (concurrent writers still share a flush) */
+        PER_OP,
+        /** Writers wait for the background flusher, which fsyncs everything pending in one go */
+        GROUPED,
+        /** Writers never wait; the flusher fsyncs every 100 ms, so a crash loses at most that much */
+        ASYNC
+    }
+
+    private final Path directory;
+    private final Durability durability;
+    private final long segmentBytes;
+
+    // Appends go into pending; a flush swaps it with the spare buffer and writes it out
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition flushNeeded = appendLock.newCondition();
+    private final Condition flushed = appendLock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appendedLsn;
+    private volatile long durableLsn;
+    private IOException failure;
+    private boolean closed;
+
+    // Disk state, flushing thread only (under flushLock)
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private FileChannel segment;
+    private long segmentBase;
+
+    private final Thread flusher;
+
+    /**
+     * Open the log in a directory, creating it if needed. Call {@link #replay} before
+     * appending, so new records go after the ones already there.
+     */
+    public WriteAheadLog(Path directory, Durability durability) {
+        this(directory, durability, DEFAULT_SEGMENT_BYTES);
+    }
+
+    WriteAheadLog(Path directory, Durability durability, long segmentBytes) {
+        this.directory = directory;
+        this.durability = durability;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create WAL directory " + directory, e);
+        }
+        if (durability == Durability.PER_OP) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::runFlusher, "wal-flusher");
+            flusher.setDaemon(true);
+        }
+    }
+
+    /**
+     * Open the log configured by the {@value #DIRECTORY_PROPERTY} and
+     * {@value #DURABILITY_PROPERTY} system properties
+     * @return null if no directory is set, so nothing is logged
+     */
+    public static WriteAheadLog fromSystemProperties() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null || directory.isBlank()) {
+            return null;
+        }
+        String mode = System.getProperty(DURABILITY_PROPERTY, Durability.GROUPED.name());
+        return new WriteAheadLog(Path.of(directory), Durability.valueOf(mode.trim().toUpperCase(Locale.ROOT)));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Read every intact record in the log, oldest first, then open it for appending.
+     * Must be called exactly once, before the first append.
+     * @param records called with each record's payload
+     */
+    public void replay(Consumer<ByteBuffer> records) {
+        replay(0, records);
+    }
+
+    /**
+     * Read the intact records past an LSN, oldest first, then open the log for appending.
+     * Must be called exactly once, before the first append.
+     * @param fromLsn LSN already covered by a checkpoint; the log never restarts below it
+     * @param records called with each record's payload
+     */
+    public void replay(long fromLsn, Consumer<ByteBuffer> records) {
+        replayWhile(fromLsn, record -> {
+            records.accept(record);
+            return true;
+        });
+    }
+
+    /**
+     * Read the intact records past an LSN, oldest first, until one is refused; that record
+     * and everything after it are cut off the log, as a torn write is. Then open the log
+     * for appending. Must be called exactly once, before the first append.
+     * @param fromLsn LSN already covered by a checkpoint; the log never restarts below it
+     * @param records called with each record's payload; false stops the replay there
+     */
+    public void replayWhile(long fromLsn, Predicate<ByteBuffer> records) {
+        flushLock.lock();
+        try {
+            if (segment != null) {
+                throw new IllegalStateException("WAL already replayed");
+            }
+            List<Path> segments = segments();
+            long base = fromLsn;
+            long end = fromLsn;
+            for (int i = 0; i < segments.size(); i++) {
+                Path path = segments.get(i);
+                base = baseOf(path);
+                long valid = replaySegment(path, base, fromLsn, records);
+                end = base + valid;
+                if (valid < Files.size(path)) {
+                    // Torn write or refused record: cut it off, and drop any later segments with it
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                        channel.truncate(valid);
+                    }
+                    for (Path later : segments.subList(i + 1, segments.size())) {
+                        Files.delete(later);
+                    }
+                    break;
+                }
+            }
+            if (end < fromLsn) {
+                // The checkpoint got ahead of what reached the disk; carry on past it
+                base = end = fromLsn;
+            }
+            openSegment(base, end);
+            appendLock.lock();
+            try {
+                appendedLsn = end;
+                durableLsn = end;
+            } finally {
+                appendLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay WAL in " + directory, e);
+        } finally {
+            flushLock.unlock();
+        }
+        if (flusher != null) {
+            flusher.start();
+        }
+    }
+
+    private long replaySegment(Path path, long base, long fromLsn, Predicate<ByteBuffer> records)
+            throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32C crc = new CRC32C();
+        while (data.remaining() >= HEADER_BYTES) {
+            int start = data.position();
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length < MIN_RECORD_BYTES || length > data.remaining()) {
+                return start;
+            }
+            ByteBuffer payload = data.slice(data.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return start;
+            }
+            data.position(data.position() + length);
+            if (base + data.position() > fromLsn && !records.test(payload.asReadOnlyBuffer())) {
+                return start;
+            }
+        }
+        return data.position();
+    }
+
+    /**
+     * Add a record to the log. It is not durable until {@link #awaitDurable} returns for
+     * the LSN this returns.
+     */
+    public long append(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("WAL is closed");
+            }
+            if (segment == null) {
+                throw new IllegalStateException("WAL must be replayed before appending");
+            }
+            if (payload.length < MIN_RECORD_BYTES) {
+                throw new IllegalArgumentException("WAL records are at least " + MIN_RECORD_BYTES + " bytes");
+            }
+            ensureCapacity(HEADER_BYTES + payload.length);
+            pending.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            appendedLsn += HEADER_BYTES + payload.length;
+            return appendedLsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            int capacity = Math.max(pending.capacity() * 2, pending.position() + bytes);
+            ByteBuffer grown = ByteBuffer.allocate(capacity);
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    /**
+     * Wait until the record at an LSN is on disk, as far as the durability mode asks for.
+     * Call it after releasing any locks, so other writers are not held up by the flush.
+     * @throws UncheckedIOException if writing the log failed
+     */
+    public void awaitDurable(long lsn) {
+        if (lsn <= durableLsn || durability == Durability.ASYNC) {
+            return;
+        }
+        if (durability == Durability.PER_OP) {
+            flush(lsn);
+            return;
+        }
+        appendLock.lock();
+        try {
+            flushNeeded.signal();
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new UncheckedIOException("WAL write failed", failure);
+                }
+                if (closed) {
+                    throw new IllegalStateException("WAL is closed");
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * LSN of the last record appended
+     */
+    public long appendedLsn() {
+        appendLock.lock();
+        try {
+            return appendedLsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * LSN up to which the log is known to be on disk
+     */
+    public long durableLsn() {
+        return durableLsn;
+    }
+
+    // Writes and fsyncs everything appended so far, unless lsn is already durable
+    private void flush(long lsn) {
+        flushLock.lock();
+        try {
+            if (lsn <= durableLsn) {
+                return;
+            }
+            ByteBuffer batch;
+            long batchEnd;
+            appendLock.lock();
+            try {
+                if (failure != null) {
+                    throw new UncheckedIOException("WAL write failed", failure);
+                }
+                if (appendedLsn == durableLsn) {
+                    return;
+                }
+                batch = pending;
+                batchEnd = appendedLsn;
+                pending = spare;
+                spare = batch;
+            } finally {
+                appendLock.unlock();
+            }
+            try {
+                batch.flip();
+                if (segment.position() >= segmentBytes) {
+                    // A batch never straddles two segments
+                    long start = batchEnd - batch.remaining();
+                    segment.close();
+                    openSegment(start, start);
+                }
+                while (batch.hasRemaining()) {
+                    segment.write(batch);
+                }
+                segment.force(false);
+                batch.clear();
+            } catch (IOException e) {
+                appendLock.lock();
+                try {
+                    failure = e;
+                    flushed.signalAll();
+                } finally {
+                    appendLock.unlock();
+                }
+                throw new UncheckedIOException("WAL write failed", e);
+            }
+            appendLock.lock();
+            try {
+                durableLsn = batchEnd;
+                flushed.signalAll();
+            } finally {
+                appendLock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            appendLock.lock();
+            try {
+                while (!closed && appendedLsn == durableLsn) {
+                    if (durability == Durability.ASYNC) {
+                        flushNeeded.await(ASYNC_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+                    } else {
+                        flushNeeded.await();
+                    }
+                }
+                if (closed || failure != null) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                appendLock.unlock();
+            }
+            try {
+                flush(Long.MAX_VALUE - 1);
+                if (durability == Durability.ASYNC) {
+                    Thread.sleep(ASYNC_FLUSH_MILLIS);
+                }
+            } catch (UncheckedIOException e) {
+                // Recorded in failure; waiting writers see it
+                return;
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Delete the segments that hold only records at or below an LSN. The segment being
+     * written to is always kept.
+     * @return the number of segments deleted
+     */
+    public int deleteSegmentsBefore(long lsn) {
+        flushLock.lock();
+        try {
+            List<Path> segments = segments();
+            int deleted = 0;
+            for (int i = 0; i + 1 < segments.size() && baseOf(segments.get(i + 1)) <= lsn; i++) {
+                if (baseOf(segments.get(i)) == segmentBase) {
+                    break;
+                }
+                Files.delete(segments.get(i));
+                deleted++;
+            }
+            return deleted;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete WAL segments in " + directory, e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long baseOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Opens the segment starting at base for appending, positioned at the log's end
+    private void openSegment(long base, long end) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segment.position(end - base);
+        segmentBase = base;
+    }
+
+    /**
+     * Flush everything appended and close the segment file. Later appends fail.
+     */
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            if (segment != null && failure == null) {
+                flush(Long.MAX_VALUE - 1);
+            }
+        } finally {
+            appendLock.lock();
+            try {
+                closed = true;
+                flushNeeded.signalAll();
+                flushed.signalAll();
+            } finally {
+                appendLock.unlock();
+            }
+            flushLock.lock();
+            try {
+                if (segment != null) {
+                    segment.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot close WAL segment", e);
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+}
@@ -17,6 +17,19 @@ public class Admin extends UserAccount {
         this.adminLevel = adminLevel;
     }
 
+    /**
+     * Get a detached copy to change and write back; stored admins are never changed in place
+     */
+    public Admin copy() {
+        Admin copy = new Admin(getUserId(), getName(), getEmail(), getPassword(), getPhoneNumber(), adminLevel);
+        copy.setCreatedAt(getCreatedAt());
+        copy.setLastLogin(getLastLogin());
+        copy.setFailedLoginAttempts(getFailedLoginAttempts());
+        copy.setAccountLocked(isAccountLocked());
+        copy.department = department;
+        return copy;
+    }
+
     // Getters and Setters
     public String getAdminLevel() {
         return adminLevel;
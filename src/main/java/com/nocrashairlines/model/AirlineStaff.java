@@ -20,6 +20,20 @@ public class AirlineStaff extends UserAccount {
         this.role = role;
     }
 
+    /**
+     * Get a detached copy to change and write back; stored staff accounts are never changed in place
+     */
+    public AirlineStaff copy() {
+        AirlineStaff copy = new AirlineStaff(getUserId(), getName(), getEmail(), getPassword(),
+                getPhoneNumber(), staffId, role);
+        copy.setCreatedAt(getCreatedAt());
+        copy.setLastLogin(getLastLogin());
+        copy.setFailedLoginAttempts(getFailedLoginAttempts());
+        copy.setAccountLocked(isAccountLocked());
+        copy.assignedGate = assignedGate;
+        return copy;
+    }
+
     // Getters and Setters
     public String getStaffId() {
         return staffId;
@@ -24,6 +24,7 @@ public class Booking {
     private double totalAmount;
     private boolean checkedIn;
     private String baggageTag;
+    private long version; // bumped by the database on every successful write
 
     public Booking() {
         this.bookingDate = LocalDateTime.now();
@@ -43,6 +44,25 @@ public class Booking {
         this.totalAmount = totalAmount;
     }
 
+    /**
+     * Get a detached copy to change and write back with a version check
+     */
+    public Booking copy() {
+        Booking copy = new Booking(bookingId, passengerId, flightId, passengerName, travelClass, totalAmount);
+        copy.passengerEmail = passengerEmail;
+        copy.passengerPhone = passengerPhone;
+        copy.passportNumber = passportNumber;
+        copy.seatNumber = seatNumber;
+        copy.status = status;
+        copy.bookingDate = bookingDate;
+        copy.lastModified = lastModified;
+        copy.paymentId = paymentId;
+        copy.checkedIn = checkedIn;
+        copy.baggageTag = baggageTag;
+        copy.version = version;
+        return copy;
+    }
+
     // Business methods
     public boolean canBeCancelled() {
         return "CONFIRMED".equals(status) || "PENDING".equals(status);
@@ -197,6 +217,14 @@ public class Booking {
         this.baggageTag = baggageTag;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -22,6 +22,7 @@ public class Flight {
     private Map<String, Double> classPrices; // Economy, Business, First Class
     private String status; // SCHEDULED, DELAYED, CANCELLED, DEPARTED, ARRIVED
     private String gate;
+    private long version; // bumped by the database on every successful write
 
     public Flight() {
         this.classPrices = new HashMap<>();
@@ -41,6 +42,20 @@ public class Flight {
         this.availableSeats = totalSeats;
     }
 
+    /**
+     * Get a detached copy to change and write back with a version check
+     */
+    public Flight copy() {
+        Flight copy = new Flight(flightId, flightNumber, origin, destination, departureTime, arrivalTime, totalSeats);
+        copy.aircraftType = aircraftType;
+        copy.availableSeats = availableSeats;
+        copy.classPrices = new HashMap<>(classPrices);
+        copy.status = status;
+        copy.gate = gate;
+        copy.version = version;
+        return copy;
+    }
+
     // Business methods
     public boolean hasAvailableSeats() {
         return availableSeats > 0;
@@ -172,6 +187,14 @@ public class Flight {
         this.gate = gate;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -25,6 +25,22 @@ public class Passenger extends UserAccount {
         this.bookingIds = new ArrayList<>();
     }
 
+    /**
+     * Get a detached copy to change and write back; stored passengers are never changed in place
+     */
+    public Passenger copy() {
+        Passenger copy = new Passenger(getUserId(), getName(), getEmail(), getPassword(),
+                getPhoneNumber(), passportNumber);
+        copy.setCreatedAt(getCreatedAt());
+        copy.setLastLogin(getLastLogin());
+        copy.setFailedLoginAttempts(getFailedLoginAttempts());
+        copy.setAccountLocked(isAccountLocked());
+        copy.address = address;
+        copy.bookingIds = new ArrayList<>(bookingIds);
+        copy.preferredClass = preferredClass;
+        return copy;
+    }
+
     // Getters and Setters
     public String getPassportNumber() {
         return passportNumber;
@@ -13,13 +13,14 @@ public class Payment {
     private String passengerId;
     private double amount;
     private String paymentMethod; // CREDIT_CARD, DEBIT_CARD, DIGITAL_WALLET, ONLINE_BANKING
-    private String status; // PENDING, SUCCESS, FAILED, REFUNDED
+    private String status; // PENDING, SUCCESS, FAILED, REFUND_PENDING, REFUNDED
     private LocalDateTime paymentDate;
     private String transactionReference;
     private String cardLastFourDigits;
     private boolean fraudDetected;
     private String refundReason;
     private LocalDateTime refundDate;
+    private long version; // bumped by the database on every successful write
 
     public Payment() {
         this.paymentDate = LocalDateTime.now();
@@ -37,6 +38,22 @@ public class Payment {
         this.paymentMethod = paymentMethod;
     }
 
+    /**
+     * Get a detached copy to change and write back with a version check
+     */
+    public Payment copy() {
+        Payment copy = new Payment(paymentId, bookingId, passengerId, amount, paymentMethod);
+        copy.status = status;
+        copy.paymentDate = paymentDate;
+        copy.transactionReference = transactionReference;
+        copy.cardLastFourDigits = cardLastFourDigits;
+        copy.fraudDetected = fraudDetected;
+        copy.refundReason = refundReason;
+        copy.refundDate = refundDate;
+        copy.version = version;
+        return copy;
+    }
+
     // Business methods
     public void markAsSuccess(String transactionReference) {
         this.status = "SUCCESS";
@@ -47,6 +64,29 @@ public class Payment {
         this.status = "FAILED";
     }
 
+    /**
+     * Claim a successful payment for a refund, so no other refund is sent for it.
+     * Until the refund completes, the refund date is when it was claimed.
+     */
+    public void markRefundPending(String reason) {
+        this.status = "REFUND_PENDING";
+        this.refundReason = reason;
+        this.refundDate = LocalDateTime.now();
+    }
+
+    /**
+     * Give up a refund claim when the gateway did not refund, back to SUCCESS
+     */
+    public void cancelRefund() {
+        this.status = "SUCCESS";
+        this.refundReason = null;
+        this.refundDate = null;
+    }
+
+    public boolean isRefundPending() {
+        return "REFUND_PENDING".equals(status);
+    }
+
     public void processRefund(String reason) {
         this.status = "REFUNDED";
         this.refundReason = reason;
@@ -158,6 +198,14 @@ public class Payment {
         this.refundDate = refundDate;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
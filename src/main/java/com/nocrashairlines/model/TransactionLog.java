@@ -0,0 +1,40 @@
+package com.nocrashairlines.model;
+
+import com.nocrashairlines.util.IdGenerator;
+import java.time.LocalDateTime;
+
+/**
+ * Represents an entry in the system transaction log.
+ * Supports FR-23 (Transaction Logging)
+ */
+public class TransactionLog {
+    private final String logId;
+    private final String type;
+    private final String entityId;
+    private final String description;
+    private final LocalDateTime timestamp;
+
+    public TransactionLog(String type, String entityId, String description) {
+        this(IdGenerator.getInstance().nextString(), type, entityId, description, LocalDateTime.now());
+    }
+
+    public TransactionLog(String logId, String type, String entityId, String description,
+                          LocalDateTime timestamp) {
+        this.logId = logId;
+        this.type = type;
+        this.entityId = entityId;
+        this.description = description;
+        this.timestamp = timestamp;
+    }
+
+    public String getLogId() { return logId; }
+    public String getType() { return type; }
+    public String getEntityId() { return entityId; }
+    public String getDescription() { return description; }
+    public LocalDateTime getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        return String.format("[%s] %s - %s: %s", timestamp, type, entityId, description);
+    }
+}
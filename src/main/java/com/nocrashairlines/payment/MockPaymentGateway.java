@@ -2,6 +2,7 @@ package com.nocrashairlines.payment;
 
 import com.nocrashairlines.model.Payment;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
 8 * Supports FR-26 through FR-30 (Payment Gateway functional requirements)
@@ -13,10 +14,12 @@ public class MockPaymentGateway implements PaymentGateway {
     ));
     
     private final Map<String, String> processedTransactions;
+    private final Set<String> refundedTransactions;
     private final Random random;
     
     public MockPaymentGateway() {
         this.processedTransactions = new HashMap<>();
+        this.refundedTransactions = ConcurrentHashMap.newKeySet();
         this.random = new Random();
     }
 
@@ -68,6 +71,11 @@ public class MockPaymentGateway implements PaymentGateway {
         return processedTransactions.containsKey(transactionReference);
     }
 
+    @Override
+    public boolean verifyRefund(String transactionReference) {
+        return transactionReference != null && refundedTransactions.contains(transactionReference);
+    }
+
     @Override
     public PaymentResult processRefund(Payment payment, String reason) {
         // FR-29: Refund Processing
@@ -84,11 +92,16 @@ public class MockPaymentGateway implements PaymentGateway {
             return new PaymentResult(false, "Invalid transaction reference");
         }
         
+        if (verifyRefund(payment.getTransactionReference())) {
+            return new PaymentResult(false, "Transaction already refunded");
+        }
+        
         try {
             // Simulate refund processing
             Thread.sleep(100);
             
             String refundRef = "REF-" + generateTransactionReference();
+            refundedTransactions.add(payment.getTransactionReference());
             payment.processRefund(reason);
             
             return new PaymentResult(true, refundRef, "Refund processed successfully");
@@ -151,6 +164,7 @@ public class MockPaymentGateway implements PaymentGateway {
      */
     public void clearTransactions() {
         processedTransactions.clear();
+        refundedTransactions.clear();
     }
 }
 
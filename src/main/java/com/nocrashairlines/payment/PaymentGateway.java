@@ -30,6 +30,13 @@ public interface PaymentGateway {
      */
     PaymentResult processRefund(Payment payment, String reason);
     
+    /**
+     * Check whether a payment has been refunded
+     * @param transactionReference Transaction reference of the original payment
+     * @return true if a refund of the transaction went through, false otherwise
+     */
+    boolean verifyRefund(String transactionReference);
+    
     /**
      * Detect potential fraud in a payment
      * @param payment Payment to check for fraud
@@ -1,11 +1,19 @@
 package com.nocrashairlines.service;
 
+import com.nocrashairlines.database.BackupJob;
+import com.nocrashairlines.database.Page;
+import com.nocrashairlines.database.PageCursor;
+import com.nocrashairlines.database.ReadSnapshot;
+import com.nocrashairlines.database.SortKey;
 import com.nocrashairlines.database.SystemDatabase;
 import com.nocrashairlines.model.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for administrative operations.
@@ -34,17 +42,24 @@ public class AdminService {
                            LocalDateTime departureTime, LocalDateTime arrivalTime,
                            String aircraftType, int totalSeats, String gate) {
         
-        Flight flight = flightService.addFlight(flightNumber, origin, destination,
-                                               departureTime, arrivalTime, aircraftType, totalSeats);
-        flight.setGate(gate);
-        
         // Set default prices for different classes
-        flight.setClassPrice("ECONOMY", 200.0);
-        flight.setClassPrice("BUSINESS", 500.0);
-        flight.setClassPrice("FIRST_CLASS", 1000.0);
+        Map<String, Double> prices = new LinkedHashMap<>();
+        prices.put("ECONOMY", 200.0);
+        prices.put("BUSINESS", 500.0);
+        prices.put("FIRST_CLASS", 1000.0);
         
-        flightService.updateFlight(flight);
-        return flight;
+        // Gate and prices are set before the save; the stored flight is never changed in place
+        return flightService.addFlight(flightNumber, origin, destination, departureTime, arrivalTime,
+                                       aircraftType, totalSeats, gate, prices);
+    }
+    
+    /**
+     * Import a season's schedule from a CSV or JSON Lines file in batches,
+     * skipping and reporting invalid rows
+     * FR-12: Flight Management
+     */
+    public FlightImportService.ImportReport importFlightSchedule(Path file) throws IOException {
+        return new FlightImportService().importFile(file);
     }
     
     /**
@@ -79,16 +94,33 @@ public class AdminService {
         return database.getAllBookings();
     }
     
+    /**
+     * Monitor bookings one page at a time, newest last
+     * FR-14: Booking Oversight
+     * @param after cursor from the previous page, or null for the first page
+     */
+    public Page<Booking> monitorBookings(PageCursor after, int pageSize) {
+        return database.getBookingsPage(SortKey.DATE, after, pageSize);
+    }
+    
     /**
      * Get bookings by status
      * FR-14: Booking Oversight
      */
     public List<Booking> getBookingsByStatus(String status) {
-        return database.getAllBookings().stream()
+        return database.streamBookings()
                 .filter(b -> b.getStatus().equals(status))
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Stream all bookings without copying them into a list
+     * FR-14: Booking Oversight
+     */
+    public Stream<Booking> streamAllBookings() {
+        return database.streamBookings();
+    }
+    
     /**
      * Manually update a booking
      * FR-14: Booking Oversight
@@ -104,10 +136,13 @@ public class AdminService {
      * FR-15: Report Generation and Analytics
      */
     public String generateDailySalesReport(LocalDateTime date) {
-        List<Payment> payments = database.getAllPayments().stream()
-                .filter(p -> p.getPaymentDate().toLocalDate().equals(date.toLocalDate()))
-                .filter(p -> "SUCCESS".equals(p.getStatus()))
-                .collect(Collectors.toList());
+        List<Payment> payments;
+        try (ReadSnapshot snapshot = database.openSnapshot()) {
+            payments = snapshot.streamPayments()
+                    .filter(p -> p.getPaymentDate().toLocalDate().equals(date.toLocalDate()))
+                    .filter(p -> "SUCCESS".equals(p.getStatus()))
+                    .collect(Collectors.toList());
+        }
         
         double totalRevenue = payments.stream()
                 .mapToDouble(Payment::getAmount)
@@ -136,29 +171,33 @@ public class AdminService {
      * Generate passenger trends report
      * FR-15: Report Generation and Analytics
      */
+    @SuppressWarnings("unchecked")
     public String generatePassengerTrendsReport() {
-        List<Passenger> passengers = database.getAllPassengers();
-        List<Booking> bookings = database.getAllBookings();
+        // Counts and the class breakdown come from the same snapshot so they add up
+        Map<String, Object> stats;
+        Map<String, Long> classCount;
+        try (ReadSnapshot snapshot = database.openSnapshot()) {
+            stats = snapshot.getSystemStatistics();
+            classCount = snapshot.streamBookings()
+                    .filter(b -> "CONFIRMED".equals(b.getStatus()))
+                    .collect(Collectors.groupingBy(Booking::getTravelClass, TreeMap::new, Collectors.counting()));
+        }
         
         StringBuilder report = new StringBuilder();
         report.append("========================================\n");
         report.append("     PASSENGER TRENDS REPORT\n");
         report.append("========================================\n\n");
-        report.append("Total Registered Passengers: ").append(passengers.size()).append("\n");
-        report.append("Total Bookings: ").append(bookings.size()).append("\n\n");
+        report.append("Total Registered Passengers: ").append(stats.get("totalPassengers")).append("\n");
+        report.append("Total Bookings: ").append(stats.get("totalBookings")).append("\n\n");
         
         // Booking status breakdown
         report.append("Booking Status Breakdown:\n");
-        Map<String, Long> statusCount = bookings.stream()
-                .collect(Collectors.groupingBy(Booking::getStatus, Collectors.counting()));
+        Map<String, Long> statusCount = (Map<String, Long>) stats.get("bookingsByStatus");
         statusCount.forEach((status, count) -> 
             report.append("  ").append(status).append(": ").append(count).append("\n"));
         
         // Travel class preferences
         report.append("\nTravel Class Preferences:\n");
-        Map<String, Long> classCount = bookings.stream()
-                .filter(b -> "CONFIRMED".equals(b.getStatus()))
-                .collect(Collectors.groupingBy(Booking::getTravelClass, Collectors.counting()));
         classCount.forEach((travelClass, count) -> 
             report.append("  ").append(travelClass).append(": ").append(count).append("\n"));
         
@@ -172,18 +211,18 @@ public class AdminService {
      * FR-15: Report Generation and Analytics
      */
     public String generateMostBookedRoutesReport() {
-        List<Booking> confirmedBookings = database.getAllBookings().stream()
-                .filter(b -> "CONFIRMED".equals(b.getStatus()))
-                .collect(Collectors.toList());
-        
         Map<String, Integer> routeCount = new HashMap<>();
         
-        for (Booking booking : confirmedBookings) {
-            Flight flight = database.getFlightById(booking.getFlightId());
-            if (flight != null) {
-                String route = flight.getOrigin() + " → " + flight.getDestination();
-                routeCount.put(route, routeCount.getOrDefault(route, 0) + 1);
-            }
+        try (ReadSnapshot snapshot = database.openSnapshot()) {
+            snapshot.streamBookings()
+                    .filter(b -> "CONFIRMED".equals(b.getStatus()))
+                    .forEach(booking -> {
+                        Flight flight = snapshot.getFlightById(booking.getFlightId());
+                        if (flight != null) {
+                            String route = flight.getOrigin() + " → " + flight.getDestination();
+                            routeCount.merge(route, 1, Integer::sum);
+                        }
+                    });
         }
         
         // Sort by count descending
@@ -207,12 +246,34 @@ public class AdminService {
         return report.toString();
     }
     
+    /**
+     * Get live system statistics (O(1), counters are maintained on every write)
+     * FR-15: Report Generation and Analytics
+     */
+    public Map<String, Object> getSystemStatistics() {
+        return database.getSystemStatistics();
+    }
+    
+    /**
+     * Get system statistics that all agree with each other, computed from one snapshot.
+     * Slower than {@link #getSystemStatistics()}: it reads every passenger, flight, booking and payment.
+     * FR-15: Report Generation and Analytics
+     */
+    public Map<String, Object> getConsistentSystemStatistics() {
+        try (ReadSnapshot snapshot = database.openSnapshot()) {
+            return snapshot.getSystemStatistics();
+        }
+    }
+    
     /**
      * Generate comprehensive system statistics report
      * FR-15: Report Generation and Analytics
      */
     public String generateSystemStatisticsReport() {
-        Map<String, Object> stats = database.getSystemStatistics();
+        Map<String, Object> stats;
+        try (ReadSnapshot snapshot = database.openSnapshot()) {
+            stats = snapshot.getSystemStatistics();
+        }
         
         StringBuilder report = new StringBuilder();
         report.append("========================================\n");
@@ -229,7 +290,8 @@ public class AdminService {
         report.append("BOOKINGS:\n");
         report.append("  Total Bookings: ").append(stats.get("totalBookings")).append("\n");
         report.append("  Confirmed Bookings: ").append(stats.get("confirmedBookings")).append("\n");
-        report.append("  Cancelled Bookings: ").append(stats.get("cancelledBookings")).append("\n\n");
+        report.append("  Cancelled Bookings: ").append(stats.get("cancelledBookings")).append("\n");
+        report.append("  By Status: ").append(stats.get("bookingsByStatus")).append("\n\n");
         
         report.append("REVENUE:\n");
         report.append("  Total Revenue: $").append(String.format("%.2f", stats.get("totalRevenue"))).append("\n\n");
@@ -243,25 +305,25 @@ public class AdminService {
      * Generate flight occupancy report
      */
     public String generateFlightOccupancyReport() {
-        List<Flight> flights = database.getAllFlights();
-        
         StringBuilder report = new StringBuilder();
         report.append("========================================\n");
         report.append("     FLIGHT OCCUPANCY REPORT\n");
         report.append("========================================\n\n");
         
-        for (Flight flight : flights) {
-            int occupiedSeats = flight.getTotalSeats() - flight.getAvailableSeats();
-            double occupancyRate = (occupiedSeats * 100.0) / flight.getTotalSeats();
-            
-            report.append("Flight: ").append(flight.getFlightNumber()).append("\n");
-            report.append("  Route: ").append(flight.getOrigin()).append(" → ")
-                  .append(flight.getDestination()).append("\n");
-            report.append("  Departure: ").append(flight.getDepartureTime().format(DATE_FORMATTER)).append("\n");
-            report.append("  Occupancy: ").append(occupiedSeats).append("/")
-                  .append(flight.getTotalSeats()).append(" (")
-                  .append(String.format("%.1f", occupancyRate)).append("%)\n");
-            report.append("  Status: ").append(flight.getStatus()).append("\n\n");
+        try (ReadSnapshot snapshot = database.openSnapshot()) {
+            snapshot.streamFlights().forEach(flight -> {
+                int occupiedSeats = flight.getTotalSeats() - flight.getAvailableSeats();
+                double occupancyRate = (occupiedSeats * 100.0) / flight.getTotalSeats();
+                
+                report.append("Flight: ").append(flight.getFlightNumber()).append("\n");
+                report.append("  Route: ").append(flight.getOrigin()).append(" → ")
+                      .append(flight.getDestination()).append("\n");
+                report.append("  Departure: ").append(flight.getDepartureTime().format(DATE_FORMATTER)).append("\n");
+                report.append("  Occupancy: ").append(occupiedSeats).append("/")
+                      .append(flight.getTotalSeats()).append(" (")
+                      .append(String.format("%.1f", occupancyRate)).append("%)\n");
+                report.append("  Status: ").append(flight.getStatus()).append("\n\n");
+            });
         }
         
         report.append("========================================\n");
@@ -270,11 +332,12 @@ public class AdminService {
     }
     
     /**
-     * Perform database backup
+     * Perform database backup. Returns as soon as the backup is taken; it is written to
+     * disk in the background, so callers on the UI thread are not held up.
      * FR-24: Data Backup & Recovery
      */
-    public void performDatabaseBackup() {
-        database.performBackup();
+    public BackupJob performDatabaseBackup() {
+        return database.performBackup();
     }
     
     /**
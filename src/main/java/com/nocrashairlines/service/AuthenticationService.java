@@ -3,6 +3,7 @@ package com.nocrashairlines.service;
 import com.nocrashairlines.database.SystemDatabase;
 import com.nocrashairlines.exception.AuthenticationException;
 import com.nocrashairlines.model.*;
+import com.nocrashairlines.util.IdGenerator;
 import com.nocrashairlines.util.PasswordValidator;
 import com.nocrashairlines.util.ValidationResult;
 import java.time.LocalDateTime;
@@ -37,7 +38,7 @@ public class AuthenticationService {
         }
         
         // Check if email already exists
-        if (database.getPassengerByEmail(email) != null) {
+        if (database.isPassengerEmailRegistered(email)) {
             throw new AuthenticationException("Email already registered");
         }
         
@@ -54,9 +55,12 @@ public class AuthenticationService {
         Passenger passenger = new Passenger(userId, name, email, hashedPassword, 
                                            phoneNumber, passportNumber);
         
-        // Save to database
+        // Save to database (the email claim is atomic, so a concurrent
+        // registration with the same email makes this save fail)
         if (database.savePassenger(passenger)) {
             return passenger;
+        } else if (database.isPassengerEmailRegistered(email)) {
+            throw new AuthenticationException("Email already registered");
         } else {
             throw new AuthenticationException("Failed to register passenger");
         }
@@ -73,11 +77,13 @@ public class AuthenticationService {
             throw new AuthenticationException("Email and password are required");
         }
         
-        Passenger passenger = database.getPassengerByEmail(email);
+        Passenger stored = database.getPassengerByEmail(email);
         
-        if (passenger == null) {
+        if (stored == null) {
             throw new AuthenticationException("Invalid email or password");
         }
+        // Login attempts are recorded on a copy, which becomes the caller's session object
+        Passenger passenger = stored.copy();
         
         // Check if account is locked (NFR-6)
         if (passenger.isAccountLocked()) {
@@ -118,11 +124,13 @@ public class AuthenticationService {
             throw new AuthenticationException("Email and password are required");
         }
         
-        Admin admin = database.getAdminByEmail(email);
+        Admin stored = database.getAdminByEmail(email);
         
-        if (admin == null) {
+        if (stored == null) {
             throw new AuthenticationException("Invalid email or password");
         }
+        // Login attempts are recorded on a copy, which becomes the caller's session object
+        Admin admin = stored.copy();
         
         if (admin.isAccountLocked()) {
             throw new AuthenticationException("Account is locked. Please contact system administrator.");
@@ -152,11 +160,13 @@ public class AuthenticationService {
             throw new AuthenticationException("Email and password are required");
         }
         
-        AirlineStaff staff = database.getAirlineStaffByEmail(email);
+        AirlineStaff stored = database.getAirlineStaffByEmail(email);
         
-        if (staff == null) {
+        if (stored == null) {
             throw new AuthenticationException("Invalid email or password");
         }
+        // Login attempts are recorded on a copy, which becomes the caller's session object
+        AirlineStaff staff = stored.copy();
         
         if (staff.isAccountLocked()) {
             throw new AuthenticationException("Account is locked. Please contact administrator.");
@@ -202,25 +212,34 @@ public class AuthenticationService {
             throw new AuthenticationException(validation.getMessage());
         }
         
-        // Update password
-        user.setPassword(hashPassword(newPassword));
-        
-        if (user instanceof Passenger) {
-            return database.updatePassenger((Passenger) user);
-        } else if (user instanceof Admin) {
-            return database.saveAdmin((Admin) user);
-        } else if (user instanceof AirlineStaff) {
-            return database.saveAirlineStaff((AirlineStaff) user);
+        // Update password on a copy, and on the caller's session object once it is saved
+        String hashedNewPassword = hashPassword(newPassword);
+        boolean saved;
+        if (user instanceof Passenger passenger) {
+            Passenger updated = passenger.copy();
+            updated.setPassword(hashedNewPassword);
+            saved = database.updatePassenger(updated);
+        } else if (user instanceof Admin admin) {
+            Admin updated = admin.copy();
+            updated.setPassword(hashedNewPassword);
+            saved = database.saveAdmin(updated);
+        } else if (user instanceof AirlineStaff staff) {
+            AirlineStaff updated = staff.copy();
+            updated.setPassword(hashedNewPassword);
+            saved = database.saveAirlineStaff(updated);
+        } else {
+            return false;
         }
-        
-        return false;
+        if (saved) {
+            user.setPassword(hashedNewPassword);
+        }
+        return saved;
     }
 
     // Helper methods
 
     private String generateUserId(String prefix) {
-        return prefix + "-" + System.currentTimeMillis() + "-" +
-               (int)(Math.random() * 1000);
+        return prefix + "-" + IdGenerator.getInstance().nextString();
     }
     
     /**
@@ -0,0 +1,138 @@
+package com.nocrashairlines.service;
+
+import com.nocrashairlines.database.SystemDatabase;
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.util.HashedWheelTimer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Seat holds of unpaid bookings. Creating a booking takes its seat at once, so every new
+ * booking is held for a limited time (the hold TTL); a booking still PENDING when its hold
+ * runs out is cancelled and its seat released. Confirming or cancelling the booking
+ * releases the hold. Holds are kept in a {@link HashedWheelTimer}, and the bookings whose
+ * holds run out in the same tick are expired as one batch. Holds live only in memory: at
+ * startup, and after every restore, the PENDING bookings are held again for what is left
+ * of their TTL since they were booked.
+ *
+ * The TTL is read from the {@value #HOLD_TTL_PROPERTY} system property as an ISO-8601
+ * duration (default 15 minutes, e.g. {@code PT15M}).
+ */
+public final class BookingHolds {
+    public static final String HOLD_TTL_PROPERTY = "nocrashairlines.booking.holdTtl";
+    static final Duration DEFAULT_HOLD_TTL = Duration.ofMinutes(15);
+    private static final Duration TICK = Duration.ofSeconds(1);
+    private static final int TICKS_PER_WHEEL = 1024;
+
+    private static BookingHolds instance;
+
+    private final Duration ttl;
+    private final HashedWheelTimer<String> timer;
+    private final Map<String, HashedWheelTimer.Timeout<String>> holds = new ConcurrentHashMap<>();
+    private volatile Consumer<List<String>> onExpired = bookingIds -> {};
+
+    BookingHolds(Duration ttl, Duration tick) {
+        this.ttl = ttl;
+        this.timer = new HashedWheelTimer<>("booking-holds", tick, TICKS_PER_WHEEL, this::expired);
+    }
+
+    /**
+     * Get the shared holds, expiring bookings through a {@link BookingService}
+     */
+    public static synchronized BookingHolds getInstance() {
+        if (instance == null) {
+            instance = new BookingHolds(ttlFromSystemProperties(), TICK);
+            BookingService expirer = new BookingService(instance);
+            instance.onExpired(expirer::expireBookings);
+            SystemDatabase database = SystemDatabase.getInstance();
+            BookingHolds holds = instance;
+            holds.holdPending(database.streamPendingBookings());
+            database.addRestoreListener(() -> holds.holdPending(database.streamPendingBookings()));
+        }
+        return instance;
+    }
+
+    private static Duration ttlFromSystemProperties() {
+        String value = System.getProperty(HOLD_TTL_PROPERTY);
+        return value == null ? DEFAULT_HOLD_TTL : Duration.parse(value);
+    }
+
+    void onExpired(Consumer<List<String>> onExpired) {
+        this.onExpired = onExpired;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Start (or restart) the hold on a booking's seat
+     */
+    public void hold(String bookingId) {
+        hold(bookingId, ttl);
+    }
+
+    /**
+     * Hold recovered or restored PENDING bookings for the rest of their TTL, counted from
+     * their booking date (never more than the TTL); those already past it expire on the
+     * next tick
+     */
+    public void holdPending(Stream<Booking> bookings) {
+        LocalDateTime now = LocalDateTime.now();
+        bookings.forEach(booking -> {
+            Duration age = booking.getBookingDate() == null || booking.getBookingDate().isAfter(now)
+                    ? Duration.ZERO : Duration.between(booking.getBookingDate(), now);
+            hold(booking.getBookingId(), age.compareTo(ttl) >= 0 ? Duration.ZERO : ttl.minus(age));
+        });
+    }
+
+    private void hold(String bookingId, Duration remaining) {
+        HashedWheelTimer.Timeout<String> previous = holds.put(bookingId, timer.schedule(bookingId, remaining));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Release the hold on a booking, so it no longer expires
+     * @return false if the booking had no hold
+     */
+    public boolean release(String bookingId) {
+        HashedWheelTimer.Timeout<String> hold = holds.remove(bookingId);
+        return hold != null && hold.cancel();
+    }
+
+    public boolean isHeld(String bookingId) {
+        return holds.containsKey(bookingId);
+    }
+
+    /**
+     * Number of bookings currently held
+     */
+    public int size() {
+        return holds.size();
+    }
+
+    private void expired(List<String> bookingIds) {
+        bookingIds.removeIf(id -> {
+            HashedWheelTimer.Timeout<String> hold = holds.get(id);
+            // Released, or held again since this timeout was scheduled
+            return hold == null || !hold.isExpired() || !holds.remove(id, hold);
+        });
+        if (bookingIds.isEmpty()) {
+            return;
+        }
+        try {
+            onExpired.accept(bookingIds);
+        } catch (RuntimeException e) {
+            // Hold them again rather than keep their seats forever
+            bookingIds.forEach(this::hold);
+            throw e;
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package com.nocrashairlines.service;
 
+import com.nocrashairlines.database.Page;
+import com.nocrashairlines.database.PageCursor;
+import com.nocrashairlines.database.SortKey;
 import com.nocrashairlines.database.SystemDatabase;
+import com.nocrashairlines.database.UnitOfWork;
 import com.nocrashairlines.exception.BookingException;
 import com.nocrashairlines.model.Booking;
 import com.nocrashairlines.model.Flight;
-import com.nocrashairlines.model.Passenger;
+import com.nocrashairlines.util.IdGenerator;
 import com.nocrashairlines.util.NotificationService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Service for booking operations.
@@ -16,18 +24,36 @@ import java.util.UUID;
  */
 public class BookingService {
     
+    // Attempts before giving up on a booking that keeps changing under us
+    static final int MAX_UPDATE_ATTEMPTS = 16;
+    
     private final SystemDatabase database;
     private final FlightService flightService;
     private final NotificationService notificationService;
+    private final BookingHolds holds;
     
     public BookingService() {
+        this(BookingHolds.getInstance());
+    }
+    
+    BookingService(BookingHolds holds) {
         this.database = SystemDatabase.getInstance();
         this.flightService = new FlightService();
         this.notificationService = new NotificationService();
+        this.holds = holds;
+    }
+    
+    /**
+     * A change to apply to a copy of a booking; throw to reject it
+     */
+    @FunctionalInterface
+    public interface BookingChange {
+        void apply(Booking booking) throws BookingException;
     }
     
     /**
-     * Create a new booking
+     * Create a new booking. Its seat is held for {@link BookingHolds#getTtl()}; if it has
+     * not been paid for by then, it is cancelled.
      * UC-2: Book Ticket
      * FR-4: Ticket Booking
      */
@@ -41,61 +67,57 @@ public class BookingService {
             throw new BookingException("INVALID_INPUT", "Required fields are missing");
         }
         
-        // Get flight
-        Flight flight = flightService.getFlightById(flightId);
-        if (flight == null) {
-            throw new BookingException("FLIGHT_NOT_FOUND", "Flight not found");
-        }
-        
-        // Check if flight has available seats
-        if (!flight.hasAvailableSeats()) {
-            throw new BookingException("NO_SEATS", "No seats available on this flight");
-        }
-        
-        // Check if flight is scheduled
-        if (!"SCHEDULED".equals(flight.getStatus())) {
-            throw new BookingException("FLIGHT_NOT_AVAILABLE", 
-                "Flight is not available for booking. Status: " + flight.getStatus());
-        }
-        
-        // Get price for travel class
-        Double price = flight.getClassPrice(travelClass);
-        if (price == null) {
-            throw new BookingException("INVALID_CLASS", "Invalid travel class: " + travelClass);
-        }
-        
-        // Create booking
-        String bookingId = generateBookingId();
-        Booking booking = new Booking(bookingId, passengerId, flightId, 
-                                     passengerName, travelClass, price);
-        booking.setPassengerEmail(passengerEmail);
-        booking.setPassengerPhone(passengerPhone);
-        booking.setPassportNumber(passportNumber);
-        
-        // Assign seat (simplified - in production, allow passenger to choose)
-        String seatNumber = assignSeat(flight, travelClass);
-        booking.setSeatNumber(seatNumber);
-        
-        // Reserve seat on flight
-        if (!flightService.reserveSeat(flightId)) {
-            throw new BookingException("SEAT_RESERVATION_FAILED", "Failed to reserve seat");
-        }
-        
-        // Save booking
-        if (database.saveBooking(booking)) {
-            // Update passenger's booking list
-            Passenger passenger = database.getPassengerById(passengerId);
-            if (passenger != null) {
-                passenger.addBooking(bookingId);
-                database.updatePassenger(passenger);
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            // Get flight
+            Flight flight = flightService.getFlightById(flightId);
+            if (flight == null) {
+                throw new BookingException("FLIGHT_NOT_FOUND", "Flight not found");
+            }
+            
+            // Check if flight has available seats
+            if (!flight.hasAvailableSeats()) {
+                throw new BookingException("NO_SEATS", "No seats available on this flight");
             }
             
-            return booking;
-        } else {
-            // Rollback seat reservation
-            flightService.releaseSeat(flightId);
-            throw new BookingException("BOOKING_FAILED", "Failed to create booking");
+            // Check if flight is scheduled
+            if (!"SCHEDULED".equals(flight.getStatus())) {
+                throw new BookingException("FLIGHT_NOT_AVAILABLE", 
+                    "Flight is not available for booking. Status: " + flight.getStatus());
+            }
+            
+            // Get price for travel class
+            Double price = flight.getClassPrice(travelClass);
+            if (price == null) {
+                throw new BookingException("INVALID_CLASS", "Invalid travel class: " + travelClass);
+            }
+            
+            // Create booking
+            String bookingId = generateBookingId();
+            Booking booking = new Booking(bookingId, passengerId, flightId, 
+                                         passengerName, travelClass, price);
+            booking.setPassengerEmail(passengerEmail);
+            booking.setPassengerPhone(passengerPhone);
+            booking.setPassportNumber(passportNumber);
+            
+            // Assign seat (simplified - in production, allow passenger to choose)
+            String seatNumber = assignSeat(flight, travelClass);
+            booking.setSeatNumber(seatNumber);
+            
+            // Reserve the seat, save the booking and link it to the passenger in one commit
+            Flight reserved = flight.copy();
+            reserved.reserveSeat();
+            boolean committed = database.beginUnitOfWork()
+                    .updateFlight(reserved)
+                    .saveBooking(booking)
+                    .addPassengerBooking(passengerId, bookingId)
+                    .commit();
+            if (committed) {
+                holds.hold(bookingId);
+                return booking;
+            }
+            // The flight changed since we read it; re-check seats and try again
         }
+        throw new BookingException("BOOKING_FAILED", "Failed to create booking, flight is too busy");
     }
     
     /**
@@ -103,24 +125,35 @@ public class BookingService {
      * FR-8: E-Ticket Generation
      */
     public boolean confirmBooking(String bookingId) throws BookingException {
-        Booking booking = database.getBookingById(bookingId);
-        if (booking == null) {
-            throw new BookingException("BOOKING_NOT_FOUND", "Booking not found");
-        }
-        
-        booking.confirmBooking();
-        boolean updated = database.updateBooking(booking);
-        
-        if (updated) {
-            // Send confirmation and e-ticket
-            Flight flight = flightService.getFlightById(booking.getFlightId());
-            if (flight != null) {
-                notificationService.sendBookingConfirmation(booking, flight);
-                notificationService.sendETicket(booking, flight);
+        return confirmBooking(bookingId, null);
+    }
+    
+    /**
+     * Record the payment on a booking and confirm it in one write
+     * FR-8: E-Ticket Generation
+     * @param paymentId the successful payment, or null to keep the current one
+     */
+    public boolean confirmBooking(String bookingId, String paymentId) throws BookingException {
+        Booking booking = updateBookingWithRetry(bookingId, b -> {
+            if ("CANCELLED".equals(b.getStatus())) {
+                throw new BookingException("BOOKING_CANCELLED",
+                    "Booking was cancelled before it could be confirmed");
+            }
+            if (paymentId != null) {
+                b.setPaymentId(paymentId);
             }
+            b.confirmBooking();
+        });
+        holds.release(bookingId);
+        
+        // Send confirmation and e-ticket
+        Flight flight = flightService.getFlightById(booking.getFlightId());
+        if (flight != null) {
+            notificationService.sendBookingConfirmation(booking, flight);
+            notificationService.sendETicket(booking, flight);
         }
         
-        return updated;
+        return true;
     }
     
     /**
@@ -129,36 +162,104 @@ public class BookingService {
      * FR-7: Cancel Booking
      */
     public boolean cancelBooking(String bookingId) throws BookingException {
-        Booking booking = database.getBookingById(bookingId);
-        if (booking == null) {
-            throw new BookingException("BOOKING_NOT_FOUND", "Booking not found");
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Booking booking = database.getBookingById(bookingId);
+            if (booking == null) {
+                throw new BookingException("BOOKING_NOT_FOUND", "Booking not found");
+            }
+            
+            if (!booking.canBeCancelled()) {
+                throw new BookingException("CANNOT_CANCEL", 
+                    "Booking cannot be cancelled. Status: " + booking.getStatus());
+            }
+            
+            // Cancel booking, release its seat and unlink it from the passenger in one commit.
+            // The version check means two concurrent cancellations cannot both release the seat.
+            Booking cancelled = booking.copy();
+            cancelled.cancelBooking();
+            UnitOfWork work = database.beginUnitOfWork()
+                    .updateBooking(cancelled)
+                    .removePassengerBooking(booking.getPassengerId(), bookingId);
+            Flight flight = flightService.getFlightById(booking.getFlightId());
+            if (flight != null) {
+                Flight released = flight.copy();
+                released.releaseSeat();
+                work.updateFlight(released);
+            }
+            
+            if (work.commit()) {
+                holds.release(bookingId);
+                // Send cancellation notification
+                notificationService.sendCancellationNotification(cancelled);
+                return true;
+            }
         }
-        
-        if (!booking.canBeCancelled()) {
-            throw new BookingException("CANNOT_CANCEL", 
-                "Booking cannot be cancelled. Status: " + booking.getStatus());
+        throw new BookingException("CONCURRENT_UPDATE", "Booking is being updated by another request, please retry");
+    }
+    
+    /**
+     * Cancel bookings whose seat hold ran out while they were still PENDING and release
+     * their seats. Bookings on the same flight are cancelled in one commit with a single
+     * update of the flight, so a burst of expiries does not fight over the flight's version.
+     * Bookings that could not be cancelled because they kept changing are held again.
+     * @return the number of bookings cancelled
+     */
+    public int expireBookings(Collection<String> bookingIds) {
+        Map<String, List<String>> byFlight = new LinkedHashMap<>();
+        for (String bookingId : bookingIds) {
+            Booking booking = database.getBookingById(bookingId);
+            if (booking != null && "PENDING".equals(booking.getStatus())) {
+                byFlight.computeIfAbsent(booking.getFlightId(), f -> new ArrayList<>()).add(bookingId);
+            }
         }
-        
-        // Cancel booking
-        booking.cancelBooking();
-        boolean updated = database.updateBooking(booking);
-        
-        if (updated) {
-            // Release seat
-            flightService.releaseSeat(booking.getFlightId());
+        int expired = 0;
+        for (Map.Entry<String, List<String>> flight : byFlight.entrySet()) {
+            expired += expireFlightBookings(flight.getKey(), flight.getValue());
+        }
+        return expired;
+    }
+    
+    private int expireFlightBookings(String flightId, List<String> bookingIds) {
+        List<Booking> cancelled = new ArrayList<>();
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            // Bookings paid for or cancelled since the hold ran out are left alone
+            cancelled.clear();
+            for (String bookingId : bookingIds) {
+                Booking booking = database.getBookingById(bookingId);
+                if (booking != null && "PENDING".equals(booking.getStatus())
+                        && flightId.equals(booking.getFlightId())) {
+                    Booking expired = booking.copy();
+                    expired.cancelBooking();
+                    cancelled.add(expired);
+                }
+            }
+            if (cancelled.isEmpty()) {
+                return 0;
+            }
             
-            // Send cancellation notification
-            notificationService.sendCancellationNotification(booking);
+            UnitOfWork work = database.beginUnitOfWork();
+            Map<String, List<String>> byPassenger = new LinkedHashMap<>();
+            for (Booking booking : cancelled) {
+                work.updateBooking(booking);
+                byPassenger.computeIfAbsent(booking.getPassengerId(), p -> new ArrayList<>())
+                    .add(booking.getBookingId());
+            }
+            byPassenger.forEach(work::removePassengerBookings);
+            Flight flight = flightService.getFlightById(flightId);
+            if (flight != null) {
+                Flight released = flight.copy();
+                cancelled.forEach(b -> released.releaseSeat());
+                work.updateFlight(released);
+            }
             
-            // Remove from passenger's booking list
-            Passenger passenger = database.getPassengerById(booking.getPassengerId());
-            if (passenger != null) {
-                passenger.removeBooking(bookingId);
-                database.updatePassenger(passenger);
+            if (work.commit()) {
+                cancelled.forEach(notificationService::sendCancellationNotification);
+                return cancelled.size();
             }
         }
-        
-        return updated;
+        // Try again when the new holds run out
+        cancelled.forEach(b -> holds.hold(b.getBookingId()));
+        return 0;
     }
     
     /**
@@ -169,60 +270,55 @@ public class BookingService {
     public boolean rescheduleBooking(String bookingId, String newFlightId) 
             throws BookingException {
         
-        Booking booking = database.getBookingById(bookingId);
-        if (booking == null) {
-            throw new BookingException("BOOKING_NOT_FOUND", "Booking not found");
-        }
-        
-        if (!booking.canBeRescheduled()) {
-            throw new BookingException("CANNOT_RESCHEDULE", 
-                "Booking cannot be rescheduled. Status: " + booking.getStatus());
-        }
-        
-        // Get new flight
-        Flight newFlight = flightService.getFlightById(newFlightId);
-        if (newFlight == null) {
-            throw new BookingException("FLIGHT_NOT_FOUND", "New flight not found");
-        }
-        
-        if (!newFlight.hasAvailableSeats()) {
-            throw new BookingException("NO_SEATS", "No seats available on new flight");
-        }
-        
-        // Release seat on old flight
-        String oldFlightId = booking.getFlightId();
-        flightService.releaseSeat(oldFlightId);
-        
-        // Reserve seat on new flight
-        if (!flightService.reserveSeat(newFlightId)) {
-            // Rollback - re-reserve old seat
-            flightService.reserveSeat(oldFlightId);
-            throw new BookingException("SEAT_RESERVATION_FAILED", 
-                "Failed to reserve seat on new flight");
-        }
-        
-        // Update booking
-        String oldSeatNumber = booking.getSeatNumber();
-        booking.rescheduleBooking(newFlightId);
-        
-        // Assign new seat
-        String newSeatNumber = assignSeat(newFlight, booking.getTravelClass());
-        booking.setSeatNumber(newSeatNumber);
-        
-        boolean updated = database.updateBooking(booking);
-        
-        if (updated) {
-            // Send rescheduling notification
-            notificationService.sendReschedulingNotification(booking, newFlight);
-        } else {
-            // Rollback
-            booking.setFlightId(oldFlightId);
-            booking.setSeatNumber(oldSeatNumber);
-            flightService.releaseSeat(newFlightId);
-            flightService.reserveSeat(oldFlightId);
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Booking booking = database.getBookingById(bookingId);
+            if (booking == null) {
+                throw new BookingException("BOOKING_NOT_FOUND", "Booking not found");
+            }
+            
+            if (!booking.canBeRescheduled()) {
+                throw new BookingException("CANNOT_RESCHEDULE", 
+                    "Booking cannot be rescheduled. Status: " + booking.getStatus());
+            }
+            
+            // Get new flight
+            Flight newFlight = flightService.getFlightById(newFlightId);
+            if (newFlight == null) {
+                throw new BookingException("FLIGHT_NOT_FOUND", "New flight not found");
+            }
+            
+            if (!newFlight.hasAvailableSeats()) {
+                throw new BookingException("NO_SEATS", "No seats available on new flight");
+            }
+            
+            // Update booking and assign new seat
+            Booking rescheduled = booking.copy();
+            rescheduled.rescheduleBooking(newFlightId);
+            rescheduled.setSeatNumber(assignSeat(newFlight, booking.getTravelClass()));
+            UnitOfWork work = database.beginUnitOfWork().updateBooking(rescheduled);
+            
+            // Move the seat from the old flight to the new one in the same commit
+            String oldFlightId = booking.getFlightId();
+            if (!newFlightId.equals(oldFlightId)) {
+                Flight oldFlight = flightService.getFlightById(oldFlightId);
+                if (oldFlight != null) {
+                    Flight released = oldFlight.copy();
+                    released.releaseSeat();
+                    work.updateFlight(released);
+                }
+                Flight reserved = newFlight.copy();
+                reserved.reserveSeat();
+                work.updateFlight(reserved);
+            }
+            
+            if (work.commit()) {
+                // Send rescheduling notification
+                notificationService.sendReschedulingNotification(rescheduled, newFlight);
+                return true;
+            }
         }
-        
-        return updated;
+        throw new BookingException("SEAT_RESERVATION_FAILED", 
+            "Failed to reserve seat on new flight, please retry");
     }
     
     /**
@@ -258,25 +354,68 @@ public class BookingService {
         return database.getAllBookings();
     }
     
+    /**
+     * Stream all bookings without copying them into a list (Admin only)
+     * FR-14: Booking Oversight
+     */
+    public Stream<Booking> streamAllBookings() {
+        return database.streamBookings();
+    }
+    
+    /**
+     * Get one page of all bookings (Admin only)
+     * FR-14: Booking Oversight
+     * @param after cursor from the previous page, or null for the first page
+     */
+    public Page<Booking> getBookingsPage(SortKey sortKey, PageCursor after, int pageSize) {
+        return database.getBookingsPage(sortKey, after, pageSize);
+    }
+    
     /**
      * Check in a passenger
      * FR-19: Handle Baggage Check-In
      */
     public boolean checkInPassenger(String bookingId, String baggageTag) {
-        Booking booking = database.getBookingById(bookingId);
-        if (booking == null || !"CONFIRMED".equals(booking.getStatus())) {
+        try {
+            updateBookingWithRetry(bookingId, booking -> {
+                if (!"CONFIRMED".equals(booking.getStatus())) {
+                    throw new BookingException("NOT_CONFIRMED", "Only confirmed bookings can be checked in");
+                }
+                booking.setCheckedIn(true);
+                booking.setBaggageTag(baggageTag);
+            });
+            return true;
+        } catch (BookingException e) {
             return false;
         }
-        
-        booking.setCheckedIn(true);
-        booking.setBaggageTag(baggageTag);
-        return database.updateBooking(booking);
+    }
+    
+    /**
+     * Apply a change to a copy of the current booking and write it back with a version
+     * check, re-reading and re-applying it if another writer updated the booking first.
+     * @return the booking as written
+     * @throws BookingException if the booking does not exist, the change rejects it,
+     *         or it kept changing for {@value #MAX_UPDATE_ATTEMPTS} attempts
+     */
+    public Booking updateBookingWithRetry(String bookingId, BookingChange change) throws BookingException {
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Booking current = database.getBookingById(bookingId);
+            if (current == null) {
+                throw new BookingException("BOOKING_NOT_FOUND", "Booking not found");
+            }
+            Booking updated = current.copy();
+            change.apply(updated);
+            if (database.updateBooking(updated)) {
+                return updated;
+            }
+        }
+        throw new BookingException("CONCURRENT_UPDATE", "Booking is being updated by another request, please retry");
     }
     
     // Helper methods
     
     private String generateBookingId() {
-        return "BK-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return "BK-" + IdGenerator.getInstance().nextString();
     }
     
     private String assignSeat(Flight flight, String travelClass) {
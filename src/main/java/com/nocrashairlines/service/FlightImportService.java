@@ -0,0 +1,397 @@
+package com.nocrashairlines.service;
+
+import com.nocrashairlines.database.SystemDatabase;
+import com.nocrashairlines.model.Flight;
+import com.nocrashairlines.util.IdGenerator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import of a flight schedule (UC-9, FR-12).
+ * Reads a CSV file with a header row, or JSON Lines (one flat object per line), in chunks:
+ * each chunk is parsed and validated in parallel, then inserted as one batch (one commit,
+ * one index update, one transaction log record). Bad rows are reported with their line
+ * number and skipped; they never abort the rest of the load.
+ *
+ * Fields: flightNumber, origin, destination, departureTime and arrivalTime (ISO-8601, e.g.
+ * 2030-01-15T10:00), totalSeats, and optionally aircraftType, gate, economyPrice,
+ * businessPrice and firstClassPrice (defaults as for {@link AdminService#addFlight}).
+ */
+public class FlightImportService {
+
+    static final int DEFAULT_BATCH_SIZE = 1_000;
+    private static final Map<String, Double> DEFAULT_PRICES = Map.of(
+            "ECONOMY", 200.0, "BUSINESS", 500.0, "FIRST_CLASS", 1000.0);
+    private static final Map<String, String> PRICE_FIELDS = Map.of(
+            "ECONOMY", "economyPrice", "BUSINESS", "businessPrice", "FIRST_CLASS", "firstClassPrice");
+
+    private final SystemDatabase database;
+    private final int batchSize;
+
+    public FlightImportService() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    FlightImportService(int batchSize) {
+        this.database = SystemDatabase.getInstance();
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Problem with one row of an import
+     * @param line line number in the file, starting at 1
+     */
+    public record RowError(long line, String message) {}
+
+    /**
+     * Outcome of an import
+     */
+    public static final class ImportReport {
+        private int imported;
+        private final List<RowError> errors = new ArrayList<>();
+
+        public int getImportedCount() {
+            return imported;
+        }
+
+        /**
+         * Rejected rows, in file order
+         */
+        public List<RowError> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+    }
+
+    // One row as parsed: either a flight or the reason it was rejected
+    private record ParsedRow(long line, Flight flight, String error) {}
+
+    private record RawRow(long line, String text) {}
+
+    /**
+     * Import a file, picking the format from its extension (.csv, or .json/.jsonl/.ndjson)
+     */
+    public ImportReport importFile(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (name.endsWith(".csv")) {
+                return importCsv(reader);
+            }
+            if (name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+                return importJsonLines(reader);
+            }
+        }
+        throw new IllegalArgumentException("Unsupported schedule file type: " + file.getFileName());
+    }
+
+    /**
+     * Import CSV with a header row naming the fields; columns may come in any order
+     */
+    public ImportReport importCsv(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String header = lines.readLine();
+        ImportReport report = new ImportReport();
+        if (header == null) {
+            return report;
+        }
+        List<String> columns = parseCsvLine(header.startsWith("\uFEFF") ? header.substring(1) : header)
+                .stream().map(String::trim).collect(Collectors.toList());
+        importRows(lines, 2, report, text -> {
+            List<String> values = parseCsvLine(text);
+            if (values.size() != columns.size()) {
+                throw new IllegalArgumentException("Expected " + columns.size() + " columns but found " + values.size());
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                fields.put(columns.get(i), values.get(i));
+            }
+            return fields;
+        });
+        return report;
+    }
+
+    /**
+     * Import JSON Lines: one flat JSON object per line, string or number values
+     */
+    public ImportReport importJsonLines(Reader reader) throws IOException {
+        ImportReport report = new ImportReport();
+        importRows(new BufferedReader(reader), 1, report, FlightImportService::parseJsonObject);
+        return report;
+    }
+
+    @FunctionalInterface
+    private interface RowParser {
+        Map<String, String> parse(String text);
+    }
+
+    private void importRows(BufferedReader lines, long firstLine, ImportReport report, RowParser parser)
+            throws IOException {
+        List<RawRow> chunk = new ArrayList<>(batchSize);
+        long line = firstLine;
+        for (String text = lines.readLine(); text != null; text = lines.readLine(), line++) {
+            if (text.isBlank()) {
+                continue;
+            }
+            chunk.add(new RawRow(line, text));
+            if (chunk.size() == batchSize) {
+                importChunk(chunk, parser, report);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, parser, report);
+        }
+    }
+
+    private void importChunk(List<RawRow> chunk, RowParser parser, ImportReport report) {
+        List<ParsedRow> rows = chunk.parallelStream()
+                .map(raw -> parseRow(raw, parser))
+                .collect(Collectors.toList());
+
+        List<Flight> batch = new ArrayList<>(rows.size());
+        Map<Flight, Long> lines = new IdentityHashMap<>();
+        List<RowError> errors = new ArrayList<>();
+        for (ParsedRow row : rows) {
+            if (row.error() != null) {
+                errors.add(new RowError(row.line(), row.error()));
+            } else {
+                batch.add(row.flight());
+                lines.put(row.flight(), row.line());
+            }
+        }
+        List<Flight> rejected = batch.isEmpty() ? List.of() : database.insertFlights(batch);
+        for (Flight flight : rejected) {
+            errors.add(new RowError(lines.get(flight),
+                    "Flight number already exists: " + flight.getFlightNumber()));
+        }
+        errors.sort(Comparator.comparingLong(RowError::line));
+        report.errors.addAll(errors);
+        report.imported += batch.size() - rejected.size();
+    }
+
+    private static ParsedRow parseRow(RawRow raw, RowParser parser) {
+        try {
+            return new ParsedRow(raw.line(), toFlight(parser.parse(raw.text())), null);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return new ParsedRow(raw.line(), null, e.getMessage());
+        }
+    }
+
+    // Same checks as FlightService.addFlight
+    private static Flight toFlight(Map<String, String> fields) {
+        String flightNumber = required(fields, "flightNumber");
+        String origin = required(fields, "origin");
+        String destination = required(fields, "destination");
+        LocalDateTime departureTime = LocalDateTime.parse(required(fields, "departureTime"));
+        LocalDateTime arrivalTime = LocalDateTime.parse(required(fields, "arrivalTime"));
+        if (departureTime.isAfter(arrivalTime)) {
+            throw new IllegalArgumentException("Departure time must be before arrival time");
+        }
+        int totalSeats = parseNumber(fields, "totalSeats", Integer::parseInt);
+        if (totalSeats <= 0) {
+            throw new IllegalArgumentException("Total seats must be greater than zero");
+        }
+
+        Flight flight = new Flight(IdGenerator.getInstance().nextString(), flightNumber, origin, destination,
+                departureTime, arrivalTime, totalSeats);
+        flight.setAircraftType(optional(fields, "aircraftType"));
+        flight.setGate(optional(fields, "gate"));
+        for (Map.Entry<String, String> price : PRICE_FIELDS.entrySet()) {
+            double value = optional(fields, price.getValue()) == null
+                    ? DEFAULT_PRICES.get(price.getKey())
+                    : parseNumber(fields, price.getValue(), Double::parseDouble);
+            if (value < 0 || Double.isNaN(value)) {
+                throw new IllegalArgumentException(price.getValue() + " cannot be negative");
+            }
+            flight.setClassPrice(price.getKey(), value);
+        }
+        return flight;
+    }
+
+    private static String optional(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static String required(Map<String, String> fields, String name) {
+        String value = optional(fields, name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    private static <N> N parseNumber(Map<String, String> fields, String name,
+                                     Function<String, N> parser) {
+        String value = required(fields, name);
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    // Formats
+
+    /**
+     * Split one CSV line; fields may be quoted, with "" for a quote inside a quoted field
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Parse a flat JSON object whose values are strings, numbers, booleans or null
+     */
+    static Map<String, String> parseJsonObject(String text) {
+        JsonCursor json = new JsonCursor(text);
+        Map<String, String> fields = new HashMap<>();
+        json.expect('{');
+        if (!json.consume('}')) {
+            do {
+                String name = json.string();
+                json.expect(':');
+                fields.put(name, json.value());
+            } while (json.consume(','));
+            json.expect('}');
+        }
+        json.end();
+        return fields;
+    }
+
+    private static final class JsonCursor {
+        private final String text;
+        private int pos;
+
+        JsonCursor(String text) {
+            this.text = text;
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        boolean consume(char c) {
+            skipWhitespace();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        void end() {
+            skipWhitespace();
+            if (pos != text.length()) {
+                throw error("Unexpected trailing content");
+            }
+        }
+
+        String value() {
+            skipWhitespace();
+            if (pos < text.length() && text.charAt(pos) == '"') {
+                return string();
+            }
+            int start = pos;
+            while (pos < text.length() && ",}".indexOf(text.charAt(pos)) < 0
+                    && !Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.isEmpty() || literal.startsWith("{") || literal.startsWith("[")) {
+                throw error("Expected a string, number, boolean or null");
+            }
+            return "null".equals(literal) ? null : literal;
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'n' -> value.append('\n');
+                    case 't' -> value.append('\t');
+                    case 'r' -> value.append('\r');
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> value.append(escaped);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at column " + (pos + 1) + ": " + message);
+        }
+    }
+}
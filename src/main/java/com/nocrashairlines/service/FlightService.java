@@ -1,10 +1,16 @@
 package com.nocrashairlines.service;
 
+import com.nocrashairlines.database.Page;
+import com.nocrashairlines.database.PageCursor;
+import com.nocrashairlines.database.SortKey;
 import com.nocrashairlines.database.SystemDatabase;
 import com.nocrashairlines.model.Flight;
+import com.nocrashairlines.util.IdGenerator;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Service for flight operations.
@@ -13,6 +19,9 @@ import java.util.UUID;
  */
 public class FlightService {
     
+    // Attempts before giving up on a flight that keeps changing under us
+    static final int MAX_UPDATE_ATTEMPTS = 16;
+    
     private final SystemDatabase database;
     
     public FlightService() {
@@ -31,6 +40,23 @@ public class FlightService {
         return database.searchFlights(origin, destination, date);
     }
     
+    /**
+     * Search for available flights departing within a time window [from, to)
+     * UC-1: Search Flights
+     */
+    public List<Flight> searchFlights(String origin, String destination,
+                                     LocalDateTime from, LocalDateTime to) {
+        if (origin == null || destination == null || from == null || to == null) {
+            throw new IllegalArgumentException("Origin, destination, and time window are required");
+        }
+        
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Window start must be before window end");
+        }
+        
+        return database.searchFlights(origin, destination, from, to);
+    }
+    
     /**
      * Get flight by ID
      */
@@ -52,6 +78,28 @@ public class FlightService {
         return database.getAllFlights();
     }
     
+    /**
+     * Stream all flights without copying them into a list
+     */
+    public Stream<Flight> streamAllFlights() {
+        return database.streamFlights();
+    }
+    
+    /**
+     * Get at most {@code limit} flights, without copying the rest
+     */
+    public List<Flight> getFlights(int limit) {
+        return database.findFlights(flight -> true, limit);
+    }
+    
+    /**
+     * Get one page of all flights
+     * @param after cursor from the previous page, or null for the first page
+     */
+    public Page<Flight> getFlightsPage(SortKey sortKey, PageCursor after, int pageSize) {
+        return database.getFlightsPage(sortKey, after, pageSize);
+    }
+    
     /**
      * Add a new flight (Admin only)
      * UC-9: Admin Manage Flights
@@ -60,6 +108,19 @@ public class FlightService {
     public Flight addFlight(String flightNumber, String origin, String destination,
                            LocalDateTime departureTime, LocalDateTime arrivalTime,
                            String aircraftType, int totalSeats) {
+        return addFlight(flightNumber, origin, destination, departureTime, arrivalTime,
+                aircraftType, totalSeats, null, Map.of());
+    }
+    
+    /**
+     * Add a new flight with its gate and class prices, saved in one write (Admin only)
+     * UC-9: Admin Manage Flights
+     * FR-12: Flight Management
+     */
+    public Flight addFlight(String flightNumber, String origin, String destination,
+                           LocalDateTime departureTime, LocalDateTime arrivalTime,
+                           String aircraftType, int totalSeats, String gate,
+                           Map<String, Double> classPrices) {
         
         // Validate inputs
         if (flightNumber == null || origin == null || destination == null) {
@@ -79,19 +140,24 @@ public class FlightService {
         }
         
         // Check if flight number already exists
-        if (database.getFlightByNumber(flightNumber) != null) {
+        if (database.isFlightNumberTaken(flightNumber)) {
             throw new IllegalArgumentException("Flight number already exists");
         }
         
         // Create new flight
-        String flightId = UUID.randomUUID().toString();
+        String flightId = IdGenerator.getInstance().nextString();
         Flight flight = new Flight(flightId, flightNumber, origin, destination,
                                   departureTime, arrivalTime, totalSeats);
         flight.setAircraftType(aircraftType);
+        flight.setGate(gate);
+        classPrices.forEach(flight::setClassPrice);
         
-        // Save to database
+        // Save to database (the flight number claim is atomic, so a concurrent
+        // add of the same number makes this save fail)
         if (database.saveFlight(flight)) {
             return flight;
+        } else if (database.isFlightNumberTaken(flightNumber)) {
+            throw new IllegalArgumentException("Flight number already exists");
         } else {
             throw new RuntimeException("Failed to save flight");
         }
@@ -125,13 +191,10 @@ public class FlightService {
      * Update flight status
      */
     public boolean updateFlightStatus(String flightId, String status) {
-        Flight flight = database.getFlightById(flightId);
-        if (flight == null) {
-            return false;
-        }
-        
-        flight.setStatus(status);
-        return database.updateFlight(flight);
+        return updateFlightWithRetry(flightId, flight -> {
+            flight.setStatus(status);
+            return true;
+        });
     }
     
     /**
@@ -139,46 +202,53 @@ public class FlightService {
      * FR-13: Seat Inventory Management
      */
     public boolean updateSeatAvailability(String flightId, int availableSeats) {
-        Flight flight = database.getFlightById(flightId);
-        if (flight == null) {
-            return false;
-        }
-        
-        if (availableSeats < 0 || availableSeats > flight.getTotalSeats()) {
-            return false;
-        }
-        
-        flight.setAvailableSeats(availableSeats);
-        return database.updateFlight(flight);
+        return updateFlightWithRetry(flightId, flight -> {
+            if (availableSeats < 0 || availableSeats > flight.getTotalSeats()) {
+                return false;
+            }
+            flight.setAvailableSeats(availableSeats);
+            return true;
+        });
     }
     
     /**
      * Reserve a seat on a flight
      */
     public boolean reserveSeat(String flightId) {
-        Flight flight = database.getFlightById(flightId);
-        if (flight == null) {
-            return false;
-        }
-        
-        if (flight.reserveSeat()) {
-            return database.updateFlight(flight);
-        }
-        
-        return false;
+        return updateFlightWithRetry(flightId, Flight::reserveSeat);
     }
     
     /**
      * Release a seat on a flight
      */
     public boolean releaseSeat(String flightId) {
-        Flight flight = database.getFlightById(flightId);
-        if (flight == null) {
-            return false;
+        return updateFlightWithRetry(flightId, flight -> {
+            flight.releaseSeat();
+            return true;
+        });
+    }
+    
+    /**
+     * Apply a change to a copy of the current flight and write it back with a version
+     * check, re-reading and re-applying it if another writer updated the flight first.
+     * @param change changes the copy; returns false to give up without writing
+     * @return true if the change was written
+     */
+    public boolean updateFlightWithRetry(String flightId, Predicate<Flight> change) {
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Flight current = database.getFlightById(flightId);
+            if (current == null) {
+                return false;
+            }
+            Flight updated = current.copy();
+            if (!change.test(updated)) {
+                return false;
+            }
+            if (database.updateFlight(updated)) {
+                return true;
+            }
         }
-        
-        flight.releaseSeat();
-        return database.updateFlight(flight);
+        return false;
     }
 }
 
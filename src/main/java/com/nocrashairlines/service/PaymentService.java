@@ -1,5 +1,8 @@
 package com.nocrashairlines.service;
 
+import com.nocrashairlines.database.Page;
+import com.nocrashairlines.database.PageCursor;
+import com.nocrashairlines.database.SortKey;
 import com.nocrashairlines.database.SystemDatabase;
 import com.nocrashairlines.exception.BookingException;
 import com.nocrashairlines.exception.PaymentException;
@@ -8,7 +11,16 @@ import com.nocrashairlines.model.Payment;
 import com.nocrashairlines.payment.MockPaymentGateway;
 import com.nocrashairlines.payment.PaymentGateway;
 import com.nocrashairlines.payment.PaymentResult;
-import java.util.UUID;
+import com.nocrashairlines.util.IdGenerator;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for payment operations.
@@ -17,18 +29,53 @@ import java.util.UUID;
  */
 public class PaymentService {
     
+    // Attempts before giving up on a payment that keeps changing under us
+    static final int MAX_UPDATE_ATTEMPTS = 16;
+    // A refund claim pending for longer than this is presumed abandoned
+    static final Duration STALE_REFUND = Duration.ofMinutes(5);
+    // How long the refund of an expired booking's payment waits for one already in flight
+    static final long REFUND_WAIT_MILLIS = 5_000;
+    private static final long REFUND_POLL_MILLIS = 50;
+    // How often the default service settles abandoned refund claims
+    private static final long RECONCILE_PERIOD_MINUTES = 5;
+    
+    // Shared by every service, so each one does not start a thread of its own
+    private static ScheduledExecutorService reconciler;
+    
     private final SystemDatabase database;
     private final PaymentGateway paymentGateway;
     private final BookingService bookingService;
+    private final BookingHolds holds;
+    private ScheduledFuture<?> reconciling;
     
+    /**
+     * Create a service on the mock gateway, settling abandoned refund claims in the background
+     */
     public PaymentService() {
+        this(new MockPaymentGateway(), BookingHolds.getInstance());
+        scheduleRefundReconciliation(RECONCILE_PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+    
+    PaymentService(PaymentGateway paymentGateway, BookingHolds holds) {
         this.database = SystemDatabase.getInstance();
-        this.paymentGateway = new MockPaymentGateway();
-        this.bookingService = new BookingService();
+        this.paymentGateway = paymentGateway;
+        this.bookingService = new BookingService(holds);
+        this.holds = holds;
     }
     
     /**
-     * Process payment for a booking
+     * A change to apply to a copy of a payment; throw to reject it
+     */
+    @FunctionalInterface
+    public interface PaymentChange {
+        void apply(Payment payment) throws PaymentException;
+    }
+    
+    /**
+     * Process payment for a booking. The booking's seat hold is released while the gateway
+     * is charged, so it cannot expire mid-payment, and put back if the payment fails.
+     * If the hold had already run out, the booking may be cancelled by expiry while the
+     * gateway is charged; the charge is then refunded and the payment is refused.
      * UC-3: Make Payment
      * FR-5: Online Payment
      */
@@ -57,6 +104,11 @@ public class PaymentService {
             throw new PaymentException("ALREADY_PAID", "Booking is already confirmed and paid");
         }
         
+        // Check if booking was cancelled (or its seat hold expired)
+        if ("CANCELLED".equals(booking.getStatus())) {
+            throw new PaymentException("BOOKING_CANCELLED", "Booking has been cancelled");
+        }
+        
         // Check if payment method is supported
         if (!paymentGateway.isPaymentMethodSupported(paymentMethod)) {
             throw new PaymentException("UNSUPPORTED_METHOD", 
@@ -70,7 +122,26 @@ public class PaymentService {
         payment.setCardLastFourDigits(cardLastFourDigits);
         
         // Process payment through gateway
-        PaymentResult result = paymentGateway.processPayment(payment);
+        boolean held = holds.release(bookingId);
+        if (!held) {
+            // The hold may have run out and its booking been expired since we read it
+            Booking current = database.getBookingById(bookingId);
+            if (current == null || "CANCELLED".equals(current.getStatus())) {
+                throw new PaymentException("BOOKING_CANCELLED", "Booking has been cancelled");
+            }
+            if ("CONFIRMED".equals(current.getStatus())) {
+                throw new PaymentException("ALREADY_PAID", "Booking is already confirmed and paid");
+            }
+        }
+        PaymentResult result;
+        try {
+            result = paymentGateway.processPayment(payment);
+        } catch (RuntimeException e) {
+            if (held) {
+                holds.hold(bookingId);
+            }
+            throw e;
+        }
         
         if (result.isSuccess()) {
             // Payment successful
@@ -79,8 +150,20 @@ public class PaymentService {
             // Save payment
             if (database.savePayment(payment)) {
                 // Update booking with payment ID and confirm
-                booking.setPaymentId(paymentId);
-                bookingService.confirmBooking(bookingId);
+                try {
+                    bookingService.confirmBooking(bookingId, paymentId);
+                } catch (BookingException e) {
+                    if (!"BOOKING_CANCELLED".equals(e.getErrorCode())) {
+                        throw e;
+                    }
+                    // Expired while the gateway was charged; give the money back
+                    if (refundCancelledPayment(payment)) {
+                        throw new PaymentException("BOOKING_CANCELLED",
+                            "Booking expired before the payment completed; the payment was refunded");
+                    }
+                    throw new PaymentException("BOOKING_CANCELLED",
+                        "Booking expired before the payment completed; the payment is being refunded");
+                }
                 
                 return payment;
             } else {
@@ -90,11 +173,46 @@ public class PaymentService {
             // Payment failed
             payment.markAsFailed();
             database.savePayment(payment);
+            if (held) {
+                holds.hold(bookingId);
+            }
             
             throw new PaymentException("PAYMENT_FAILED", result.getMessage());
         }
     }
     
+    /**
+     * Refund the payment of a booking that expired while it was charged. A refund request
+     * for the cancelled booking may already be refunding it; that refund can still fail and
+     * release the payment, so it is waited for (up to {@value #REFUND_WAIT_MILLIS} ms) and
+     * the payment refunded here if it was.
+     * @return true once the payment is refunded, false if another refund of it is still pending
+     */
+    private boolean refundCancelledPayment(Payment payment) throws PaymentException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REFUND_WAIT_MILLIS);
+        while (true) {
+            try {
+                refund(payment, "Booking expired before the payment completed");
+                return true;
+            } catch (PaymentException e) {
+                if ("REFUND_PENDING".equals(e.getErrorCode())) {
+                    if (System.nanoTime() - deadline >= 0 || !pause(REFUND_POLL_MILLIS)) {
+                        return false;
+                    }
+                    continue;
+                }
+                Payment current = database.getPaymentById(payment.getPaymentId());
+                if ("CANNOT_REFUND".equals(e.getErrorCode()) && current != null
+                        && "REFUNDED".equals(current.getStatus())) {
+                    // Already refunded by a refund request for the cancelled booking
+                    return true;
+                }
+                throw new PaymentException("REFUND_FAILED",
+                    "Booking expired during payment and the refund failed: " + e.getMessage());
+            }
+        }
+    }
+    
     /**
      * Process refund for a cancelled booking
      * FR-29: Refund Processing
@@ -112,31 +230,155 @@ public class PaymentService {
                 "Booking must be cancelled before refund can be processed");
         }
         
-        // Get original payment
-        Payment originalPayment = database.getPaymentByBookingId(bookingId);
+        // Get original payment (the latest successful attempt)
+        Payment originalPayment = database.getLatestSuccessfulPaymentByBookingId(bookingId);
         if (originalPayment == null) {
-            throw new PaymentException("PAYMENT_NOT_FOUND", "Original payment not found");
+            Payment latest = database.getPaymentByBookingId(bookingId);
+            if (latest == null) {
+                throw new PaymentException("PAYMENT_NOT_FOUND", "Original payment not found");
+            }
+            if (latest.isRefundPending()) {
+                // Refused while the refund is in flight; taken over if it was abandoned
+                return refund(latest, reason);
+            }
+            throw new PaymentException("CANNOT_REFUND", 
+                "Payment cannot be refunded. Status: " + latest.getStatus());
         }
         
-        if (!originalPayment.canBeRefunded()) {
-            throw new PaymentException("CANNOT_REFUND", 
-                "Payment cannot be refunded. Status: " + originalPayment.getStatus());
+        return refund(originalPayment, reason);
+    }
+    
+    /**
+     * Refund a successful payment. The refund is claimed with a version check first, so
+     * concurrent refunds of the same payment cannot both reach the gateway; while it is
+     * claimed, other refunds of the payment fail with REFUND_PENDING. If the refund is
+     * never recorded (the process stops, or the last write fails) the claim goes stale and
+     * is settled by {@link #reconcilePendingRefunds()} or the next refund of the payment.
+     */
+    private Payment refund(Payment originalPayment, String reason) throws PaymentException {
+        String paymentId = originalPayment.getPaymentId();
+        Payment current = database.getPaymentById(paymentId);
+        if (current != null && isStale(current)) {
+            settleRefund(current);
         }
+        Payment claimed = updatePaymentWithRetry(paymentId, p -> {
+            if (p.isRefundPending()) {
+                throw new PaymentException("REFUND_PENDING", "A refund of this payment is already in progress");
+            }
+            if (!p.canBeRefunded()) {
+                throw new PaymentException("CANNOT_REFUND", 
+                    "Payment cannot be refunded. Status: " + p.getStatus());
+            }
+            p.markRefundPending(reason);
+        });
         
-        // Process refund through gateway
-        PaymentResult result = paymentGateway.processRefund(originalPayment, reason);
+        // Process refund through gateway (on a copy of the payment as it was charged)
+        Payment charged = claimed.copy();
+        charged.cancelRefund();
+        PaymentResult result;
+        try {
+            result = paymentGateway.processRefund(charged, reason);
+        } catch (RuntimeException e) {
+            updatePaymentWithRetry(paymentId, Payment::cancelRefund);
+            throw e;
+        }
         
         if (result.isSuccess()) {
             // Update payment record
-            originalPayment.processRefund(reason);
-            database.updatePayment(originalPayment);
-            
-            return originalPayment;
+            return updatePaymentWithRetry(paymentId, payment -> payment.processRefund(reason));
         } else {
+            updatePaymentWithRetry(paymentId, Payment::cancelRefund);
             throw new PaymentException("REFUND_FAILED", result.getMessage());
         }
     }
     
+    /**
+     * Settle the refunds left pending for longer than {@link #STALE_REFUND}: those the gateway
+     * made are marked refunded, and the others are released and sent to the gateway again.
+     * @return the number of refunds settled
+     */
+    public int reconcilePendingRefunds() {
+        List<Payment> stale = database.streamPayments()
+            .filter(this::isStale)
+            .collect(Collectors.toList());
+        int settled = 0;
+        for (Payment payment : stale) {
+            String reason = payment.getRefundReason();
+            try {
+                if (settleRefund(payment).canBeRefunded()) {
+                    refund(payment, reason);
+                }
+                settled++;
+            } catch (PaymentException | RuntimeException e) {
+                // A refund the gateway declined is back to SUCCESS; a claim still pending is tried next time
+            }
+        }
+        return settled;
+    }
+
+    /**
+     * Run {@link #reconcilePendingRefunds()} in the background at a fixed interval,
+     * replacing any earlier schedule
+     */
+    public synchronized void scheduleRefundReconciliation(long period, TimeUnit unit) {
+        if (reconciling != null) {
+            reconciling.cancel(false);
+        }
+        // Claims abandoned by a previous run are settled straight away
+        reconciling = reconciler().scheduleWithFixedDelay(() -> {
+            try {
+                reconcilePendingRefunds();
+            } catch (RuntimeException e) {
+                // An exception would cancel the schedule; try again next time
+            }
+        }, 0, period, unit);
+    }
+
+    private static synchronized ScheduledExecutorService reconciler() {
+        if (reconciler == null) {
+            reconciler = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "refund-reconciler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return reconciler;
+    }
+
+    private boolean isStale(Payment payment) {
+        if (!payment.isRefundPending()) {
+            return false;
+        }
+        LocalDateTime claimed = payment.getRefundDate();
+        return claimed == null || claimed.isBefore(LocalDateTime.now().minus(STALE_REFUND));
+    }
+
+    /**
+     * Mark a stale refund claim refunded if the gateway refunded the payment, or release it
+     * back to SUCCESS if it did not. A claim that is no longer stale is left alone.
+     * @return the payment as it is now
+     */
+    private Payment settleRefund(Payment payment) throws PaymentException {
+        boolean refunded = paymentGateway.verifyRefund(payment.getTransactionReference());
+        return updatePaymentWithRetry(payment.getPaymentId(), p -> {
+            if (refunded && p.isRefundPending()) {
+                p.processRefund(p.getRefundReason());
+            } else if (isStale(p)) {
+                p.cancelRefund();
+            }
+        });
+    }
+
+    private static boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     /**
      * Get payment by ID
      */
@@ -151,6 +393,13 @@ public class PaymentService {
         return database.getPaymentByBookingId(bookingId);
     }
     
+    /**
+     * Get every payment attempt for a booking, oldest first
+     */
+    public List<Payment> getPaymentsByBookingId(String bookingId) {
+        return database.getPaymentsByBookingId(bookingId);
+    }
+    
     /**
      * Verify a transaction
      */
@@ -161,14 +410,51 @@ public class PaymentService {
     /**
      * Get all payments (Admin only)
      */
-    public java.util.List<Payment> getAllPayments() {
+    public List<Payment> getAllPayments() {
         return database.getAllPayments();
     }
 
+    /**
+     * Stream all payments without copying them into a list (Admin only)
+     */
+    public Stream<Payment> streamAllPayments() {
+        return database.streamPayments();
+    }
+
+    /**
+     * Get one page of all payments (Admin only)
+     * @param after cursor from the previous page, or null for the first page
+     */
+    public Page<Payment> getPaymentsPage(SortKey sortKey, PageCursor after, int pageSize) {
+        return database.getPaymentsPage(sortKey, after, pageSize);
+    }
+
+    /**
+     * Apply a change to a copy of the current payment and write it back with a version
+     * check, re-reading and re-applying it if another writer updated the payment first.
+     * @return the payment as written
+     * @throws PaymentException if the payment does not exist, the change rejects it,
+     *         or it kept changing for {@value #MAX_UPDATE_ATTEMPTS} attempts
+     */
+    public Payment updatePaymentWithRetry(String paymentId, PaymentChange change) throws PaymentException {
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Payment current = database.getPaymentById(paymentId);
+            if (current == null) {
+                throw new PaymentException("PAYMENT_NOT_FOUND", "Payment not found");
+            }
+            Payment updated = current.copy();
+            change.apply(updated);
+            if (database.updatePayment(updated)) {
+                return updated;
+            }
+        }
+        throw new PaymentException("CONCURRENT_UPDATE", "Payment is being updated by another request, please retry");
+    }
+
     // Helper methods
 
     private String generatePaymentId() {
-        return "PAY-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return "PAY-" + IdGenerator.getInstance().nextString();
     }
 }
 
@@ -1,17 +1,24 @@
 package com.nocrashairlines.ui;
 
+import com.nocrashairlines.database.Page;
+import com.nocrashairlines.database.PageCursor;
+import com.nocrashairlines.model.Booking;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import java.util.Map;
 
 public class AdminDashboard {
     
+    private static final int BOOKINGS_PAGE_SIZE = 25;
+    
     private final NoCrashAirlinesGUI app;
     private BorderPane view;
     private VBox contentArea;
+    private PageCursor nextBookingsCursor;
     
     public AdminDashboard(NoCrashAirlinesGUI app) {
         this.app = app;
@@ -143,12 +150,13 @@ public class AdminDashboard {
         HBox statsBox = new HBox(20);
         statsBox.setPadding(new Insets(20, 0, 0, 0));
         
+        Map<String, Object> stats = app.getAdminService().getSystemStatistics();
         VBox totalFlights = createStatCard("✈️ Total Flights", 
-            String.valueOf(app.getFlightService().getAllFlights().size()), "#3b82f6");
+            String.valueOf(stats.get("totalFlights")), "#3b82f6");
         VBox totalBookings = createStatCard("📋 Total Bookings", 
-            String.valueOf(app.getBookingService().getAllBookings().size()), "#10b981");
+            String.valueOf(stats.get("totalBookings")), "#10b981");
         VBox totalRevenue = createStatCard("💰 Total Revenue", 
-            "$" + String.format("%.2f", calculateRevenue()), "#f59e0b");
+            "$" + String.format("%.2f", (Double) stats.get("totalRevenue")), "#f59e0b");
         
         statsBox.getChildren().addAll(totalFlights, totalBookings, totalRevenue);
         
@@ -230,8 +238,7 @@ public class AdminDashboard {
         flightList.getChildren().add(listTitle);
 
         // Show first 5 flights
-        app.getFlightService().getAllFlights().stream()
-            .limit(5)
+        app.getFlightService().getFlights(5)
             .forEach(flight -> {
                 Label flightLabel = new Label(String.format("%s: %s → %s (%s seats available)",
                     flight.getFlightNumber(), flight.getOrigin(), flight.getDestination(),
@@ -255,32 +262,12 @@ public class AdminDashboard {
         VBox bookingList = new VBox(10);
         bookingList.setPadding(new Insets(20, 0, 0, 0));
 
-        app.getBookingService().getAllBookings().forEach(booking -> {
-            VBox bookingCard = new VBox(8);
-            bookingCard.setPadding(new Insets(15));
-            bookingCard.setStyle("-fx-background-color: white; -fx-background-radius: 10; " +
-                                "-fx-border-color: #e2e8f0; -fx-border-width: 1; -fx-border-radius: 10;");
-
-            Label bookingId = new Label("Booking: " + booking.getBookingId());
-            bookingId.setFont(Font.font("System", FontWeight.BOLD, 16));
-            bookingId.setStyle("-fx-text-fill: #2563eb;");
-
-            Label passenger = new Label("Passenger: " + booking.getPassengerName() + " (" + booking.getPassengerId() + ")");
-            passenger.setFont(Font.font(14));
-            passenger.setStyle("-fx-text-fill: #1e293b;");
-
-            Label flight = new Label("Flight: " + booking.getFlightId());
-            flight.setFont(Font.font(14));
-            flight.setStyle("-fx-text-fill: #1e293b;");
-
-            Label status = new Label("Status: " + booking.getStatus() + " | Class: " + booking.getTravelClass() +
-                                    " | Amount: $" + String.format("%.2f", booking.getTotalAmount()));
-            status.setFont(Font.font(12));
-            status.setStyle("-fx-text-fill: #64748b;");
-
-            bookingCard.getChildren().addAll(bookingId, passenger, flight, status);
-            bookingList.getChildren().add(bookingCard);
-        });
+        nextBookingsCursor = null;
+        Button loadMoreBtn = new Button("Load More");
+        loadMoreBtn.setStyle("-fx-background-color: #e2e8f0; -fx-text-fill: #1e293b; " +
+                            "-fx-background-radius: 8; -fx-padding: 8 20; -fx-cursor: hand;");
+        loadMoreBtn.setOnAction(e -> showNextBookingsPage(bookingList, loadMoreBtn));
+        showNextBookingsPage(bookingList, loadMoreBtn);
 
         ScrollPane scrollPane = new ScrollPane(bookingList);
         scrollPane.setFitToWidth(true);
@@ -290,6 +277,44 @@ public class AdminDashboard {
         contentArea.getChildren().addAll(title, scrollPane);
     }
     
+    // Appends the next page of bookings; the button stays at the end of the list while there are more
+    private void showNextBookingsPage(VBox bookingList, Button loadMoreBtn) {
+        Page<Booking> page = app.getAdminService().monitorBookings(nextBookingsCursor, BOOKINGS_PAGE_SIZE);
+        bookingList.getChildren().remove(loadMoreBtn);
+        page.getItems().forEach(booking -> bookingList.getChildren().add(createBookingCard(booking)));
+        nextBookingsCursor = page.getNextCursor();
+        if (page.hasMore()) {
+            bookingList.getChildren().add(loadMoreBtn);
+        }
+    }
+
+    private VBox createBookingCard(Booking booking) {
+        VBox bookingCard = new VBox(8);
+        bookingCard.setPadding(new Insets(15));
+        bookingCard.setStyle("-fx-background-color: white; -fx-background-radius: 10; " +
+                            "-fx-border-color: #e2e8f0; -fx-border-width: 1; -fx-border-radius: 10;");
+
+        Label bookingId = new Label("Booking: " + booking.getBookingId());
+        bookingId.setFont(Font.font("System", FontWeight.BOLD, 16));
+        bookingId.setStyle("-fx-text-fill: #2563eb;");
+
+        Label passenger = new Label("Passenger: " + booking.getPassengerName() + " (" + booking.getPassengerId() + ")");
+        passenger.setFont(Font.font(14));
+        passenger.setStyle("-fx-text-fill: #1e293b;");
+
+        Label flight = new Label("Flight: " + booking.getFlightId());
+        flight.setFont(Font.font(14));
+        flight.setStyle("-fx-text-fill: #1e293b;");
+
+        Label status = new Label("Status: " + booking.getStatus() + " | Class: " + booking.getTravelClass() +
+                                " | Amount: $" + String.format("%.2f", booking.getTotalAmount()));
+        status.setFont(Font.font(12));
+        status.setStyle("-fx-text-fill: #64748b;");
+
+        bookingCard.getChildren().addAll(bookingId, passenger, flight, status);
+        return bookingCard;
+    }
+    
     private void showReports() {
         contentArea.getChildren().clear();
 
@@ -485,7 +510,7 @@ public class AdminDashboard {
         VBox flightList = new VBox(10);
         flightList.setPadding(new Insets(20, 0, 0, 0));
 
-        app.getFlightService().getAllFlights().forEach(flight -> {
+        app.getFlightService().streamAllFlights().forEach(flight -> {
             VBox flightCard = new VBox(8);
             flightCard.setPadding(new Insets(15));
             flightCard.setStyle("-fx-background-color: white; -fx-background-radius: 10; " +
@@ -555,17 +580,6 @@ public class AdminDashboard {
         return null;
     }
 
-    private double calculateRevenue() {
-        try {
-            return app.getPaymentService().getAllPayments().stream()
-                .filter(p -> "SUCCESS".equals(p.getStatus()))
-                .mapToDouble(p -> p.getAmount())
-                .sum();
-        } catch (Exception e) {
-            return 0.0;
-        }
-    }
-
     public void refresh() {
         showDashboard();
     }
@@ -0,0 +1,269 @@
+package com.nocrashairlines.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Timer for large numbers of timeouts that are mostly cancelled before they fire, such as
+ * seat holds. Timeouts are hashed by deadline into a ring of buckets that a worker thread
+ * visits one per tick, so scheduling and cancelling are O(1) and a tick only touches the
+ * timeouts in one bucket. Deadlines are rounded up to the next tick.
+ *
+ * Everything that expires in the same tick is handed to the callback as one batch, on the
+ * worker thread; a slow callback delays later ticks but none are skipped.
+ *
+ * @param <T> payload carried by each timeout
+ */
+public final class HashedWheelTimer<T> implements AutoCloseable {
+    // Cap on new timeouts moved into the wheel per tick, so a burst cannot stall expiry
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket<T>[] wheel;
+    private final int mask;
+    private final Consumer<List<T>> onExpired;
+    private final Queue<Timeout<T>> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout<T>> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startTime = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean stopped;
+    private long tick; // worker thread only
+
+    /**
+     * A scheduled timeout; cancel it to stop it from firing
+     */
+    public static final class Timeout<T> {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final HashedWheelTimer<T> timer;
+        private final T payload;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        // Bucket links, worker thread only
+        private long remainingRounds;
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(HashedWheelTimer<T> timer, T payload, long deadline) {
+            this.timer = timer;
+            this.payload = payload;
+            this.deadline = deadline;
+        }
+
+        public T payload() {
+            return payload;
+        }
+
+        /**
+         * Stop the timeout from firing
+         * @return false if it already fired or was cancelled
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            timer.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    // Doubly linked list of the timeouts hashed to one slot
+    private static final class Bucket<T> {
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout<T> remove(Timeout<T> timeout) {
+            Timeout<T> next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            } else {
+                head = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+    }
+
+    /**
+     * @param name name of the worker thread
+     * @param tickDuration resolution of the timer
+     * @param ticksPerWheel number of buckets, rounded up to a power of two; deadlines further
+     *        out than one turn of the wheel wait in their bucket for more turns
+     * @param onExpired called with the payloads of every timeout that fired in a tick
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HashedWheelTimer(String name, Duration tickDuration, int ticksPerWheel, Consumer<List<T>> onExpired) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("Tick duration must be positive: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("Ticks per wheel out of range: " + ticksPerWheel);
+        }
+        this.tickNanos = tickDuration.toNanos();
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        size = Math.max(size, 1);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket<>();
+        }
+        this.mask = size - 1;
+        this.onExpired = onExpired;
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedule a timeout that fires once the delay has passed, unless it is cancelled first
+     */
+    public Timeout<T> schedule(T payload, Duration delay) {
+        if (stopped) {
+            throw new IllegalStateException("Timer is stopped");
+        }
+        long deadline = System.nanoTime() - startTime + Math.max(0, delay.toNanos());
+        Timeout<T> timeout = new Timeout<>(this, payload, deadline);
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Number of timeouts that have neither fired nor been cancelled and cleaned up
+     */
+    public int pendingTimeouts() {
+        return pending.get();
+    }
+
+    /**
+     * Stop the worker; timeouts still pending never fire
+     */
+    @Override
+    public void close() {
+        stopped = true;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (!stopped) {
+            long now = waitForNextTick();
+            if (now < 0) {
+                return;
+            }
+            removeCancelled();
+            transferAdded();
+            List<T> expired = expire(wheel[(int) (tick & mask)], now);
+            tick++;
+            if (!expired.isEmpty()) {
+                try {
+                    onExpired.accept(expired);
+                } catch (RuntimeException e) {
+                    // The callback must not kill the timer; the batch is dropped
+                }
+            }
+        }
+    }
+
+    // Sleeps until the end of the current tick; returns the time then, or -1 once stopped
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long sleepMillis = TimeUnit.NANOSECONDS.toMillis(deadline - now + 999_999);
+            if (sleepMillis <= 0) {
+                return now;
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                if (stopped) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout<T> timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+            pending.decrementAndGet();
+        }
+    }
+
+    private void transferAdded() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout<T> timeout = added.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                // Counted down when its cancellation is processed
+                continue;
+            }
+            long deadlineTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            // Deadlines already passed go into the current bucket
+            long slot = Math.max(deadlineTick, tick);
+            wheel[(int) (slot & mask)].add(timeout);
+        }
+    }
+
+    private List<T> expire(Bucket<T> bucket, long now) {
+        List<T> expired = new ArrayList<>();
+        Timeout<T> timeout = bucket.head;
+        while (timeout != null) {
+            if (timeout.isCancelled()) {
+                timeout = bucket.remove(timeout);
+            } else if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+                Timeout<T> next = bucket.remove(timeout);
+                if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+                    pending.decrementAndGet();
+                    expired.add(timeout.payload);
+                }
+                timeout = next;
+            } else {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+            }
+        }
+        return expired;
+    }
+}
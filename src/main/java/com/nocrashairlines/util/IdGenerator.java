@@ -0,0 +1,134 @@
+package com.nocrashairlines.util;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-ordered 64-bit IDs in the Snowflake layout: 41 bits of milliseconds since
+ * {@link #EPOCH}, a 10-bit node id and a 12-bit sequence within the millisecond. IDs from
+ * one generator strictly increase, and IDs from generators with different node ids never
+ * collide, so they double as a creation-order sort key.
+ *
+ * Taking an ID is one compare-and-set and allocates nothing. When a millisecond's 4096
+ * sequence numbers run out, or the clock steps back, the generator borrows the next
+ * millisecond instead of waiting; the clock catches up as soon as the burst is over.
+ *
+ * The string form is 13 characters of Crockford base32, fixed width, so strings sort in the
+ * same order as the numbers. The node id is read from the {@value #NODE_ID_PROPERTY} system
+ * property (default 0).
+ */
+public final class IdGenerator {
+    public static final String NODE_ID_PROPERTY = "nocrashairlines.nodeId";
+    /** 2024-01-01T00:00:00Z; 41 bits of milliseconds from here last until 2093 */
+    public static final Instant EPOCH = Instant.ofEpochMilli(1_704_067_200_000L);
+    public static final int MAX_NODE_ID = (1 << 10) - 1;
+    public static final int STRING_LENGTH = 13;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_SHIFT = SEQUENCE_BITS;
+    private static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + 10;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] DIGITS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private static IdGenerator instance;
+
+    private final long node;
+    private final LongSupplier clock;
+    // Milliseconds since the epoch and sequence of the last ID, as (millis << SEQUENCE_BITS) | sequence
+    private final AtomicLong last = new AtomicLong();
+
+    public IdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    IdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.node = (long) nodeId << NODE_SHIFT;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the shared generator for this node
+     */
+    public static synchronized IdGenerator getInstance() {
+        if (instance == null) {
+            instance = new IdGenerator(Integer.getInteger(NODE_ID_PROPERTY, 0));
+        }
+        return instance;
+    }
+
+    /**
+     * Next ID, greater than every ID this generator returned before
+     */
+    public long nextId() {
+        long now = (clock.getAsLong() - EPOCH.toEpochMilli()) << SEQUENCE_BITS;
+        while (true) {
+            long previous = last.get();
+            long next = Math.max(now, previous + 1);
+            if (last.compareAndSet(previous, next)) {
+                return (next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT | node | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * Next ID in its string form
+     */
+    public String nextString() {
+        return toString(nextId());
+    }
+
+    /**
+     * Fixed-width Crockford base32 form of an ID
+     */
+    public static String toString(long id) {
+        char[] chars = new char[STRING_LENGTH];
+        for (int i = STRING_LENGTH - 1; i >= 0; i--) {
+            chars[i] = DIGITS[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Parse the string form of an ID
+     * @throws IllegalArgumentException if the string is not one
+     */
+    public static long parse(String id) {
+        if (id.length() != STRING_LENGTH) {
+            throw new IllegalArgumentException("Not an ID: " + id);
+        }
+        long value = 0;
+        for (int i = 0; i < STRING_LENGTH; i++) {
+            int digit = digit(id.charAt(i));
+            if (digit < 0 || (i == 0 && digit > 15)) {
+                throw new IllegalArgumentException("Not an ID: " + id);
+            }
+            value = value << 5 | digit;
+        }
+        return value;
+    }
+
+    private static int digit(char c) {
+        for (int i = 0; i < DIGITS.length; i++) {
+            if (DIGITS[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * When an ID was generated, to the millisecond
+     */
+    public static Instant timestampOf(long id) {
+        return EPOCH.plusMillis(id >>> TIMESTAMP_SHIFT);
+    }
+
+    public static int nodeOf(long id) {
+        return (int) (id >>> NODE_SHIFT) & MAX_NODE_ID;
+    }
+}
@@ -0,0 +1,133 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.model.Flight;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for snapshot-isolated reads
+ * Tests FR-15 (Report Generation and Analytics)
+ */
+@DisplayName("Read Snapshot Tests")
+class ReadSnapshotTest {
+
+    private SystemDatabase database;
+    private static long testCounter = 0;
+    private String uniqueId;
+
+    @BeforeEach
+    void setUp() {
+        database = SystemDatabase.getInstance();
+        uniqueId = System.currentTimeMillis() + "-" + (testCounter++);
+    }
+
+    private Flight newFlight(String suffix, int seats) {
+        LocalDateTime departure = LocalDateTime.now().plusDays(6).withHour(9).withMinute(0);
+        Flight flight = new Flight("FL-SNAP-" + suffix + "-" + uniqueId, "SNP" + suffix + uniqueId,
+                "Halifax", "Moncton", departure, departure.plusHours(1), seats);
+        assertTrue(database.saveFlight(flight));
+        return flight;
+    }
+
+    @Test
+    @DisplayName("Should not see writes, inserts or deletes made after it was opened")
+    void testSnapshotIgnoresLaterWrites() {
+        Flight flight = newFlight("A", 10);
+        Flight doomed = newFlight("B", 10);
+
+        try (ReadSnapshot snapshot = database.openSnapshot()) {
+            Flight updated = database.getFlightById(flight.getFlightId()).copy();
+            updated.setGate("C3");
+            assertTrue(database.updateFlight(updated));
+            assertTrue(database.deleteFlight(doomed.getFlightId()));
+            Flight added = newFlight("C", 10);
+
+            assertNotEquals("C3", snapshot.getFlightById(flight.getFlightId()).getGate());
+            assertNotNull(snapshot.getFlightById(doomed.getFlightId()), "Deleted flight should still be visible");
+            assertNull(snapshot.getFlightById(added.getFlightId()), "New flight should not be visible");
+        }
+
+        try (ReadSnapshot later = database.openSnapshot()) {
+            assertEquals("C3", later.getFlightById(flight.getFlightId()).getGate());
+            assertNull(later.getFlightById(doomed.getFlightId()));
+        }
+    }
+
+    @Test
+    @DisplayName("Should see a unit of work whole or not at all")
+    void testSnapshotSeesWholeCommits() throws InterruptedException {
+        Flight flight = newFlight("D", 1000);
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> {
+            for (int i = 0; i < 200; i++) {
+                Flight reserved = database.getFlightById(flight.getFlightId()).copy();
+                reserved.reserveSeat();
+                Booking booking = new Booking("BK-SNAP-" + uniqueId + "-" + i, "PASS-SNAP-" + uniqueId,
+                        flight.getFlightId(), "Snapshot User", "ECONOMY", 90.0);
+                database.beginUnitOfWork().updateFlight(reserved).saveBooking(booking).commit();
+            }
+            done.set(true);
+        });
+
+        while (!done.get()) {
+            try (ReadSnapshot snapshot = database.openSnapshot()) {
+                Flight seen = snapshot.getFlightById(flight.getFlightId());
+                long bookings = snapshot.streamBookings()
+                        .filter(b -> flight.getFlightId().equals(b.getFlightId()))
+                        .count();
+                assertEquals(1000 - seen.getAvailableSeats(), bookings,
+                        "Seats and bookings should come from the same commits");
+            }
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Should compute statistics that agree with each other")
+    @SuppressWarnings("unchecked")
+    void testSnapshotStatistics() {
+        try (ReadSnapshot snapshot = database.openSnapshot()) {
+            Map<String, Object> stats = snapshot.getSystemStatistics();
+            Map<String, Long> byStatus = (Map<String, Long>) stats.get("bookingsByStatus");
+            long sum = byStatus.values().stream().mapToLong(Long::longValue).sum();
+
+            assertEquals(((Integer) stats.get("totalBookings")).longValue(), sum);
+            assertEquals(snapshot.streamBookings().count(), sum);
+            assertEquals(byStatus.getOrDefault("CONFIRMED", 0L), stats.get("confirmedBookings"));
+            assertTrue(stats.containsKey("totalRevenue"));
+            assertTrue(stats.containsKey("paymentsByStatus"));
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep reading old versions until closed")
+    void testOldVersionsKeptWhileOpen() {
+        Flight flight = newFlight("E", 10);
+        ReadSnapshot snapshot = database.openSnapshot();
+        for (int i = 0; i < 5; i++) {
+            Flight updated = database.getFlightById(flight.getFlightId()).copy();
+            updated.setAvailableSeats(i);
+            assertTrue(database.updateFlight(updated));
+        }
+
+        assertEquals(10, snapshot.getFlightById(flight.getFlightId()).getAvailableSeats());
+        snapshot.close();
+        snapshot.close();
+
+        try (ReadSnapshot latest = database.openSnapshot()) {
+            assertTrue(latest.getSequence() >= snapshot.getSequence());
+            assertEquals(4, latest.getFlightById(flight.getFlightId()).getAvailableSeats());
+        }
+    }
+}
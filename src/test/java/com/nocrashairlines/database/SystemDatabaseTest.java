@@ -0,0 +1,878 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.database.storage.ArchiveCodecs;
+import com.nocrashairlines.database.storage.BackupArchive;
+import com.nocrashairlines.database.storage.EntityRepository;
+import com.nocrashairlines.database.storage.InMemoryEntityRepository;
+import com.nocrashairlines.database.storage.InMemoryStorageEngine;
+import com.nocrashairlines.database.storage.StorageEngines;
+import com.nocrashairlines.database.storage.WriteAheadLog;
+import com.nocrashairlines.model.AirlineStaff;
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.model.Flight;
+import com.nocrashairlines.model.Passenger;
+import com.nocrashairlines.model.Payment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SystemDatabase secondary indexes
+ * Tests FR-21 - FR-25 (Data storage)
+ */
+@DisplayName("System Database Tests")
+class SystemDatabaseTest {
+
+    private SystemDatabase database;
+    private static long testCounter = 0;
+    private String uniqueId;
+
+    @BeforeEach
+    void setUp() {
+        database = SystemDatabase.getInstance();
+        uniqueId = System.currentTimeMillis() + "-" + (testCounter++);
+    }
+
+    private Passenger newPassenger(String userId, String email) {
+        return new Passenger(userId, "Index User", email, "hash", "+1234567890", "IX" + uniqueId);
+    }
+
+    @Test
+    @DisplayName("Should find passenger by email ignoring case")
+    void testPassengerEmailLookupIgnoresCase() {
+        Passenger passenger = newPassenger("PASS-IDX-" + uniqueId, "Index" + uniqueId + "@Test.com");
+        assertTrue(database.savePassenger(passenger), "Passenger should be saved");
+
+        Passenger found = database.getPassengerByEmail("index" + uniqueId + "@test.COM");
+        assertNotNull(found, "Passenger should be found by email");
+        assertEquals(passenger.getUserId(), found.getUserId(), "Passenger ID should match");
+    }
+
+    @Test
+    @DisplayName("Should reject a second account with the same email")
+    void testDuplicatePassengerEmailRejected() {
+        String email = "dup" + uniqueId + "@test.com";
+        assertTrue(database.savePassenger(newPassenger("PASS-A-" + uniqueId, email)));
+        assertFalse(database.savePassenger(newPassenger("PASS-B-" + uniqueId, email.toUpperCase())),
+                "Duplicate email should be rejected");
+        assertEquals("PASS-A-" + uniqueId, database.getPassengerByEmail(email).getUserId());
+    }
+
+    @Test
+    @DisplayName("Should move index entry when email changes and free it on delete")
+    void testEmailChangeAndDelete() {
+        String oldEmail = "old" + uniqueId + "@test.com";
+        String newEmail = "new" + uniqueId + "@test.com";
+        Passenger passenger = newPassenger("PASS-MV-" + uniqueId, oldEmail);
+        database.savePassenger(passenger);
+
+        passenger.setEmail(newEmail);
+        assertTrue(database.updatePassenger(passenger), "Update should succeed");
+        assertNull(database.getPassengerByEmail(oldEmail), "Old email should be released");
+        assertNotNull(database.getPassengerByEmail(newEmail), "New email should be indexed");
+
+        assertTrue(database.deletePassenger(passenger.getUserId()));
+        assertNull(database.getPassengerByEmail(newEmail), "Email should be released on delete");
+    }
+
+    @Test
+    @DisplayName("Should let only one concurrent registration claim an email")
+    void testConcurrentRegistrationSameEmail() throws Exception {
+        String email = "race" + uniqueId + "@test.com";
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String userId = "PASS-RACE-" + uniqueId + "-" + i;
+            results.add(executor.submit(() -> {
+                start.await();
+                return database.savePassenger(newPassenger(userId, email));
+            }));
+        }
+        start.countDown();
+
+        int saved = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                saved++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, saved, "Exactly one registration should win");
+    }
+
+    @Test
+    @DisplayName("Should find default admin by email")
+    void testAdminEmailLookup() {
+        assertNotNull(database.getAdminByEmail("ADMIN@nocrashairlines.com"),
+                "Default admin should be indexed");
+    }
+
+    @Test
+    @DisplayName("Should search flights by route and day ignoring case")
+    void testSearchFlightsByRouteAndDay() {
+        String origin = "Origin" + uniqueId;
+        LocalDateTime departure = LocalDateTime.now().plusDays(3).withHour(9).withMinute(0);
+        Flight flight = new Flight("FL-RT-" + uniqueId, "RT" + uniqueId, origin, "Halifax",
+                departure, departure.plusHours(2), 100);
+        database.saveFlight(flight);
+
+        List<Flight> sameDay = database.searchFlights(origin.toUpperCase(), "halifax", departure.withHour(23));
+        assertEquals(1, sameDay.size(), "Flight should be found on its departure day");
+        assertTrue(database.searchFlights(origin, "Halifax", departure.plusDays(1)).isEmpty(),
+                "Flight should not be found on another day");
+    }
+
+    @Test
+    @DisplayName("Should return flights in a departure window ordered by time")
+    void testSearchFlightsByTimeWindow() {
+        String origin = "Window" + uniqueId;
+        LocalDateTime base = LocalDateTime.now().plusDays(4).withHour(6).withMinute(0);
+        for (int i = 0; i < 4; i++) {
+            LocalDateTime departure = base.plusHours(4 - i);
+            database.saveFlight(new Flight("FL-WIN-" + uniqueId + "-" + i, "WN" + uniqueId + i,
+                    origin, "Regina", departure, departure.plusHours(1), 50));
+        }
+
+        List<Flight> window = database.searchFlights(origin, "Regina", base.plusHours(2), base.plusHours(4));
+        assertEquals(2, window.size(), "Only flights departing in [from, to) should match");
+        assertTrue(window.get(0).getDepartureTime().isBefore(window.get(1).getDepartureTime()),
+                "Results should be ordered by departure time");
+    }
+
+    @Test
+    @DisplayName("Should store a copy of a saved flight, not the caller's instance")
+    void testSaveFlightStoresCopy() {
+        LocalDateTime departure = LocalDateTime.now().plusDays(5).withHour(8).withMinute(0);
+        Flight flight = new Flight("FL-SC-" + uniqueId, "SC" + uniqueId, "Sudbury", "Quebec",
+                departure, departure.plusHours(1), 50);
+        assertTrue(database.saveFlight(flight));
+
+        flight.setStatus("CANCELLED");
+        flight.setGate("Z9");
+        Flight stored = database.getFlightById(flight.getFlightId());
+        assertNotSame(flight, stored);
+        assertEquals("SCHEDULED", stored.getStatus(), "Changing the caller's flight must not change the database");
+        assertNotEquals("Z9", stored.getGate());
+        assertEquals(0, stored.getVersion());
+    }
+
+    @Test
+    @DisplayName("Should re-index a flight when its departure time changes")
+    void testFlightReindexedOnUpdate() {
+        String origin = "Move" + uniqueId;
+        LocalDateTime departure = LocalDateTime.now().plusDays(5).withHour(8).withMinute(0);
+        Flight flight = new Flight("FL-MV-" + uniqueId, "MV" + uniqueId, origin, "Quebec",
+                departure, departure.plusHours(1), 50);
+        database.saveFlight(flight);
+
+        flight.setDepartureTime(departure.plusDays(1));
+        flight.setArrivalTime(departure.plusDays(1).plusHours(1));
+        database.updateFlight(flight);
+
+        assertTrue(database.searchFlights(origin, "Quebec", departure).isEmpty(), "Old day should be empty");
+        assertEquals(1, database.searchFlights(origin, "Quebec", departure.plusDays(1)).size());
+
+        database.deleteFlight(flight.getFlightId());
+        assertTrue(database.searchFlights(origin, "Quebec", departure.plusDays(1)).isEmpty(),
+                "Deleted flight should leave the index");
+    }
+
+    @Test
+    @DisplayName("Should index bookings by passenger and move them between flights")
+    void testBookingIndexes() {
+        String passengerId = "PASS-BK-" + uniqueId;
+        Booking first = new Booking("BK-A-" + uniqueId, passengerId, "FL-OLD-" + uniqueId,
+                "Index User", "ECONOMY", 200.0);
+        Booking second = new Booking("BK-B-" + uniqueId, passengerId, "FL-OLD-" + uniqueId,
+                "Index User", "BUSINESS", 500.0);
+        first.confirmBooking();
+        second.confirmBooking();
+        database.saveBooking(first);
+        database.saveBooking(second);
+
+        assertEquals(2, database.getBookingsByPassengerId(passengerId).size());
+        assertEquals(2, database.getBookingsByFlightId("FL-OLD-" + uniqueId).size());
+
+        second.setFlightId("FL-NEW-" + uniqueId);
+        database.updateBooking(second);
+
+        assertEquals(1, database.getBookingsByFlightId("FL-OLD-" + uniqueId).size(),
+                "Moved booking should leave the old flight");
+        assertEquals(1, database.getBookingsByFlightId("FL-NEW-" + uniqueId).size(),
+                "Moved booking should be listed on the new flight");
+        assertEquals(2, database.getBookingsByPassengerId(passengerId).size());
+    }
+
+    @Test
+    @DisplayName("Should keep every payment attempt and prefer the latest successful one")
+    void testPaymentsByBooking() {
+        String bookingId = "BK-PAY-" + uniqueId;
+        LocalDateTime now = LocalDateTime.now();
+        Payment failed = new Payment("PAY-F-" + uniqueId, bookingId, "PASS-" + uniqueId, 200.0, "CREDIT_CARD");
+        failed.setPaymentDate(now.minusMinutes(2));
+        failed.markAsFailed();
+        Payment success = new Payment("PAY-S-" + uniqueId, bookingId, "PASS-" + uniqueId, 200.0, "DEBIT_CARD");
+        success.setPaymentDate(now.minusMinutes(1));
+        success.markAsSuccess("TXN-" + uniqueId);
+        Payment retry = new Payment("PAY-R-" + uniqueId, bookingId, "PASS-" + uniqueId, 200.0, "CREDIT_CARD");
+        retry.setPaymentDate(now);
+        retry.markAsFailed();
+        database.savePayment(failed);
+        database.savePayment(success);
+        database.savePayment(retry);
+
+        List<Payment> attempts = database.getPaymentsByBookingId(bookingId);
+        assertEquals(3, attempts.size(), "All attempts should be kept");
+        assertEquals(failed.getPaymentId(), attempts.get(0).getPaymentId(), "Attempts should be oldest first");
+        assertEquals(success.getPaymentId(), database.getPaymentByBookingId(bookingId).getPaymentId(),
+                "Latest successful attempt should be returned");
+
+        success.processRefund("Flight cancelled");
+        database.updatePayment(success);
+        assertNull(database.getLatestSuccessfulPaymentByBookingId(bookingId),
+                "Refunded payment is no longer successful");
+        assertEquals(retry.getPaymentId(), database.getPaymentByBookingId(bookingId).getPaymentId(),
+                "Latest attempt should be returned when none succeeded");
+    }
+
+    @Test
+    @DisplayName("Should let only one concurrent save claim a flight number")
+    void testConcurrentFlightNumberClaim() throws Exception {
+        String flightNumber = "NUM" + uniqueId;
+        LocalDateTime departure = LocalDateTime.now().plusDays(6);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Flight flight = new Flight("FL-NUM-" + uniqueId + "-" + i, flightNumber, "Toronto", "Ottawa",
+                    departure, departure.plusHours(1), 80);
+            results.add(executor.submit(() -> {
+                start.await();
+                return database.saveFlight(flight);
+            }));
+        }
+        start.countDown();
+
+        int saved = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                saved++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, saved, "Exactly one flight should own the number");
+        assertNotNull(database.getFlightByNumber(flightNumber.toLowerCase()),
+                "Flight should be found by number ignoring case");
+    }
+
+    @Test
+    @DisplayName("Should keep statistics in step with status transitions")
+    void testStatisticsFollowTransitions() {
+        Map<String, Object> before = database.getSystemStatistics();
+
+        Booking booking = new Booking("BK-ST-" + uniqueId, "PASS-ST-" + uniqueId, "FL-ST-" + uniqueId,
+                "Stats User", "ECONOMY", 300.0);
+        database.saveBooking(booking);
+        Payment payment = new Payment("PAY-ST-" + uniqueId, booking.getBookingId(), "PASS-ST-" + uniqueId,
+                300.0, "CREDIT_CARD");
+        payment.markAsSuccess("TXN-ST-" + uniqueId);
+        database.savePayment(payment);
+        booking.confirmBooking();
+        database.updateBooking(booking);
+
+        Map<String, Object> confirmed = database.getSystemStatistics();
+        assertEquals((long) before.get("confirmedBookings") + 1, confirmed.get("confirmedBookings"));
+        assertEquals((double) before.get("totalRevenue") + 300.0, (double) confirmed.get("totalRevenue"), 0.001);
+
+        booking.cancelBooking();
+        database.updateBooking(booking);
+        payment.processRefund("Cancelled");
+        database.updatePayment(payment);
+
+        Map<String, Object> after = database.getSystemStatistics();
+        assertEquals(before.get("confirmedBookings"), after.get("confirmedBookings"));
+        assertEquals((long) before.get("cancelledBookings") + 1, after.get("cancelledBookings"));
+        assertEquals((double) before.get("totalRevenue"), (double) after.get("totalRevenue"), 0.001,
+                "Refunded payment should no longer count as revenue");
+    }
+
+    @Test
+    @DisplayName("Should walk bookings page by page in date order without gaps or repeats")
+    void testBookingsKeysetPagination() {
+        LocalDateTime base = LocalDateTime.of(2999, 1, 1, 0, 0).plusMinutes(testCounter * 100);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            expected.add("BK-PG-" + uniqueId + "-" + i);
+        }
+        for (int i : new int[] {4, 0, 6, 2, 5, 1, 3}) {
+            Booking booking = new Booking(expected.get(i), "PASS-PG-" + uniqueId, "FL-PG-" + uniqueId,
+                    "Page User", "ECONOMY", 100.0);
+            booking.setBookingDate(base.plusMinutes(i));
+            database.saveBooking(booking);
+        }
+
+        List<Booking> walked = new ArrayList<>();
+        PageCursor cursor = null;
+        do {
+            Page<Booking> page = database.getBookingsPage(SortKey.DATE, cursor, 3);
+            assertTrue(page.getItems().size() <= 3, "Page should not exceed its size");
+            walked.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(database.getAllBookings().size(), walked.size(), "Every booking should be visited once");
+        for (int i = 1; i < walked.size(); i++) {
+            assertFalse(walked.get(i).getBookingDate().isBefore(walked.get(i - 1).getBookingDate()),
+                    "Bookings should come in date order");
+        }
+        List<String> ours = walked.stream()
+                .map(Booking::getBookingId)
+                .filter(id -> id.startsWith("BK-PG-" + uniqueId + "-"))
+                .collect(java.util.stream.Collectors.toList());
+        assertEquals(expected, ours);
+    }
+
+    @Test
+    @DisplayName("Should resume after the cursor key even when earlier entries change")
+    void testCursorIsStableUnderConcurrentChanges() {
+        PageIndex index = new PageIndex();
+        Map<String, String> store = new java.util.concurrent.ConcurrentHashMap<>();
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 0, 0);
+        for (String id : new String[] {"a", "b", "c", "d", "e"}) {
+            store.put(id, id);
+            index.put(id, base.plusHours(id.charAt(0) - 'a'));
+        }
+
+        Page<String> first = index.page(SortKey.DATE, null, 2, store::get);
+        assertEquals(List.of("a", "b"), first.getItems());
+        assertTrue(first.hasMore());
+
+        store.put("0", "0");
+        index.put("0", base.minusHours(1));
+        store.remove("c");
+        index.remove("c");
+
+        Page<String> second = index.page(SortKey.DATE, first.getNextCursor(), 2, store::get);
+        assertEquals(List.of("d", "e"), second.getItems(), "Next page should start after the last-seen key");
+        assertFalse(second.hasMore());
+
+        Page<String> byId = index.page(SortKey.ID, null, 10, store::get);
+        assertEquals(List.of("0", "a", "b", "d", "e"), byId.getItems());
+        assertThrows(IllegalArgumentException.class,
+                () -> index.page(SortKey.ID, first.getNextCursor(), 2, store::get),
+                "A cursor should only be used with the sort key it was issued for");
+        assertThrows(IllegalArgumentException.class, () -> index.page(SortKey.ID, null, 0, store::get));
+    }
+
+    @Test
+    @DisplayName("Should reject an update based on a stale version")
+    void testStaleUpdateRejected() {
+        Booking booking = new Booking("BK-VER-" + uniqueId, "PASS-VER-" + uniqueId, "FL-VER-" + uniqueId,
+                "Version User", "ECONOMY", 150.0);
+        assertTrue(database.saveBooking(booking));
+        long version = database.getBookingById(booking.getBookingId()).getVersion();
+
+        Booking first = database.getBookingById(booking.getBookingId()).copy();
+        Booking second = database.getBookingById(booking.getBookingId()).copy();
+        first.confirmBooking();
+        assertTrue(database.updateBooking(first), "First writer should win");
+        assertEquals(version + 1, database.getBookingById(booking.getBookingId()).getVersion());
+
+        second.cancelBooking();
+        assertFalse(database.updateBooking(second), "Writer holding the old version should be rejected");
+        assertEquals("CONFIRMED", database.getBookingById(booking.getBookingId()).getStatus(),
+                "Stale write should not overwrite the first one");
+    }
+
+    @Test
+    @DisplayName("Should restore exactly the state the backup was taken at")
+    void testBackupIsPointInTime() {
+        Passenger passenger = newPassenger("PASS-BAK-" + uniqueId, "backup" + uniqueId + "@test.com");
+        assertTrue(database.savePassenger(passenger));
+        Booking booking = new Booking("BK-BAK-" + uniqueId, passenger.getUserId(), "FL-BAK-" + uniqueId,
+                "Backup User", "ECONOMY", 99.0);
+        assertTrue(database.saveBooking(booking));
+        database.performBackup();
+
+        Booking confirmed = database.getBookingById(booking.getBookingId()).copy();
+        confirmed.confirmBooking();
+        assertTrue(database.updateBooking(confirmed));
+        passenger.setName("Changed After Backup");
+        assertTrue(database.updatePassenger(passenger));
+        Booking later = new Booking("BK-BAK2-" + uniqueId, passenger.getUserId(), "FL-BAK-" + uniqueId,
+                "Backup User", "ECONOMY", 99.0);
+        assertTrue(database.saveBooking(later));
+
+        assertTrue(database.restoreFromBackup());
+        assertEquals("PENDING", database.getBookingById(booking.getBookingId()).getStatus(),
+                "Changes after the backup should be rolled back");
+        assertEquals("Index User", database.getPassengerById(passenger.getUserId()).getName());
+        assertNull(database.getBookingById(later.getBookingId()));
+        assertEquals(1, database.getBookingsByPassengerId(passenger.getUserId()).size(),
+                "Indexes should match the restored contents");
+    }
+
+    @Test
+    @DisplayName("Should archive bookings of departed flights and keep them readable")
+    void testArchiveClosedFlights() {
+        Passenger passenger = newPassenger("PASS-ARC-" + uniqueId, "archive" + uniqueId + "@test.com");
+        assertTrue(database.savePassenger(passenger));
+        LocalDateTime departure = LocalDateTime.now().minusHours(6);
+        Flight flight = new Flight("FL-ARC-" + uniqueId, "AR" + uniqueId, "Toronto", "Ottawa",
+                departure, departure.plusHours(1), 100);
+        flight.setStatus("DEPARTED");
+        assertTrue(database.saveFlight(flight));
+        for (int i = 0; i < 3; i++) {
+            Booking booking = new Booking("BK-ARC-" + i + "-" + uniqueId, passenger.getUserId(),
+                    flight.getFlightId(), "Archive User", "ECONOMY", 120.0);
+            booking.confirmBooking();
+            assertTrue(database.saveBooking(booking));
+        }
+        String bookingId = "BK-ARC-0-" + uniqueId;
+        Payment payment = new Payment("PAY-ARC-" + uniqueId, bookingId, passenger.getUserId(), 120.0, "CREDIT_CARD");
+        payment.markAsSuccess("TXN-ARC");
+        assertTrue(database.savePayment(payment));
+
+        assertTrue(database.archiveClosedFlights() >= 3, "Bookings of the departed flight should be archived");
+        assertTrue((Integer) database.getSystemStatistics().get("archivedBookings") >= 3);
+        assertEquals(0, database.archiveClosedFlights(), "A second run should find nothing left");
+        assertEquals("CONFIRMED", database.getBookingById(bookingId).getStatus());
+        assertEquals(3, database.getBookingsByPassengerId(passenger.getUserId()).size());
+        assertEquals(3, database.getBookingsByFlightId(flight.getFlightId()).size());
+        assertEquals("TXN-ARC", database.getPaymentByBookingId(bookingId).getTransactionReference());
+
+        database.performBackup();
+        Booking checkedIn = database.getBookingById(bookingId).copy();
+        checkedIn.setCheckedIn(true);
+        assertTrue(database.updateBooking(checkedIn), "Archived bookings should still take updates");
+        assertTrue(database.getBookingById(bookingId).isCheckedIn());
+
+        assertTrue(database.restoreFromBackup());
+        assertFalse(database.getBookingById(bookingId).isCheckedIn(), "Backups should include the archive");
+        assertEquals(3, database.getBookingsByPassengerId(passenger.getUserId()).size());
+    }
+
+    @Test
+    @DisplayName("Archived bookings keep statistics, pages and snapshots whole, and come back when written")
+    void testArchivedBookingsLeaveHotIndexes() {
+        SystemDatabase archiving = new SystemDatabase(StorageEngines.create("memory"), null);
+        Passenger passenger = newPassenger("PASS-AX", "archived-index@test.com");
+        assertTrue(archiving.savePassenger(passenger));
+        LocalDateTime departure = LocalDateTime.now().minusHours(6);
+        Flight flight = new Flight("FL-AX", "AX1", "Toronto", "Ottawa", departure, departure.plusHours(1), 100);
+        flight.setStatus("DEPARTED");
+        assertTrue(archiving.saveFlight(flight));
+        for (int i = 0; i < 4; i++) {
+            Booking booking = new Booking("BK-AX-" + i, "PASS-AX", "FL-AX", "Archive User", "ECONOMY", 100.0);
+            booking.confirmBooking();
+            assertTrue(archiving.saveBooking(booking));
+            Payment payment = new Payment("PAY-AX-" + i, booking.getBookingId(), "PASS-AX", 100.0, "CREDIT_CARD");
+            payment.markAsSuccess("TXN-AX-" + i);
+            assertTrue(archiving.savePayment(payment));
+        }
+        Map<String, Object> before = archiving.getSystemStatistics();
+        List<String> pageBefore = bookingPageIds(archiving);
+
+        assertEquals(4, archiving.archiveClosedFlights());
+        Map<String, Object> archived = archiving.getSystemStatistics();
+        assertEquals(before.get("bookingsByStatus"), archived.get("bookingsByStatus"));
+        assertEquals(before.get("paymentsByStatus"), archived.get("paymentsByStatus"));
+        assertEquals((double) before.get("totalRevenue"), (double) archived.get("totalRevenue"), 0.001);
+        assertEquals(pageBefore, bookingPageIds(archiving), "Archived bookings stay in their pages");
+        assertEquals(4, archiving.getBookingsByPassengerId("PASS-AX").size());
+        assertEquals(4, archiving.getBookingsByFlightId("FL-AX").size());
+        assertEquals("TXN-AX-2", archiving.getPaymentByBookingId("BK-AX-2").getTransactionReference());
+
+        try (ReadSnapshot snapshot = archiving.openSnapshot()) {
+            assertEquals(4, snapshot.streamBookings().collect(Collectors.toList()).size());
+            Booking cancelled = archiving.getBookingById("BK-AX-0").copy();
+            cancelled.cancelBooking();
+            assertTrue(archiving.updateBooking(cancelled), "Archived bookings should still take updates");
+            assertEquals("CONFIRMED", snapshot.getBookingById("BK-AX-0").getStatus());
+            assertEquals(4, snapshot.streamBookings().collect(Collectors.toList()).size());
+        }
+        Map<String, Object> written = archiving.getSystemStatistics();
+        assertEquals((long) before.get("confirmedBookings") - 1, written.get("confirmedBookings"));
+        assertEquals((long) before.get("cancelledBookings") + 1, written.get("cancelledBookings"));
+        assertEquals(3, archiving.getBookingsByFlightId("FL-AX").size());
+        assertEquals(4, archiving.getBookingsByPassengerId("PASS-AX").size());
+        assertEquals(1, archiving.getPaymentsByBookingId("BK-AX-0").size());
+        assertEquals(pageBefore, bookingPageIds(archiving));
+
+        assertEquals(1, archiving.archiveClosedFlights(), "The written booking is archived again");
+        assertEquals(written.get("bookingsByStatus"), archiving.getSystemStatistics().get("bookingsByStatus"));
+        assertEquals(pageBefore, bookingPageIds(archiving));
+        assertEquals(1, archiving.getPaymentsByBookingId("BK-AX-0").size());
+        assertEquals("CANCELLED", archiving.getBookingById("BK-AX-0").getStatus());
+    }
+
+    private static List<String> bookingPageIds(SystemDatabase database) {
+        List<String> ids = new ArrayList<>();
+        PageCursor cursor = null;
+        do {
+            Page<Booking> page = database.getBookingsPage(SortKey.ID, cursor, 3);
+            page.getItems().forEach(b -> ids.add(b.getBookingId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Commits are replayed from the write-ahead log after a restart")
+    void testRecoveryFromWriteAheadLog(@TempDir Path dir) {
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Durability.GROUPED);
+        SystemDatabase first = new SystemDatabase(StorageEngines.create("memory"), wal);
+        LocalDateTime departure = LocalDateTime.now().plusDays(3);
+        assertTrue(first.saveFlight(new Flight("FL-WAL", "WAL101", "Toronto", "Calgary",
+                departure, departure.plusHours(4), 100)));
+        assertTrue(first.savePassenger(newPassenger("PASS-WAL", "wal@test.com")));
+        Booking booking = new Booking("BK-WAL", "PASS-WAL", "FL-WAL", "WAL User", "ECONOMY", 200.0);
+        assertTrue(first.beginUnitOfWork().saveBooking(booking).addPassengerBooking("PASS-WAL", "BK-WAL").commit());
+        Booking cancelled = first.getBookingById("BK-WAL").copy();
+        cancelled.setStatus("CANCELLED");
+        assertTrue(first.updateBooking(cancelled));
+        wal.close();
+
+        SystemDatabase second = new SystemDatabase(StorageEngines.create("memory"),
+                new WriteAheadLog(dir, WriteAheadLog.Durability.GROUPED));
+        assertEquals("CANCELLED", second.getBookingById("BK-WAL").getStatus());
+        assertEquals(1, second.getBookingById("BK-WAL").getVersion());
+        assertEquals(List.of("BK-WAL"), second.getPassengerByEmail("wal@test.com").getBookingIds());
+        assertEquals("FL-WAL", second.getFlightByNumber("WAL101").getFlightId());
+        assertEquals(1, second.searchFlights("Toronto", "Calgary", departure).size());
+        assertEquals(1, second.getTransactionLogsByType("RECOVERY").size());
+    }
+
+    @Test
+    @DisplayName("A restore is made durable as a checkpoint, not as one WAL record")
+    void testRestoreWritesCheckpoint(@TempDir Path dir) throws Exception {
+        WriteAheadLog wal = new WriteAheadLog(dir.resolve("wal"), WriteAheadLog.Durability.GROUPED);
+        SystemDatabase first = new SystemDatabase(StorageEngines.create("persistent"), wal,
+                new BackupArchive(dir.resolve("backups"), 1));
+        LocalDateTime departure = LocalDateTime.now().plusDays(5);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(first.saveFlight(new Flight("FL-RC-" + i, "RC" + i, "Regina", "Winnipeg",
+                    departure.plusMinutes(i), departure.plusHours(2), 80)));
+        }
+        first.performBackup().getResult().get(30, TimeUnit.SECONDS);
+        assertTrue(first.deleteFlight("FL-RC-0"));
+        AtomicInteger restored = new AtomicInteger();
+        first.addRestoreListener(restored::incrementAndGet);
+        assertTrue(first.restoreFromBackup());
+        assertEquals(1, restored.get(), "Restore listeners run after the restore");
+        assertTrue(first.saveFlight(new Flight("FL-RC-3", "RC3", "Regina", "Winnipeg",
+                departure, departure.plusHours(2), 80)));
+        wal.close();
+
+        SystemDatabase second = new SystemDatabase(StorageEngines.create("persistent"),
+                new WriteAheadLog(dir.resolve("wal"), WriteAheadLog.Durability.GROUPED));
+        assertEquals(4, second.getAllFlights().size(), "The restored flights and the one saved after");
+        assertNotNull(second.getFlightById("FL-RC-0"));
+        Map<String, Object> recovery = second.getRecoveryStatistics();
+        assertEquals(4L, recovery.get("checkpointEntities"), "3 flights and the default admin");
+        assertEquals(1, recovery.get("replayedCommits"), "Only the commit after the restore is replayed");
+    }
+
+    @Test
+    @DisplayName("Commits after a restore are not durable until the restore is checkpointed")
+    void testRestoreCheckpointFailure(@TempDir Path dir) throws Exception {
+        AtomicBoolean failing = new AtomicBoolean();
+        EntityRepository<AirlineStaff> staffRepository = new InMemoryEntityRepository<>() {
+            @Override
+            public Stream<AirlineStaff> stream() {
+                if (failing.get()) {
+                    throw new IllegalStateException("checkpoint failure");
+                }
+                return super.stream();
+            }
+        };
+        Path walDir = dir.resolve("wal");
+        WriteAheadLog wal = new WriteAheadLog(walDir, WriteAheadLog.Durability.GROUPED);
+        SystemDatabase db = new SystemDatabase(new InMemoryStorageEngine() {
+            @Override
+            public EntityRepository<AirlineStaff> airlineStaff() {
+                return staffRepository;
+            }
+        }, wal, new BackupArchive(dir.resolve("backups"), 1));
+        LocalDateTime departure = LocalDateTime.now().plusDays(3);
+        assertTrue(db.saveFlight(new Flight("FL-RX-1", "RX1", "Toronto", "Halifax", departure, departure.plusHours(2), 80)));
+        assertTrue(db.saveFlight(new Flight("FL-RX-2", "RX2", "Toronto", "Halifax", departure, departure.plusHours(2), 80)));
+        db.performBackup().getResult().get(30, TimeUnit.SECONDS);
+        assertTrue(db.deleteFlight("FL-RX-2"));
+
+        failing.set(true);
+        assertThrows(IllegalStateException.class, db::restoreFromBackup);
+        assertEquals(2, db.getAllFlights().size(), "The restored contents stay");
+        assertThrows(IllegalStateException.class, () -> db.saveFlight(new Flight("FL-RX-3", "RX3",
+                "Toronto", "Halifax", departure, departure.plusHours(2), 80)), "Not durable without the checkpoint");
+
+        // A crash now comes back to the contents from before the restore
+        Path crashed = dir.resolve("crashed");
+        try (Stream<Path> files = Files.walk(walDir)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, crashed.resolve(walDir.relativize(file).toString()));
+            }
+        }
+        SystemDatabase recovered = new SystemDatabase(StorageEngines.create("persistent"),
+                new WriteAheadLog(crashed, WriteAheadLog.Durability.GROUPED));
+        assertEquals(List.of("FL-RX-1"), recovered.getAllFlights().stream().map(Flight::getFlightId).toList());
+
+        // A later checkpoint covers the restore
+        failing.set(false);
+        assertTrue(db.writeCheckpoint());
+        assertTrue(db.saveFlight(new Flight("FL-RX-4", "RX4", "Toronto", "Halifax", departure, departure.plusHours(2), 80)));
+        wal.close();
+        SystemDatabase restarted = new SystemDatabase(StorageEngines.create("persistent"),
+                new WriteAheadLog(walDir, WriteAheadLog.Durability.GROUPED));
+        assertEquals(4, restarted.getAllFlights().size());
+    }
+
+    @Test
+    @DisplayName("Startup loads the newest checkpoint and replays only the WAL after it")
+    void testRecoveryFromCheckpoint(@TempDir Path dir) {
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Durability.ASYNC);
+        SystemDatabase first = new SystemDatabase(StorageEngines.create("persistent"), wal);
+        LocalDateTime departure = LocalDateTime.now().plusDays(5);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(first.saveFlight(new Flight("FL-CP-" + i, "CP" + i, "Regina", "Winnipeg",
+                    departure.plusMinutes(i), departure.plusHours(2), 80)));
+        }
+        assertTrue(first.savePassenger(newPassenger("PASS-CP", "checkpoint@test.com")));
+        assertTrue(first.writeCheckpoint());
+        assertFalse(first.writeCheckpoint(), "Nothing was logged since the last checkpoint");
+
+        Flight delayed = first.getFlightById("FL-CP-7").copy();
+        delayed.setStatus("DELAYED");
+        assertTrue(first.updateFlight(delayed));
+        assertTrue(first.deleteFlight("FL-CP-8"));
+        wal.close();
+
+        SystemDatabase second = new SystemDatabase(StorageEngines.create("persistent"),
+                new WriteAheadLog(dir, WriteAheadLog.Durability.ASYNC));
+        assertEquals("DELAYED", second.getFlightById("FL-CP-7").getStatus());
+        assertNull(second.getFlightById("FL-CP-8"));
+        assertEquals(49, second.getAllFlights().size());
+        assertEquals("PASS-CP", second.getPassengerByEmail("checkpoint@test.com").getUserId());
+        Map<String, Object> recovery = second.getRecoveryStatistics();
+        assertEquals(52L, recovery.get("checkpointEntities"), "50 flights, the passenger and the default admin");
+        assertEquals(2, recovery.get("replayedCommits"));
+        assertTrue(recovery.containsKey("recoveryMillisPerMillionEntities"));
+    }
+
+    @Test
+    @DisplayName("Backups are written to disk in the background and survive a restart")
+    void testBackupToDisk(@TempDir Path dir) throws Exception {
+        BackupArchive archive = new BackupArchive(dir, 2);
+        SystemDatabase first = new SystemDatabase(StorageEngines.create("persistent"), null, archive);
+        LocalDateTime departure = LocalDateTime.now().plusDays(4);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(first.saveFlight(new Flight("FL-BD-" + i, "BD" + i, "Halifax", "Ottawa",
+                    departure.plusMinutes(i), departure.plusHours(2), 90)));
+        }
+        assertTrue(first.savePassenger(newPassenger("PASS-BD", "disk@test.com")));
+        assertTrue(first.saveBooking(new Booking("BK-BD", "PASS-BD", "FL-BD-3", "Disk User", "ECONOMY", 150.0)));
+        BackupJob job = first.performBackup();
+        assertEquals(23, job.getTotalEntities(), "20 flights, the passenger, the booking and the default admin");
+        Path backup = job.getResult().get(30, TimeUnit.SECONDS);
+        assertEquals(1.0, job.getProgress());
+        assertTrue(Files.exists(backup.resolve("flights.bin.gz")));
+        assertEquals(1, first.getTransactionLogsByType("BACKUP").size());
+
+        assertTrue(first.deleteFlight("FL-BD-0"));
+        first.performFullBackup().getResult().get(30, TimeUnit.SECONDS);
+        Path newest = first.performFullBackup().getResult().get(30, TimeUnit.SECONDS);
+        assertEquals(2, archive.backups().size(), "Only the newest two backups are kept");
+        assertFalse(Files.exists(backup));
+        assertEquals(newest, archive.latest());
+
+        SystemDatabase second = new SystemDatabase(StorageEngines.create("memory"), null, archive);
+        assertNull(second.getFlightById("FL-BD-5"));
+        assertTrue(second.restoreFromBackup(), "A restart should restore from the newest backup on disk");
+        assertEquals(19, second.getAllFlights().size());
+        assertEquals("Disk User", second.getBookingById("BK-BD").getPassengerName());
+        assertEquals("PASS-BD", second.getPassengerByEmail("disk@test.com").getUserId());
+        assertEquals(1, second.getBookingsByPassengerId("PASS-BD").size());
+    }
+
+    @Test
+    @DisplayName("Should write only changed entities in an incremental backup and replay them on restore")
+    void testIncrementalBackup(@TempDir Path dir) throws Exception {
+        BackupArchive archive = new BackupArchive(dir, 1);
+        SystemDatabase first = new SystemDatabase(StorageEngines.create("persistent"), null, archive);
+        LocalDateTime departure = LocalDateTime.now().plusDays(4);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(first.saveFlight(new Flight("FL-IB-" + i, "IB" + i, "Regina", "Calgary",
+                    departure.plusMinutes(i), departure.plusHours(2), 90)));
+        }
+        Path base = first.performBackup().getResult().get(30, TimeUnit.SECONDS);
+        assertNull(archive.parentOf(base), "The first backup is a full one");
+
+        Flight changed = first.getFlightById("FL-IB-1").copy();
+        changed.setGate("B7");
+        assertTrue(first.updateFlight(changed));
+        assertTrue(first.deleteFlight("FL-IB-2"));
+        BackupJob job = first.performBackup();
+        assertEquals(2, job.getTotalEntities(), "Only the updated and the deleted flight are written");
+        Path delta = job.getResult().get(30, TimeUnit.SECONDS);
+        assertEquals(base, archive.parentOf(delta));
+        assertEquals(2, archive.readTable(delta, "flights", ArchiveCodecs.FLIGHT, (id, flight) -> { }));
+        assertFalse(Files.exists(delta.resolve("bookings.bin.gz")), "Unchanged tables are not written");
+        assertTrue(Files.exists(base), "A kept backup keeps the full backup it builds on");
+
+        assertTrue(first.saveFlight(new Flight("FL-IB-10", "IB10", "Regina", "Calgary",
+                departure, departure.plusHours(2), 90)));
+        Path newest = first.performBackup().getResult().get(30, TimeUnit.SECONDS);
+        assertEquals(List.of(base, delta, newest), archive.restoreChain());
+
+        SystemDatabase second = new SystemDatabase(StorageEngines.create("memory"), null, archive);
+        assertTrue(second.restoreFromBackup());
+        assertEquals(10, second.getAllFlights().size());
+        assertEquals("B7", second.getFlightById("FL-IB-1").getGate());
+        assertNull(second.getFlightById("FL-IB-2"));
+        assertNotNull(second.getFlightById("FL-IB-10"));
+    }
+
+    @Test
+    @DisplayName("Should undo a flight batch and release its flight numbers when a write fails")
+    void testInsertFlightsFailure() {
+        EntityRepository<Flight> failing = new InMemoryEntityRepository<>() {
+            @Override
+            public void save(String id, Flight flight) {
+                if ("FL-IF-2".equals(id)) {
+                    throw new IllegalStateException("storage failure");
+                }
+                super.save(id, flight);
+            }
+        };
+        SystemDatabase db = new SystemDatabase(new InMemoryStorageEngine() {
+            @Override
+            public EntityRepository<Flight> flights() {
+                return failing;
+            }
+        }, null);
+        LocalDateTime departure = LocalDateTime.now().plusDays(3);
+        List<Flight> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            batch.add(new Flight("FL-IF-" + i, "IF" + i, "Toronto", "Halifax",
+                    departure, departure.plusHours(2), 80));
+        }
+        assertThrows(IllegalStateException.class, () -> db.insertFlights(batch));
+        assertEquals(0, db.getAllFlights().size(), "Flights saved before the failure are undone");
+        for (int i = 0; i < 4; i++) {
+            assertFalse(db.isFlightNumberTaken("IF" + i), "Flight number IF" + i + " is released");
+        }
+        assertTrue(db.getTransactionLogsByType("IMPORT_FLIGHTS").isEmpty());
+
+        batch.remove(2);
+        assertTrue(db.insertFlights(batch).isEmpty());
+        assertEquals(3, db.getAllFlights().size());
+    }
+
+    @Test
+    @DisplayName("Updates to a flight of a batch wait for the batch, so replay keeps them")
+    void testInsertFlightsBeforeUpdates(@TempDir Path dir) throws Exception {
+        CountDownLatch reached = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EntityRepository<Flight> slow = new InMemoryEntityRepository<>() {
+            @Override
+            public void save(String id, Flight flight) {
+                super.save(id, flight);
+                if ("FL-LK-1".equals(id) && flight.getVersion() == 0) {
+                    reached.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Durability.GROUPED);
+        SystemDatabase db = new SystemDatabase(new InMemoryStorageEngine() {
+            @Override
+            public EntityRepository<Flight> flights() {
+                return slow;
+            }
+        }, wal);
+        LocalDateTime departure = LocalDateTime.now().plusDays(3);
+        List<Flight> batch = List.of(
+                new Flight("FL-LK-0", "LK0", "Toronto", "Halifax", departure, departure.plusHours(2), 80),
+                new Flight("FL-LK-1", "LK1", "Toronto", "Halifax", departure, departure.plusHours(2), 80));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Flight>> importing = executor.submit(() -> db.insertFlights(batch));
+            assertTrue(reached.await(10, TimeUnit.SECONDS));
+            Flight delayed = db.getFlightById("FL-LK-0").copy();
+            delayed.setStatus("DELAYED");
+            Future<Boolean> updating = executor.submit(() -> db.updateFlight(delayed));
+            Thread.sleep(200);
+            assertFalse(updating.isDone(), "The update waits until the batch is sealed");
+            release.countDown();
+            assertTrue(importing.get(10, TimeUnit.SECONDS).isEmpty());
+            assertTrue(updating.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        wal.close();
+
+        SystemDatabase recovered = new SystemDatabase(StorageEngines.create("memory"),
+                new WriteAheadLog(dir, WriteAheadLog.Durability.GROUPED));
+        assertEquals("DELAYED", recovered.getFlightById("FL-LK-0").getStatus());
+    }
+
+    @Test
+    @DisplayName("Should put the contents back and rethrow when a restore fails part way")
+    void testRestoreFailureRollsBack(@TempDir Path dir) throws Exception {
+        AtomicBoolean failing = new AtomicBoolean();
+        EntityRepository<Flight> flightRepository = new InMemoryEntityRepository<>() {
+            @Override
+            public void save(String id, Flight flight) {
+                if (failing.get() && "FL-RF-BAD".equals(id)) {
+                    throw new IllegalStateException("storage failure");
+                }
+                super.save(id, flight);
+            }
+        };
+        SystemDatabase db = new SystemDatabase(new InMemoryStorageEngine() {
+            @Override
+            public EntityRepository<Flight> flights() {
+                return flightRepository;
+            }
+        }, null, new BackupArchive(dir, 1));
+        LocalDateTime departure = LocalDateTime.now().plusDays(3);
+        assertTrue(db.saveFlight(new Flight("FL-RF-1", "RF1", "Toronto", "Halifax", departure, departure.plusHours(2), 80)));
+        assertTrue(db.saveFlight(new Flight("FL-RF-BAD", "RF9", "Toronto", "Halifax", departure, departure.plusHours(2), 80)));
+        db.performBackup().getResult().get(30, TimeUnit.SECONDS);
+        assertTrue(db.deleteFlight("FL-RF-BAD"));
+        assertTrue(db.saveFlight(new Flight("FL-RF-2", "RF2", "Toronto", "Halifax", departure, departure.plusHours(2), 80)));
+
+        failing.set(true);
+        assertThrows(IllegalStateException.class, db::restoreFromBackup);
+        assertEquals(2, db.getAllFlights().size(), "The contents from before the restore are put back");
+        assertEquals("FL-RF-2", db.getFlightByNumber("RF2").getFlightId(), "Indexes match the contents put back");
+        assertFalse(db.isFlightNumberTaken("RF9"));
+        assertEquals(1, db.getTransactionLogsByType("RESTORE_FAILED").size());
+    }
+}
@@ -0,0 +1,154 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.model.Flight;
+import com.nocrashairlines.model.Passenger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for multi-entity units of work
+ * Tests FR-21, FR-22 (Flight and booking storage)
+ */
+@DisplayName("Unit of Work Tests")
+class UnitOfWorkTest {
+
+    private SystemDatabase database;
+    private static long testCounter = 0;
+    private String uniqueId;
+
+    @BeforeEach
+    void setUp() {
+        database = SystemDatabase.getInstance();
+        uniqueId = System.currentTimeMillis() + "-" + (testCounter++);
+    }
+
+    private Flight newFlight(String suffix, int seats) {
+        LocalDateTime departure = LocalDateTime.now().plusDays(5).withHour(7).withMinute(0);
+        Flight flight = new Flight("FL-UOW-" + suffix + "-" + uniqueId, "UOW" + suffix + uniqueId,
+                "Regina", "Saskatoon", departure, departure.plusHours(1), seats);
+        assertTrue(database.saveFlight(flight));
+        return flight;
+    }
+
+    private Booking newBooking(Flight flight) {
+        return new Booking("BK-UOW-" + uniqueId, "PASS-UOW-" + uniqueId, flight.getFlightId(),
+                "Unit User", "ECONOMY", 120.0);
+    }
+
+    @Test
+    @DisplayName("Should commit seat, booking and passenger writes together")
+    void testCommitAppliesAllWrites() {
+        Flight flight = newFlight("A", 10);
+        Passenger passenger = new Passenger("PASS-UOW-" + uniqueId, "Unit User", "uow" + uniqueId + "@test.com",
+                "hash", "+1234567890", "UW" + uniqueId);
+        assertTrue(database.savePassenger(passenger));
+
+        Flight reserved = database.getFlightById(flight.getFlightId()).copy();
+        reserved.reserveSeat();
+        Booking booking = newBooking(flight);
+        boolean committed = database.beginUnitOfWork()
+                .updateFlight(reserved)
+                .saveBooking(booking)
+                .addPassengerBooking(passenger.getUserId(), booking.getBookingId())
+                .commit();
+
+        assertTrue(committed, "Unit of work should commit");
+        assertEquals(9, database.getFlightById(flight.getFlightId()).getAvailableSeats());
+        assertNotNull(database.getBookingById(booking.getBookingId()));
+        assertTrue(database.getPassengerById(passenger.getUserId()).getBookingIds().contains(booking.getBookingId()));
+        assertEquals(1, database.getBookingsByPassengerId(passenger.getUserId()).size());
+    }
+
+    @Test
+    @DisplayName("Should write nothing when one write is stale")
+    void testStaleWriteAbortsCommit() {
+        Flight flight = newFlight("B", 10);
+        Flight stale = database.getFlightById(flight.getFlightId()).copy();
+
+        Flight concurrent = database.getFlightById(flight.getFlightId()).copy();
+        concurrent.setGate("Z9");
+        assertTrue(database.updateFlight(concurrent), "Concurrent writer should win");
+
+        stale.reserveSeat();
+        Booking booking = newBooking(flight);
+        boolean committed = database.beginUnitOfWork()
+                .saveBooking(booking)
+                .updateFlight(stale)
+                .commit();
+
+        assertFalse(committed, "Commit should fail on the stale flight");
+        assertNull(database.getBookingById(booking.getBookingId()), "Booking should not be saved");
+        assertEquals(10, database.getFlightById(flight.getFlightId()).getAvailableSeats());
+        assertEquals("Z9", database.getFlightById(flight.getFlightId()).getGate());
+    }
+
+    @Test
+    @DisplayName("Should undo applied writes when a later one fails")
+    void testFailureRollsBack() {
+        Flight flight = newFlight("C", 10);
+        Flight reserved = database.getFlightById(flight.getFlightId()).copy();
+        reserved.reserveSeat();
+        Booking booking = newBooking(flight);
+
+        UnitOfWork work = database.beginUnitOfWork()
+                .updateFlight(reserved)
+                .saveBooking(booking);
+        work.stage(new UnitOfWork.StagedWrite("failing", "failing", () -> true, seq -> {
+            throw new IllegalStateException("storage failure");
+        }));
+
+        assertThrows(IllegalStateException.class, work::commit);
+        assertEquals(10, database.getFlightById(flight.getFlightId()).getAvailableSeats(),
+                "Seat reservation should be undone");
+        assertNull(database.getBookingById(booking.getBookingId()), "Booking insert should be undone");
+        assertTrue(database.getBookingsByFlightId(flight.getFlightId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reject staging the same entity twice or committing twice")
+    void testStagingRules() {
+        Flight flight = newFlight("D", 10);
+        UnitOfWork work = database.beginUnitOfWork().updateFlight(flight.copy());
+        assertThrows(IllegalArgumentException.class, () -> work.updateFlight(flight.copy()));
+        assertTrue(work.commit());
+        assertThrows(IllegalStateException.class, work::commit);
+    }
+
+    @Test
+    @DisplayName("Should not deadlock or leak seats when moving seats in opposite directions")
+    void testOppositeOrderCommits() throws InterruptedException {
+        Flight first = newFlight("E", 100);
+        Flight second = newFlight("F", 100);
+        for (Flight flight : new Flight[] {first, second}) {
+            Flight halfFull = database.getFlightById(flight.getFlightId()).copy();
+            halfFull.setAvailableSeats(50);
+            assertTrue(database.updateFlight(halfFull));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            boolean forward = t % 2 == 0;
+            executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    Flight from = database.getFlightById((forward ? first : second).getFlightId()).copy();
+                    Flight to = database.getFlightById((forward ? second : first).getFlightId()).copy();
+                    from.releaseSeat();
+                    to.reserveSeat();
+                    database.beginUnitOfWork().updateFlight(to).updateFlight(from).commit();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS), "Commits should not deadlock");
+
+        int seats = database.getFlightById(first.getFlightId()).getAvailableSeats()
+                + database.getFlightById(second.getFlightId()).getAvailableSeats();
+        assertEquals(100, seats, "Every commit should move exactly one seat or none");
+    }
+}
@@ -0,0 +1,102 @@
+package com.nocrashairlines.database;
+
+import com.nocrashairlines.database.storage.ColdStore;
+import com.nocrashairlines.database.storage.InMemoryEntityRepository;
+import com.nocrashairlines.database.storage.TieredRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Versioned Store Tests")
+class VersionedStoreTest {
+
+    @Test
+    @DisplayName("Should read through to the repository once versions are settled")
+    void testSettledChainsReadRepository() {
+        InMemoryEntityRepository<String> repository = new InMemoryEntityRepository<>();
+        repository.save("A", "a0");
+        VersionedStore<String> store = new VersionedStore<>(repository);
+        store.reset(1, false);
+
+        // A snapshot at 1 is open while commit 2 changes A
+        store.record("A", "a2", 2, 1);
+        repository.save("A", "a2");
+        assertEquals("a0", store.read("A", 1));
+        assertEquals("a2", store.read("A", 2));
+
+        store.vacuum(2);
+        repository.save("A", "a3-unversioned");
+        assertEquals("a3-unversioned", store.read("A", 1), "A settled chain should read the repository");
+    }
+
+    @Test
+    @DisplayName("Should hide deletes from older snapshots and undo rolled back writes")
+    void testDeleteAndRollback() {
+        InMemoryEntityRepository<String> repository = new InMemoryEntityRepository<>();
+        repository.save("A", "a0");
+        repository.save("B", "b0");
+        VersionedStore<String> store = new VersionedStore<>(repository);
+        store.reset(1, false);
+
+        store.record("A", null, 2, 1);
+        repository.remove("A");
+        store.record("B", "b3", 3, 1);
+        repository.save("B", "b3");
+        repository.save("B", "b0");
+        store.rollback("B", 3);
+
+        assertEquals("a0", store.read("A", 1));
+        assertNull(store.read("A", 2));
+        assertEquals("b0", store.read("B", 3));
+        List<String> seen = store.stream(2).sorted().collect(Collectors.toList());
+        assertEquals(List.of("b0"), seen);
+
+        store.vacuum(3);
+        assertEquals(List.of("b0"), store.stream(1).collect(Collectors.toList()));
+    }
+
+    private static final ColdStore.Codec<String> STRINGS = new ColdStore.Codec<>() {
+        @Override
+        public void write(DataOutput out, String value) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    @Test
+    @DisplayName("Should read archived entities from the archive and version them again when written")
+    void testArchivedEntities() {
+        TieredRepository<String> repository = new TieredRepository<>(
+                new InMemoryEntityRepository<>(), new ColdStore<>("versioned-store-test", STRINGS));
+        repository.save("A", "a0");
+        repository.save("B", "b0");
+        VersionedStore<String> store = new VersionedStore<>(repository, repository.cold());
+        store.reset(1, false);
+        try {
+            repository.moveToCold("A", repository.cold().write(Map.of("A", "a0")));
+            store.archived("A");
+            assertEquals("a0", store.read("A", 1));
+            assertEquals(List.of("a0", "b0"), store.stream(1).sorted().collect(Collectors.toList()));
+
+            // A snapshot at 1 is open while commit 2 writes A back to the hot tier
+            store.record("A", "a2", 2, 1);
+            repository.save("A", "a2");
+            assertEquals("a0", store.read("A", 1));
+            assertEquals("a2", store.read("A", 2));
+            assertEquals(List.of("a0", "b0"), store.stream(1).sorted().collect(Collectors.toList()));
+            assertEquals(List.of("a2", "b0"), store.stream(2).sorted().collect(Collectors.toList()));
+        } finally {
+            repository.cold().close();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.Flight;
+import com.nocrashairlines.model.Passenger;
+import com.nocrashairlines.model.Payment;
+import com.nocrashairlines.model.TransactionLog;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Archive Codec Tests")
+class ArchiveCodecsTest {
+
+    private static <T> T roundTrip(ColdStore.Codec<T> codec, T value) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        ArchiveCodecs.encode(codec, value, buffer);
+        buffer.flip();
+        T decoded = ArchiveCodecs.decode(codec, buffer);
+        assertFalse(buffer.hasRemaining(), "Decoding should consume exactly what was encoded");
+        return decoded;
+    }
+
+    @Test
+    @DisplayName("Should round-trip unusual values through a direct buffer")
+    void testEdgeValues() {
+        Flight flight = new Flight("FL-1", "NC999", "Toronto", "Reykjavik",
+                LocalDateTime.of(1999, 12, 31, 23, 59, 59, 1), LocalDateTime.of(2100, 1, 1, 0, 0), 300);
+        flight.setAircraftType(null);
+        flight.setClassPrice("ECONOMY", 199.99);
+        flight.setClassPrice("PREMIUM", 1.0 / 3);
+        flight.setStatus("DELAYED");
+        flight.setAvailableSeats(-1);
+        flight.setVersion(Long.MAX_VALUE);
+        Flight decoded = roundTrip(ArchiveCodecs.FLIGHT, flight);
+        assertEquals("Reykjavik", decoded.getDestination());
+        assertEquals(flight.getDepartureTime(), decoded.getDepartureTime());
+        assertEquals(flight.getArrivalTime(), decoded.getArrivalTime());
+        assertNull(decoded.getAircraftType());
+        assertEquals(flight.getClassPrices(), decoded.getClassPrices());
+        assertEquals("DELAYED", decoded.getStatus());
+        assertEquals(-1, decoded.getAvailableSeats());
+        assertEquals(Long.MAX_VALUE, decoded.getVersion());
+
+        Payment payment = new Payment("PAY-1", "BK-1", "PASS-1", -0.0, "GIFT_CARD");
+        payment.setRefundDate(LocalDateTime.of(2024, 1, 1, 0, 0));
+        Payment decodedPayment = roundTrip(ArchiveCodecs.PAYMENT, payment);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(decodedPayment.getAmount()));
+        assertEquals("GIFT_CARD", decodedPayment.getPaymentMethod());
+        assertEquals(payment.getPaymentDate(), decodedPayment.getPaymentDate());
+        assertEquals(payment.getRefundDate(), decodedPayment.getRefundDate());
+
+        Passenger passenger = new Passenger("PASS-1", "Zoë Ünicode", "z@example.com", "Secret1!", "555", "X1");
+        passenger.setBookingIds(List.of("BK-1", "BK-2"));
+        Passenger decodedPassenger = roundTrip(ArchiveCodecs.PASSENGER, passenger);
+        assertEquals("Zoë Ünicode", decodedPassenger.getName());
+        assertEquals(List.of("BK-1", "BK-2"), decodedPassenger.getBookingIds());
+        assertEquals(passenger.getCreatedAt(), decodedPassenger.getCreatedAt());
+
+        TransactionLog log = new TransactionLog("SAVE_BOOKING", "BK-1", "Booking saved");
+        TransactionLog decodedLog = roundTrip(ArchiveCodecs.TRANSACTION_LOG, log);
+        assertEquals(log.getLogId(), decodedLog.getLogId());
+        assertEquals("SAVE_BOOKING", decodedLog.getType());
+        assertEquals(log.getTimestamp(), decodedLog.getTimestamp());
+    }
+
+    @Test
+    @DisplayName("Should reject a layout version newer than this build")
+    void testNewerVersionRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        ArchiveCodecs.encode(ArchiveCodecs.TRANSACTION_LOG, new TransactionLog("L", "BACKUP", "E", "D", null), buffer);
+        buffer.flip();
+        buffer.put(0, (byte) (9 << 1)); // zigzag varint of version 9
+        assertThrows(UncheckedIOException.class, () -> ArchiveCodecs.decode(ArchiveCodecs.TRANSACTION_LOG, buffer));
+    }
+
+    @Test
+    @DisplayName("Should read a version 1 flight written with the single symbol table")
+    void testLegacySymbols() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ArchiveCodecs.writeVarInt(out, 1);
+        writeString(out, "FL-1");
+        writeString(out, "NC100");
+        ArchiveCodecs.writeVarInt(out, 18 + 2); // Toronto
+        ArchiveCodecs.writeVarInt(out, 19 + 2); // Vancouver
+        ArchiveCodecs.writeVarLong(out, 0);
+        ArchiveCodecs.writeVarLong(out, 0);
+        ArchiveCodecs.writeVarInt(out, 27 + 2); // Boeing 777
+        ArchiveCodecs.writeVarInt(out, 180);
+        ArchiveCodecs.writeVarInt(out, 150);
+        ArchiveCodecs.writeVarInt(out, 1);
+        ArchiveCodecs.writeVarInt(out, 11 + 2); // ECONOMY
+        ArchiveCodecs.writeVarLong(out, 25000L << 1);
+        ArchiveCodecs.writeVarInt(out, 5 + 2); // DELAYED
+        ArchiveCodecs.writeVarInt(out, 0);
+        ArchiveCodecs.writeVarLong(out, 3);
+
+        Flight flight = ArchiveCodecs.decode(ArchiveCodecs.FLIGHT, ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals("Toronto", flight.getOrigin());
+        assertEquals("Vancouver", flight.getDestination());
+        assertEquals("Boeing 777", flight.getAircraftType());
+        assertEquals(250.0, flight.getClassPrices().get("ECONOMY"));
+        assertEquals("DELAYED", flight.getStatus());
+        assertNull(flight.getGate());
+        assertEquals(3, flight.getVersion());
+
+        // Written again, it takes the current layout and still decodes the same
+        Flight decoded = roundTrip(ArchiveCodecs.FLIGHT, flight);
+        assertEquals("Toronto", decoded.getOrigin());
+        assertEquals("Boeing 777", decoded.getAircraftType());
+        assertEquals("DELAYED", decoded.getStatus());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        ArchiveCodecs.writeVarInt(out, utf8.length + 1);
+        out.write(utf8);
+    }
+}
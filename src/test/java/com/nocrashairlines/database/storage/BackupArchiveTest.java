@@ -0,0 +1,51 @@
+package com.nocrashairlines.database.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Backup Archive Tests")
+class BackupArchiveTest {
+
+    @Test
+    @DisplayName("Backups with a broken chain do not count towards retention")
+    void testRetentionSkipsBrokenChains(@TempDir Path dir) {
+        BackupArchive archive = new BackupArchive(dir, 1);
+        Path full = archive.complete(archive.begin(null));
+        // An incremental backup whose parent is gone can never be restored
+        Path broken = archive.complete(archive.begin(dir.resolve("backup-missing")));
+
+        assertTrue(Files.exists(full), "The only restorable backup is kept");
+        assertTrue(Files.exists(broken), "A newer backup is kept while its parent may still come");
+        assertEquals(List.of(full), archive.restoreChain());
+
+        Path newest = archive.complete(archive.begin(full));
+        assertEquals(List.of(full, newest), archive.restoreChain());
+        assertFalse(Files.exists(broken), "Older than the newest restorable backup, and not built on");
+        assertEquals(List.of(full, newest), archive.backups());
+    }
+
+    @Test
+    @DisplayName("Backups default to a directory next to the write-ahead log, not the temporary directory")
+    void testDefaultDirectory(@TempDir Path dir) {
+        String configured = System.clearProperty(BackupArchive.DIRECTORY_PROPERTY);
+        try {
+            assertNull(BackupArchive.fromSystemProperties(null), "Nowhere durable to put them");
+            BackupArchive archive = BackupArchive.fromSystemProperties(dir.resolve("wal"));
+            assertEquals(dir.resolve("backups").toAbsolutePath(), archive.getDirectory());
+
+            System.setProperty(BackupArchive.DIRECTORY_PROPERTY, dir.resolve("elsewhere").toString());
+            assertEquals(dir.resolve("elsewhere"), BackupArchive.fromSystemProperties(null).getDirectory());
+        } finally {
+            if (configured == null) {
+                System.clearProperty(BackupArchive.DIRECTORY_PROPERTY);
+            } else {
+                System.setProperty(BackupArchive.DIRECTORY_PROPERTY, configured);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.Booking;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encode/decode throughput and size of the binary booking codec against JSON text.
+ * There is no JSON library on the classpath, so the JSON side is a minimal flat-object
+ * writer and parser, which flatters JSON compared with a general-purpose one.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.nocrashairlines.database.storage.CodecBenchmark
+ * Optional argument: booking count (default 200000).
+ */
+public class CodecBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        List<Booking> bookings = new ArrayList<>(count);
+        LocalDateTime base = LocalDateTime.of(2030, 5, 1, 8, 0);
+        for (int i = 0; i < count; i++) {
+            Booking booking = new Booking("BK-" + i, "PASS-" + (i % 5000), "FL-" + (i % 800),
+                    "Bench User " + i, i % 10 == 0 ? "BUSINESS" : "ECONOMY", 200.0 + i % 300);
+            booking.setPassengerEmail("user" + i + "@example.com");
+            booking.setSeatNumber((i % 30 + 1) + String.valueOf((char) ('A' + i % 6)));
+            booking.setBookingDate(base.plusSeconds(i));
+            booking.setLastModified(base.plusSeconds(i));
+            bookings.add(booking);
+        }
+
+        System.out.println("========================================");
+        System.out.println("  Codec Benchmark");
+        System.out.println("  " + count + " bookings");
+        System.out.println("========================================\n");
+        System.out.printf("%-8s %16s %16s %16s%n", "codec", "encodes/s", "decodes/s", "bytes/booking");
+        // Warm up so the measured rounds are not dominated by JIT compilation
+        for (int round = 0; round < 3; round++) {
+            binary(bookings, round == 2);
+            json(bookings, round == 2);
+        }
+    }
+
+    private static void binary(List<Booking> bookings, boolean print) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bookings.size() * 256);
+        long start = System.nanoTime();
+        for (Booking booking : bookings) {
+            ArchiveCodecs.encode(ArchiveCodecs.BOOKING, booking, buffer);
+        }
+        long encodeNanos = System.nanoTime() - start;
+        buffer.flip();
+        int bytes = buffer.remaining();
+        start = System.nanoTime();
+        long checksum = 0;
+        while (buffer.hasRemaining()) {
+            checksum += ArchiveCodecs.decode(ArchiveCodecs.BOOKING, buffer).getVersion();
+        }
+        long decodeNanos = System.nanoTime() - start;
+        report("binary", bookings.size(), encodeNanos, decodeNanos, bytes, print, checksum);
+    }
+
+    private static void json(List<Booking> bookings, boolean print) {
+        List<byte[]> encoded = new ArrayList<>(bookings.size());
+        long start = System.nanoTime();
+        for (Booking booking : bookings) {
+            encoded.add(toJson(booking).getBytes(StandardCharsets.UTF_8));
+        }
+        long encodeNanos = System.nanoTime() - start;
+        int bytes = encoded.stream().mapToInt(json -> json.length).sum();
+        start = System.nanoTime();
+        long checksum = 0;
+        for (byte[] json : encoded) {
+            checksum += fromJson(new String(json, StandardCharsets.UTF_8)).getVersion();
+        }
+        long decodeNanos = System.nanoTime() - start;
+        report("json", bookings.size(), encodeNanos, decodeNanos, bytes, print, checksum);
+    }
+
+    private static void report(String codec, int count, long encodeNanos, long decodeNanos, int bytes,
+                               boolean print, long checksum) {
+        if (print) {
+            System.out.printf("%-8s %16.0f %16.0f %16.1f%n", codec,
+                    count / (encodeNanos / 1e9), count / (decodeNanos / 1e9), bytes / (double) count);
+        } else if (checksum < 0) {
+            System.out.println(checksum);
+        }
+    }
+
+    private static String toJson(Booking booking) {
+        StringBuilder json = new StringBuilder(384).append('{');
+        field(json, "bookingId", booking.getBookingId());
+        field(json, "passengerId", booking.getPassengerId());
+        field(json, "flightId", booking.getFlightId());
+        field(json, "passengerName", booking.getPassengerName());
+        field(json, "passengerEmail", booking.getPassengerEmail());
+        field(json, "passengerPhone", booking.getPassengerPhone());
+        field(json, "passportNumber", booking.getPassportNumber());
+        field(json, "seatNumber", booking.getSeatNumber());
+        field(json, "travelClass", booking.getTravelClass());
+        field(json, "status", booking.getStatus());
+        field(json, "bookingDate", String.valueOf(booking.getBookingDate()));
+        field(json, "lastModified", String.valueOf(booking.getLastModified()));
+        field(json, "paymentId", booking.getPaymentId());
+        json.append("\"totalAmount\":").append(booking.getTotalAmount()).append(',');
+        json.append("\"checkedIn\":").append(booking.isCheckedIn()).append(',');
+        field(json, "baggageTag", booking.getBaggageTag());
+        json.append("\"version\":").append(booking.getVersion());
+        return json.append('}').toString();
+    }
+
+    private static void field(StringBuilder json, String name, String value) {
+        json.append('"').append(name).append("\":");
+        if (value == null) {
+            json.append("null,");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\');
+            }
+            json.append(c);
+        }
+        json.append("\",");
+    }
+
+    private static Booking fromJson(String json) {
+        Map<String, String> fields = new HashMap<>(32);
+        int i = 1;
+        while (i < json.length() - 1) {
+            int nameEnd = json.indexOf('"', i + 1);
+            String name = json.substring(i + 1, nameEnd);
+            i = nameEnd + 2;
+            String value;
+            if (json.charAt(i) == '"') {
+                StringBuilder text = new StringBuilder();
+                i++;
+                while (json.charAt(i) != '"') {
+                    if (json.charAt(i) == '\\') {
+                        i++;
+                    }
+                    text.append(json.charAt(i++));
+                }
+                value = text.toString();
+                i++;
+            } else {
+                int end = i;
+                while (json.charAt(end) != ',' && json.charAt(end) != '}') {
+                    end++;
+                }
+                value = json.substring(i, end);
+                value = "null".equals(value) ? null : value;
+                i = end;
+            }
+            fields.put(name, value);
+            i++;
+        }
+        Booking booking = new Booking();
+        booking.setBookingId(fields.get("bookingId"));
+        booking.setPassengerId(fields.get("passengerId"));
+        booking.setFlightId(fields.get("flightId"));
+        booking.setPassengerName(fields.get("passengerName"));
+        booking.setPassengerEmail(fields.get("passengerEmail"));
+        booking.setPassengerPhone(fields.get("passengerPhone"));
+        booking.setPassportNumber(fields.get("passportNumber"));
+        booking.setSeatNumber(fields.get("seatNumber"));
+        booking.setTravelClass(fields.get("travelClass"));
+        booking.setStatus(fields.get("status"));
+        booking.setBookingDate(date(fields.get("bookingDate")));
+        booking.setLastModified(date(fields.get("lastModified")));
+        booking.setPaymentId(fields.get("paymentId"));
+        booking.setTotalAmount(Double.parseDouble(fields.get("totalAmount")));
+        booking.setCheckedIn(Boolean.parseBoolean(fields.get("checkedIn")));
+        booking.setBaggageTag(fields.get("baggageTag"));
+        booking.setVersion(Long.parseLong(fields.get("version")));
+        return booking;
+    }
+
+    private static LocalDateTime date(String value) {
+        return value == null || "null".equals(value) ? null : LocalDateTime.parse(value);
+    }
+}
@@ -0,0 +1,120 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.Booking;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Compact Storage Engine Tests")
+class CompactStorageEngineTest extends StorageEngineContractTest {
+
+    @Override
+    protected StorageEngine createEngine() {
+        return new CompactStorageEngine();
+    }
+
+    @Test
+    @DisplayName("Should decode every booking field exactly as saved")
+    void testRoundTrip() {
+        String[] seats = {"12C", "1A", "999Z", "07B", "1000A", "A1", "Row 3", null};
+        for (int i = 0; i < seats.length; i++) {
+            Booking booking = newBooking("BK-" + i);
+            booking.setPassengerEmail(i % 2 == 0 ? "user@test.com" : null);
+            booking.setPassengerPhone("555-000" + i);
+            booking.setPassportNumber("P" + i);
+            booking.setSeatNumber(seats[i]);
+            booking.setStatus("CONFIRMED");
+            booking.setBookingDate(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 123_456_789));
+            booking.setLastModified(i == 0 ? null : LocalDateTime.of(2030, 6, 1, 8, 30, 0, i));
+            booking.setPaymentId("PAY-" + i);
+            booking.setCheckedIn(i % 3 == 0);
+            booking.setBaggageTag(i % 3 == 0 ? "TAG-" + i : null);
+            booking.setVersion(i + 7L);
+            engine.bookings().save(booking.getBookingId(), booking);
+
+            Booking found = engine.bookings().findById(booking.getBookingId());
+            assertNotSame(booking, found, "Reads should decode a detached booking");
+            assertEquals(booking.getPassengerId(), found.getPassengerId());
+            assertEquals(booking.getFlightId(), found.getFlightId());
+            assertEquals(booking.getPassengerName(), found.getPassengerName());
+            assertEquals(booking.getPassengerEmail(), found.getPassengerEmail());
+            assertEquals(booking.getPassengerPhone(), found.getPassengerPhone());
+            assertEquals(booking.getPassportNumber(), found.getPassportNumber());
+            assertEquals(seats[i], found.getSeatNumber());
+            assertEquals(booking.getTravelClass(), found.getTravelClass());
+            assertEquals("CONFIRMED", found.getStatus());
+            assertEquals(booking.getBookingDate(), found.getBookingDate());
+            assertEquals(booking.getLastModified(), found.getLastModified());
+            assertEquals(booking.getPaymentId(), found.getPaymentId());
+            assertEquals(booking.getTotalAmount(), found.getTotalAmount());
+            assertEquals(booking.isCheckedIn(), found.isCheckedIn());
+            assertEquals(booking.getBaggageTag(), found.getBaggageTag());
+            assertEquals(booking.getVersion(), found.getVersion());
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep finding bookings after many removals and reused rows")
+    void testRemoveAndReuseRows() {
+        EntityRepository<Booking> bookings = engine.bookings();
+        for (int i = 0; i < 2_000; i++) {
+            bookings.save("BK-" + i, newBooking("BK-" + i));
+        }
+        for (int i = 0; i < 2_000; i += 2) {
+            assertEquals("BK-" + i, bookings.remove("BK-" + i).getBookingId());
+        }
+        for (int i = 2_000; i < 2_500; i++) {
+            bookings.save("BK-" + i, newBooking("BK-" + i));
+        }
+
+        assertEquals(1_500, bookings.count());
+        assertEquals(1_500, bookings.stream().count());
+        for (int i = 0; i < 2_500; i++) {
+            boolean expected = i >= 2_000 || i % 2 == 1;
+            assertEquals(expected, bookings.exists("BK-" + i), "BK-" + i);
+            if (expected) {
+                assertEquals("BK-" + i, bookings.findById("BK-" + i).getBookingId());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop dictionary values once no booking uses them")
+    void testDictionariesShrink() {
+        CompactBookingRepository bookings = new CompactBookingRepository();
+        for (int i = 0; i < 1_000; i++) {
+            Booking booking = new Booking("BK-" + i, "PASS-" + i, "FL-" + (i % 10), "Passenger " + i,
+                    "ECONOMY", 200.0);
+            booking.setPassengerEmail("user" + i + "@test.com");
+            booking.setPassportNumber("P" + i);
+            booking.setSeatNumber("Row " + i);
+            bookings.save(booking.getBookingId(), booking);
+        }
+        int full = bookings.dictionarySize();
+        for (int i = 0; i < 1_000; i += 2) {
+            Booking booking = bookings.findById("BK-" + i);
+            booking.setPassengerEmail("changed" + i + "@test.com");
+            booking.setSeatNumber("12C");
+            bookings.save(booking.getBookingId(), booking);
+        }
+        assertEquals(full - 500, bookings.dictionarySize(), "Replaced values are dropped, packed seats hold none");
+
+        for (int i = 0; i < 1_000; i++) {
+            bookings.remove("BK-" + i);
+        }
+        assertEquals(0, bookings.dictionarySize());
+
+        // Released codes are reused for new values
+        Booking booking = newBooking("BK-NEW");
+        booking.setPassengerEmail("new@test.com");
+        booking.setSeatNumber("Aisle");
+        bookings.save("BK-NEW", booking);
+        Booking found = bookings.findById("BK-NEW");
+        assertEquals("Contract User", found.getPassengerName());
+        assertEquals("new@test.com", found.getPassengerEmail());
+        assertEquals("Aisle", found.getSeatNumber());
+        assertEquals("PASS-1", found.getPassengerId());
+        assertEquals("FL-1", found.getFlightId());
+    }
+}
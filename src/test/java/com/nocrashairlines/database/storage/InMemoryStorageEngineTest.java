@@ -0,0 +1,12 @@
+package com.nocrashairlines.database.storage;
+
+import org.junit.jupiter.api.DisplayName;
+
+@DisplayName("In-Memory Storage Engine Tests")
+class InMemoryStorageEngineTest extends StorageEngineContractTest {
+
+    @Override
+    protected StorageEngine createEngine() {
+        return new InMemoryStorageEngine();
+    }
+}
@@ -0,0 +1,64 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.TransactionLog;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("In-Memory Transaction Log Tests")
+class InMemoryTransactionLogRepositoryTest {
+
+    private final InMemoryTransactionLogRepository logs = new InMemoryTransactionLogRepository();
+
+    @Test
+    @DisplayName("Concurrent appends across segments are neither lost nor reordered per writer")
+    void testConcurrentAppendsAcrossSegments() throws InterruptedException {
+        int writers = 8;
+        int perWriter = 5000; // 40,000 entries span several segments
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            String type = "WRITER_" + w;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perWriter; i++) {
+                    logs.append(new TransactionLog(type, Integer.toString(i), "entry " + i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(writers * perWriter, logs.count());
+        assertEquals(writers * perWriter, logs.findAll().size());
+        for (int w = 0; w < writers; w++) {
+            List<TransactionLog> written = logs.findByType("WRITER_" + w);
+            assertEquals(perWriter, written.size());
+            for (int i = 0; i < perWriter; i++) {
+                assertEquals(Integer.toString(i), written.get(i).getEntityId());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Find stops at the limit in append order")
+    void testFindWithLimit() {
+        for (int i = 0; i < 20_000; i++) {
+            logs.append(new TransactionLog(i % 2 == 0 ? "EVEN" : "ODD", Integer.toString(i), "entry"));
+        }
+        List<TransactionLog> found = logs.find(log -> log.getType().equals("ODD"), 3);
+        assertEquals(List.of("1", "3", "5"), found.stream().map(TransactionLog::getEntityId).toList());
+        assertTrue(logs.find(log -> true, 0).isEmpty());
+    }
+}
@@ -0,0 +1,86 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.Booking;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Mapped Checkpoint File Tests")
+class MappedCheckpointFileTest {
+
+    private static Booking newBooking(int i) {
+        Booking booking = new Booking("BK-" + i, "PASS-" + (i % 7), "FL-1", "Mapped User " + i, "ECONOMY", 100.0 + i);
+        booking.setSeatNumber(i + "C");
+        return booking;
+    }
+
+    private static Path write(Path dir, int count, int regionShift) {
+        Path file = dir.resolve("bookings.bin");
+        int written = MappedCheckpointFile.write(file, ArchiveCodecs.BOOKING, Booking::getBookingId,
+                IntStream.range(0, count).mapToObj(MappedCheckpointFileTest::newBooking), regionShift);
+        assertEquals(count, written);
+        return file;
+    }
+
+    @Test
+    @DisplayName("Should read every entity back in id order")
+    void testScan(@TempDir Path dir) {
+        Path file = write(dir, 500, MappedCheckpointFile.DEFAULT_REGION_SHIFT);
+        try (MappedCheckpointFile<Booking> mapped = MappedCheckpointFile.open(file, ArchiveCodecs.BOOKING)) {
+            assertEquals(500, mapped.size());
+            Booking found = mapped.stream().filter(b -> "BK-321".equals(b.getBookingId())).findFirst().orElseThrow();
+            assertEquals("Mapped User 321", found.getPassengerName());
+            assertEquals("321C", found.getSeatNumber());
+            assertEquals(421.0, found.getTotalAmount());
+
+            List<String> ids = mapped.stream().map(Booking::getBookingId).collect(Collectors.toList());
+            assertEquals(IntStream.range(0, 500).mapToObj(i -> "BK-" + i).sorted().collect(Collectors.toList()), ids);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep every record inside one mapped region")
+    void testSmallRegions(@TempDir Path dir) {
+        // 256-byte regions hold only a few records, so the writer pads many times
+        Path file = write(dir, 200, 8);
+        try (MappedCheckpointFile<Booking> mapped = MappedCheckpointFile.open(file, ArchiveCodecs.BOOKING, 8)) {
+            assertEquals(200, mapped.size());
+            for (int i = 0; i < 200; i++) {
+                Booking booking = mapped.read(i);
+                int number = Integer.parseInt(booking.getBookingId().substring(3));
+                assertEquals("Mapped User " + number, booking.getPassengerName());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject a file cut short")
+    void testTruncatedFile(@TempDir Path dir) throws IOException {
+        Path file = write(dir, 50, MappedCheckpointFile.DEFAULT_REGION_SHIFT);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(UncheckedIOException.class, () -> MappedCheckpointFile.open(file, ArchiveCodecs.BOOKING));
+    }
+
+    @Test
+    @DisplayName("Should reject a record whose bytes no longer match its checksum")
+    void testCorruptRecord(@TempDir Path dir) throws IOException {
+        Path file = write(dir, 50, MappedCheckpointFile.DEFAULT_REGION_SHIFT);
+        byte[] bytes = Files.readAllBytes(file);
+        // The first record starts after the 8-byte header; flip a byte of its id
+        bytes[8 + 8 + 3] ^= 0x20;
+        Files.write(file, bytes);
+        try (MappedCheckpointFile<Booking> mapped = MappedCheckpointFile.open(file, ArchiveCodecs.BOOKING)) {
+            assertThrows(UncheckedIOException.class, () -> mapped.stream().collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.nocrashairlines.database.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Persistent Hash Map Tests")
+class PersistentHashMapTest {
+
+    @Test
+    @DisplayName("Should match a HashMap through random puts and removes")
+    void testMatchesHashMap() {
+        Random random = new Random(42);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentHashMap<Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 20_000; i++) {
+            String key = "ID-" + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Map<String, Integer> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertEquals(expected, iterated);
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(map.values()));
+    }
+
+    @Test
+    @DisplayName("Should leave earlier versions untouched")
+    void testOldVersionsUnchanged() {
+        PersistentHashMap<String> first = PersistentHashMap.<String>empty().put("A", "1").put("B", "2");
+        PersistentHashMap<String> second = first.put("A", "changed").remove("B").put("C", "3");
+
+        assertEquals("1", first.get("A"));
+        assertEquals("2", first.get("B"));
+        assertNull(first.get("C"));
+        assertEquals(2, first.size());
+        assertEquals("changed", second.get("A"));
+        assertNull(second.get("B"));
+        assertEquals(2, second.size());
+        assertSame(second, second.remove("missing"));
+        assertSame(second, second.put("C", second.get("C")));
+    }
+
+    @Test
+    @DisplayName("Should keep keys with equal hash codes apart")
+    void testHashCollisions() {
+        // "Aa" and "BB" share a hash code, and so do their concatenations
+        String[] keys = {"AaAa", "AaBB", "BBAa", "BBBB"};
+        PersistentHashMap<Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < keys.length; i++) {
+            map = map.put(keys[i], i);
+        }
+        map = map.put("other", 99);
+
+        assertEquals(5, map.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, map.get(keys[i]));
+        }
+        for (String key : keys) {
+            map = map.remove(key);
+        }
+        assertEquals(1, map.size());
+        assertEquals(99, map.get("other"));
+        assertTrue(map.remove("other").isEmpty());
+    }
+}
@@ -0,0 +1,53 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.model.Flight;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Persistent Storage Engine Tests")
+class PersistentStorageEngineTest extends StorageEngineContractTest {
+
+    @Override
+    protected StorageEngine createEngine() {
+        return new PersistentStorageEngine();
+    }
+
+    @Test
+    @DisplayName("Should keep snapshots unchanged by later writes and restore them atomically")
+    void testSnapshotAndRestore() {
+        Flight flight = newFlight("FL-1");
+        engine.flights().save("FL-1", flight);
+        engine.bookings().save("BK-1", newBooking("BK-1"));
+
+        StorageSnapshot snapshot = engine.snapshot();
+        Flight moved = flight.copy();
+        moved.setGate("D4");
+        engine.flights().save("FL-1", moved);
+        engine.flights().save("FL-2", newFlight("FL-2"));
+        engine.bookings().remove("BK-1");
+
+        assertSame(flight, snapshot.flights().get("FL-1"));
+        assertEquals(1, snapshot.flights().size());
+        assertNotNull(snapshot.bookings().get("BK-1"));
+
+        engine.restore(snapshot);
+        assertSame(flight, engine.flights().findById("FL-1"));
+        assertFalse(engine.flights().exists("FL-2"));
+        assertEquals(1, engine.bookings().count());
+        assertSame(snapshot, engine.snapshot(), "Snapshot and restore should be root swaps");
+    }
+
+    @Test
+    @DisplayName("Should restore a snapshot taken from another engine")
+    void testRestoreFromCopiedSnapshot() {
+        StorageEngine other = new InMemoryStorageEngine();
+        Booking booking = newBooking("BK-9");
+        other.bookings().save("BK-9", booking);
+
+        engine.restore(other.snapshot());
+        assertSame(booking, engine.bookings().findById("BK-9"));
+        assertEquals(1, engine.snapshot().entityCount());
+    }
+}
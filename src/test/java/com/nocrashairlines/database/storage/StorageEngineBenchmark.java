@@ -0,0 +1,101 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.Booking;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Side-by-side throughput and footprint benchmark for every registered storage engine.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.nocrashairlines.database.storage.StorageEngineBenchmark
+ * Optional arguments: entity count (default 200000), writer threads (default 4).
+ */
+public class StorageEngineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int entities = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        System.out.println("========================================");
+        System.out.println("  Storage Engine Benchmark");
+        System.out.println("  " + entities + " bookings, " + threads + " writer threads");
+        System.out.println("========================================\n");
+        System.out.printf("%-12s %14s %14s %14s %14s%n",
+                "engine", "writes/s", "reads/s", "scan ms", "bytes/booking");
+
+        for (String name : StorageEngines.names()) {
+            // Warm up once so the measured run is not dominated by JIT compilation
+            run(name, entities / 10, threads, false);
+            run(name, entities, threads, true);
+        }
+    }
+
+    private static void run(String name, int entities, int threads, boolean print) throws Exception {
+        long heapBefore = usedHeap();
+        List<Booking> data = new ArrayList<>(entities);
+        for (int i = 0; i < entities; i++) {
+            Booking booking = new Booking("BK-" + i, "PASS-" + (i % 5000), "FL-" + (i % 800),
+                    "Bench User " + i, i % 10 == 0 ? "BUSINESS" : "ECONOMY", 200.0 + i % 300);
+            booking.setSeatNumber((i % 30 + 1) + String.valueOf((char) ('A' + i % 6)));
+            data.add(booking);
+        }
+
+        try (StorageEngine engine = StorageEngines.create(name)) {
+            EntityRepository<Booking> bookings = engine.bookings();
+
+            long start = System.nanoTime();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            int slice = (entities + threads - 1) / threads;
+            for (int t = 0; t < threads; t++) {
+                int from = t * slice;
+                int to = Math.min(entities, from + slice);
+                executor.submit(() -> {
+                    for (int i = from; i < to; i++) {
+                        Booking booking = data.get(i);
+                        bookings.save(booking.getBookingId(), booking);
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.MINUTES);
+            long writeNanos = System.nanoTime() - start;
+
+            data.clear();
+            long footprint = Math.max(0, usedHeap() - heapBefore);
+
+            start = System.nanoTime();
+            long found = 0;
+            for (int i = 0; i < entities; i++) {
+                if (bookings.findById("BK-" + i) != null) {
+                    found++;
+                }
+            }
+            long readNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long pending = bookings.findAll().stream().filter(b -> "PENDING".equals(b.getStatus())).count();
+            long scanNanos = System.nanoTime() - start;
+
+            if (print) {
+                System.out.printf("%-12s %14.0f %14.0f %14.1f %14d%n",
+                        name,
+                        entities / (writeNanos / 1e9),
+                        found / (readNanos / 1e9),
+                        scanNanos / 1e6,
+                        footprint / Math.max(1, pending));
+            }
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
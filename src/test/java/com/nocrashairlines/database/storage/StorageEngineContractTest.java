@@ -0,0 +1,181 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.model.Flight;
+import com.nocrashairlines.model.Passenger;
+import com.nocrashairlines.model.Payment;
+import com.nocrashairlines.model.TransactionLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Conformance suite every storage engine must pass.
+ * Each engine gets a concrete subclass that only provides {@link #createEngine()}.
+ */
+abstract class StorageEngineContractTest {
+
+    protected StorageEngine engine;
+
+    protected abstract StorageEngine createEngine();
+
+    @BeforeEach
+    void openEngine() {
+        engine = createEngine();
+    }
+
+    @AfterEach
+    void closeEngine() {
+        engine.close();
+    }
+
+    protected Flight newFlight(String id) {
+        LocalDateTime departure = LocalDateTime.of(2030, 1, 15, 10, 0);
+        Flight flight = new Flight(id, "NC" + id, "Toronto", "Vancouver", departure, departure.plusHours(5), 180);
+        flight.setClassPrice("ECONOMY", 200.0);
+        return flight;
+    }
+
+    protected Booking newBooking(String id) {
+        return new Booking(id, "PASS-1", "FL-1", "Contract User", "ECONOMY", 200.0);
+    }
+
+    @Test
+    @DisplayName("Should save, find, replace and remove entities")
+    void testCrud() {
+        EntityRepository<Flight> flights = engine.flights();
+        Flight flight = newFlight("FL-1");
+
+        flights.save(flight.getFlightId(), flight);
+        assertTrue(flights.exists("FL-1"));
+        assertEquals("NCFL-1", flights.findById("FL-1").getFlightNumber());
+
+        Flight replacement = newFlight("FL-1");
+        replacement.setGate("B7");
+        flights.save(replacement.getFlightId(), replacement);
+        assertEquals(1, flights.count(), "Replacing should not add an entity");
+        assertEquals("B7", flights.findById("FL-1").getGate());
+
+        assertNotNull(flights.remove("FL-1"));
+        assertNull(flights.findById("FL-1"));
+        assertNull(flights.remove("FL-1"), "Removing twice should return null");
+        assertFalse(flights.exists("FL-1"));
+    }
+
+    @Test
+    @DisplayName("Should return null for unknown or null ids")
+    void testMissingIds() {
+        assertNull(engine.bookings().findById("missing"));
+        assertNull(engine.bookings().findById(null));
+        assertFalse(engine.bookings().exists(null));
+    }
+
+    @Test
+    @DisplayName("Should list and visit every entity")
+    void testFindAllAndForEach() {
+        EntityRepository<Booking> bookings = engine.bookings();
+        for (int i = 0; i < 50; i++) {
+            bookings.save("BK-" + i, newBooking("BK-" + i));
+        }
+
+        assertEquals(50, bookings.count());
+        assertEquals(50, bookings.findAll().size());
+        Map<String, Booking> visited = new HashMap<>();
+        bookings.forEach(visited::put);
+        assertEquals(50, visited.size());
+        assertEquals("BK-7", visited.get("BK-7").getBookingId());
+
+        bookings.clear();
+        assertEquals(0, bookings.count());
+    }
+
+    @Test
+    @DisplayName("Should stream entities and stop bounded finds at the limit")
+    void testStreamAndBoundedFind() {
+        EntityRepository<Booking> bookings = engine.bookings();
+        for (int i = 0; i < 50; i++) {
+            Booking booking = newBooking("BK-" + i);
+            booking.setStatus(i % 2 == 0 ? "CONFIRMED" : "PENDING");
+            bookings.save(booking.getBookingId(), booking);
+        }
+
+        assertEquals(50, bookings.stream().count());
+        assertEquals(25, bookings.stream().filter(b -> "CONFIRMED".equals(b.getStatus())).count());
+
+        List<Booking> firstConfirmed = bookings.find(b -> "CONFIRMED".equals(b.getStatus()), 10);
+        assertEquals(10, firstConfirmed.size());
+        assertTrue(firstConfirmed.stream().allMatch(b -> "CONFIRMED".equals(b.getStatus())));
+        assertEquals(25, bookings.find(b -> "CONFIRMED".equals(b.getStatus()), 100).size());
+        assertTrue(bookings.find(b -> true, 0).isEmpty());
+
+        TransactionLogRepository logs = engine.transactionLogs();
+        for (int i = 0; i < 5; i++) {
+            logs.append(new TransactionLog("STREAM_TEST", "BK-" + i, "entry " + i));
+        }
+        List<TransactionLog> found = logs.find(log -> "STREAM_TEST".equals(log.getType()), 3);
+        assertEquals(3, found.size());
+        assertEquals("entry 0", found.get(0).getDescription());
+    }
+
+    @Test
+    @DisplayName("Should keep entity types apart")
+    void testRepositoriesAreIndependent() {
+        engine.passengers().save("ID-1", new Passenger("ID-1", "P", "p@test.com", "x", "1", "AB1"));
+        engine.payments().save("ID-1", new Payment("ID-1", "BK-1", "ID-1", 10.0, "CREDIT_CARD"));
+
+        assertEquals(1, engine.passengers().count());
+        assertEquals(1, engine.payments().count());
+        assertEquals(0, engine.admins().count());
+        assertEquals(0, engine.airlineStaff().count());
+    }
+
+    @Test
+    @DisplayName("Should keep transaction logs in append order")
+    void testTransactionLogOrder() {
+        TransactionLogRepository logs = engine.transactionLogs();
+        int before = logs.count();
+        logs.append(new TransactionLog("SAVE_FLIGHT", "FL-1", "first"));
+        logs.append(new TransactionLog("SAVE_BOOKING", "BK-1", "second"));
+        logs.append(new TransactionLog("SAVE_FLIGHT", "FL-2", "third"));
+
+        List<TransactionLog> all = logs.findAll();
+        assertEquals(before + 3, all.size());
+        assertEquals("third", all.get(all.size() - 1).getDescription());
+        List<TransactionLog> flightLogs = logs.findByType("SAVE_FLIGHT");
+        assertEquals("first", flightLogs.get(flightLogs.size() - 2).getDescription());
+        assertEquals("third", flightLogs.get(flightLogs.size() - 1).getDescription());
+    }
+
+    @Test
+    @DisplayName("Should not lose concurrent writes")
+    void testConcurrentWrites() throws InterruptedException {
+        EntityRepository<Booking> bookings = engine.bookings();
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    String id = "BK-" + thread + "-" + i;
+                    bookings.save(id, newBooking(id));
+                    engine.transactionLogs().append(new TransactionLog("SAVE_BOOKING", id, "concurrent"));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threads * perThread, bookings.count());
+        assertEquals(threads * perThread, engine.transactionLogs().findByType("SAVE_BOOKING").size());
+    }
+}
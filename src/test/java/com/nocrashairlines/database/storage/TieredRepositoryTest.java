@@ -0,0 +1,128 @@
+package com.nocrashairlines.database.storage;
+
+import com.nocrashairlines.model.Booking;
+import com.nocrashairlines.model.Payment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tiered Repository Tests")
+class TieredRepositoryTest {
+
+    private final ColdStore<Booking> cold = new ColdStore<>("test-bookings", ArchiveCodecs.BOOKING);
+    private final TieredRepository<Booking> bookings = new TieredRepository<>(new InMemoryEntityRepository<>(), cold);
+
+    @AfterEach
+    void closeArchive() {
+        cold.close();
+    }
+
+    private Booking newBooking(String id) {
+        Booking booking = new Booking(id, "PASS-1", "FL-1", "Tier User", "ECONOMY", 150.0);
+        booking.setSeatNumber("14F");
+        booking.setBookingDate(LocalDateTime.of(2030, 3, 1, 9, 15, 30, 250));
+        booking.setLastModified(null);
+        booking.setVersion(3);
+        return booking;
+    }
+
+    private void archive(String... ids) {
+        Map<String, Booking> entities = new LinkedHashMap<>();
+        for (String id : ids) {
+            entities.put(id, bookings.hot().findById(id));
+        }
+        ColdStore.Block block = cold.write(entities);
+        for (String id : ids) {
+            bookings.moveToCold(id, block);
+        }
+    }
+
+    @Test
+    @DisplayName("Should read archived entities back unchanged")
+    void testArchivedReads() {
+        for (int i = 0; i < 5; i++) {
+            bookings.save("BK-" + i, newBooking("BK-" + i));
+        }
+        archive("BK-0", "BK-1", "BK-2");
+
+        assertEquals(2, bookings.hot().count());
+        assertEquals(3, cold.size());
+        assertEquals(5, bookings.count());
+        Booking archived = bookings.findById("BK-1");
+        Booking expected = newBooking("BK-1");
+        assertEquals(expected.getSeatNumber(), archived.getSeatNumber());
+        assertEquals(expected.getBookingDate(), archived.getBookingDate());
+        assertNull(archived.getLastModified());
+        assertEquals(3, archived.getVersion());
+        assertTrue(bookings.exists("BK-2"));
+        List<String> ids = bookings.stream().map(Booking::getBookingId).sorted().collect(Collectors.toList());
+        assertEquals(List.of("BK-0", "BK-1", "BK-2", "BK-3", "BK-4"), ids);
+        assertEquals(5, bookings.findAll().size());
+    }
+
+    @Test
+    @DisplayName("Should bring an archived entity back to the hot tier when it is written")
+    void testWriteFaultsIn() {
+        bookings.save("BK-1", newBooking("BK-1"));
+        bookings.save("BK-2", newBooking("BK-2"));
+        archive("BK-1", "BK-2");
+
+        Booking changed = bookings.findById("BK-1").copy();
+        changed.setCheckedIn(true);
+        bookings.save("BK-1", changed);
+        assertTrue(bookings.hot().exists("BK-1"));
+        assertFalse(cold.contains("BK-1"));
+        assertTrue(bookings.findById("BK-1").isCheckedIn());
+        assertEquals(2, bookings.count());
+        assertEquals(1, bookings.stream().filter(Booking::isCheckedIn).count());
+
+        assertNotNull(bookings.remove("BK-2"));
+        assertNull(bookings.findById("BK-2"));
+        assertEquals(1, bookings.count());
+    }
+
+    @Test
+    @DisplayName("Should restore the archive contents from an index snapshot")
+    void testIndexSnapshot() {
+        bookings.save("BK-1", newBooking("BK-1"));
+        archive("BK-1");
+        PersistentHashMap<ColdStore.Block> saved = cold.index();
+
+        bookings.remove("BK-1");
+        assertEquals(0, bookings.count());
+        cold.restore(saved);
+        assertEquals("BK-1", bookings.findById("BK-1").getBookingId());
+    }
+
+    @Test
+    @DisplayName("Should encode every payment field")
+    void testPaymentCodec() {
+        ColdStore<Payment> payments = new ColdStore<>("test-payments", ArchiveCodecs.PAYMENT);
+        try {
+            Payment payment = new Payment("PAY-1", "BK-1", "PASS-1", 150.0, "CREDIT_CARD");
+            payment.markAsSuccess("TXN-1");
+            payment.setCardLastFourDigits("4242");
+            payment.processRefund("Schedule change");
+            payment.setVersion(2);
+            payments.publish("PAY-1", payments.write(Map.of("PAY-1", payment)));
+
+            Payment archived = payments.get("PAY-1");
+            assertEquals("REFUNDED", archived.getStatus());
+            assertEquals("TXN-1", archived.getTransactionReference());
+            assertEquals("4242", archived.getCardLastFourDigits());
+            assertEquals("Schedule change", archived.getRefundReason());
+            assertEquals(payment.getRefundDate(), archived.getRefundDate());
+            assertEquals(payment.getPaymentDate(), archived.getPaymentDate());
+            assertEquals(150.0, archived.getAmount());
+            assertEquals(2, archived.getVersion());
+        } finally {
+            payments.close();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.nocrashairlines.database.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Write-Ahead Log Tests")
+class WriteAheadLogTest {
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> replay(WriteAheadLog wal) {
+        return replay(wal, 0);
+    }
+
+    private static List<String> replay(WriteAheadLog wal, long fromLsn) {
+        List<String> records = new ArrayList<>();
+        wal.replay(fromLsn, record -> {
+            byte[] payload = new byte[record.remaining()];
+            record.get(payload);
+            records.add(new String(payload, StandardCharsets.UTF_8));
+        });
+        return records;
+    }
+
+    @Test
+    @DisplayName("Records survive a reopen across segments, and a torn tail is dropped")
+    void testReplayAcrossSegmentsAndTornTail(@TempDir Path dir) throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP, 256);
+        assertTrue(replay(wal).isEmpty());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String record = "record-" + i;
+            expected.add(record);
+            wal.awaitDurable(wal.append(bytes(record)));
+        }
+        wal.close();
+        Path last;
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = files.sorted().toList();
+            assertTrue(segments.size() > 1, "Small segments should have rolled");
+            last = segments.get(segments.size() - 1);
+        }
+        // A crash in the middle of writing a record
+        Files.write(last, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        WriteAheadLog reopened = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP, 256);
+        assertEquals(expected, replay(reopened));
+        reopened.awaitDurable(reopened.append(bytes("after-crash")));
+        reopened.close();
+
+        expected.add("after-crash");
+        WriteAheadLog again = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP, 256);
+        assertEquals(expected, replay(again));
+        again.close();
+    }
+
+    @Test
+    @DisplayName("A refused record is cut off with everything after it, across segments")
+    void testReplayWhile(@TempDir Path dir) throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP, 256);
+        replay(wal);
+        for (int i = 0; i < 100; i++) {
+            wal.awaitDurable(wal.append(bytes("record-" + i)));
+        }
+        wal.close();
+
+        List<String> kept = new ArrayList<>();
+        WriteAheadLog reopened = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP, 256);
+        reopened.replayWhile(0, record -> {
+            String text = StandardCharsets.UTF_8.decode(record).toString();
+            if (text.equals("record-40")) {
+                return false;
+            }
+            kept.add(text);
+            return true;
+        });
+        assertEquals(40, kept.size());
+        reopened.awaitDurable(reopened.append(bytes("after-cut")));
+        reopened.close();
+
+        kept.add("after-cut");
+        WriteAheadLog again = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP, 256);
+        assertEquals(kept, replay(again));
+        again.close();
+    }
+
+    @Test
+    @DisplayName("Grouped commit makes every concurrent writer durable")
+    void testGroupedCommit(@TempDir Path dir) throws InterruptedException {
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Durability.GROUPED);
+        replay(wal);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int writer = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    long lsn = wal.append(bytes("writer-" + writer + ":" + i));
+                    wal.awaitDurable(lsn);
+                    assertTrue(wal.durableLsn() >= lsn);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        wal.close();
+
+        WriteAheadLog reopened = new WriteAheadLog(dir, WriteAheadLog.Durability.ASYNC);
+        Set<String> records = new HashSet<>(replay(reopened));
+        assertEquals(8 * 200, records.size());
+        assertTrue(records.contains("writer-7:199"));
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Segments covered by a checkpoint are deleted and skipped on replay")
+    void testDeleteSegmentsBefore(@TempDir Path dir) throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP, 128);
+        replay(wal);
+        long checkpoint = 0;
+        for (int i = 0; i < 40; i++) {
+            long lsn = wal.append(bytes("record-" + i));
+            wal.awaitDurable(lsn);
+            if (i == 29) {
+                checkpoint = lsn;
+            }
+        }
+        assertTrue(wal.deleteSegmentsBefore(checkpoint) > 0);
+        wal.close();
+
+        WriteAheadLog reopened = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP, 128);
+        List<String> expected = new ArrayList<>();
+        for (int i = 30; i < 40; i++) {
+            expected.add("record-" + i);
+        }
+        assertEquals(expected, replay(reopened, checkpoint));
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Appending before replay is rejected")
+    void testAppendBeforeReplay(@TempDir Path dir) {
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Durability.ASYNC);
+        assertThrows(IllegalStateException.class, () -> wal.append(ByteBuffer.allocate(1).array()));
+        wal.close();
+    }
+
+    @Test
+    @DisplayName("A zero-filled tail is dropped, not replayed as empty records")
+    void testZeroFilledTail(@TempDir Path dir) throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP);
+        replay(wal);
+        wal.awaitDurable(wal.append(bytes("record-1")));
+        assertThrows(IllegalArgumentException.class, () -> wal.append(new byte[0]));
+        wal.close();
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // Blocks the file system allocated but the crash never wrote
+        Files.write(segment, new byte[64], StandardOpenOption.APPEND);
+
+        WriteAheadLog reopened = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP);
+        assertEquals(List.of("record-1"), replay(reopened));
+        reopened.awaitDurable(reopened.append(bytes("record-2")));
+        reopened.close();
+        WriteAheadLog again = new WriteAheadLog(dir, WriteAheadLog.Durability.PER_OP);
+        assertEquals(List.of("record-1", "record-2"), replay(again));
+        again.close();
+    }
+}
@@ -42,6 +42,9 @@ class AdminServiceTest {
         assertEquals("Ottawa", flight.getOrigin(), "Departure city should match");
         assertEquals("Halifax", flight.getDestination(), "Arrival city should match");
         assertEquals(180, flight.getTotalSeats(), "Total seats should match");
+        assertEquals("F12", flight.getGate(), "Gate should be set");
+        assertEquals(500.0, flight.getClassPrice("BUSINESS"), "Default prices should be set");
+        assertEquals(0, flight.getVersion(), "Gate and prices are saved with the flight, not in a second update");
         assertEquals("F12", flight.getGate(), "Gate should match");
         
         System.out.println("✓ Flight added: " + flight.getFlightId());
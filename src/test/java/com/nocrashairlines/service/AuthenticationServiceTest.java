@@ -1,6 +1,7 @@
 package com.nocrashairlines.service;
 
 import com.nocrashairlines.exception.AuthenticationException;
+import com.nocrashairlines.database.SystemDatabase;
 import com.nocrashairlines.model.Admin;
 import com.nocrashairlines.model.Passenger;
 import com.nocrashairlines.service.AuthenticationService;
@@ -49,4 +50,23 @@ class AuthenticationServiceTest {
             authService.loginAdmin("wrong@email.com", "wrongpass");
         });
     }
+
+    @Test
+    @DisplayName("Should record admin logins on a copy, never on the stored admin")
+    void testAdminLoginLeavesStoredAdminAlone() throws AuthenticationException {
+        SystemDatabase database = SystemDatabase.getInstance();
+        Admin before = database.getAdminByEmail("admin@nocrashairlines.com");
+        int failedBefore = before.getFailedLoginAttempts();
+
+        assertThrows(AuthenticationException.class,
+                () -> authService.loginAdmin("admin@nocrashairlines.com", "WrongPass@1"));
+        assertEquals(failedBefore, before.getFailedLoginAttempts(), "The stored admin is replaced, not changed");
+        assertEquals(failedBefore + 1, database.getAdminByEmail("admin@nocrashairlines.com").getFailedLoginAttempts());
+
+        Admin admin = authService.loginAdmin("admin@nocrashairlines.com", "Admin@123");
+        Admin stored = database.getAdminByEmail("admin@nocrashairlines.com");
+        assertNotSame(stored, admin, "The session object is detached from storage");
+        assertEquals(0, stored.getFailedLoginAttempts());
+        assertEquals(failedBefore, before.getFailedLoginAttempts());
+    }
 }
@@ -1,5 +1,6 @@
 package com.nocrashairlines.service;
 
+import com.nocrashairlines.database.SystemDatabase;
 import com.nocrashairlines.exception.AuthenticationException;
 import com.nocrashairlines.exception.BookingException;
 import com.nocrashairlines.model.Booking;
@@ -8,7 +9,14 @@ import com.nocrashairlines.model.Passenger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("Booking Service Tests")
@@ -163,4 +171,116 @@ class BookingServiceTest {
         
         System.out.println("✓ Cancel booking test passed!");
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Should let only one of several concurrent cancellations succeed")
+    void testConcurrentCancellation() throws Exception {
+        System.out.println("Testing concurrent cancellation...");
+        Booking booking = bookingService.createBooking(
+            testPassenger.getUserId(),
+            testFlight.getFlightId(),
+            testPassenger.getName(),
+            testPassenger.getEmail(),
+            testPassenger.getPhoneNumber(),
+            testPassenger.getPassportNumber(),
+            "ECONOMY"
+        );
+        FlightService flightService = new FlightService();
+        assertEquals(179, flightService.getFlightById(testFlight.getFlightId()).getAvailableSeats());
+
+        int threads = 6;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    return bookingService.cancelBooking(booking.getBookingId());
+                } catch (BookingException e) {
+                    assertEquals("CANNOT_CANCEL", e.getErrorCode());
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        int cancelled = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                cancelled++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, cancelled, "Exactly one cancellation should win");
+        assertEquals(180, flightService.getFlightById(testFlight.getFlightId()).getAvailableSeats(),
+                "The seat should be released exactly once");
+        System.out.println("✓ Concurrent cancellation test passed!");
+    }
+
+    @Test
+    @DisplayName("Should cancel unpaid bookings when their seat hold expires")
+    void testUnpaidBookingsExpire() throws Exception {
+        // Long enough that booking and confirming finish well before any hold runs out
+        BookingHolds holds = new BookingHolds(Duration.ofSeconds(2), Duration.ofMillis(50));
+        BookingService service = new BookingService(holds);
+        holds.onExpired(service::expireBookings);
+        int seats = testFlight.getAvailableSeats();
+
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            bookings.add(service.createBooking(testPassenger.getUserId(), testFlight.getFlightId(),
+                    "Hold User", "hold@test.com", "+1234567890", "HD123456", "ECONOMY"));
+        }
+        assertEquals(3, holds.size());
+        assertEquals(seats - 3, new FlightService().getFlightById(testFlight.getFlightId()).getAvailableSeats());
+        service.confirmBooking(bookings.get(0).getBookingId());
+        assertFalse(holds.isHeld(bookings.get(0).getBookingId()), "Confirming should release the hold");
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!"CANCELLED".equals(service.getBookingById(bookings.get(2).getBookingId()).getStatus())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, holds.size());
+        assertEquals("CONFIRMED", service.getBookingById(bookings.get(0).getBookingId()).getStatus());
+        assertEquals("CANCELLED", service.getBookingById(bookings.get(1).getBookingId()).getStatus());
+        assertEquals("CANCELLED", service.getBookingById(bookings.get(2).getBookingId()).getStatus());
+        assertEquals(seats - 1, new FlightService().getFlightById(testFlight.getFlightId()).getAvailableSeats(),
+                "Expired holds should give their seats back");
+        assertThrows(BookingException.class, () -> service.confirmBooking(bookings.get(1).getBookingId()),
+                "An expired booking cannot be confirmed");
+    }
+
+    @Test
+    @DisplayName("Should hold recovered unpaid bookings for the rest of their TTL")
+    void testHoldPendingBookings() throws Exception {
+        BookingService creator = new BookingService(new BookingHolds(Duration.ofHours(1), Duration.ofMillis(50)));
+        Booking fresh = creator.createBooking(testPassenger.getUserId(), testFlight.getFlightId(),
+                "Hold User", "hold@test.com", "+1234567890", "HD123456", "ECONOMY");
+        Booking stale = creator.createBooking(testPassenger.getUserId(), testFlight.getFlightId(),
+                "Hold User", "hold@test.com", "+1234567890", "HD123456", "ECONOMY");
+        SystemDatabase database = SystemDatabase.getInstance();
+        Booking backdated = database.getBookingById(stale.getBookingId()).copy();
+        backdated.setBookingDate(LocalDateTime.now().minusHours(2));
+        assertTrue(database.updateBooking(backdated));
+
+        // As after a restart: a new set of holds that has never seen these bookings
+        BookingHolds holds = new BookingHolds(Duration.ofHours(1), Duration.ofMillis(50));
+        BookingService service = new BookingService(holds);
+        holds.onExpired(service::expireBookings);
+        holds.holdPending(database.streamPendingBookings()
+                .filter(b -> testPassenger.getUserId().equals(b.getPassengerId())));
+
+        assertTrue(holds.isHeld(fresh.getBookingId()));
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!"CANCELLED".equals(service.getBookingById(stale.getBookingId()).getStatus())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("CANCELLED", service.getBookingById(stale.getBookingId()).getStatus(),
+                "A booking past its TTL should expire at once");
+        assertEquals("PENDING", service.getBookingById(fresh.getBookingId()).getStatus());
+        assertTrue(holds.isHeld(fresh.getBookingId()));
+    }
+}
@@ -0,0 +1,89 @@
+package com.nocrashairlines.service;
+
+import com.nocrashairlines.database.SystemDatabase;
+import com.nocrashairlines.model.Flight;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Flight Import Service Tests")
+class FlightImportServiceTest {
+
+    private FlightService flightService;
+    private String prefix;
+
+    @BeforeEach
+    void setUp() {
+        flightService = new FlightService();
+        prefix = "IM" + System.nanoTime();
+    }
+
+    @Test
+    @DisplayName("Should import valid CSV rows and report the bad ones by line")
+    void testCsvImport() throws IOException {
+        String csv = String.join("\n",
+                "flightNumber,origin,destination,departureTime,arrivalTime,totalSeats,gate,businessPrice",
+                prefix + "1,Toronto,Halifax,2031-02-01T08:00,2031-02-01T10:30,150,\"A1, east\",650",
+                prefix + "2,Toronto,Halifax,2031-02-01T12:00,2031-02-01T14:30,150,,",
+                prefix + "3,Toronto,Halifax,not-a-date,2031-02-01T14:30,150,,",
+                "",
+                prefix + "4,Toronto,Halifax,2031-02-01T16:00,2031-02-01T18:30,0,,",
+                prefix + "1,Toronto,Halifax,2031-02-02T08:00,2031-02-02T10:30,150,,",
+                prefix + "5,Toronto,Halifax,2031-02-01T20:00,2031-02-01T22:30,150,,-5",
+                prefix + "6,Toronto");
+
+        FlightImportService.ImportReport report = new FlightImportService(3).importCsv(new StringReader(csv));
+
+        assertEquals(2, report.getImportedCount());
+        List<Long> badLines = report.getErrors().stream()
+                .map(FlightImportService.RowError::line).collect(Collectors.toList());
+        assertEquals(List.of(4L, 6L, 7L, 8L, 9L), badLines);
+        assertTrue(report.getErrors().get(2).message().contains("already exists"),
+                "A repeated flight number should be rejected at insert");
+
+        Flight first = flightService.getFlightByNumber(prefix + "1");
+        assertEquals("A1, east", first.getGate());
+        assertEquals(650.0, first.getClassPrice("BUSINESS"));
+        assertEquals(200.0, first.getClassPrice("ECONOMY"), "Missing prices should get the defaults");
+        assertEquals(0, first.getVersion());
+        List<Flight> found = flightService.searchFlights("Toronto", "Halifax", LocalDateTime.of(2031, 2, 1, 0, 0));
+        assertTrue(found.stream().anyMatch(f -> f.getFlightNumber().equals(prefix + "2")),
+                "Imported flights should be searchable");
+    }
+
+    @Test
+    @DisplayName("Should import JSON Lines files with one log record per batch")
+    void testJsonLinesImport(@TempDir Path dir) throws IOException {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 25; i++) {
+            json.append("{\"flightNumber\": \"").append(prefix).append("J").append(i)
+                    .append("\", \"origin\": \"Calgary\", \"destination\": \"Regina\", ")
+                    .append("\"departureTime\": \"2031-03-01T09:00\", \"arrivalTime\": \"2031-03-01T10:15\", ")
+                    .append("\"totalSeats\": 90, \"aircraftType\": \"Dash \\\"8\\\"\", \"gate\": null}\n");
+        }
+        json.append("{\"flightNumber\": [1]}\n");
+        Path file = dir.resolve("schedule.jsonl");
+        Files.writeString(file, json);
+        int logsBefore = SystemDatabase.getInstance().getTransactionLogsByType("IMPORT_FLIGHTS").size();
+
+        FlightImportService.ImportReport report = new FlightImportService(10).importFile(file);
+
+        assertEquals(25, report.getImportedCount());
+        assertEquals(1, report.getErrors().size());
+        assertEquals(26, report.getErrors().get(0).line());
+        assertEquals("Dash \"8\"", flightService.getFlightByNumber(prefix + "J7").getAircraftType());
+        assertNull(flightService.getFlightByNumber(prefix + "J7").getGate());
+        assertEquals(logsBefore + 3,
+                SystemDatabase.getInstance().getTransactionLogsByType("IMPORT_FLIGHTS").size(),
+                "Each batch should write one summary log record");
+    }
+}
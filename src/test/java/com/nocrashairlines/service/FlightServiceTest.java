@@ -5,7 +5,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("Flight Service Tests")
@@ -94,4 +98,39 @@ class FlightServiceTest {
         assertNull(flight, "Should return null for invalid ID");
         System.out.println("✓ Invalid flight ID test passed!");
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Should not lose seat reservations made concurrently")
+    void testConcurrentSeatReservations() throws Exception {
+        System.out.println("Testing concurrent seat reservations...");
+        LocalDateTime departure = LocalDateTime.now().plusDays(2).withHour(8).withMinute(0);
+        Flight flight = adminService.addFlight("CONC" + System.currentTimeMillis() + (testCounter++),
+                "Ottawa", "Winnipeg", departure, departure.plusHours(3), "Airbus A320", 50, "D1");
+
+        int threads = 8;
+        int attemptsPerThread = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                int reserved = 0;
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    if (flightService.reserveSeat(flight.getFlightId())) {
+                        reserved++;
+                    }
+                }
+                return reserved;
+            }));
+        }
+        int reserved = 0;
+        for (Future<Integer> result : results) {
+            reserved += result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(50, reserved, "Exactly the available seats should be reserved");
+        assertEquals(0, flightService.getFlightById(flight.getFlightId()).getAvailableSeats(),
+                "No reservation should be lost");
+        System.out.println("✓ Concurrent seat reservations test passed!");
+    }
+}
@@ -7,10 +7,23 @@ import com.nocrashairlines.model.Booking;
 import com.nocrashairlines.model.Flight;
 import com.nocrashairlines.model.Passenger;
 import com.nocrashairlines.model.Payment;
+import com.nocrashairlines.payment.PaymentGateway;
+import com.nocrashairlines.payment.PaymentResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("Payment Service Tests")
@@ -159,4 +172,184 @@ class PaymentServiceTest {
 
         System.out.println("✓ Refund processing test passed!");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should refund a payment whose booking expired while the gateway charged it")
+    void testPaymentRacesExpiry() throws Exception {
+        BookingHolds holds = new BookingHolds(Duration.ofMinutes(15), Duration.ofSeconds(1));
+        BookingService expirer = new BookingService(holds);
+        BlockingGateway gateway = new BlockingGateway(false);
+        PaymentService service = new PaymentService(gateway, holds);
+        String bookingId = testBooking.getBookingId();
+        // The shared hold has run out, so paying finds no hold to release
+        BookingHolds.getInstance().release(bookingId);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Payment> paying = executor.submit(() ->
+                    service.processPayment(bookingId, testPassenger.getUserId(), "CREDIT_CARD", "4321"));
+            assertTrue(gateway.entered.await(5, TimeUnit.SECONDS));
+            assertEquals(1, expirer.expireBookings(List.of(bookingId)), "Expiry runs while the card is charged");
+            gateway.release.countDown();
+
+            ExecutionException failure =
+                    assertThrows(ExecutionException.class, () -> paying.get(5, TimeUnit.SECONDS));
+            PaymentException cause = assertInstanceOf(PaymentException.class, failure.getCause());
+            assertEquals("BOOKING_CANCELLED", cause.getErrorCode());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, gateway.refunds.get(), "The charge should be refunded");
+        assertEquals("CANCELLED", bookingService.getBookingById(bookingId).getStatus());
+        Payment payment = paymentService.getPaymentByBookingId(bookingId);
+        assertEquals("REFUNDED", payment.getStatus());
+
+        // Once cancelled, paying again is refused before the card is charged
+        assertThrows(PaymentException.class,
+                () -> service.processPayment(bookingId, testPassenger.getUserId(), "CREDIT_CARD", "4321"));
+        assertEquals(1, gateway.charges.get());
+    }
+
+    @Test
+    @DisplayName("Should send only one of two concurrent refunds to the gateway")
+    void testConcurrentRefunds() throws Exception {
+        BlockingGateway gateway = new BlockingGateway(true);
+        PaymentService service = new PaymentService(gateway, BookingHolds.getInstance());
+        String bookingId = testBooking.getBookingId();
+        service.processPayment(bookingId, testPassenger.getUserId(), "CREDIT_CARD", "4321");
+        bookingService.cancelBooking(bookingId);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Payment> first = executor.submit(() -> service.processRefund(bookingId, "First"));
+            assertTrue(gateway.entered.await(5, TimeUnit.SECONDS));
+            PaymentException second = assertThrows(PaymentException.class,
+                    () -> service.processRefund(bookingId, "Second"));
+            assertEquals("REFUND_PENDING", second.getErrorCode(), "The refund is already claimed");
+            gateway.release.countDown();
+            assertEquals("REFUNDED", first.get(5, TimeUnit.SECONDS).getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, gateway.refunds.get());
+        assertEquals("First", service.getPaymentByBookingId(bookingId).getRefundReason());
+    }
+
+    @Test
+    @DisplayName("Should send a refund again when its claim was abandoned before the gateway refunded it")
+    void testReconcileAbandonedRefund() throws Exception {
+        BlockingGateway gateway = new BlockingGateway(true);
+        gateway.release.countDown();
+        PaymentService service = new PaymentService(gateway, BookingHolds.getInstance());
+        String bookingId = testBooking.getBookingId();
+        Payment payment = service.processPayment(bookingId, testPassenger.getUserId(), "CREDIT_CARD", "4321");
+        bookingService.cancelBooking(bookingId);
+        abandonRefund(service, payment.getPaymentId(), "Lost");
+
+        PaymentException pending = assertThrows(PaymentException.class,
+                () -> service.processRefund(bookingId, "Again"));
+        assertEquals("REFUND_PENDING", pending.getErrorCode(), "A fresh claim is left to its refund");
+        assertEquals(0, service.reconcilePendingRefunds());
+
+        service.updatePaymentWithRetry(payment.getPaymentId(),
+                p -> p.setRefundDate(LocalDateTime.now().minus(PaymentService.STALE_REFUND).minusMinutes(1)));
+        assertEquals(1, service.reconcilePendingRefunds());
+        Payment refunded = service.getPaymentById(payment.getPaymentId());
+        assertEquals("REFUNDED", refunded.getStatus());
+        assertEquals("Lost", refunded.getRefundReason());
+        assertEquals(1, gateway.refunds.get());
+        assertEquals(0, service.reconcilePendingRefunds());
+    }
+
+    @Test
+    @DisplayName("Should record a refund the gateway made when its claim was left pending")
+    void testReconcileUnrecordedRefund() throws Exception {
+        BlockingGateway gateway = new BlockingGateway(true);
+        gateway.release.countDown();
+        PaymentService service = new PaymentService(gateway, BookingHolds.getInstance());
+        String bookingId = testBooking.getBookingId();
+        Payment payment = service.processPayment(bookingId, testPassenger.getUserId(), "CREDIT_CARD", "4321");
+        bookingService.cancelBooking(bookingId);
+        abandonRefund(service, payment.getPaymentId(), "Unrecorded");
+        service.updatePaymentWithRetry(payment.getPaymentId(),
+                p -> p.setRefundDate(LocalDateTime.now().minus(PaymentService.STALE_REFUND).minusMinutes(1)));
+        gateway.refunded.add(payment.getTransactionReference());
+
+        // The next refund request settles the stale claim instead of refunding twice
+        PaymentException refused = assertThrows(PaymentException.class,
+                () -> service.processRefund(bookingId, "Again"));
+        assertEquals("CANNOT_REFUND", refused.getErrorCode());
+        Payment refunded = service.getPaymentById(payment.getPaymentId());
+        assertEquals("REFUNDED", refunded.getStatus());
+        assertEquals("Unrecorded", refunded.getRefundReason());
+        assertEquals(0, gateway.refunds.get());
+    }
+
+    // Claims a refund the way refund() does, but never sends it
+    private static void abandonRefund(PaymentService service, String paymentId, String reason)
+            throws PaymentException {
+        service.updatePaymentWithRetry(paymentId, p -> p.markRefundPending(reason));
+    }
+
+    // Charges and refunds succeed, but the blocked kind only once the test lets it through
+    private static class BlockingGateway implements PaymentGateway {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger charges = new AtomicInteger();
+        final AtomicInteger refunds = new AtomicInteger();
+        final Set<String> refunded = ConcurrentHashMap.newKeySet();
+        private final boolean blockRefunds;
+
+        BlockingGateway(boolean blockRefunds) {
+            this.blockRefunds = blockRefunds;
+        }
+
+        private void block() {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public PaymentResult processPayment(Payment payment) {
+            charges.incrementAndGet();
+            if (!blockRefunds) {
+                block();
+            }
+            return new PaymentResult(true, "TXN-" + payment.getPaymentId(), "Charged");
+        }
+
+        @Override
+        public boolean verifyTransaction(String transactionReference) {
+            return transactionReference != null;
+        }
+
+        @Override
+        public PaymentResult processRefund(Payment payment, String reason) {
+            refunds.incrementAndGet();
+            if (blockRefunds) {
+                block();
+            }
+            refunded.add(payment.getTransactionReference());
+            return new PaymentResult(true, "REF-" + payment.getPaymentId(), "Refunded");
+        }
+
+        @Override
+        public boolean verifyRefund(String transactionReference) {
+            return refunded.contains(transactionReference);
+        }
+
+        @Override
+        public boolean detectFraud(Payment payment) {
+            return false;
+        }
+
+        @Override
+        public boolean isPaymentMethodSupported(String paymentMethod) {
+            return true;
+        }
+    }
+}
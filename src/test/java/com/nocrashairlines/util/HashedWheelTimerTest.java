@@ -0,0 +1,66 @@
+package com.nocrashairlines.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Hashed Wheel Timer Tests")
+class HashedWheelTimerTest {
+
+    private static void awaitPending(HashedWheelTimer<?> timer, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (timer.pendingTimeouts() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, timer.pendingTimeouts());
+    }
+
+    @Test
+    @DisplayName("Should fire every timeout that was not cancelled, in batches")
+    void testFiresUncancelledTimeouts() throws InterruptedException {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        // A small wheel, so the delay needs several turns of it
+        try (HashedWheelTimer<Integer> timer = new HashedWheelTimer<>("test-timer", Duration.ofMillis(5), 4,
+                batch -> batches.add(new ArrayList<>(batch)))) {
+            List<HashedWheelTimer.Timeout<Integer>> timeouts = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < 200; i++) {
+                timeouts.add(timer.schedule(i, Duration.ofMillis(60)));
+            }
+            for (int i = 1; i < 200; i += 2) {
+                assertTrue(timeouts.get(i).cancel());
+            }
+            awaitPending(timer, 0);
+
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 60, "Fired too early");
+            List<Integer> fired = new ArrayList<>();
+            batches.forEach(fired::addAll);
+            Collections.sort(fired);
+            assertEquals(100, fired.size());
+            assertTrue(fired.stream().allMatch(i -> i % 2 == 0), "Cancelled timeouts should not fire");
+            assertTrue(batches.size() < 100, "Timeouts of one tick should fire as one batch");
+            assertTrue(timeouts.get(0).isExpired());
+            assertFalse(timeouts.get(0).cancel(), "An expired timeout cannot be cancelled");
+            assertFalse(timeouts.get(1).cancel(), "A timeout can only be cancelled once");
+        }
+    }
+
+    @Test
+    @DisplayName("Should fire timeouts with later deadlines after earlier ones")
+    void testOrderAcrossTicks() throws InterruptedException {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        try (HashedWheelTimer<String> timer = new HashedWheelTimer<>("test-timer", Duration.ofMillis(5), 8,
+                fired::addAll)) {
+            timer.schedule("late", Duration.ofMillis(120));
+            timer.schedule("early", Duration.ofMillis(10));
+            timer.schedule("now", Duration.ZERO);
+            awaitPending(timer, 0);
+            assertEquals(List.of("now", "early", "late"), fired);
+        }
+    }
+}
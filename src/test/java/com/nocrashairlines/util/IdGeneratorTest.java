@@ -0,0 +1,66 @@
+package com.nocrashairlines.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ID Generator Tests")
+class IdGeneratorTest {
+
+    @Test
+    @DisplayName("IDs are unique across threads and increase within each thread")
+    void testConcurrentIdsAreUniqueAndOrdered() throws InterruptedException {
+        IdGenerator generator = new IdGenerator(7);
+        ConcurrentLinkedQueue<Long> all = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                long previous = -1;
+                for (int i = 0; i < 20_000; i++) {
+                    long id = generator.nextId();
+                    assertTrue(id > previous);
+                    previous = id;
+                    all.add(id);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<Long> unique = new HashSet<>(all);
+        assertEquals(8 * 20_000, unique.size());
+        assertTrue(unique.stream().allMatch(id -> IdGenerator.nodeOf(id) == 7));
+    }
+
+    @Test
+    @DisplayName("A full millisecond borrows the next one, and strings sort like the IDs")
+    void testSequenceOverflowAndStringForm() {
+        long now = IdGenerator.EPOCH.toEpochMilli() + 86_400_000L;
+        IdGenerator generator = new IdGenerator(1, () -> now);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ids.add(generator.nextId());
+        }
+        assertEquals(Instant.ofEpochMilli(now), IdGenerator.timestampOf(ids.get(0)));
+        assertEquals(Instant.ofEpochMilli(now + 1), IdGenerator.timestampOf(ids.get(4999)));
+
+        String previous = "";
+        for (long id : ids) {
+            String text = IdGenerator.toString(id);
+            assertEquals(IdGenerator.STRING_LENGTH, text.length());
+            assertTrue(text.compareTo(previous) > 0);
+            assertEquals(id, IdGenerator.parse(text));
+            previous = text;
+        }
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.parse("NOT-AN-ID"));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(IdGenerator.MAX_NODE_ID + 1));
+    }
+}